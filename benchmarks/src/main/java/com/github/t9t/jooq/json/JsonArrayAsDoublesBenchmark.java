@@ -0,0 +1,98 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.JSONB;
+import org.jooq.SQLDialect;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * <p>Compares fetching a {@code jsonb} array of {@code size} numbers as JSON text and parsing it into a
+ * {@code List<Double>} on the client, with fetching it as a {@code double[]} using {@link JsonbDSL#arrayAsDoubles},
+ * against a running PostgreSQL (the one of the integration tests).</p>
+ *
+ * <p>Run with: {@code mvn -Pbenchmarks package -Dmaven.test.skip=true && java -jar benchmarks/target/benchmarks.jar
+ * JsonArrayAsDoubles}</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonArrayAsDoublesBenchmark {
+    private static final Table<?> table = DSL.table(DSL.name("jooq", "json_test"));
+    private static final Field<Long> id = DSL.field(DSL.name("id"), Long.class);
+    private static final Field<String> name = DSL.field(DSL.name("name"), String.class);
+    private static final Field<JSONB> datab = DSL.field(DSL.name("datab"), JSONB.class);
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private Connection connection;
+    private DSLContext dsl;
+    private long rowId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:postgresql://localhost:23719/jooq", "jooq", "jooq");
+        dsl = DSL.using(connection, SQLDialect.POSTGRES);
+        String samples = IntStream.range(0, size)
+                .mapToObj(i -> Double.toString(i * 1.25))
+                .collect(Collectors.joining(", ", "{\"samples\": [", "]}"));
+        rowId = dsl.insertInto(table, name, datab)
+                .values("array-as-doubles-benchmark", JSONB.valueOf(samples))
+                .returning(id)
+                .fetchOne()
+                .get(id);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        dsl.deleteFrom(table).where(id.eq(rowId)).execute();
+        connection.close();
+    }
+
+    @Benchmark
+    public List<Double> textParsing() {
+        JSONB array = dsl.select(JsonbDSL.objectAtPath(datab, "samples")).from(table).where(id.eq(rowId))
+                .fetchOne().value1();
+        List<?> elements = (List<?>) JsonParser.parse(array.data());
+        List<Double> values = new ArrayList<>(elements.size());
+        for (Object element : elements) {
+            values.add(((BigDecimal) element).doubleValue());
+        }
+        return values;
+    }
+
+    @Benchmark
+    public double[] arrayAsDoubles() {
+        return dsl.select(JsonbDSL.arrayAsDoubles(JsonbDSL.objectAtPath(datab, "samples"))).from(table)
+                .where(id.eq(rowId))
+                .fetchOne().value1();
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.JSONB;
+import org.jooq.Record1;
+import org.jooq.Result;
+import org.jooq.SQLDialect;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultConfiguration;
+import org.jooq.impl.DefaultExecuteListener;
+import org.jooq.tools.jdbc.MockConnection;
+import org.jooq.tools.jdbc.MockResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures the overhead of {@link JsonQueryMetricsListener}: recording alone, and executing a query using three
+ * JSON operators against a mock JDBC connection without listeners, with an empty listener, and with the metrics
+ * listener. The difference between the last two is the per-query overhead of the metrics, which should stay below a
+ * microsecond (the difference between the first two is what jOOQ charges for having any listener at all).</p>
+ *
+ * <p>Run with: {@code mvn -Pbenchmarks package && java -jar benchmarks/target/benchmarks.jar JsonQueryMetrics}</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonQueryMetricsBenchmark {
+    private static final Table<?> table = DSL.table(DSL.name("json_test"));
+    private static final Field<JSONB> datab = DSL.field(DSL.name("datab"), JSONB.class);
+
+    private InMemoryJsonQueryMetrics metrics;
+    private DSLContext plain;
+    private DSLContext emptyListener;
+    private DSLContext instrumented;
+
+    @Setup
+    public void setUp() {
+        metrics = new InMemoryJsonQueryMetrics();
+
+        DefaultConfiguration configuration = new DefaultConfiguration();
+        configuration.set(SQLDialect.POSTGRES);
+        configuration.set(new MockConnection(ctx -> {
+            DSLContext create = DSL.using(SQLDialect.POSTGRES);
+            Result<Record1<String>> result = create.newResult(DSL.field("v", String.class));
+            result.add(create.newRecord(DSL.field("v", String.class)).values("x"));
+            return new MockResult[]{new MockResult(1, result)};
+        }));
+
+        plain = DSL.using(configuration);
+        emptyListener = DSL.using(configuration.derive(new DefaultExecuteListener()));
+        instrumented = DSL.using(JsonQueryMetricsListener.install(configuration, metrics));
+    }
+
+    @Benchmark
+    public void record() {
+        metrics.record("->>", 1234, 1);
+    }
+
+    @Benchmark
+    public Object executeWithoutMetrics() {
+        return execute(plain);
+    }
+
+    @Benchmark
+    public Object executeWithEmptyListener() {
+        return execute(emptyListener);
+    }
+
+    @Benchmark
+    public Object executeWithMetrics() {
+        return execute(instrumented);
+    }
+
+    private static Object execute(DSLContext dsl) {
+        return dsl.select(JsonbDSL.fieldByKeyText(datab, "name"))
+                .from(table)
+                .where(JsonbDSL.contains(datab, JsonbDSL.field("{\"type\": \"a\"}")))
+                .and(JsonbDSL.hasKey(datab, "id"))
+                .fetch();
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.JSONB;
+import org.jooq.Param;
+import org.jooq.Record1;
+import org.jooq.Result;
+import org.jooq.SQLDialect;
+import org.jooq.Select;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+import org.jooq.tools.jdbc.MockConnection;
+import org.jooq.tools.jdbc.MockResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Compares executing a {@code contains(datab, ?) and fieldByKeyText(datab, 'type') = ?} query against a mock JDBC
+ * connection by building, rendering and binding it with jOOQ every time, and by executing a {@link JsonQueryTemplate}
+ * of it. As the mock connection does no work, the difference is the client side cost saved by the template.</p>
+ *
+ * <p>Run with: {@code mvn -Pbenchmarks package && java -jar benchmarks/target/benchmarks.jar JsonQueryTemplate}</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonQueryTemplateBenchmark {
+    private static final Table<?> table = DSL.table(DSL.name("json_test"));
+    private static final Field<Long> id = DSL.field(DSL.name("id"), Long.class);
+    private static final Field<JSONB> datab = DSL.field(DSL.name("datab"), JSONB.class);
+
+    private final JSONB filter = JSONB.valueOf("{\"tags\": [\"fantasy\"]}");
+    private final String type = "book";
+
+    private DSLContext dsl;
+    private JsonQueryTemplate<Record1<Long>> template;
+
+    @Setup
+    public void setUp() {
+        dsl = DSL.using(new MockConnection(ctx -> {
+            Result<Record1<Long>> result = DSL.using(SQLDialect.POSTGRES).newResult(id);
+            result.add(DSL.using(SQLDialect.POSTGRES).newRecord(id).values(1L));
+            return new MockResult[]{new MockResult(1, result)};
+        }), SQLDialect.POSTGRES);
+
+        Param<JSONB> filterParam = DSL.param("filter", filter);
+        Param<String> typeParam = DSL.param("type", type);
+        template = JsonQueryTemplate.of(dsl, query(dsl, filterParam, typeParam));
+    }
+
+    @Benchmark
+    public Object buildEachTime() {
+        return query(dsl, DSL.val(filter), DSL.val(type)).fetch();
+    }
+
+    @Benchmark
+    public Object template() {
+        return template.fetch(filter, type);
+    }
+
+    private static Select<Record1<Long>> query(DSLContext dsl, Field<JSONB> filter, Field<String> type) {
+        return dsl.select(id)
+                .from(table)
+                .where(JsonbDSL.contains(datab, filter))
+                .and(JsonbDSL.fieldByKeyText(datab, "type").eq(type));
+    }
+}
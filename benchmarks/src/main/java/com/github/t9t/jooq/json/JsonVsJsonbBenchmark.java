@@ -0,0 +1,294 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.Record1;
+import org.jooq.SQLDialect;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Macrobenchmark comparing the throughput of {@code json} and {@code jsonb} columns in {@code jooq.json_test} for
+ * inserts and for the {@code fieldByKeyText}, {@code objectAtPath}, {@code arrayLength} and {@code typeOf} operators,
+ * at increasing concurrency, against a running PostgreSQL (by default the one of the integration tests).</p>
+ *
+ * <p>Generated documents are objects with {@code width} string fields {@code f0..fN}, plus {@code str}, {@code num},
+ * an {@code arr} array of {@code arrayLength} numbers and, down to {@code depth} levels, a nested {@code obj} of the same
+ * shape. Read operators select the operator result for a random row by primary key, so every query extracts from
+ * exactly one document. The result is printed as a table of operations per second per column type.</p>
+ *
+ * <p>Run with: {@code mvn -Pbenchmarks package -Dmaven.test.skip=true && java -cp benchmarks/target/benchmarks.jar
+ * com.github.t9t.jooq.json.JsonVsJsonbBenchmark --depth=3 --width=20 --arrayLength=100 --threads=8}</p>
+ *
+ * <p>Options (with defaults): {@code --url=jdbc:postgresql://localhost:23719/jooq}, {@code --user=jooq},
+ * {@code --password=jooq}, {@code --depth=2}, {@code --width=10}, {@code --arrayLength=10}, {@code --rows=1000},
+ * {@code --threads=4} (measures 1, 2, 4, ... up to this number), {@code --warmup=2} and {@code --duration=5} (seconds
+ * per measurement).</p>
+ *
+ * <p><b>Note:</b> deletes all rows from {@code jooq.json_test}.</p>
+ */
+public class JsonVsJsonbBenchmark {
+    private static final Table<?> table = DSL.table(DSL.name("jooq", "json_test"));
+    private static final Field<Long> id = DSL.field(DSL.name("id"), Long.class);
+    private static final Field<String> name = DSL.field(DSL.name("name"), String.class);
+    private static final Field<JSON> data = DSL.field(DSL.name("data"), JSON.class);
+    private static final Field<JSONB> datab = DSL.field(DSL.name("datab"), JSONB.class);
+
+    private final Map<String, String> options;
+    private final String document;
+    private final AtomicLong sequence = new AtomicLong();
+    private List<Long> ids;
+
+    JsonVsJsonbBenchmark(Map<String, String> options) {
+        this.options = options;
+        for (String option : Arrays.asList("depth", "rows", "threads", "duration")) {
+            checkOption(option, 1);
+        }
+        for (String option : Arrays.asList("width", "arrayLength", "warmup")) {
+            checkOption(option, 0);
+        }
+        this.document = document(intOption("depth"), intOption("width"), intOption("arrayLength"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("url", "jdbc:postgresql://localhost:23719/jooq");
+        options.put("user", "jooq");
+        options.put("password", "jooq");
+        options.put("depth", "2");
+        options.put("width", "10");
+        options.put("arrayLength", "10");
+        options.put("rows", "1000");
+        options.put("threads", "4");
+        options.put("warmup", "2");
+        options.put("duration", "5");
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            if (option.length != 2 || !options.containsKey(option[0])) {
+                throw new IllegalArgumentException("Unknown option: " + arg + ", available: " + options.keySet());
+            }
+            options.put(option[0], option[1]);
+        }
+
+        new JsonVsJsonbBenchmark(options).run();
+    }
+
+    void run() throws Exception {
+        System.out.printf("Document: depth=%s, width=%s, arrayLength=%s, %d chars%n",
+                options.get("depth"), options.get("width"), options.get("arrayLength"), document.length());
+
+        String[] path = path(intOption("depth"));
+        Map<String, Operation> operations = new LinkedHashMap<>();
+        operations.put("insert", new Operation(
+                dsl -> dsl.insertInto(table).columns(name, data).values(nextName(), JSON.valueOf(document)).execute(),
+                dsl -> dsl.insertInto(table).columns(name, datab).values(nextName(), JSONB.valueOf(document)).execute()));
+        operations.put("fieldByKeyText", new Operation(
+                dsl -> selectOne(dsl, JsonDSL.fieldByKeyText(data, "str")),
+                dsl -> selectOne(dsl, JsonbDSL.fieldByKeyText(datab, "str"))));
+        operations.put("objectAtPath", new Operation(
+                dsl -> selectOne(dsl, JsonDSL.objectAtPath(data, path)),
+                dsl -> selectOne(dsl, JsonbDSL.objectAtPath(datab, path))));
+        operations.put("arrayLength", new Operation(
+                dsl -> selectOne(dsl, JsonDSL.arrayLength(JsonDSL.fieldByKey(data, "arr"))),
+                dsl -> selectOne(dsl, JsonbDSL.arrayLength(JsonbDSL.fieldByKey(datab, "arr")))));
+        operations.put("typeOf", new Operation(
+                dsl -> selectOne(dsl, JsonDSL.typeOf(data)),
+                dsl -> selectOne(dsl, JsonbDSL.typeOf(datab))));
+
+        List<Integer> threadCounts = threadCounts(intOption("threads"));
+        List<String[]> rows = new ArrayList<>();
+        try {
+            prepare();
+            for (Map.Entry<String, Operation> operation : operations.entrySet()) {
+                for (int threads : threadCounts) {
+                    double json = measure(operation.getValue().json, threads);
+                    double jsonb = measure(operation.getValue().jsonb, threads);
+                    rows.add(new String[]{operation.getKey(), String.valueOf(threads), format(json), format(jsonb),
+                            String.format("%.2f", jsonb / json)});
+                    System.err.printf("%s with %d thread(s): json %s ops/s, jsonb %s ops/s%n",
+                            operation.getKey(), threads, format(json), format(jsonb));
+                }
+            }
+        } finally {
+            try (Connection connection = connect()) {
+                DSL.using(connection, SQLDialect.POSTGRES).deleteFrom(table).execute();
+            }
+        }
+
+        printTable(new String[]{"operation", "threads", "json ops/s", "jsonb ops/s", "jsonb/json"}, rows);
+    }
+
+    private void prepare() throws SQLException {
+        try (Connection connection = connect()) {
+            DSLContext dsl = DSL.using(connection, SQLDialect.POSTGRES);
+            dsl.deleteFrom(table).execute();
+            for (int i = 0; i < intOption("rows"); i++) {
+                dsl.insertInto(table).columns(name, data, datab)
+                        .values(nextName(), JSON.valueOf(document), JSONB.valueOf(document))
+                        .execute();
+            }
+            dsl.execute("analyze jooq.json_test");
+            ids = dsl.select(id).from(table).fetch(id);
+        }
+    }
+
+    private double measure(Task task, int threads) throws Exception {
+        run(task, threads, intOption("warmup"));
+        return run(task, threads, intOption("duration"));
+    }
+
+    private double run(Task task, int threads, int seconds) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            List<Callable<Long>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                workers.add(() -> {
+                    long operations = 0;
+                    try (Connection connection = connect()) {
+                        DSLContext dsl = DSL.using(connection, SQLDialect.POSTGRES);
+                        while (System.nanoTime() < end) {
+                            task.execute(dsl);
+                            operations++;
+                        }
+                    }
+                    return operations;
+                });
+            }
+
+            long start = System.nanoTime();
+            long operations = 0;
+            for (Future<Long> worker : executor.invokeAll(workers)) {
+                operations += worker.get();
+            }
+            return operations / ((System.nanoTime() - start) / 1e9);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Object selectOne(DSLContext dsl, Field<?> field) {
+        Long rowId = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        Record1<?> record = dsl.select(field).from(table).where(id.eq(rowId)).fetchOne();
+        return record.value1();
+    }
+
+    private String nextName() {
+        return "bench-" + sequence.incrementAndGet();
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection(options.get("url"), options.get("user"), options.get("password"));
+    }
+
+    private int intOption(String option) {
+        try {
+            return Integer.parseInt(options.get(option));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + option + " must be a number, got: " + options.get(option));
+        }
+    }
+
+    private void checkOption(String option, int min) {
+        if (intOption(option) < min) {
+            throw new IllegalArgumentException("--" + option + " must be at least " + min + ", got: "
+                    + options.get(option));
+        }
+    }
+
+    static String document(int depth, int width, int arrayLength) {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < width; i++) {
+            sb.append("\"f").append(i).append("\": \"value ").append(i).append("\", ");
+        }
+        sb.append("\"str\": \"text at depth ").append(depth).append("\", \"num\": ").append(depth).append(", \"arr\": [");
+        for (int i = 0; i < arrayLength; i++) {
+            sb.append(i == 0 ? "" : ", ").append(i);
+        }
+        sb.append("]");
+        if (depth > 1) {
+            sb.append(", \"obj\": ").append(document(depth - 1, width, arrayLength));
+        }
+        return sb.append("}").toString();
+    }
+
+    static String[] path(int depth) {
+        String[] path = new String[depth];
+        Arrays.fill(path, 0, depth - 1, "obj");
+        path[depth - 1] = "num";
+        return path;
+    }
+
+    static List<Integer> threadCounts(int max) {
+        List<Integer> counts = new ArrayList<>();
+        for (int threads = 1; threads < max; threads *= 2) {
+            counts.add(threads);
+        }
+        counts.add(max);
+        return counts;
+    }
+
+    private static String format(double operationsPerSecond) {
+        return String.format("%.0f", operationsPerSecond);
+    }
+
+    private static void printTable(String[] header, List<String[]> rows) {
+        int[] widths = new int[header.length];
+        for (String[] row : rows) {
+            for (int i = 0; i < row.length; i++) {
+                widths[i] = Math.max(widths[i], Math.max(row[i].length(), header[i].length()));
+            }
+        }
+
+        StringBuilder separator = new StringBuilder("|");
+        for (int width : widths) {
+            separator.append(String.format("%" + (width + 2) + "s|", "").replace(' ', '-'));
+        }
+        System.out.println(row(header, widths));
+        System.out.println(separator);
+        for (String[] row : rows) {
+            System.out.println(row(row, widths));
+        }
+    }
+
+    private static String row(String[] values, int[] widths) {
+        StringBuilder sb = new StringBuilder("|");
+        for (int i = 0; i < values.length; i++) {
+            sb.append(String.format(i < 2 ? " %-" + widths[i] + "s |" : " %" + widths[i] + "s |", values[i]));
+        }
+        return sb.toString();
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void execute(DSLContext dsl) throws Exception;
+    }
+
+    private static final class Operation {
+        final Task json;
+        final Task jsonb;
+
+        Operation(Task json, Task jsonb) {
+            this.json = json;
+            this.jsonb = jsonb;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.JSONB;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.github.t9t.jooq.generated.Tables.JSON_TEST;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CanonicalJsonbIT {
+    private static final List<String> DOCUMENTS = Arrays.asList(
+            "{\"b\": 2, \"a\": 1}",
+            "{ \"a\" : 1.00 , \"b\" : 2e0 }",
+            "{\"a\": 1, \"a\": 3, \"long\": [1, 2.50, -0.0, 1E+3], \"n\": null, \"t\": true}",
+            "{\"s\": \"quote \\\" slash \\/ tab \\t \\u0041 \\u0001\", \"nested\": {\"zz\": {}, \"y\": []}}",
+            "[3, 2, 1]",
+            "\"just a string\"",
+            "12.3400",
+            "null");
+
+    private final DSLContext dsl = DSL.using(TestDb.createDataSource(), SQLDialect.POSTGRES);
+
+    @Before
+    public void setUp() {
+        dsl.deleteFrom(JSON_TEST).execute();
+    }
+
+    @Test
+    public void canonicalize() {
+        assertEquals("{\"a\":1,\"b\":2}", CanonicalJsonb.canonicalize("{\"b\": 2, \"a\": 1}"));
+        assertEquals("{\"a\":1,\"b\":2}", CanonicalJsonb.canonicalize(" { \"a\" : 1.00 ,\n\"b\" : 2e0 } "));
+        assertEquals("{\"a\":3,\"bb\":[0,2.5,1000],\"aaa\":null}",
+                CanonicalJsonb.canonicalize("{\"aaa\": null, \"bb\": [-0.0, 2.50, 1E+3], \"a\": 1, \"a\": 3}"));
+        assertEquals("\"\\\"/\\t\u00e9\\u0001\"", CanonicalJsonb.canonicalize("\"\\\"\\/\\t\\u00e9\\u0001\""));
+        assertEquals("1E+30", CanonicalJsonb.canonicalize("1000000000000000000000000000000"));
+    }
+
+    @Test
+    public void equalsAndHash() {
+        CanonicalJsonb a = CanonicalJsonb.of(JSONB.valueOf("{\"b\": [1, 2], \"a\": {\"x\": 1.0}}"));
+        CanonicalJsonb b = CanonicalJsonb.of("{\"a\":{\"x\":1},\"b\":[1,2]}");
+        CanonicalJsonb c = CanonicalJsonb.of("{\"a\":{\"x\":1},\"b\":[2,1]}");
+
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals(a.hash64(), b.hash64());
+        assertNotEquals(a, c);
+        assertNotEquals(a.hash64(), c.hash64());
+        assertNull(CanonicalJsonb.of((JSONB) null));
+    }
+
+    @Test
+    public void equalToDocumentsReturnedByPostgres() {
+        for (String document : DOCUMENTS) {
+            JSONB stored = dsl.select(DSL.field("cast({0} as jsonb)", JSONB.class, document)).fetchOne().value1();
+
+            assertEquals(document, CanonicalJsonb.of(document), CanonicalJsonb.of(stored));
+        }
+    }
+
+    @Test
+    public void equalityMatchesPostgres() {
+        for (String left : DOCUMENTS) {
+            for (String right : Arrays.asList("{\"a\": 1, \"b\": 2}", "[3, 2, 1]", "12.34", left)) {
+                boolean equal = dsl.select(DSL.field("cast({0} as jsonb) = cast({1} as jsonb)", Boolean.class,
+                        left, right)).fetchOne().value1();
+
+                assertEquals(left + " = " + right, equal, CanonicalJsonb.of(left).equals(CanonicalJsonb.of(right)));
+            }
+        }
+    }
+
+    @Test
+    public void fetchAsMapKeys() {
+        dsl.insertInto(JSON_TEST, JSON_TEST.NAME, JSON_TEST.DATAB)
+                .values("one", JSONB.valueOf("{\"b\": 2, \"a\": 1}"))
+                .values("two", JSONB.valueOf("[1, 2]"))
+                .execute();
+        Field<CanonicalJsonb> datab = JSON_TEST.DATAB.coerce(JSON_TEST.DATAB.getDataType()
+                .asConvertedDataType(CanonicalJsonb.converter()));
+
+        Map<CanonicalJsonb, String> names = dsl.select(datab, JSON_TEST.NAME).from(JSON_TEST)
+                .fetchMap(datab, JSON_TEST.NAME);
+
+        assertEquals("one", names.get(CanonicalJsonb.of("{\"a\":1.0,\"b\":2}")));
+        assertEquals("two", names.get(CanonicalJsonb.of("[1,2]")));
+    }
+
+    @Test
+    public void distinctHashes() {
+        Set<Long> hashes = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            hashes.add(CanonicalJsonb.of("{\"i\": " + i + "}").hash64());
+        }
+        assertEquals(10_000, hashes.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidJson() {
+        CanonicalJsonb.of("{\"a\": }");
+    }
+
+    @Test
+    public void invalidJsonMessage() {
+        try {
+            CanonicalJsonb.of("[1, 2");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Expected ']' at position 5"));
+            return;
+        }
+        throw new AssertionError("Expected IllegalArgumentException");
+    }
+
+    @Test
+    public void deeplyNestedJson() {
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            json.insert(0, i % 2 == 0 ? "[" : "{\"a\": ").append(i % 2 == 0 ? "]" : "}");
+        }
+        assertEquals(json.toString().replace(" ", ""), CanonicalJsonb.canonicalize(json.toString()));
+
+        try {
+            CanonicalJsonb.of("[" + json + "]");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("JSON is nested deeper than 1000 levels"));
+            return;
+        }
+        throw new AssertionError("Expected IllegalArgumentException");
+    }
+
+    @Test
+    public void invalidJsonMessageShowsTextAroundPosition() {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 10_000; i++) {
+            json.append(i).append(", ");
+        }
+        json.append("x, 1]");
+        try {
+            CanonicalJsonb.of(json.toString());
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().endsWith("9998, 9999, x, 1]"));
+            assertTrue(e.getMessage(), e.getMessage().contains("of JSON: ..."));
+            assertTrue(e.getMessage(), e.getMessage().length() < 200);
+            return;
+        }
+        throw new AssertionError("Expected IllegalArgumentException");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void veryDeeplyNestedJson() {
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < 1_000_000; i++) {
+            json.append('[');
+        }
+        CanonicalJsonb.of(json.toString());
+    }
+}
@@ -0,0 +1,221 @@
+package com.github.t9t.jooq.json;
+
+import com.github.t9t.jooq.generated.tables.records.JsonTestRecord;
+import org.jooq.DSLContext;
+import org.jooq.ExecuteContext;
+import org.jooq.JSONB;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultExecuteListener;
+import org.jooq.impl.DefaultExecuteListenerProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static com.github.t9t.jooq.generated.Tables.JSON_TEST;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JsonBatchLoaderIT {
+    private final AtomicInteger queries = new AtomicInteger();
+    private final DSLContext dsl = DSL.using(TestDb.createDataSource(), SQLDialect.POSTGRES);
+    private final DSLContext counting = DSL.using(dsl.configuration().derive(new DefaultExecuteListenerProvider(
+            new DefaultExecuteListener() {
+                @Override
+                public void executeStart(ExecuteContext ctx) {
+                    queries.incrementAndGet();
+                }
+            })));
+
+    private JsonBatchLoader<?, ?> loader;
+
+    @Before
+    public void setUp() {
+        dsl.deleteFrom(JSON_TEST).execute();
+        insert("one", "{\"id\": \"1\", \"tag\": \"x\"}");
+        insert("two", "{\"id\": \"2\", \"tag\": \"x\"}");
+        insert("three", "{\"id\": \"3\", \"tag\": \"y\"}");
+    }
+
+    @After
+    public void tearDown() {
+        loader.close();
+    }
+
+    @Test
+    public void loadsKeysWithOneQuery() throws Exception {
+        JsonBatchLoader<String, JsonTestRecord> byId = byId().window(50);
+
+        CompletableFuture<List<JsonTestRecord>> one = byId.load("1");
+        CompletableFuture<List<JsonTestRecord>> three = byId.load("3");
+        CompletableFuture<List<JsonTestRecord>> missing = byId.load("4");
+        CompletableFuture<List<JsonTestRecord>> oneAgain = byId.load("1");
+
+        assertEquals("[one]", names(one));
+        assertEquals("[three]", names(three));
+        assertEquals("[]", names(missing));
+        assertSame(one, oneAgain);
+        assertEquals(1, queries.get());
+    }
+
+    @Test
+    public void executesFullBatchRightAway() throws Exception {
+        JsonBatchLoader<String, JsonTestRecord> byId = byId().window(60_000).maxBatchSize(2);
+
+        CompletableFuture<List<JsonTestRecord>> one = byId.load("1");
+        CompletableFuture<List<JsonTestRecord>> two = byId.load("2");
+        CompletableFuture<List<JsonTestRecord>> three = byId.load("3");
+
+        assertEquals("[one]", names(one));
+        assertEquals("[two]", names(two));
+        assertEquals(1, queries.get());
+        assertFalse(three.isDone());
+
+        byId.dispatch();
+        assertEquals("[three]", names(three));
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    public void loadsContainedDocuments() throws Exception {
+        JsonBatchLoader<JSONB, JsonTestRecord> byDocument = JsonBatchLoader.byContainment(counting, JSON_TEST,
+                JSON_TEST.DATAB).window(50);
+        loader = byDocument;
+
+        CompletableFuture<List<JsonTestRecord>> x = byDocument.load(JSONB.valueOf("{\"tag\": \"x\"}"));
+        CompletableFuture<List<JsonTestRecord>> three = byDocument.load(JSONB.valueOf("{\"id\": \"3\"}"));
+        CompletableFuture<List<JsonTestRecord>> none = byDocument.load(JSONB.valueOf("{\"tag\": \"z\"}"));
+
+        assertEquals("[one, two]", names(x));
+        assertEquals("[three]", names(three));
+        assertEquals("[]", names(none));
+        assertEquals(1, queries.get());
+    }
+
+    @Test
+    public void failsAllFuturesOfBatch() throws Exception {
+        JsonBatchLoader<String, JsonTestRecord> broken = JsonBatchLoader.byKey(counting, JSON_TEST,
+                DSL.field(DSL.name("no_such_column"), String.class)).window(50);
+        loader = broken;
+
+        CompletableFuture<List<JsonTestRecord>> one = broken.load("1");
+        CompletableFuture<List<JsonTestRecord>> two = broken.load("2");
+
+        for (CompletableFuture<List<JsonTestRecord>> future : Arrays.asList(one, two)) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail("Expected query to fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause().getMessage(), e.getCause().getMessage().contains("no_such_column"));
+            }
+        }
+    }
+
+    @Test
+    public void failsAllFuturesOfBatchOnError() throws Exception {
+        Error error = new Error("Simulated error");
+        DSLContext erroring = DSL.using(dsl.configuration().derive(new DefaultExecuteListenerProvider(
+                new DefaultExecuteListener() {
+                    @Override
+                    public void executeStart(ExecuteContext ctx) {
+                        throw error;
+                    }
+                })));
+        JsonBatchLoader<String, JsonTestRecord> broken = JsonBatchLoader.byKey(erroring, JSON_TEST,
+                JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "id")).window(50);
+        loader = broken;
+
+        CompletableFuture<List<JsonTestRecord>> one = broken.load("1");
+        CompletableFuture<List<JsonTestRecord>> two = broken.load("2");
+
+        for (CompletableFuture<List<JsonTestRecord>> future : Arrays.asList(one, two)) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail("Expected query to fail");
+            } catch (ExecutionException e) {
+                assertSame(error, e.getCause());
+            }
+        }
+    }
+
+    @Test
+    public void closeFailsRunningAndQueuedBatches() throws Exception {
+        JsonBatchLoader<String, JsonTestRecord> slow = JsonBatchLoader.byKey(counting, JSON_TEST,
+                DSL.field("(select {0} from pg_sleep(0.5))", String.class,
+                        JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "id"))).maxBatchSize(1);
+        loader = slow;
+
+        List<CompletableFuture<List<JsonTestRecord>>> futures = Arrays.asList(slow.load("1"), slow.load("2"),
+                slow.load("3"));
+        slow.close();
+
+        for (CompletableFuture<List<JsonTestRecord>> future : futures) {
+            try {
+                future.get(1, TimeUnit.SECONDS);
+                fail("Expected future to fail");
+            } catch (ExecutionException e) {
+                assertEquals("Loader was closed", e.getCause().getMessage());
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsLoadAfterClose() {
+        JsonBatchLoader<String, JsonTestRecord> byId = byId();
+        byId.close();
+        byId.load("1");
+    }
+
+    @Test
+    public void completesOnCompletionExecutor() throws Exception {
+        ExecutorService completion = Executors.newSingleThreadExecutor(r -> new Thread(r, "completion"));
+        try {
+            JsonBatchLoader<String, JsonTestRecord> byId = byId().window(50).completionExecutor(completion);
+
+            CompletableFuture<String> thread = byId.load("1").thenApply(r -> Thread.currentThread().getName());
+
+            assertEquals("completion", thread.get(5, TimeUnit.SECONDS));
+        } finally {
+            completion.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidBatchSize() {
+        byId().maxBatchSize(0);
+    }
+
+    private JsonBatchLoader<String, JsonTestRecord> byId() {
+        JsonBatchLoader<String, JsonTestRecord> byId = JsonBatchLoader.byKey(counting, JSON_TEST,
+                JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "id"));
+        loader = byId;
+        return byId;
+    }
+
+    private static String names(CompletableFuture<List<JsonTestRecord>> future)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        return future.get(5, TimeUnit.SECONDS).stream()
+                .map(JsonTestRecord::getName)
+                .sorted()
+                .collect(Collectors.toList())
+                .toString();
+    }
+
+    private void insert(String name, String data) {
+        dsl.insertInto(JSON_TEST, JSON_TEST.NAME, JSON_TEST.DATAB).values(name, JSONB.valueOf(data)).execute();
+    }
+}
@@ -0,0 +1,245 @@
+package com.github.t9t.jooq.json;
+
+import com.github.t9t.jooq.json.JsonChangeStream.Change;
+import com.github.t9t.jooq.json.JsonChangeStream.Type;
+import org.jooq.DSLContext;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.SQLDialect;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.github.t9t.jooq.generated.Tables.JSON_STR_TEST;
+import static com.github.t9t.jooq.generated.Tables.JSON_TEST;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class JsonChangeStreamIT {
+    private static final String SLOT = "json_change_stream_it";
+
+    private final DSLContext dsl = DSL.using(TestDb.createDataSource(), SQLDialect.POSTGRES);
+    private final BlockingQueue<List<Change>> transactions = new LinkedBlockingQueue<>();
+    private JsonChangeStream stream;
+
+    @Before
+    public void setUp() {
+        JsonChangeStream.dropDdl(SLOT).forEach(dsl::execute);
+        dsl.deleteFrom(JSON_TEST).execute();
+        dsl.deleteFrom(JSON_STR_TEST).execute();
+        JsonChangeStream.ddl(SLOT, JSON_TEST).forEach(dsl::execute);
+        // Executing it again does nothing
+        JsonChangeStream.ddl(SLOT, JSON_TEST).forEach(dsl::execute);
+    }
+
+    @After
+    public void tearDown() {
+        if (stream != null) {
+            stream.close();
+        }
+        JsonChangeStream.dropDdl(SLOT).forEach(dsl::execute);
+    }
+
+    @Test
+    public void streamsChanges() throws Exception {
+        stream = start(transactions::add);
+
+        long id = dsl.insertInto(JSON_TEST, JSON_TEST.NAME, JSON_TEST.DATA, JSON_TEST.DATAB)
+                .values("doc", JSON.valueOf("{\"a\": \"é\"}"), JSONB.valueOf("{\"b\": [1, 2]}"))
+                .returning(JSON_TEST.ID).fetchOne().getId();
+        dsl.update(JSON_TEST).set(JSON_TEST.DATAB, JSONB.valueOf("{\"b\": 3}")).where(JSON_TEST.ID.eq(id)).execute();
+        dsl.deleteFrom(JSON_TEST).where(JSON_TEST.ID.eq(id)).execute();
+
+        Change insert = single(next());
+        assertEquals(Type.INSERT, insert.type());
+        assertEquals("jooq", insert.schema());
+        assertEquals("json_test", insert.table());
+        assertTrue(insert.isFor(JSON_TEST));
+        assertFalse(insert.isFor(JSON_STR_TEST));
+        assertEquals(key(id), insert.key());
+        assertEquals(String.valueOf(id), insert.row().get("id"));
+        assertEquals("doc", insert.row().get("name"));
+        assertEquals(JSON.valueOf("{\"a\": \"é\"}"), insert.row().get("data"));
+        assertEquals(JSONB.valueOf("{\"b\": [1, 2]}"), insert.row().get("datab"));
+
+        Change update = single(next());
+        assertEquals(Type.UPDATE, update.type());
+        assertEquals(key(id), update.key());
+        assertEquals(JSONB.valueOf("{\"b\": 3}"), update.row().get("datab"));
+
+        Change delete = single(next());
+        assertEquals(Type.DELETE, delete.type());
+        assertEquals(key(id), delete.key());
+        assertNull(delete.row());
+    }
+
+    @Test
+    public void streamsTransactions() throws Exception {
+        stream = start(transactions::add);
+
+        dsl.transaction(configuration -> DSL.using(configuration)
+                .insertInto(JSON_TEST, JSON_TEST.NAME, JSON_TEST.DATAB)
+                .values("first", JSONB.valueOf("1"))
+                .values("second", JSONB.valueOf("2"))
+                .execute());
+        // Not published, nor streamed
+        dsl.insertInto(JSON_STR_TEST, JSON_STR_TEST.NAME).values("other").execute();
+        dsl.truncate(JSON_TEST).execute();
+
+        List<Change> changes = next();
+        assertEquals(2, changes.size());
+        assertEquals("first", changes.get(0).row().get("name"));
+        assertEquals("second", changes.get(1).row().get("name"));
+        assertNull(changes.get(1).row().get("data"));
+
+        Change truncate = single(next());
+        assertEquals(Type.TRUNCATE, truncate.type());
+        assertTrue(truncate.isFor(JSON_TEST));
+        assertNull(truncate.key());
+    }
+
+    @Test
+    public void leavesOutUnchangedLargeValues() throws Exception {
+        stream = start(transactions::add);
+
+        dsl.insertInto(JSON_TEST, JSON_TEST.NAME, JSON_TEST.DATAB)
+                .select(DSL.select(DSL.inline("large"), DSL.field("(select jsonb_agg(md5(i::text)) "
+                        + "from generate_series(1, 1000) i)", JSONB.class)))
+                .execute();
+        dsl.update(JSON_TEST).set(JSON_TEST.NAME, "renamed").execute();
+
+        assertTrue(single(next()).row().containsKey("datab"));
+        Change update = single(next());
+        assertEquals("renamed", update.row().get("name"));
+        assertFalse(update.row().containsKey("datab"));
+    }
+
+    @Test
+    public void streamsAgainWhenSinkFails() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        stream = start(changes -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("Replica unavailable");
+            }
+            transactions.add(changes);
+        });
+
+        dsl.insertInto(JSON_TEST, JSON_TEST.NAME).values("retried").execute();
+
+        assertEquals("retried", single(next()).row().get("name"));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void reportsFailures() throws Exception {
+        BlockingQueue<String> failures = new LinkedBlockingQueue<>();
+        AtomicInteger calls = new AtomicInteger();
+        stream = start(new JsonChangeStream.Sink() {
+            @Override
+            public void apply(List<Change> changes) {
+                if (calls.incrementAndGet() <= 2) {
+                    throw new IllegalStateException("Replica unavailable " + calls.get());
+                }
+                transactions.add(changes);
+            }
+
+            @Override
+            public void failed(Exception exception, int count) {
+                failures.add(count + ": " + exception.getMessage());
+            }
+        });
+
+        dsl.insertInto(JSON_TEST, JSON_TEST.NAME).values("retried").execute();
+
+        assertEquals("retried", single(next()).row().get("name"));
+        assertEquals("1: Replica unavailable 1", failures.poll());
+        assertEquals("2: Replica unavailable 2", failures.poll());
+        assertNull(failures.poll());
+    }
+
+    @Test
+    public void stopsRetryingWhenClosedOnFailure() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        AtomicReference<JsonChangeStream> self = new AtomicReference<>();
+        stream = start(new JsonChangeStream.Sink() {
+            @Override
+            public void apply(List<Change> changes) {
+                calls.incrementAndGet();
+                throw new IllegalStateException("Replica unavailable");
+            }
+
+            @Override
+            public void failed(Exception exception, int failures) {
+                self.get().close();
+            }
+        });
+        self.set(stream);
+
+        dsl.insertInto(JSON_TEST, JSON_TEST.NAME).values("failed").execute();
+
+        Thread.sleep(2000);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void resumesAfterLastAppliedTransaction() throws Exception {
+        stream = start(transactions::add);
+        dsl.insertInto(JSON_TEST, JSON_TEST.NAME).values("before").execute();
+        assertEquals("before", single(next()).row().get("name"));
+        stream.close();
+
+        dsl.insertInto(JSON_TEST, JSON_TEST.NAME).values("while closed").execute();
+
+        stream = start(transactions::add);
+        assertEquals("while closed", single(next()).row().get("name"));
+        assertNull(transactions.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(expected = DataAccessException.class)
+    public void failsWithoutSlot() {
+        JsonChangeStream.dropDdl(SLOT).forEach(dsl::execute);
+
+        start(transactions::add);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidName() {
+        JsonChangeStream.ddl("my-replica", JSON_TEST);
+    }
+
+    private JsonChangeStream start(JsonChangeStream.Sink sink) {
+        return JsonChangeStream.start(TestDb.URL, TestDb.createProperties(), SLOT, sink);
+    }
+
+    private List<Change> next() throws InterruptedException {
+        List<Change> changes = transactions.poll(10, TimeUnit.SECONDS);
+        if (changes == null) {
+            throw new AssertionError("No changes streamed");
+        }
+        return changes;
+    }
+
+    private static Change single(List<Change> changes) {
+        assertEquals(changes.toString(), 1, changes.size());
+        return changes.get(0);
+    }
+
+    private static Map<String, Object> key(long id) {
+        Map<String, Object> key = new HashMap<>();
+        key.put("id", String.valueOf(id));
+        return key;
+    }
+}
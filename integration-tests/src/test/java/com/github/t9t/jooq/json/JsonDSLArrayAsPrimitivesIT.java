@@ -0,0 +1,132 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.SQLDialect;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.github.t9t.jooq.generated.Tables.JSON_TEST;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+public class JsonDSLArrayAsPrimitivesIT {
+    private static final int LARGE_ELEMENTS = 100_000;
+
+    private final DSLContext dsl = DSL.using(TestDb.createDataSource(), SQLDialect.POSTGRES);
+
+    @Before
+    public void setUp() {
+        dsl.deleteFrom(JSON_TEST).execute();
+        insert("numbers", "{\"ints\": [1, -2, 9007199254740993], \"samples\": [1.5, 2, -3e2, 0.1], \"empty\": [], "
+                + "\"none\": null, \"precise\": [0.12345678901234567, 1e300, -4.9e-324, 123456789012345678]}");
+        insert("top", "[4, 5, 6]");
+        dsl.insertInto(JSON_TEST, JSON_TEST.NAME).values("null").execute();
+    }
+
+    @Test
+    public void longs() {
+        assertArrayEquals(new long[]{1, -2, 9007199254740993L},
+                select(JsonDSL.arrayAsLongs(JsonDSL.objectAtPath(JSON_TEST.DATA, "ints")), "numbers"));
+        assertArrayEquals(new long[]{1, -2, 9007199254740993L},
+                select(JsonbDSL.arrayAsLongs(JsonbDSL.objectAtPath(JSON_TEST.DATAB, "ints")), "numbers"));
+        assertArrayEquals(new long[]{4, 5, 6}, select(JsonDSL.arrayAsLongs(JSON_TEST.DATA), "top"));
+        assertArrayEquals(new long[]{4, 5, 6}, select(JsonbDSL.arrayAsLongs(JSON_TEST.DATAB), "top"));
+    }
+
+    @Test
+    public void doubles() {
+        assertArrayEquals(new double[]{1.5, 2, -300, 0.1},
+                select(JsonDSL.arrayAsDoubles(JsonDSL.fieldByKey(JSON_TEST.DATA, "samples")), "numbers"), 0);
+        assertArrayEquals(new double[]{1.5, 2, -300, 0.1},
+                select(JsonbDSL.arrayAsDoubles(JsonbDSL.fieldByKey(JSON_TEST.DATAB, "samples")), "numbers"), 0);
+        assertArrayEquals(new double[]{4, 5, 6}, select(JsonbDSL.arrayAsDoubles(JSON_TEST.DATAB), "top"), 0);
+    }
+
+    @Test
+    public void emptyAndNull() {
+        assertArrayEquals(new long[0], select(JsonDSL.arrayAsLongs(JsonDSL.fieldByKey(JSON_TEST.DATA, "empty")),
+                "numbers"));
+        assertArrayEquals(new double[0], select(JsonbDSL.arrayAsDoubles(JsonbDSL.fieldByKey(JSON_TEST.DATAB,
+                "empty")), "numbers"), 0);
+        assertNull(select(JsonDSL.arrayAsLongs(JSON_TEST.DATA), "null"));
+        assertNull(select(JsonbDSL.arrayAsDoubles(JSON_TEST.DATAB), "null"));
+        assertNull(select(JsonbDSL.arrayAsLongs(JsonbDSL.fieldByKey(JSON_TEST.DATAB, "missing")), "numbers"));
+        assertNull(select(JsonDSL.arrayAsDoubles(JsonDSL.fieldByKey(JSON_TEST.DATA, "none")), "numbers"));
+    }
+
+    @Test
+    public void preciseDoubles() {
+        double[] expected = {0.12345678901234567, 1e300, -4.9e-324, 123456789012345678d};
+
+        assertArrayEquals(expected, select(JsonDSL.arrayAsDoubles(JsonDSL.fieldByKey(JSON_TEST.DATA, "precise")),
+                "numbers"), 0);
+        assertArrayEquals(expected, select(JsonbDSL.arrayAsDoubles(JsonbDSL.fieldByKey(JSON_TEST.DATAB, "precise")),
+                "numbers"), 0);
+    }
+
+    @Test
+    public void large() {
+        String array = IntStream.range(0, LARGE_ELEMENTS).mapToObj(i -> i + ".25")
+                .collect(Collectors.joining(", ", "[", "]"));
+        insert("large", "{\"samples\": " + array + "}");
+
+        double[] values = select(JsonbDSL.arrayAsDoubles(JsonbDSL.fieldByKey(JSON_TEST.DATAB, "samples")), "large");
+
+        double[] expected = IntStream.range(0, LARGE_ELEMENTS).mapToDouble(i -> i + 0.25).toArray();
+        assertArrayEquals(expected, values, 0);
+    }
+
+    @Test
+    public void writesArrays() {
+        Field<long[]> longs = JsonbDSL.arrayAsLongs(JSON_TEST.DATAB);
+        long[] longValues = {1, -2, Long.MIN_VALUE, Long.MAX_VALUE};
+        assertArrayEquals(longValues, dsl.select(JsonbDSL.arrayAsLongs(DSL.field("convert_from({0}, 'UTF8')::jsonb",
+                JSONB.class, DSL.val(longValues, longs.getDataType())))).fetchOne().value1());
+
+        Field<double[]> doubles = JsonDSL.arrayAsDoubles(JSON_TEST.DATA);
+        double[] doubleValues = {1.5, -0.1, 1e300, -4.9e-324, 0};
+        assertArrayEquals(doubleValues, dsl.select(JsonDSL.arrayAsDoubles(DSL.field("convert_from({0}, 'UTF8')::json",
+                JSON.class, DSL.val(doubleValues, doubles.getDataType())))).fetchOne().value1(), 0);
+        assertArrayEquals(new long[0], dsl.select(JsonbDSL.arrayAsLongs(DSL.field("convert_from({0}, 'UTF8')::jsonb",
+                JSONB.class, DSL.val(new long[0], longs.getDataType())))).fetchOne().value1());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWritingNaN() {
+        JsonbDSL.arrayAsDoubles(JSON_TEST.DATAB).getDataType().getConverter().to(new double[]{Double.NaN});
+    }
+
+    @Test(expected = DataAccessException.class)
+    public void nullElement() {
+        insert("nullElement", "[1, null, 3]");
+        select(JsonbDSL.arrayAsLongs(JSON_TEST.DATAB), "nullElement");
+    }
+
+    @Test(expected = DataAccessException.class)
+    public void notAnArray() {
+        select(JsonbDSL.arrayAsDoubles(JSON_TEST.DATAB), "numbers");
+    }
+
+    @Test(expected = DataAccessException.class)
+    public void fractionAsLong() {
+        select(JsonDSL.arrayAsLongs(JsonDSL.fieldByKey(JSON_TEST.DATA, "samples")), "numbers");
+    }
+
+    private <T> T select(Field<T> field, String name) {
+        return dsl.select(field).from(JSON_TEST).where(JSON_TEST.NAME.eq(name)).fetchOne().value1();
+    }
+
+    private void insert(String name, String data) {
+        dsl.insertInto(JSON_TEST, JSON_TEST.NAME, JSON_TEST.DATA, JSON_TEST.DATAB)
+                .values(name, JSON.valueOf(data), JSONB.valueOf(data))
+                .execute();
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.DSLContext;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.Record1;
+import org.jooq.SQLDialect;
+import org.jooq.Select;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import org.junit.Test;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.t9t.jooq.json.JsonDSL.arraySlice;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class JsonDSLArraySliceIT extends AbstractJsonDSLTest {
+    private final DSLContext dsl = DSL.using(TestDb.createDataSource(), SQLDialect.POSTGRES);
+
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> params() {
+        return generateParams("arraySlice", Arrays.asList(
+                test("middle").forArray().selecting(arraySlice(json, 1, 3)).expectJson(toNode("[10, true]")),
+                test("whole").forArray().selecting(arraySlice(json, 0, 4))
+                        .expectJson(toNode("[{\"d\": 4408}, 10, true, \"json array\"]")),
+                test("beyondEnd").forArray().selecting(arraySlice(json, 2, 100))
+                        .expectJson(toNode("[true, \"json array\"]")),
+                test("empty").forArray().selecting(arraySlice(json, 1, 1)).expectJson(toNode("[]")),
+                test("outOfBounds").forArray().selecting(arraySlice(json, 100, 200)).expectJson(toNode("[]")),
+                test("nested").selecting(arraySlice(JsonDSL.fieldByKey(json, "arr"), 0, 2))
+                        .expectJson(toNode("[{\"d\": 4408}, 10]")),
+
+                btest("middle").forArray().selecting(JsonbDSL.arraySlice(jsonb, 1, 3)).expectJson(toNode("[10, true]")),
+                btest("whole").forArray().selecting(JsonbDSL.arraySlice(jsonb, 0, 4))
+                        .expectJson(toNode("[{\"d\": 4408}, 10, true, \"jsonb array\"]")),
+                btest("beyondEnd").forArray().selecting(JsonbDSL.arraySlice(jsonb, 2, 100))
+                        .expectJson(toNode("[true, \"jsonb array\"]")),
+                btest("empty").forArray().selecting(JsonbDSL.arraySlice(jsonb, 1, 1)).expectJson(toNode("[]")),
+                btest("outOfBounds").forArray().selecting(JsonbDSL.arraySlice(jsonb, 100, 200)).expectJson(toNode("[]")),
+                btest("nested").selecting(JsonbDSL.arraySlice(JsonbDSL.fieldByKey(jsonb, "arr"), 0, 2))
+                        .expectJson(toNode("[{\"d\": 4408}, 10]"))
+        ));
+    }
+
+    @Test
+    public void bindsArrayOnceAndIndexes() {
+        Select<Record1<JSONB>> page1 = DSL.select(JsonbDSL.arraySlice(DSL.val(JSONB.valueOf("[1, 2, 3]")), 0, 2));
+        Select<Record1<JSONB>> page2 = DSL.select(JsonbDSL.arraySlice(DSL.val(JSONB.valueOf("[1, 2, 3]")), 2, 4));
+        Select<Record1<JSON>> jsonPage = DSL.select(arraySlice(DSL.val(JSON.valueOf("[1, 2, 3]")), 2, 4));
+
+        assertEquals(3, page1.getBindValues().size());
+        assertEquals(3, jsonPage.getBindValues().size());
+        assertEquals(page1.getSQL(), page2.getSQL());
+        assertEquals(JSONB.valueOf("[1, 2]"), dsl.fetchValue(page1));
+        assertEquals(JSONB.valueOf("[3]"), dsl.fetchValue(page2));
+        assertEquals("[3]", dsl.fetchValue(jsonPage).data());
+    }
+
+    @Test
+    public void nullArray() {
+        assertNull(dsl.fetchValue(DSL.select(JsonbDSL.arraySlice(DSL.val(null, SQLDataType.JSONB), 0, 2))));
+        assertNull(dsl.fetchValue(DSL.select(arraySlice(DSL.val(null, SQLDataType.JSON), 0, 2))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeFrom() {
+        arraySlice(json, -1, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void toBeforeFrom() {
+        JsonbDSL.arraySlice(jsonb, 3, 2);
+    }
+}
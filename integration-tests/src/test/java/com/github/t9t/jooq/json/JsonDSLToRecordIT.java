@@ -0,0 +1,103 @@
+package com.github.t9t.jooq.json;
+
+import com.github.t9t.jooq.generated.tables.records.JsonRecordTestRecord;
+import org.jooq.DSLContext;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.Record;
+import org.jooq.SQLDialect;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.t9t.jooq.generated.Tables.JSON_RECORD_TEST;
+import static com.github.t9t.jooq.generated.Tables.JSON_TEST;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class JsonDSLToRecordIT {
+    private static final String ORDER = "{\"id\": 7, \"name\": \"é widget\", \"price\": 12.5, \"active\": true, "
+            + "\"tags\": [\"a\", \"b\"], \"created\": \"2020-05-01\", \"details\": {\"size\": \"L\"}, \"extra\": 1}";
+
+    private final DSLContext dsl = DSL.using(TestDb.createDataSource(), SQLDialect.POSTGRES);
+
+    @Before
+    public void setUp() {
+        dsl.deleteFrom(JSON_TEST).execute();
+        dsl.insertInto(JSON_TEST, JSON_TEST.NAME, JSON_TEST.DATA, JSON_TEST.DATAB)
+                .values("order", JSON.valueOf(ORDER), JSONB.valueOf(ORDER))
+                .values("partial", JSON.valueOf("{\"id\": 8}"), JSONB.valueOf("{\"id\": 8}"))
+                .execute();
+    }
+
+    @Test
+    public void toRecord() {
+        assertOrder(select(JsonDSL.toRecord(JSON_TEST.DATA, JSON_RECORD_TEST), "order"));
+        assertOrder(select(JsonbDSL.toRecord(JSON_TEST.DATAB, JSON_RECORD_TEST), "order"));
+    }
+
+    @Test
+    public void populateRecord() {
+        assertOrder(select(JsonDSL.populateRecord(JSON_TEST.DATA, JSON_RECORD_TEST), "order"));
+        assertOrder(select(JsonbDSL.populateRecord(JSON_TEST.DATAB, JSON_RECORD_TEST), "order"));
+    }
+
+    @Test
+    public void missingKeysAreNull() {
+        for (Table<Record> item : Arrays.asList(JsonDSL.toRecord(JSON_TEST.DATA, JSON_RECORD_TEST),
+                JsonbDSL.populateRecord(JSON_TEST.DATAB, JSON_RECORD_TEST))) {
+            JsonRecordTestRecord record = select(item, "partial");
+            assertEquals(Long.valueOf(8), record.getId());
+            assertNull(record.getName());
+            assertNull(record.getTags());
+            assertNull(record.getDetails());
+        }
+    }
+
+    @Test
+    public void typedFields() {
+        Table<Record> item = JsonbDSL.toRecord(JSON_TEST.DATAB, JSON_RECORD_TEST);
+
+        List<String> names = dsl.select(JSON_TEST.NAME)
+                .from(JSON_TEST, item)
+                .where(item.field(JSON_RECORD_TEST.PRICE).gt(new BigDecimal("10")))
+                .and(item.field(JSON_RECORD_TEST.ACTIVE).isTrue())
+                .fetch(JSON_TEST.NAME);
+        assertEquals(Arrays.asList("order"), names);
+
+        assertEquals(LocalDate.of(2020, 5, 1), dsl.select(item.field(JSON_RECORD_TEST.CREATED))
+                .from(JSON_TEST, item)
+                .where(JSON_TEST.NAME.eq("order"))
+                .fetchOne().value1());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTypeWithoutFields() {
+        JsonbDSL.toRecord(JSON_TEST.DATAB, DSL.table("json_record_test"));
+    }
+
+    private JsonRecordTestRecord select(Table<Record> item, String name) {
+        return dsl.select(item.fields())
+                .from(JSON_TEST, item)
+                .where(JSON_TEST.NAME.eq(name))
+                .fetchOneInto(JSON_RECORD_TEST);
+    }
+
+    private static void assertOrder(JsonRecordTestRecord record) {
+        assertEquals(Long.valueOf(7), record.getId());
+        assertEquals("é widget", record.getName());
+        assertEquals(new BigDecimal("12.50"), record.getPrice());
+        assertTrue(record.getActive());
+        assertArrayEquals(new String[]{"a", "b"}, record.getTags());
+        assertEquals(LocalDate.of(2020, 5, 1), record.getCreated());
+        assertEquals(JSONB.valueOf("{\"size\": \"L\"}"), record.getDetails());
+    }
+}
@@ -0,0 +1,175 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.DSLContext;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.SQLDialect;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DataSourceConnectionProvider;
+import org.jooq.impl.DefaultConfiguration;
+import org.jooq.impl.ThreadLocalTransactionProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.github.t9t.jooq.generated.Tables.JSON_TEST;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JsonDecodingPipelineIT {
+    private static final int ROWS = 5000;
+
+    private final DSLContext dsl = DSL.using(TestDb.createDataSource(), SQLDialect.POSTGRES);
+
+    @Before
+    public void setUp() {
+        dsl.deleteFrom(JSON_TEST).execute();
+        dsl.insertInto(JSON_TEST, JSON_TEST.NAME, JSON_TEST.DATA, JSON_TEST.DATAB)
+                .select(DSL.select(
+                        DSL.field("'row-' || i", String.class),
+                        DSL.field("json_build_object('i', i, 'name', 'é ' || i)", JSON.class),
+                        DSL.field("jsonb_build_object('i', i, 'name', 'é ' || i)", JSONB.class))
+                        .from("generate_series(1, " + ROWS + ") i"))
+                .execute();
+    }
+
+    @Test
+    public void decodesInOrder() {
+        try (Stream<Integer> values = JsonDecodingPipeline.mapping(JsonDecodingPipelineIT::i)
+                .workers(4)
+                .bufferSize(200)
+                .stream(dsl, DSL.select(JSON_TEST.DATAB).from(JSON_TEST).orderBy(JSON_TEST.ID))) {
+            assertEquals(IntStream.rangeClosed(1, ROWS).boxed().collect(Collectors.toList()),
+                    values.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void decodesUnordered() {
+        try (Stream<Integer> values = JsonDecodingPipeline.mapping(JsonDecodingPipelineIT::i)
+                .workers(3)
+                .bufferSize(100)
+                .ordered(false)
+                .stream(dsl, DSL.select(JSON_TEST.DATA).from(JSON_TEST))) {
+            List<Integer> sorted = values.sorted().collect(Collectors.toList());
+
+            assertEquals(IntStream.rangeClosed(1, ROWS).boxed().collect(Collectors.toList()), sorted);
+        }
+    }
+
+    @Test
+    public void decodesWithConverter() {
+        try (Stream<CanonicalJsonb> values = JsonDecodingPipeline.converting(CanonicalJsonb.converter())
+                .stream(dsl, DSL.select(JSON_TEST.DATAB).from(JSON_TEST).where(JSON_TEST.NAME.eq("row-7")))) {
+            assertEquals(Arrays.asList(CanonicalJsonb.of("{\"name\": \"é 7\", \"i\": 7}")),
+                    values.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void passesNulls() {
+        dsl.update(JSON_TEST).set(JSON_TEST.DATA, (JSON) null).where(JSON_TEST.NAME.eq("row-2")).execute();
+
+        try (Stream<String> values = JsonDecodingPipeline.mapping(json -> json == null ? "null" : "value")
+                .stream(dsl, DSL.select(JSON_TEST.DATA).from(JSON_TEST).where(JSON_TEST.ID.le(
+                        DSL.select(DSL.min(JSON_TEST.ID).plus(2)).from(JSON_TEST))).orderBy(JSON_TEST.ID))) {
+            assertEquals(Arrays.asList("value", "null", "value"), values.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void stopsWhenClosedEarly() {
+        AtomicInteger decoded = new AtomicInteger();
+        try (Stream<Integer> values = JsonDecodingPipeline.mapping(json -> {
+            decoded.incrementAndGet();
+            return i(json);
+        }).workers(2).bufferSize(128).stream(dsl, DSL.select(JSON_TEST.DATAB).from(JSON_TEST).orderBy(JSON_TEST.ID))) {
+            assertEquals(Arrays.asList(1, 2, 3), values.limit(3).collect(Collectors.toList()));
+        }
+
+        // Only the rows in the buffer (and the chunks being read when closing) are decoded
+        assertTrue(String.valueOf(decoded.get()), decoded.get() < ROWS / 2);
+    }
+
+    @Test
+    public void readsAtMostBufferSizeAhead() throws InterruptedException {
+        AtomicInteger decoded = new AtomicInteger();
+        try (Stream<Integer> values = JsonDecodingPipeline.mapping(json -> {
+            decoded.incrementAndGet();
+            return i(json);
+        }).workers(2).bufferSize(64).stream(dsl, DSL.select(JSON_TEST.DATAB).from(JSON_TEST).orderBy(JSON_TEST.ID))) {
+            Iterator<Integer> iterator = values.iterator();
+            assertEquals(Integer.valueOf(1), iterator.next());
+            Thread.sleep(200);
+
+            // The rest of the chunk being consumed fills the buffer
+            assertEquals(64, decoded.get());
+        }
+    }
+
+    @Test
+    public void streamsInThreadBoundTransaction() {
+        DSLContext threadBound = DSL.using(new DefaultConfiguration()
+                .set(SQLDialect.POSTGRES)
+                .set(new ThreadLocalTransactionProvider(new DataSourceConnectionProvider(TestDb.createDataSource()))));
+
+        threadBound.transaction(() -> {
+            threadBound.update(JSON_TEST).set(JSON_TEST.DATAB, JSONB.valueOf("{\"i\": 0}"))
+                    .where(JSON_TEST.NAME.eq("row-1"))
+                    .execute();
+
+            // The uncommitted update is only visible on the connection of this thread's transaction
+            try (Stream<Integer> values = JsonDecodingPipeline.mapping(JsonDecodingPipelineIT::i)
+                    .fetchSize(10)
+                    .stream(threadBound, DSL.select(JSON_TEST.DATAB).from(JSON_TEST).orderBy(JSON_TEST.ID))) {
+                assertEquals(Arrays.asList(0, 2, 3), values.limit(3).collect(Collectors.toList()));
+            }
+            // The connection can be used again once the stream is closed
+            assertEquals(ROWS, threadBound.fetchCount(JSON_TEST));
+        });
+    }
+
+    @Test
+    public void throwsDecodingErrors() {
+        try (Stream<Integer> values = JsonDecodingPipeline.<Integer>mapping(json -> {
+            if (i(json) == 1234) {
+                throw new IllegalStateException("Cannot decode 1234");
+            }
+            return i(json);
+        }).workers(2).stream(dsl, DSL.select(JSON_TEST.DATAB).from(JSON_TEST))) {
+            values.forEach(value -> {
+            });
+            fail("Expected decoding to fail");
+        } catch (IllegalStateException e) {
+            assertEquals("Cannot decode 1234", e.getMessage());
+        }
+    }
+
+    @Test(expected = DataAccessException.class)
+    public void throwsQueryErrors() {
+        try (Stream<Integer> values = JsonDecodingPipeline.mapping(JsonDecodingPipelineIT::i)
+                .stream(dsl, DSL.select(DSL.field("no_such_column", JSONB.class)).from(JSON_TEST))) {
+            values.count();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonJsonFields() {
+        JsonDecodingPipeline.mapping(JsonDecodingPipelineIT::i).stream(dsl, DSL.select(JSON_TEST.NAME).from(JSON_TEST));
+    }
+
+    private static Integer i(String json) {
+        return ((BigDecimal) ((Map<?, ?>) JsonParser.parse(json)).get("i")).intValue();
+    }
+}
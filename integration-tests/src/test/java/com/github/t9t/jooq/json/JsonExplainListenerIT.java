@@ -0,0 +1,209 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.DSLContext;
+import org.jooq.JSONB;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static com.github.t9t.jooq.generated.Tables.JSON_TEST;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JsonExplainListenerIT {
+    private final List<String> events = new CopyOnWriteArrayList<>();
+    private final JsonExplainListener listener = new JsonExplainListener(TestDb.createDataSource(), 1,
+            new JsonExplainListener.Callback() {
+                @Override
+                public void seqScan(String fingerprint, String plan) {
+                    events.add("seqScan: " + plan);
+                }
+
+                @Override
+                public void planChanged(String fingerprint, String previousPlan, String plan) {
+                    events.add("planChanged: " + previousPlan + " -> " + plan);
+                }
+            });
+    private final DSLContext plain = DSL.using(TestDb.createDataSource(), SQLDialect.POSTGRES);
+    private final DSLContext dsl = DSL.using(JsonExplainListener.install(plain.configuration(), listener));
+
+    @Before
+    public void setUp() {
+        plain.deleteFrom(JSON_TEST).execute();
+        plain.insertInto(JSON_TEST, JSON_TEST.NAME, JSON_TEST.DATAB)
+                .values("a", JSONB.valueOf("{\"k\": \"a\"}"))
+                .execute();
+    }
+
+    @After
+    public void tearDown() {
+        listener.close();
+        plain.execute("alter role jooq reset enable_seqscan");
+        plain.execute("drop index if exists jooq.json_test_explain_idx");
+    }
+
+    @Test
+    public void capturesPlanChanges() {
+        fetchByKey("a");
+        await(() -> listener.explained() == 1);
+        assertEquals(1, events.size());
+        assertEquals("seqScan: Seq Scan on json_test", events.get(0));
+
+        // Every explain uses a new connection, which picks up the role setting
+        plain.execute("create index json_test_explain_idx on jooq.json_test using gin (datab)");
+        plain.execute("alter role jooq set enable_seqscan = off");
+        fetchByKey("b");
+        await(() -> listener.explained() == 2);
+
+        String indexPlan = "Bitmap Heap Scan on json_test (Bitmap Index Scan using json_test_explain_idx)";
+        assertEquals(2, events.size());
+        assertEquals("planChanged: Seq Scan on json_test -> " + indexPlan, events.get(1));
+        Map<String, Map<String, Long>> plans = listener.plans();
+        assertEquals(1, plans.size());
+        Map<String, Long> counts = plans.values().iterator().next();
+        assertEquals(Long.valueOf(1), counts.get("Seq Scan on json_test"));
+        assertEquals(Long.valueOf(1), counts.get(indexPlan));
+    }
+
+    @Test
+    public void collapsesBindListsInFingerprint() {
+        dsl.selectFrom(JSON_TEST).where(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "k").in("a", "b")).fetch();
+        dsl.selectFrom(JSON_TEST).where(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "k").in("a", "b", "c")).fetch();
+        await(() -> listener.explained() == 2);
+
+        assertEquals(1, listener.plans().size());
+        String fingerprint = listener.plans().keySet().iterator().next();
+        assertTrue(fingerprint, fingerprint.endsWith("in (?, ...)"));
+    }
+
+    @Test
+    public void replacesInlineLiteralsInFingerprint() {
+        for (String value : new String[]{"a", "b"}) {
+            dsl.selectFrom(JSON_TEST)
+                    .where(JsonbDSL.contains(JSON_TEST.DATAB, DSL.inline(JSONB.valueOf("{\"k\": \"" + value + "\"}"))))
+                    .and(JsonbDSL.arrayElement(JSON_TEST.DATAB, value.equals("a") ? 1 : 2).isNull())
+                    .fetch();
+        }
+        await(() -> listener.explained() == 2);
+
+        assertEquals(1, listener.plans().size());
+        String fingerprint = listener.plans().keySet().iterator().next();
+        assertFalse(fingerprint, fingerprint.contains("'"));
+        assertTrue(fingerprint, fingerprint.contains("\"json_test\""));
+    }
+
+    @Test
+    public void keepsPlansOfMostRecentFingerprints() {
+        listener.maxFingerprints(2);
+        dsl.selectFrom(JSON_TEST).where(JsonbDSL.hasKey(JSON_TEST.DATAB, "k")).fetch();
+        fetchByKey("a");
+        dsl.selectFrom(JSON_TEST).where(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "k").eq("a")).fetch();
+        await(() -> listener.explained() == 3);
+
+        assertEquals(2, listener.plans().size());
+        assertFalse(listener.plans().keySet().stream().anyMatch(fingerprint -> fingerprint.contains("??")));
+    }
+
+    @Test
+    public void skipsQueriesBindingStreams() throws InterruptedException {
+        dsl.selectFrom(JSON_TEST)
+                .where(JsonbDSL.contains(JSON_TEST.DATAB, JsonStreams.jsonb(() -> new ByteArrayInputStream(
+                        "{\"k\": \"a\"}".getBytes(StandardCharsets.UTF_8)))))
+                .fetch();
+        dsl.selectFrom(JSON_TEST)
+                .where(JsonbDSL.contains(JSON_TEST.DATAB, JsonStreams.jsonb(new ByteArrayInputStream(
+                        "{\"k\": \"a\"}".getBytes(StandardCharsets.UTF_8)))))
+                .fetch();
+        fetchByKey("a");
+        await(() -> listener.explained() == 1);
+        Thread.sleep(100);
+
+        // The streams cannot be bound again, so only the last query is explained
+        assertEquals(1, listener.explained());
+        assertEquals(0, listener.failed());
+    }
+
+    @Test
+    public void countsQueriesWhichCannotBeExplained() {
+        DataSource unavailable = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{DataSource.class}, (proxy, method, args) -> {
+                    throw new SQLException("Unavailable");
+                });
+        try (JsonExplainListener failing = new JsonExplainListener(unavailable, 1, new JsonExplainListener.Callback() {
+        })) {
+            DSL.using(JsonExplainListener.install(plain.configuration(), failing))
+                    .selectFrom(JSON_TEST).where(JsonbDSL.hasKey(JSON_TEST.DATAB, "k")).fetch();
+            await(() -> failing.failed() == 1);
+
+            assertEquals(0, failing.explained());
+        }
+    }
+
+    @Test
+    public void ignoresQueriesWithoutJsonOperators() throws InterruptedException {
+        dsl.selectFrom(JSON_TEST).where(JSON_TEST.NAME.eq("a")).fetch();
+        fetchByKey("a");
+        await(() -> listener.explained() == 1);
+        Thread.sleep(100);
+
+        assertEquals(1, listener.explained());
+        assertEquals(0, listener.failed());
+    }
+
+    @Test
+    public void samplesNothingAtRateZero() throws InterruptedException {
+        try (JsonExplainListener none = new JsonExplainListener(TestDb.createDataSource(), 0,
+                new JsonExplainListener.Callback() {
+                })) {
+            DSL.using(JsonExplainListener.install(plain.configuration(), none))
+                    .selectFrom(JSON_TEST).where(JsonbDSL.hasKey(JSON_TEST.DATAB, "k")).fetch();
+            Thread.sleep(100);
+
+            assertEquals(0, none.explained());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidMaxFingerprints() {
+        listener.maxFingerprints(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidSampleRate() {
+        new JsonExplainListener(TestDb.createDataSource(), 1.5, new JsonExplainListener.Callback() {
+        });
+    }
+
+    private void fetchByKey(String value) {
+        dsl.selectFrom(JSON_TEST)
+                .where(JsonbDSL.contains(JSON_TEST.DATAB, DSL.val(JSONB.valueOf("{\"k\": \"" + value + "\"}"))))
+                .fetch();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Condition not met within 5 seconds");
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.DSLContext;
+import org.jooq.ExecuteContext;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultConfiguration;
+import org.jooq.impl.DefaultExecuteListener;
+import org.jooq.impl.DefaultExecuteListenerProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.t9t.jooq.generated.Tables.JSON_TEST;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class JsonLazyLoaderIT {
+    private static final String LARGE = "(select jsonb_agg(md5(i::text)) from generate_series(1, 2000) i)";
+
+    private final AtomicInteger queries = new AtomicInteger();
+    private final DSLContext dsl = DSL.using(new DefaultConfiguration()
+            .set(TestDb.createDataSource())
+            .set(SQLDialect.POSTGRES)
+            .set(new DefaultExecuteListenerProvider(new DefaultExecuteListener() {
+                @Override
+                public void executeStart(ExecuteContext ctx) {
+                    queries.incrementAndGet();
+                }
+            })));
+    private final JsonLazyLoader<Long, JSONB> loader = new JsonLazyLoader<>(dsl, JSON_TEST.ID, JSON_TEST.DATAB)
+            .threshold(1024);
+
+    @Before
+    public void setUp() {
+        dsl.deleteFrom(JSON_TEST).execute();
+        dsl.insertInto(JSON_TEST, JSON_TEST.NAME, JSON_TEST.DATA, JSON_TEST.DATAB)
+                .values("small", JSON.valueOf("{\"a\": 1}"), JSONB.valueOf("{\"a\": 1}"))
+                .values("null", null, null)
+                .execute();
+        for (String name : Arrays.asList("large-1", "large-2")) {
+            dsl.insertInto(JSON_TEST, JSON_TEST.NAME, JSON_TEST.DATA, JSON_TEST.DATAB)
+                    .select(DSL.select(DSL.inline(name), DSL.field(LARGE + "::json", JSON.class),
+                            DSL.field(LARGE, JSONB.class)))
+                    .execute();
+        }
+        queries.set(0);
+    }
+
+    @Test
+    public void selectsSmallDocuments() {
+        List<JsonLazyLoader.Value<JSONB>> values = list(loader);
+
+        assertTrue(values.get(0).isLoaded());
+        assertEquals(JSONB.valueOf("{\"a\": 1}"), values.get(0).get());
+        assertTrue(values.get(0).size() < 1024);
+        assertTrue(values.get(1).isLoaded());
+        assertNull(values.get(1).get());
+        assertNull(values.get(1).size());
+        assertEquals(1, queries.get());
+    }
+
+    @Test
+    public void loadsLargeDocumentsInOneQuery() {
+        List<JsonLazyLoader.Value<JSONB>> values = list(loader);
+        assertFalse(values.get(2).isLoaded());
+        assertFalse(values.get(3).isLoaded());
+        assertTrue(values.get(2).size() > 1024);
+
+        loader.load(values);
+        loader.load(values);
+
+        assertEquals(2, queries.get());
+        assertTrue(values.get(2).isLoaded());
+        assertEquals(large(), values.get(2).get());
+        assertEquals(large(), values.get(3).get());
+        assertEquals(JSONB.valueOf("{\"a\": 1}"), values.get(0).get());
+    }
+
+    @Test
+    public void loadsSingleDocument() {
+        List<JsonLazyLoader.Value<JSONB>> values = list(loader);
+
+        JSONB document = values.get(3).get();
+
+        assertEquals(2, queries.get());
+        assertEquals(large(), document);
+        assertFalse(values.get(2).isLoaded());
+    }
+
+    @Test
+    public void loadsDeletedDocumentAsNull() {
+        List<JsonLazyLoader.Value<JSONB>> values = list(loader);
+        dsl.deleteFrom(JSON_TEST).where(JSON_TEST.NAME.eq("large-1")).execute();
+
+        assertNull(values.get(2).get());
+        assertTrue(values.get(2).isLoaded());
+    }
+
+    @Test
+    public void loadsJson() {
+        JsonLazyLoader<Long, JSON> jsonLoader = new JsonLazyLoader<>(dsl, JSON_TEST.ID, JSON_TEST.DATA).threshold(1024);
+        List<JsonLazyLoader.Value<JSON>> values = list(jsonLoader);
+
+        assertEquals(JSON.valueOf("{\"a\": 1}"), values.get(0).get());
+        assertFalse(values.get(2).isLoaded());
+        jsonLoader.load(values);
+        assertEquals(large(), JSONB.valueOf(values.get(2).get().data()));
+    }
+
+    @Test
+    public void thresholdZeroSelectsNoDocuments() {
+        List<JsonLazyLoader.Value<JSONB>> values = list(loader.threshold(0));
+
+        assertFalse(values.get(0).isLoaded());
+        assertTrue(values.get(1).isLoaded());
+        loader.load(values);
+        assertEquals(JSONB.valueOf("{\"a\": 1}"), values.get(0).get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonJsonFields() {
+        new JsonLazyLoader<>(dsl, JSON_TEST.ID, JSON_TEST.NAME);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeThreshold() {
+        loader.threshold(-1);
+    }
+
+    private <T> List<JsonLazyLoader.Value<T>> list(JsonLazyLoader<Long, T> loader) {
+        return dsl.select(loader.fields())
+                .from(JSON_TEST)
+                .orderBy(JSON_TEST.ID)
+                .fetch(loader::value);
+    }
+
+    private JSONB large() {
+        return dsl.select(DSL.field(LARGE, JSONB.class)).fetchOne().value1();
+    }
+}
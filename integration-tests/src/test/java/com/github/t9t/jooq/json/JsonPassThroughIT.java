@@ -0,0 +1,101 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.DSLContext;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import static com.github.t9t.jooq.generated.Tables.JSON_TEST;
+import static org.junit.Assert.assertEquals;
+
+public class JsonPassThroughIT {
+    private final DSLContext dsl = DSL.using(TestDb.createDataSource(), SQLDialect.POSTGRES);
+
+    @Before
+    public void setUp() {
+        dsl.deleteFrom(JSON_TEST).execute();
+        insert("first", "{\"a\": \"é\", \"n\": 1}");
+        insert("second", "[1,  2]");
+        dsl.insertInto(JSON_TEST, JSON_TEST.NAME).values("null").execute();
+    }
+
+    @Test
+    public void writeArrayToOutputStream() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = JsonPassThrough.writeArray(dsl,
+                DSL.select(JSON_TEST.DATAB).from(JSON_TEST).orderBy(JSON_TEST.NAME), out);
+
+        assertEquals(3, rows);
+        assertEquals("[{\"a\": \"é\", \"n\": 1},null,[1, 2]]", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void writeLinesToOutputStream() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = JsonPassThrough.write(dsl,
+                DSL.select(JSON_TEST.DATA).from(JSON_TEST).where(JSON_TEST.DATA.isNotNull()).orderBy(JSON_TEST.NAME),
+                out);
+
+        assertEquals(2, rows);
+        assertEquals("{\"a\": \"é\", \"n\": 1}\n[1,  2]\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void writeArrayToWriter() throws IOException {
+        StringWriter writer = new StringWriter();
+
+        long rows = JsonPassThrough.writeArray(dsl,
+                DSL.select(JsonbDSL.fieldByKey(JSON_TEST.DATAB, "a")).from(JSON_TEST).orderBy(JSON_TEST.NAME), writer);
+
+        assertEquals(3, rows);
+        assertEquals("[\"é\",null,null]", writer.toString());
+    }
+
+    @Test
+    public void writeLargeValueToWriter() throws IOException {
+        StringBuilder large = new StringBuilder("[");
+        for (int i = 0; i < 10_000; i++) {
+            large.append(i == 0 ? "" : ", ").append("\"é-").append(i).append('"');
+        }
+        large.append(']');
+        insert("large", large.toString());
+        StringWriter writer = new StringWriter();
+
+        JsonPassThrough.write(dsl, DSL.select(JSON_TEST.DATA).from(JSON_TEST).where(JSON_TEST.NAME.eq("large")), writer);
+
+        assertEquals(large + "\n", writer.toString());
+    }
+
+    @Test
+    public void writeEmptyResult() throws IOException {
+        StringWriter array = new StringWriter();
+        StringWriter lines = new StringWriter();
+
+        JsonPassThrough.writeArray(dsl, DSL.select(JSON_TEST.DATAB).from(JSON_TEST).where(DSL.falseCondition()), array);
+        JsonPassThrough.write(dsl, DSL.select(JSON_TEST.DATAB).from(JSON_TEST).where(DSL.falseCondition()), lines);
+
+        assertEquals("[]", array.toString());
+        assertEquals("", lines.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonJsonField() throws IOException {
+        JsonPassThrough.writeArray(dsl, DSL.select(JSON_TEST.NAME).from(JSON_TEST), new StringWriter());
+    }
+
+    private void insert(String name, String data) {
+        dsl.insertInto(JSON_TEST, JSON_TEST.NAME, JSON_TEST.DATA, JSON_TEST.DATAB)
+                .values(name, JSON.valueOf(data), JSONB.valueOf(data))
+                .execute();
+    }
+}
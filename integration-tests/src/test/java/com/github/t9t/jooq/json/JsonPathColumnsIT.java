@@ -0,0 +1,188 @@
+package com.github.t9t.jooq.json;
+
+import com.github.t9t.jooq.generated.tables.JsonPromoteTest;
+import org.jooq.DSLContext;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.Query;
+import org.jooq.SQLDialect;
+import org.jooq.Select;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultConfiguration;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.github.t9t.jooq.generated.Tables.JSON_PROMOTE_TEST;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JsonPathColumnsIT {
+    private final DSLContext dsl = DSL.using(TestDb.createDataSource(), SQLDialect.POSTGRES);
+    private final JsonPathColumns columns = new JsonPathColumns()
+            .promote(JSON_PROMOTE_TEST.DATAB, "datab_category", "category")
+            .promote(JSON_PROMOTE_TEST.DATAB, "datab_obj_i", "obj", "i")
+            .promote(JSON_PROMOTE_TEST.DATA, "data_obj_i", "obj", "i")
+            .promote(JSON_PROMOTE_TEST.DATAB, "datab_first", "0");
+    private final DSLContext rewriting = DSL.using(columns.install(new DefaultConfiguration()
+            .set(TestDb.createDataSource())
+            .set(SQLDialect.POSTGRES)));
+
+    @Before
+    public void setUp() {
+        dsl.execute("drop trigger if exists json_promote_test_json_path_columns on jooq.json_promote_test");
+        for (String column : Arrays.asList("datab_category", "datab_obj_i", "data_obj_i", "datab_first")) {
+            dsl.execute("alter table jooq.json_promote_test drop column if exists " + column);
+        }
+        dsl.deleteFrom(JSON_PROMOTE_TEST).execute();
+        dsl.insertInto(JSON_PROMOTE_TEST)
+                .columns(JSON_PROMOTE_TEST.DATA, JSON_PROMOTE_TEST.DATAB)
+                .values(JSON.valueOf("{\"obj\": {\"i\": 1}}"), JSONB.valueOf("{\"category\": \"books\", \"obj\": {\"i\": 1}}"))
+                .values(JSON.valueOf("{\"obj\": {\"i\": 2}}"), JSONB.valueOf("{\"category\": \"games\", \"obj\": {\"i\": 2}}"))
+                .values(JSON.valueOf("{}"), JSONB.valueOf("{\"category\": \"books\"}"))
+                .values(JSON.valueOf("[]"), JSONB.valueOf("[\"first\", \"second\"]"))
+                .execute();
+
+        (generatedColumns() ? columns.ddl() : columns.triggerDdl()).forEach(dsl::execute);
+    }
+
+    private boolean generatedColumns() {
+        return Integer.parseInt(dsl.fetchValue("show server_version_num").toString()) >= 120000;
+    }
+
+    @Test
+    public void rendersDdl() {
+        List<String> ddl = columns.ddl().stream().map(Query::getSQL).collect(Collectors.toList());
+
+        assertEquals(Arrays.asList(
+                "alter table \"jooq\".\"json_promote_test\" add column if not exists \"data_obj_i\" text generated always as ((\"data\" #>> '{\"obj\",\"i\"}'::text[])) stored",
+                "create index if not exists \"json_promote_test_data_obj_i_idx\" on \"jooq\".\"json_promote_test\" (\"data_obj_i\")",
+                "alter table \"jooq\".\"json_promote_test\" add column if not exists \"datab_category\" text generated always as ((\"datab\" #>> '{\"category\"}'::text[])) stored",
+                "create index if not exists \"json_promote_test_datab_category_idx\" on \"jooq\".\"json_promote_test\" (\"datab_category\")",
+                "alter table \"jooq\".\"json_promote_test\" add column if not exists \"datab_first\" text generated always as ((\"datab\" #>> '{\"0\"}'::text[])) stored",
+                "create index if not exists \"json_promote_test_datab_first_idx\" on \"jooq\".\"json_promote_test\" (\"datab_first\")",
+                "alter table \"jooq\".\"json_promote_test\" add column if not exists \"datab_obj_i\" text generated always as ((\"datab\" #>> '{\"obj\",\"i\"}'::text[])) stored",
+                "create index if not exists \"json_promote_test_datab_obj_i_idx\" on \"jooq\".\"json_promote_test\" (\"datab_obj_i\")"
+        ), ddl);
+    }
+
+    @Test
+    public void rendersTriggerDdl() {
+        List<String> ddl = columns.triggerDdl().stream().map(Query::getSQL).collect(Collectors.toList());
+
+        assertEquals(Arrays.asList(
+                "alter table \"jooq\".\"json_promote_test\" add column if not exists \"data_obj_i\" text",
+                "alter table \"jooq\".\"json_promote_test\" add column if not exists \"datab_category\" text",
+                "alter table \"jooq\".\"json_promote_test\" add column if not exists \"datab_first\" text",
+                "alter table \"jooq\".\"json_promote_test\" add column if not exists \"datab_obj_i\" text",
+                "create or replace function \"jooq\".\"json_promote_test_json_path_columns\"() returns trigger language plpgsql as $$\n"
+                        + "begin\n"
+                        + "    new.\"data_obj_i\" := (\"new\".\"data\" #>> '{\"obj\",\"i\"}'::text[]);\n"
+                        + "    new.\"datab_category\" := (\"new\".\"datab\" #>> '{\"category\"}'::text[]);\n"
+                        + "    new.\"datab_first\" := (\"new\".\"datab\" #>> '{\"0\"}'::text[]);\n"
+                        + "    new.\"datab_obj_i\" := (\"new\".\"datab\" #>> '{\"obj\",\"i\"}'::text[]);\n"
+                        + "    return new;\n"
+                        + "end\n"
+                        + "$$",
+                "drop trigger if exists \"json_promote_test_json_path_columns\" on \"jooq\".\"json_promote_test\"",
+                "create trigger \"json_promote_test_json_path_columns\" before insert or update on \"jooq\".\"json_promote_test\" "
+                        + "for each row execute procedure \"jooq\".\"json_promote_test_json_path_columns\"()",
+                "update \"jooq\".\"json_promote_test\" set "
+                        + "\"data_obj_i\" = (\"data\" #>> '{\"obj\",\"i\"}'::text[]), "
+                        + "\"datab_category\" = (\"datab\" #>> '{\"category\"}'::text[]), "
+                        + "\"datab_first\" = (\"datab\" #>> '{\"0\"}'::text[]), "
+                        + "\"datab_obj_i\" = (\"datab\" #>> '{\"obj\",\"i\"}'::text[]) "
+                        + "where \"data_obj_i\" is distinct from (\"data\" #>> '{\"obj\",\"i\"}'::text[]) "
+                        + "or \"datab_category\" is distinct from (\"datab\" #>> '{\"category\"}'::text[]) "
+                        + "or \"datab_first\" is distinct from (\"datab\" #>> '{\"0\"}'::text[]) "
+                        + "or \"datab_obj_i\" is distinct from (\"datab\" #>> '{\"obj\",\"i\"}'::text[])",
+                "create index if not exists \"json_promote_test_data_obj_i_idx\" on \"jooq\".\"json_promote_test\" (\"data_obj_i\")",
+                "create index if not exists \"json_promote_test_datab_category_idx\" on \"jooq\".\"json_promote_test\" (\"datab_category\")",
+                "create index if not exists \"json_promote_test_datab_first_idx\" on \"jooq\".\"json_promote_test\" (\"datab_first\")",
+                "create index if not exists \"json_promote_test_datab_obj_i_idx\" on \"jooq\".\"json_promote_test\" (\"datab_obj_i\")"
+        ), ddl);
+    }
+
+    @Test
+    public void keepsColumnsUpToDate() {
+        long id = dsl.insertInto(JSON_PROMOTE_TEST)
+                .columns(JSON_PROMOTE_TEST.DATAB)
+                .values(JSONB.valueOf("{\"category\": \"music\"}"))
+                .returning(JSON_PROMOTE_TEST.ID)
+                .fetchOne().getId();
+        Select<?> query = rewriting.select(JSON_PROMOTE_TEST.ID)
+                .from(JSON_PROMOTE_TEST)
+                .where(JsonbDSL.fieldByKeyText(JSON_PROMOTE_TEST.DATAB, "category").eq("music"));
+        assertEquals(Arrays.asList(id), rewriting.fetch(query).getValues(0));
+
+        dsl.update(JSON_PROMOTE_TEST)
+                .set(JSON_PROMOTE_TEST.DATAB, JSONB.valueOf("{\"category\": \"films\"}"))
+                .where(JSON_PROMOTE_TEST.ID.eq(id))
+                .execute();
+        assertEquals(Arrays.asList(), rewriting.fetch(query).getValues(0));
+    }
+
+    @Test
+    public void ddlCanBeExecutedRepeatedly() {
+        (generatedColumns() ? columns.ddl() : columns.triggerDdl()).forEach(dsl::execute);
+
+        assertEquals(2, rewriting.fetchCount(rewriting.selectFrom(JSON_PROMOTE_TEST)
+                .where(JsonbDSL.fieldByKeyText(JSON_PROMOTE_TEST.DATAB, "category").eq("books"))));
+    }
+
+    @Test
+    public void rewritesFieldByKeyText() {
+        Select<?> query = rewriting.select(JSON_PROMOTE_TEST.ID)
+                .from(JSON_PROMOTE_TEST)
+                .where(JsonbDSL.fieldByKeyText(JSON_PROMOTE_TEST.DATAB, "category").eq("books"));
+
+        assertEquals("select \"jooq\".\"json_promote_test\".\"id\" from \"jooq\".\"json_promote_test\" "
+                + "where \"jooq\".\"json_promote_test\".\"datab_category\" = ?", rewriting.render(query));
+        assertEquals(2, rewriting.fetch(query).size());
+    }
+
+    @Test
+    public void rewritesAllTextPathExtractions() {
+        assertRewritten(JsonbDSL.objectAtPathText(JSON_PROMOTE_TEST.DATAB, "obj", "i"), "datab_obj_i");
+        assertRewritten(JsonbDSL.extractPathText(JSON_PROMOTE_TEST.DATAB, "obj", "i"), "datab_obj_i");
+        assertRewritten(JsonDSL.objectAtPathText(JSON_PROMOTE_TEST.DATA, "obj", "i"), "data_obj_i");
+        assertRewritten(JsonDSL.extractPathText(JSON_PROMOTE_TEST.DATA, "obj", "i"), "data_obj_i");
+    }
+
+    @Test
+    public void rewritesArrayIndexPathsOnlyForPathOperators() {
+        assertRewritten(JsonbDSL.objectAtPathText(JSON_PROMOTE_TEST.DATAB, "0"), "datab_first");
+        assertRewritten(JsonbDSL.extractPathText(JSON_PROMOTE_TEST.DATAB, "0"), "datab_first");
+
+        // ->> '0' is null on arrays, where the column holds the first element
+        Select<?> query = rewriting.select(JsonbDSL.fieldByKeyText(JSON_PROMOTE_TEST.DATAB, "0")).from(JSON_PROMOTE_TEST);
+        assertFalse(rewriting.render(query), rewriting.render(query).contains("datab_first"));
+        assertEquals(Arrays.asList(null, null, null, null), rewriting.fetch(query).getValues(0));
+    }
+
+    @Test
+    public void leavesOtherExpressionsAlone() {
+        JsonPromoteTest t = JSON_PROMOTE_TEST.as("t");
+
+        assertNotRewritten(rewriting.select(JsonbDSL.fieldByKeyText(JSON_PROMOTE_TEST.DATAB, "obj")).from(JSON_PROMOTE_TEST));
+        assertNotRewritten(rewriting.select(JsonbDSL.objectAtPathText(JSON_PROMOTE_TEST.DATAB, "obj")).from(JSON_PROMOTE_TEST));
+        assertNotRewritten(rewriting.select(JsonbDSL.objectAtPath(JSON_PROMOTE_TEST.DATAB, "obj", "i")).from(JSON_PROMOTE_TEST));
+        assertNotRewritten(rewriting.select(JsonbDSL.fieldByKeyText(t.DATAB, "category")).from(t));
+    }
+
+    private void assertRewritten(org.jooq.Field<String> field, String column) {
+        Select<?> query = rewriting.select(field).from(JSON_PROMOTE_TEST).orderBy(JSON_PROMOTE_TEST.ID);
+
+        assertTrue(rewriting.render(query), rewriting.render(query).contains("\"" + column + "\""));
+        assertEquals(dsl.fetch(query).getValues(0), rewriting.fetch(query).getValues(0));
+    }
+
+    private void assertNotRewritten(Select<?> query) {
+        String sql = rewriting.render(query);
+        assertFalse(sql, sql.contains("datab_category") || sql.contains("datab_obj_i"));
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.t9t.jooq.json;
+
+import com.github.t9t.jooq.generated.tables.JsonTest;
+import org.jooq.DSLContext;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.Record;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.github.t9t.jooq.generated.Tables.JSON_TEST;
+import static org.junit.Assert.assertEquals;
+
+public class JsonPathGeneratorIT {
+    private static final String DOCUMENT = "{\"obj\": {\"i\": 5521, \"b\": true}, \"arr\": [{\"d\": 4408}, 10], \"num\": 1337, \"str\": \"Hello\"}";
+
+    private final DSLContext dsl = DSL.using(TestDb.createDataSource(), SQLDialect.POSTGRES);
+
+    @Before
+    public void setUp() {
+        dsl.deleteFrom(JSON_TEST).execute();
+        dsl.insertInto(JSON_TEST)
+                .columns(JSON_TEST.NAME, JSON_TEST.DATA, JSON_TEST.DATAB)
+                .values("path", JSON.valueOf(DOCUMENT), JSONB.valueOf(DOCUMENT))
+                .values("other", JSON.valueOf("{}"), JSONB.valueOf("{}"))
+                .execute();
+    }
+
+    @Test
+    public void selectsTypedPathFields() {
+        Record record = dsl.select(JSON_TEST.DATAB_OBJ_I, JSON_TEST.DATAB_OBJ_B, JSON_TEST.DATAB_ARR_FIRST_D,
+                JSON_TEST.DATAB_STR, JSON_TEST.DATAB_OBJ, JSON_TEST.DATA_OBJ_I, JSON_TEST.DATA_NUM, JSON_TEST.DATA_OBJ)
+                .from(JSON_TEST)
+                .where(JSON_TEST.NAME.eq("path"))
+                .fetchOne();
+
+        assertEquals(Long.valueOf(5521), record.get(JSON_TEST.DATAB_OBJ_I));
+        assertEquals(Boolean.TRUE, record.get(JSON_TEST.DATAB_OBJ_B));
+        assertEquals(Long.valueOf(4408), record.get(JSON_TEST.DATAB_ARR_FIRST_D));
+        assertEquals("Hello", record.get(JSON_TEST.DATAB_STR));
+        assertEquals(JSONB.valueOf("{\"b\": true, \"i\": 5521}"), record.get(JSON_TEST.DATAB_OBJ));
+        assertEquals(Long.valueOf(5521), record.get(JSON_TEST.DATA_OBJ_I));
+        assertEquals(Integer.valueOf(1337), record.get(JSON_TEST.DATA_NUM));
+        assertEquals(JSON.valueOf("{\"i\": 5521, \"b\": true}"), record.get(JSON_TEST.DATA_OBJ));
+    }
+
+    @Test
+    public void filtersOnPathFields() {
+        assertEquals("path", dsl.select(JSON_TEST.NAME)
+                .from(JSON_TEST)
+                .where(JSON_TEST.DATAB_OBJ_I.eq(5521L))
+                .and(JSON_TEST.DATAB_OBJ_B.isTrue())
+                .fetchOne(JSON_TEST.NAME));
+        assertEquals("other", dsl.select(JSON_TEST.NAME)
+                .from(JSON_TEST)
+                .where(JSON_TEST.DATA_OBJ_I.isNull())
+                .fetchOne(JSON_TEST.NAME));
+    }
+
+    @Test
+    public void pathFieldsFollowTableAliases() {
+        JsonTest t = JSON_TEST.as("t");
+
+        assertEquals(Long.valueOf(4408), dsl.select(t.DATAB_ARR_FIRST_D)
+                .from(t)
+                .where(t.NAME.eq("path"))
+                .fetchOne(t.DATAB_ARR_FIRST_D));
+    }
+}
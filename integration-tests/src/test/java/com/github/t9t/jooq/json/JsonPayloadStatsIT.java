@@ -0,0 +1,113 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.Record;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static com.github.t9t.jooq.generated.Tables.JSON_TEST;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class JsonPayloadStatsIT {
+    private static final String SMALL = "{\"a\": 1}";
+    private static final String LARGE = "{\"a\": \"" + repeat('x', 100) + "\"}";
+
+    private final DSLContext dsl = DSL.using(TestDb.createDataSource(), SQLDialect.POSTGRES);
+    private final JsonPayloadStats stats = new JsonPayloadStats(2);
+    private final Field<JSON> data = stats.instrument(JSON_TEST.DATA, JSON_TEST.NAME);
+    private final Field<JSONB> datab = stats.instrument(JSON_TEST.DATAB);
+
+    @Before
+    public void setUp() {
+        dsl.deleteFrom(JSON_TEST).execute();
+    }
+
+    @Test
+    public void recordsWrittenAndReadDocumentSizes() {
+        dsl.insertInto(JSON_TEST)
+                .columns(JSON_TEST.NAME, data, datab)
+                .values("small", JSON.valueOf(SMALL), JSONB.valueOf(SMALL))
+                .values("null", null, null)
+                .execute();
+
+        assertEquals(1, stats.get("json_test.data").written().count());
+        assertEquals(SMALL.length(), stats.get("json_test.data").written().sum());
+        assertEquals(1, stats.get("json_test.datab").written().count());
+
+        List<? extends Record> records = dsl.select(JSON_TEST.NAME, data, datab).from(JSON_TEST).orderBy(JSON_TEST.NAME).fetch();
+
+        assertEquals(JSON.valueOf(SMALL), records.get(1).get(data));
+        assertEquals(1, stats.get("json_test.data").read().count());
+        assertEquals(SMALL.length(), stats.get("json_test.data").read().sum());
+        assertEquals(1, stats.get("json_test.datab").read().count());
+    }
+
+    @Test
+    public void keepsLargestDocumentsWithIdentity() {
+        dsl.insertInto(JSON_TEST)
+                .columns(JSON_TEST.NAME, JSON_TEST.DATA)
+                .values("small", JSON.valueOf(SMALL))
+                .values("large", JSON.valueOf(LARGE))
+                .execute();
+
+        dsl.select(JSON_TEST.NAME, data).from(JSON_TEST).fetch();
+        dsl.select(JSON_TEST.NAME, data).from(JSON_TEST).fetch();
+
+        List<JsonPayloadStats.LargeDocument> largest = stats.largestDocuments();
+        assertEquals(2, largest.size());
+        assertEquals(LARGE.length(), largest.get(0).size());
+        assertEquals("large", largest.get(0).identity());
+        assertEquals("json_test.data", largest.get(0).column());
+        assertEquals(LARGE.substring(0, 64) + "...", largest.get(0).preview());
+        assertEquals("small", largest.get(1).identity());
+    }
+
+    @Test
+    public void identityIsNullWhenNotSelected() {
+        dsl.insertInto(JSON_TEST).columns(JSON_TEST.NAME, JSON_TEST.DATA).values("small", JSON.valueOf(SMALL)).execute();
+
+        dsl.select(data).from(JSON_TEST).fetch();
+
+        assertNull(stats.largestDocuments().get(0).identity());
+    }
+
+    @Test
+    public void exposesStatisticsAsMBean() throws Exception {
+        dsl.insertInto(JSON_TEST).columns(JSON_TEST.NAME, data).values("small", JSON.valueOf(SMALL)).execute();
+        dsl.select(data).from(JSON_TEST).fetch();
+
+        ObjectName name = stats.registerMBean("com.github.t9t.jooq.json:type=JsonPayloadStats,name=it");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            JsonPayloadStatsMXBean mbean = JMX.newMXBeanProxy(server, name, JsonPayloadStatsMXBean.class);
+            assertEquals(Long.valueOf(1), mbean.getDocumentsRead().get("json_test.data"));
+            assertEquals(Long.valueOf(SMALL.length()), mbean.getCharsWritten().get("json_test.data"));
+            assertEquals(2, mbean.getLargestDocuments().size());
+
+            mbean.reset();
+            assertEquals(Long.valueOf(0), mbean.getDocumentsRead().get("json_test.data"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+
+    private static String repeat(char c, int n) {
+        StringBuilder sb = new StringBuilder(n);
+        for (int i = 0; i < n; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
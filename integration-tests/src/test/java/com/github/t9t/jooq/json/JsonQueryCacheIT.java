@@ -0,0 +1,204 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.DSLContext;
+import org.jooq.JSONB;
+import org.jooq.Record1;
+import org.jooq.Result;
+import org.jooq.ResultQuery;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.function.BooleanSupplier;
+
+import static com.github.t9t.jooq.generated.Tables.JSON_TEST;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class JsonQueryCacheIT {
+    private final DSLContext dsl = DSL.using(TestDb.createDataSource(), SQLDialect.POSTGRES);
+    private final JsonQueryCache cache = new JsonQueryCache(1_000_000);
+
+    private AutoCloseable listener;
+    private long id1;
+    private long id2;
+
+    @Before
+    public void setUp() {
+        dsl.deleteFrom(JSON_TEST).execute();
+        id1 = insert("config-1", "{\"timeout\": 10}");
+        id2 = insert("config-2", "{\"timeout\": 20}");
+        listener = cache.listen(TestDb.createDataSource());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        listener.close();
+        dsl.execute("drop trigger if exists json_test_json_cache on jooq.json_test");
+        dsl.execute("drop trigger if exists json_test_json_cache_truncate on jooq.json_test");
+    }
+
+    @Test
+    public void invalidatesByKey() {
+        JsonQueryCache.triggerDdl(JSON_TEST, JSON_TEST.ID).forEach(dsl::execute);
+
+        Result<Record1<String>> first = cache.fetchByKey(dsl, timeout(id1), JSON_TEST, id1);
+        Result<Record1<String>> other = cache.fetchByKey(dsl, timeout(id2), JSON_TEST, id2);
+        assertSame(first, cache.fetchByKey(dsl, timeout(id1), JSON_TEST, id1));
+        assertEquals(2, cache.misses());
+        assertEquals(1, cache.hits());
+
+        setTimeout(id1, 11);
+        await(() -> cache.entries() == 1);
+
+        assertEquals("11", cache.fetchByKey(dsl, timeout(id1), JSON_TEST, id1).get(0).value1());
+        assertSame(other, cache.fetchByKey(dsl, timeout(id2), JSON_TEST, id2));
+    }
+
+    @Test
+    public void invalidatesByTable() {
+        JsonQueryCache.triggerDdl(JSON_TEST).forEach(dsl::execute);
+
+        Result<Record1<String>> first = cache.fetch(dsl, timeout(id1), JSON_TEST);
+        cache.fetch(dsl, timeout(id2), JSON_TEST);
+        assertSame(first, cache.fetch(dsl, timeout(id1), JSON_TEST));
+
+        setTimeout(id2, 21);
+        await(() -> cache.entries() == 0);
+
+        Result<Record1<String>> second = cache.fetch(dsl, timeout(id1), JSON_TEST);
+        assertNotSame(first, second);
+        assertEquals("10", second.get(0).value1());
+        assertEquals("21", cache.fetch(dsl, timeout(id2), JSON_TEST).get(0).value1());
+    }
+
+    @Test
+    public void truncateInvalidatesKeyedEntries() {
+        JsonQueryCache.triggerDdl(JSON_TEST, JSON_TEST.ID).forEach(dsl::execute);
+        cache.fetchByKey(dsl, timeout(id1), JSON_TEST, id1);
+
+        dsl.truncate(JSON_TEST).execute();
+        await(() -> cache.entries() == 0);
+
+        assertEquals(0, cache.fetchByKey(dsl, timeout(id1), JSON_TEST, id1).size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        JsonQueryCache small = new JsonQueryCache(600);
+        for (int i = 0; i < 20; i++) {
+            small.fetch(dsl, DSL.select(DSL.val("value-" + i)), JSON_TEST);
+        }
+
+        assertTrue(small.size() <= 600);
+        assertTrue(small.entries() > 0 && small.entries() < 20);
+        small.fetch(dsl, DSL.select(DSL.val("value-19")), JSON_TEST);
+        assertEquals(1, small.hits());
+    }
+
+    @Test
+    public void hitsWithArrayBindValues() {
+        cache.fetch(dsl, DSL.select(DSL.val(new String[]{"a", "b"})), JSON_TEST);
+        Result<?> result = cache.fetch(dsl, DSL.select(DSL.val(new String[]{"a", "b"})), JSON_TEST);
+
+        assertEquals(1, cache.hits());
+        assertSame(result, cache.fetch(dsl, DSL.select(DSL.val(new String[]{"a", "b"})), JSON_TEST));
+        cache.fetch(dsl, DSL.select(DSL.val(new String[]{"a", "c"})), JSON_TEST);
+        assertEquals(2, cache.entries());
+    }
+
+    @Test
+    public void onlyInvalidationsOfReadTablesPreventCaching() throws Exception {
+        ResultQuery<Record1<Object>> slow = DSL.select(DSL.field("pg_sleep(0.3)")).from(JSON_TEST).limit(1);
+
+        Thread other = new Thread(() -> {
+            sleep(100);
+            cache.invalidate("other_table");
+        });
+        other.start();
+        cache.fetch(dsl, slow, JSON_TEST);
+        other.join();
+        assertEquals(1, cache.entries());
+
+        cache.invalidate("json_test");
+        Thread same = new Thread(() -> {
+            sleep(100);
+            cache.invalidate("json_test", "1");
+        });
+        same.start();
+        cache.fetch(dsl, slow, JSON_TEST);
+        same.join();
+        assertEquals(0, cache.entries());
+    }
+
+    @Test
+    public void doesNotCacheWhileNotListening() {
+        cache.fetchByKey(dsl, timeout(id1), JSON_TEST, id1);
+        assertEquals(1, cache.entries());
+
+        dsl.fetch("select pg_terminate_backend(pid) from pg_stat_activity "
+                + "where query = 'listen " + JsonQueryCache.CHANNEL + "' and pid <> pg_backend_pid()");
+        await(() -> !cache.isCaching() && cache.entries() == 0);
+        cache.fetchByKey(dsl, timeout(id1), JSON_TEST, id1);
+        assertEquals(0, cache.entries());
+
+        await(cache::isCaching);
+        cache.fetchByKey(dsl, timeout(id1), JSON_TEST, id1);
+        assertEquals(1, cache.entries());
+    }
+
+    @Test
+    public void doesNotCacheResultsLargerThanMaximum() {
+        JsonQueryCache small = new JsonQueryCache(100);
+        small.fetch(dsl, DSL.select(DSL.val(new String(new char[200]).replace('\0', 'x'))), JSON_TEST);
+
+        assertEquals(0, small.entries());
+    }
+
+    private ResultQuery<Record1<String>> timeout(long id) {
+        return DSL.select(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "timeout"))
+                .from(JSON_TEST)
+                .where(JSON_TEST.ID.eq(id));
+    }
+
+    private void setTimeout(long id, int timeout) {
+        dsl.update(JSON_TEST)
+                .set(JSON_TEST.DATAB, JSONB.valueOf("{\"timeout\": " + timeout + "}"))
+                .where(JSON_TEST.ID.eq(id))
+                .execute();
+    }
+
+    private long insert(String name, String data) {
+        return dsl.insertInto(JSON_TEST, JSON_TEST.NAME, JSON_TEST.DATAB)
+                .values(name, JSONB.valueOf(data))
+                .returning(JSON_TEST.ID)
+                .fetchOne()
+                .getId();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Condition not met within 5 seconds");
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.Cursor;
+import org.jooq.DSLContext;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.Record;
+import org.jooq.SQLDialect;
+import org.jooq.Table;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultConfiguration;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.github.t9t.jooq.generated.Tables.JSON_RECORD_TEST;
+import static com.github.t9t.jooq.generated.Tables.JSON_TEST;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JsonQueryMetricsIT {
+    private final InMemoryJsonQueryMetrics metrics = new InMemoryJsonQueryMetrics();
+    private final DSLContext dsl = DSL.using(JsonQueryMetricsListener.install(new DefaultConfiguration()
+            .set(TestDb.createDataSource())
+            .set(SQLDialect.POSTGRES), metrics));
+
+    @Before
+    public void setUp() {
+        dsl.deleteFrom(JSON_TEST).execute();
+        dsl.insertInto(JSON_TEST)
+                .columns(JSON_TEST.NAME, JSON_TEST.DATA, JSON_TEST.DATAB)
+                .values("one", JSON.valueOf("{\"a\": {\"b\": 1}}"), JSONB.valueOf("{\"a\": {\"b\": 1}}"))
+                .values("two", JSON.valueOf("{\"a\": {\"b\": 2}}"), JSONB.valueOf("{\"a\": {\"b\": 2}}"))
+                .values("three", JSON.valueOf("{\"c\": 3}"), JSONB.valueOf("{\"c\": 3}"))
+                .execute();
+        metrics.reset();
+    }
+
+    @Test
+    public void queriesWithoutJsonOperatorsAreNotRecorded() {
+        dsl.selectFrom(JSON_TEST).fetch();
+
+        assertTrue(metrics.snapshot().isEmpty());
+    }
+
+    @Test
+    public void recordsEveryOperatorWithRowCount() {
+        assertEquals(2, dsl.select(JsonbDSL.objectAtPathText(JSON_TEST.DATAB, "a", "b"))
+                .from(JSON_TEST)
+                .where(JsonbDSL.hasKey(JSON_TEST.DATAB, "a"))
+                .fetch().size());
+
+        assertEquals(1, metrics.get("#>>").queries());
+        assertEquals(2, metrics.get("#>>").rows().sum());
+        assertEquals(1, metrics.get("?").queries());
+        assertEquals(2, metrics.get("?").rows().sum());
+        assertTrue(metrics.get("?").latencyNanos().max() > 0);
+    }
+
+    @Test
+    public void recordsFunctions() {
+        dsl.select(JsonDSL.typeOf(JSON_TEST.DATA), JsonbDSL.extractPath(JSON_TEST.DATAB, "a")).from(JSON_TEST).fetch();
+        dsl.select(JsonDSL.typeOf(JSON_TEST.DATA)).from(JSON_TEST).fetch();
+
+        assertEquals(2, metrics.get("json_typeof").queries());
+        assertEquals(6, metrics.get("json_typeof").rows().sum());
+        assertEquals(1, metrics.get("jsonb_extract_path").queries());
+        assertNull(metrics.get("jsonb_typeof"));
+    }
+
+    @Test
+    public void recordsTextSearchFunctions() {
+        dsl.select(JsonbDSL.headline(JSON_TEST.DATAB, "english", "rat"),
+                JsonDSL.headline(JSON_TEST.DATA, "english", "cat")).from(JSON_TEST).fetch();
+
+        assertEquals(1, metrics.get("ts_headline").queries());
+        assertEquals(3, metrics.get("ts_headline").rows().sum());
+        assertNull(metrics.get("jsonb_ts_headline"));
+    }
+
+    @Test
+    public void recordsRecordFunctions() {
+        Table<Record> toRecord = JsonbDSL.toRecord(JSON_TEST.DATAB, JSON_RECORD_TEST);
+        Table<Record> populateRecord = JsonDSL.populateRecord(JSON_TEST.DATA, JSON_RECORD_TEST);
+        dsl.select(toRecord.fields()).from(JSON_TEST, toRecord).fetch();
+        dsl.select(populateRecord.fields()).from(JSON_TEST, populateRecord).fetch();
+
+        assertEquals(1, metrics.get("jsonb_to_record").queries());
+        assertEquals(3, metrics.get("jsonb_to_record").rows().sum());
+        assertEquals(1, metrics.get("json_populate_record").queries());
+        assertNull(metrics.get("json_to_record"));
+    }
+
+    @Test
+    public void recordsAffectedRowsForUpdates() {
+        assertEquals(2, dsl.update(JSON_TEST)
+                .set(JSON_TEST.DATAB, JsonbDSL.deletePath(JSON_TEST.DATAB, "a", "b"))
+                .where(JsonbDSL.contains(JSON_TEST.DATAB, JsonbDSL.field("{\"a\": {}}")))
+                .execute());
+
+        assertEquals(2, metrics.get("@>").rows().sum());
+        assertEquals(2, metrics.get("#-").rows().sum());
+    }
+
+    @Test
+    public void recordsLazilyFetchedRows() {
+        try (Cursor<?> cursor = dsl.select(JsonbDSL.fieldByKey(JSON_TEST.DATAB, "c")).from(JSON_TEST).fetchLazy()) {
+            while (cursor.hasNext()) {
+                assertNotNull(cursor.fetchNext());
+            }
+        }
+
+        assertEquals(3, metrics.get("->").rows().sum());
+    }
+
+    @Test
+    public void reportsFailedQueriesSeparately() {
+        try {
+            dsl.select(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "a").cast(Integer.class)).from(JSON_TEST).fetch();
+            fail("Expected DataAccessException");
+        } catch (DataAccessException expected) {
+        }
+
+        assertEquals(1, metrics.get("->>").failures());
+        assertEquals(0, metrics.get("->>").queries());
+        assertEquals(0, metrics.get("->>").latencyNanos().count());
+    }
+}
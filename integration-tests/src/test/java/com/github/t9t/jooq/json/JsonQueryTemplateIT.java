@@ -0,0 +1,149 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.DSLContext;
+import org.jooq.JSONB;
+import org.jooq.Param;
+import org.jooq.Record;
+import org.jooq.Record1;
+import org.jooq.Record2;
+import org.jooq.SQLDialect;
+import org.jooq.Select;
+import org.jooq.impl.DSL;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.github.t9t.jooq.generated.Tables.JSON_TEST;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class JsonQueryTemplateIT {
+    private final DSLContext dsl = DSL.using(TestDb.createDataSource(), SQLDialect.POSTGRES);
+
+    private final Param<JSONB> filter = DSL.param("filter", JSONB.valueOf("{}"));
+    private final Param<String> type = DSL.param("type", "");
+
+    @Before
+    public void setUp() {
+        dsl.deleteFrom(JSON_TEST).execute();
+        insert("book-1", "{\"type\": \"book\", \"author\": \"Tolkien\", \"tags\": [\"fantasy\"]}");
+        insert("book-2", "{\"type\": \"book\", \"author\": \"Pratchett\", \"tags\": [\"fantasy\", \"humour\"]}");
+        insert("film-1", "{\"type\": \"film\", \"author\": \"Jackson\", \"tags\": [\"fantasy\"]}");
+        insert("none", null);
+    }
+
+    @Test
+    public void fetchWithNewValues() {
+        JsonQueryTemplate<Record1<String>> template = JsonQueryTemplate.of(dsl, DSL.select(JSON_TEST.NAME)
+                .from(JSON_TEST)
+                .where(JsonbDSL.contains(JSON_TEST.DATAB, filter))
+                .and(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "type").eq(type))
+                .orderBy(JSON_TEST.NAME));
+
+        assertEquals(Arrays.asList("filter", "type"), template.parameterNames());
+        assertEquals(Arrays.asList("book-1", "book-2"),
+                template.fetch(JSONB.valueOf("{\"tags\": [\"fantasy\"]}"), "book").getValues(JSON_TEST.NAME));
+        assertEquals(Collections.singletonList("book-2"),
+                template.fetch(JSONB.valueOf("{\"tags\": [\"humour\"]}"), "book").getValues(JSON_TEST.NAME));
+        assertEquals(Collections.singletonList("film-1"),
+                template.fetch(JSONB.valueOf("{}"), "film").getValues(JSON_TEST.NAME));
+        assertEquals(Collections.emptyList(), template.fetch(JSONB.valueOf("{}"), null).getValues(JSON_TEST.NAME));
+    }
+
+    @Test
+    public void keepsConstantBindValuesAndEscapedOperators() {
+        JsonQueryTemplate<Record2<String, String>> template = JsonQueryTemplate.of(dsl,
+                DSL.select(JSON_TEST.NAME, JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "author"))
+                        .from(JSON_TEST)
+                        .where(JsonbDSL.hasKey(JSON_TEST.DATAB, "tags"))
+                        .and(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "type").eq(type))
+                        .and(JSON_TEST.NAME.like("%-1"))
+                        .orderBy(JSON_TEST.NAME));
+
+        List<String> books = template.fetch("book").getValues(1, String.class);
+        List<String> films = template.fetch("film").getValues(1, String.class);
+
+        assertEquals(Collections.singletonList("Tolkien"), books);
+        assertEquals(Collections.singletonList("Jackson"), films);
+    }
+
+    @Test
+    public void executeWithNewValues() {
+        Param<String> name = DSL.param("name", "");
+        JsonQueryTemplate<Record> template = JsonQueryTemplate.of(dsl, DSL.update(JSON_TEST)
+                .set(JSON_TEST.DATAB, JsonbDSL.concat(JSON_TEST.DATAB, filter))
+                .where(JSON_TEST.NAME.eq(name)));
+
+        assertEquals(1, template.execute(JSONB.valueOf("{\"read\": true}"), "book-1"));
+        assertEquals(0, template.execute(JSONB.valueOf("{\"read\": true}"), "unknown"));
+        assertEquals(1, template.execute(null, "film-1"));
+
+        assertEquals("true", dsl.select(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "read"))
+                .from(JSON_TEST).where(JSON_TEST.NAME.eq("book-1")).fetchOne().value1());
+        assertNull(dsl.select(JSON_TEST.DATAB).from(JSON_TEST).where(JSON_TEST.NAME.eq("film-1")).fetchOne().value1());
+    }
+
+    @Test
+    public void parameterUsedTwice() {
+        JsonQueryTemplate<Record1<String>> template = JsonQueryTemplate.of(dsl, DSL.select(JSON_TEST.NAME)
+                .from(JSON_TEST)
+                .where(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "type").eq(type))
+                .or(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "author").eq(type))
+                .orderBy(JSON_TEST.NAME));
+
+        assertEquals(Collections.singletonList("type"), template.parameterNames());
+        assertEquals(Arrays.asList("book-1", "book-2"), template.fetch("book").getValues(JSON_TEST.NAME));
+        assertEquals(Collections.singletonList("book-2"), template.fetch("Pratchett").getValues(JSON_TEST.NAME));
+    }
+
+    @Test
+    public void leavesQueryUnchanged() {
+        Select<Record1<String>> query = DSL.select(JSON_TEST.NAME)
+                .from(JSON_TEST)
+                .where(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "type").eq(type));
+        String sql = dsl.renderInlined(query);
+
+        JsonQueryTemplate.of(dsl, query);
+
+        assertEquals(sql, dsl.renderInlined(query));
+        assertEquals("", type.getValue());
+    }
+
+    @Test
+    public void rejectsValuesOfOtherTypes() {
+        JsonQueryTemplate<Record1<String>> template = JsonQueryTemplate.of(dsl, DSL.select(JSON_TEST.NAME)
+                .from(JSON_TEST)
+                .where(JSON_TEST.ID.eq(DSL.param("id", 1L))));
+
+        assertEquals(Collections.emptyList(), template.fetch(Long.MAX_VALUE).getValues(JSON_TEST.NAME));
+        try {
+            template.fetch(1);
+            fail("Integer value accepted for a Long parameter");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Parameter id must be a java.lang.Long, got: java.lang.Integer", e.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parameterWithoutSampleValue() {
+        JsonQueryTemplate.of(dsl, DSL.select(JSON_TEST.NAME)
+                .from(JSON_TEST)
+                .where(JSON_TEST.NAME.eq(DSL.param("name", String.class))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongNumberOfValues() {
+        JsonQueryTemplate.of(dsl, DSL.select(JSON_TEST.NAME).from(JSON_TEST).where(JSON_TEST.NAME.eq(type)))
+                .fetch("book", "film");
+    }
+
+    private void insert(String name, String data) {
+        dsl.insertInto(JSON_TEST, JSON_TEST.NAME, JSON_TEST.DATAB)
+                .values(name, data == null ? null : JSONB.valueOf(data))
+                .execute();
+    }
+}
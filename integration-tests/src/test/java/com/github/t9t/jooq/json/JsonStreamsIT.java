@@ -0,0 +1,193 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.Record2;
+import org.jooq.SQLDialect;
+import org.jooq.Select;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.t9t.jooq.generated.Tables.JSON_TEST;
+import static org.junit.Assert.assertEquals;
+
+public class JsonStreamsIT {
+    private static final int LARGE_ELEMENTS = 200_000;
+
+    private final DSLContext dsl = DSL.using(TestDb.createDataSource(), SQLDialect.POSTGRES);
+
+    @Before
+    public void setUp() {
+        dsl.deleteFrom(JSON_TEST).execute();
+    }
+
+    @Test
+    public void insertInputStreamWithLength() {
+        byte[] bytes = "{\"a\": \"éè\", \"b\": [1, 2]}".getBytes(StandardCharsets.UTF_8);
+
+        insert("stream", JsonStreams.json(new ByteArrayInputStream(bytes), bytes.length),
+                JsonStreams.jsonb(new ByteArrayInputStream(bytes), bytes.length));
+
+        assertEquals(JSONB.valueOf("{\"a\": \"éè\", \"b\": [1, 2]}"), datab("stream"));
+        assertEquals(JSON.valueOf("{\"a\": \"éè\", \"b\": [1, 2]}"), data("stream"));
+    }
+
+    @Test
+    public void insertInputStreamWithoutLength() {
+        byte[] bytes = largeDocument().getBytes(StandardCharsets.UTF_8);
+
+        insert("stream", JsonStreams.json(new ByteArrayInputStream(bytes)),
+                JsonStreams.jsonb(new ByteArrayInputStream(bytes)));
+
+        assertLargeDocument("stream");
+    }
+
+    @Test
+    public void insertReader() {
+        String document = largeDocument();
+
+        insert("reader", JsonStreams.json(new StringReader(document)), JsonStreams.jsonb(new StringReader(document)));
+
+        assertLargeDocument("reader");
+    }
+
+    @Test
+    public void insertFromWriterCallback() {
+        insert("writer", JsonStreams.json(JsonStreamsIT::writeLargeDocument),
+                JsonStreams.jsonb(JsonStreamsIT::writeLargeDocument));
+
+        assertLargeDocument("writer");
+    }
+
+    @Test
+    public void updateFromSmallWriterCallback() {
+        insert("small", JsonStreams.json(writer -> writer.write("{}")), JsonStreams.jsonb(writer -> writer.write("{}")));
+
+        dsl.update(JSON_TEST)
+                .set(JSON_TEST.DATAB, JsonStreams.jsonb(writer -> writer.write("{\"updated\": true}")))
+                .where(JSON_TEST.NAME.eq("small"))
+                .execute();
+
+        assertEquals(JSONB.valueOf("{\"updated\": true}"), datab("small"));
+    }
+
+    @Test
+    public void insertFromStreamSupplier() {
+        byte[] bytes = largeDocument().getBytes(StandardCharsets.UTF_8);
+
+        insert("supplier", JsonStreams.json(() -> new ByteArrayInputStream(bytes)),
+                JsonStreams.jsonb(() -> new ByteArrayInputStream(bytes), bytes.length));
+
+        assertLargeDocument("supplier");
+    }
+
+    @Test
+    public void bindsSuppliersAndCallbacksRepeatedly() {
+        byte[] bytes = "{\"a\": 1}".getBytes(StandardCharsets.UTF_8);
+        AtomicInteger opened = new AtomicInteger();
+        Field<JSONB> supplied = JsonStreams.jsonb(() -> {
+            opened.incrementAndGet();
+            return new ByteArrayInputStream(bytes);
+        }, bytes.length);
+        AtomicInteger writes = new AtomicInteger();
+        Field<JSONB> written = JsonStreams.jsonb(writer -> {
+            writes.incrementAndGet();
+            writer.write("{\"b\": 2}");
+        });
+        Select<Record2<JSONB, JSONB>> query = DSL.select(supplied, written);
+
+        for (int i = 0; i < 2; i++) {
+            Record2<JSONB, JSONB> record = dsl.fetchOne(query);
+            assertEquals(JSONB.valueOf("{\"a\": 1}"), record.value1());
+            assertEquals(JSONB.valueOf("{\"b\": 2}"), record.value2());
+        }
+        assertEquals(2, opened.get());
+
+        assertEquals("select cast('<streamed>' as jsonb), cast('<streamed>' as jsonb)", dsl.renderInlined(query));
+        assertEquals(2, opened.get());
+        assertEquals(2, writes.get());
+        assertEquals("select cast(convert_from(?, 'UTF8') as jsonb), cast(convert_from(?, 'UTF8') as jsonb)",
+                dsl.render(query));
+    }
+
+    @Test
+    public void bindsStreamsOnlyOnce() {
+        Field<JSONB> value = JsonStreams.jsonb(new StringReader("{}"));
+        assertEquals("select cast('<streamed>' as jsonb)", dsl.renderInlined(DSL.select(value)));
+        assertEquals(JSONB.valueOf("{}"), dsl.select(value).fetchOne().value1());
+
+        try {
+            dsl.select(value).fetch();
+        } catch (DataAccessException e) {
+            Throwable cause = e;
+            while (cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            assertEquals(IllegalStateException.class, cause.getClass());
+            return;
+        }
+        throw new AssertionError("Expected DataAccessException");
+    }
+
+    private void insert(String name, Field<JSON> data, Field<JSONB> datab) {
+        dsl.insertInto(JSON_TEST, JSON_TEST.NAME, JSON_TEST.DATA, JSON_TEST.DATAB)
+                .values(DSL.val(name), data, datab)
+                .execute();
+    }
+
+    private JSON data(String name) {
+        return dsl.select(JSON_TEST.DATA).from(JSON_TEST).where(JSON_TEST.NAME.eq(name)).fetchOne().value1();
+    }
+
+    private JSONB datab(String name) {
+        return dsl.select(JSON_TEST.DATAB).from(JSON_TEST).where(JSON_TEST.NAME.eq(name)).fetchOne().value1();
+    }
+
+    private void assertLargeDocument(String name) {
+        Record2<Integer, Integer> lengths = dsl.select(
+                JsonDSL.arrayLength(JsonDSL.fieldByKey(JSON_TEST.DATA, "items")),
+                JsonbDSL.arrayLength(JsonbDSL.fieldByKey(JSON_TEST.DATAB, "items")))
+                .from(JSON_TEST).where(JSON_TEST.NAME.eq(name)).fetchOne();
+        assertEquals(Integer.valueOf(LARGE_ELEMENTS), lengths.value1());
+        assertEquals(Integer.valueOf(LARGE_ELEMENTS), lengths.value2());
+        assertEquals(JSONB.valueOf("{\"i\": 199999, \"name\": \"item-199999\"}"),
+                dsl.select(JsonbDSL.arrayElement(JsonbDSL.fieldByKey(JSON_TEST.DATAB, "items"), -1))
+                        .from(JSON_TEST).where(JSON_TEST.NAME.eq(name)).fetchOne().value1());
+    }
+
+    private static String largeDocument() {
+        StringWriter writer = new StringWriter();
+        try {
+            writeLargeDocument(writer);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Writes a document of about 8 MB, exceeding the in-memory spool.
+     */
+    private static void writeLargeDocument(Writer writer) throws IOException {
+        writer.write("{\"items\": [");
+        for (int i = 0; i < LARGE_ELEMENTS; i++) {
+            if (i > 0) {
+                writer.write(", ");
+            }
+            writer.write("{\"i\": " + i + ", \"name\": \"item-" + i + "\"}");
+        }
+        writer.write("]}");
+    }
+}
@@ -0,0 +1,135 @@
+package com.github.t9t.jooq.json;
+
+import com.github.t9t.jooq.json.JsonTextSearch.Filter;
+import org.jooq.Condition;
+import org.jooq.DSLContext;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.SQLDialect;
+import org.jooq.Select;
+import org.jooq.impl.DSL;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.util.List;
+
+import static com.github.t9t.jooq.generated.Tables.JSON_TEST;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JsonTextSearchIT {
+    private final DSLContext dsl = DSL.using(TestDb.createDataSource(), SQLDialect.POSTGRES);
+
+    @Before
+    public void setUp() {
+        dsl.deleteFrom(JSON_TEST).execute();
+        insert("rats", "{\"title\": \"The Fat Rats\", \"pages\": 123, \"tags\": [\"rodents\"]}");
+        insert("cats", "{\"title\": \"Fat cats\", \"open\": true, \"author\": {\"name\": \"Jones\"}}");
+        insert("empty", "{}");
+        dsl.insertInto(JSON_TEST, JSON_TEST.NAME).values("null").execute();
+    }
+
+    @After
+    public void tearDown() {
+        dsl.execute("drop index if exists jooq.json_test_data_fts");
+        dsl.execute("drop index if exists jooq.json_test_datab_fts");
+    }
+
+    @Test
+    public void matchesStrings() {
+        assertEquals("[rats]", names(JsonbDSL.matches(JSON_TEST.DATAB, "english", "rat")));
+        assertEquals("[rats]", names(JsonDSL.matches(JSON_TEST.DATA, "english", "rat")));
+        assertEquals("[cats, rats]", names(JsonbDSL.matches(JSON_TEST.DATAB, "english", "fat")));
+        assertEquals("[cats]", names(JsonbDSL.matches(JSON_TEST.DATAB, "english", "jones")));
+        assertEquals("[rats]", names(JsonbDSL.matches(JSON_TEST.DATAB, "english", "rodent")));
+        assertEquals("[]", names(JsonbDSL.matches(JSON_TEST.DATAB, "english", "123")));
+    }
+
+    @Test
+    public void matchesWebSearchSyntax() {
+        assertEquals("[cats]", names(JsonbDSL.matches(JSON_TEST.DATAB, "english", "fat -rats")));
+        assertEquals("[rats]", names(JsonbDSL.matches(JSON_TEST.DATAB, "english", "\"fat rats\"")));
+        assertEquals("[cats, rats]", names(JsonDSL.matches(JSON_TEST.DATA, "english", "rats or cats")));
+    }
+
+    @Test
+    public void matchesFilters() {
+        assertEquals("[rats]", names(JsonbDSL.matches(JSON_TEST.DATAB, "simple", "123", Filter.NUMERIC)));
+        assertEquals("[cats]", names(JsonDSL.matches(JSON_TEST.DATA, "simple", "true", Filter.BOOLEAN)));
+        assertEquals("[cats]", names(JsonbDSL.matches(JSON_TEST.DATAB, "simple", "author", Filter.KEY)));
+        assertEquals("[]", names(JsonbDSL.matches(JSON_TEST.DATAB, "simple", "fat", Filter.KEY)));
+        assertEquals("[rats]", names(JsonbDSL.matches(JSON_TEST.DATAB, "simple", "pages 123", Filter.ALL)));
+        assertEquals("[cats, rats]", names(JsonbDSL.matches(JSON_TEST.DATAB, "simple", "title",
+                Filter.STRING, Filter.KEY)));
+    }
+
+    @Test
+    public void toTsVector() {
+        // jsonb stores the shortest keys first: tags, pages, title
+        assertEquals("'123':3 'fat':6 'rat':7 'rodent':1", dsl.select(JsonbDSL.toTsVector(JSON_TEST.DATAB, "english",
+                Filter.STRING, Filter.NUMERIC)).from(JSON_TEST).where(JSON_TEST.NAME.eq("rats")).fetchOne().value1());
+        assertEquals("'fat':2 'rat':3 'rodent':5", dsl.select(JsonDSL.toTsVector(JSON_TEST.DATA, "english"))
+                .from(JSON_TEST).where(JSON_TEST.NAME.eq("rats")).fetchOne().value1());
+    }
+
+    @Test
+    public void headline() {
+        JSONB jsonb = dsl.select(JsonbDSL.headline(JSON_TEST.DATAB, "english", "rat"))
+                .from(JSON_TEST).where(JSON_TEST.NAME.eq("rats")).fetchOne().value1();
+        assertEquals("{\"tags\": [\"rodents\"], \"pages\": 123, \"title\": \"The Fat <b>Rats</b>\"}", jsonb.data());
+
+        JSON json = dsl.select(JsonDSL.headline(JSON_TEST.DATA, "english", "cat"))
+                .from(JSON_TEST).where(JSON_TEST.NAME.eq("cats")).fetchOne().value1();
+        assertTrue(json.data(), json.data().contains("\"Fat <b>cats</b>\""));
+    }
+
+    @Test
+    public void usesIndex() throws Exception {
+        dsl.execute(JsonTextSearch.createIndex("json_test_datab_fts", JSON_TEST.DATAB, "english", Filter.STRING,
+                Filter.KEY));
+        dsl.execute(JsonTextSearch.createIndex("json_test_data_fts", JSON_TEST.DATA, "simple"));
+        // Executing it again does nothing
+        dsl.execute(JsonTextSearch.createIndex("json_test_data_fts", JSON_TEST.DATA, "simple"));
+
+        try (Connection connection = TestDb.createDataSource().getConnection()) {
+            DSLContext single = DSL.using(connection, SQLDialect.POSTGRES);
+            single.execute("set enable_seqscan = off");
+
+            // The filters are indexed in a fixed order, regardless of the order they are given in
+            String plan = explain(single, JsonbDSL.matches(JSON_TEST.DATAB, "english", "rat", Filter.KEY,
+                    Filter.STRING));
+            assertTrue(plan, plan.contains("Bitmap Index Scan on json_test_datab_fts"));
+
+            plan = explain(single, JsonDSL.matches(JSON_TEST.DATA, "simple", "rats", Filter.STRING));
+            assertTrue(plan, plan.contains("Bitmap Index Scan on json_test_data_fts"));
+
+            assertEquals("[rats]", single.select(JSON_TEST.NAME).from(JSON_TEST)
+                    .where(JsonDSL.matches(JSON_TEST.DATA, "simple", "rats")).fetch(JSON_TEST.NAME).toString());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createIndexOfTextField() {
+        JsonTextSearch.createIndex("json_test_name_fts", JSON_TEST.NAME, "english");
+    }
+
+    private static String explain(DSLContext dsl, Condition condition) {
+        Select<?> select = dsl.selectFrom(JSON_TEST).where(condition);
+        List<String> lines = dsl.fetch("explain " + select.getSQL(), select.getBindValues().toArray())
+                .getValues(0, String.class);
+        return String.join("\n", lines);
+    }
+
+    private String names(Condition condition) {
+        return dsl.select(JSON_TEST.NAME).from(JSON_TEST).where(condition).orderBy(JSON_TEST.NAME)
+                .fetch(JSON_TEST.NAME).toString();
+    }
+
+    private void insert(String name, String data) {
+        dsl.insertInto(JSON_TEST, JSON_TEST.NAME, JSON_TEST.DATA, JSON_TEST.DATAB)
+                .values(name, JSON.valueOf(data), JSONB.valueOf(data))
+                .execute();
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.Condition;
+import org.jooq.Constants;
+import org.jooq.DSLContext;
+import org.jooq.JSONB;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.t9t.jooq.generated.Tables.JSON_TEST;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JsonbContainmentRewriteIT {
+    private final DSLContext dsl = DSL.using(TestDb.createDataSource(), SQLDialect.POSTGRES);
+    private final DSLContext rewriting = DSL.using(JsonbContainmentRewrite.install(dsl.configuration()));
+
+    @Before
+    public void setUp() {
+        dsl.deleteFrom(JSON_TEST).execute();
+        insert("active", "{\"status\": \"active\"}");
+        insert("activeArray", "{\"status\": [\"active\"]}");
+        insert("tenText", "{\"status\": \"10\"}");
+        insert("tenNumber", "{\"status\": 10}");
+        insert("trueBoolean", "{\"status\": true}");
+        insert("inactive", "{\"status\": \"inactive\", \"nested\": {\"s\": \"x\"}}");
+        insert("nestedArray", "{\"nested\": [{\"s\": \"x\"}], \"arr\": [\"x\"]}");
+        insert("quoted", "{\"st\\\"atus\": \"a \\\"b\\\"\"}");
+        insert("empty", "{}");
+        dsl.insertInto(JSON_TEST, JSON_TEST.NAME).values("null").execute();
+    }
+
+    @Test
+    public void rewritesEquality() {
+        assertRewritten(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "status").eq("active"), "active");
+        assertRewritten(DSL.val("inactive").eq(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "status")), "inactive");
+        assertRewritten(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "st\"atus").eq("a \"b\""), "quoted");
+        assertRewritten(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "status").eq(DSL.inline("active")), "active");
+    }
+
+    @Test
+    public void rewritesPaths() {
+        assertRewritten(JsonbDSL.objectAtPathText(JSON_TEST.DATAB, "nested", "s").eq("x"), "inactive");
+        assertRewritten(JsonbDSL.extractPathText(JSON_TEST.DATAB, "nested", "s").eq("x"), "inactive");
+    }
+
+    @Test
+    public void rewritesIn() {
+        assertRewritten(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "status").in("active", "inactive", "missing"),
+                "active", "inactive");
+    }
+
+    @Test
+    public void rewritesCombinedConditions() {
+        assertRewritten(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "status").eq("active")
+                .or(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "status").eq("inactive").and(JSON_TEST.ID.isNotNull())),
+                "active", "inactive");
+    }
+
+    @Test
+    public void doesNotRewriteAmbiguousValues() {
+        assertNotRewritten(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "status").eq("10"), "tenNumber", "tenText");
+        assertNotRewritten(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "status").eq("true"), "trueBoolean");
+        assertNotRewritten(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "status").eq("[\"active\"]"), "activeArray");
+        assertNotRewritten(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "status").in("active", "10"),
+                "active", "tenNumber", "tenText");
+        assertNotRewritten(JsonbDSL.objectAtPathText(JSON_TEST.DATAB, "arr", "0").eq("x"), "nestedArray");
+        assertNotRewritten(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "status").eq(DSL.param("status", "active")),
+                "active");
+    }
+
+    @Test
+    public void supportsThisJooqVersion() {
+        // The rewrite reads private fields of jOOQ 3.13 conditions: check it again when upgrading jOOQ
+        assertEquals("3.13", Constants.MINOR_VERSION);
+        assertTrue(JsonbContainmentRewrite.isSupported());
+    }
+
+    @Test
+    public void doesNotRewriteNegations() {
+        assertNotRewritten(DSL.not(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "status").eq("active")),
+                "inactive", "tenText", "trueBoolean", "activeArray", "tenNumber");
+        assertNotRewritten(JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "status").notIn("active"),
+                "inactive", "tenText", "trueBoolean", "activeArray", "tenNumber");
+    }
+
+    @Test
+    public void doesNotRewriteSelectedConditions() {
+        String sql = rewriting.renderInlined(DSL.select(DSL.field(
+                JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "status").eq("active"))).from(JSON_TEST));
+
+        assertFalse(sql, sql.contains("@>"));
+    }
+
+    private void assertRewritten(Condition condition, String... expected) {
+        String sql = rewriting.render(DSL.selectFrom(JSON_TEST).where(condition));
+        assertTrue(sql, sql.contains("@>"));
+        assertFalse(sql, sql.contains("->>") || sql.contains("#>>") || sql.contains("extract_path"));
+        assertNames(condition, expected);
+    }
+
+    private void assertNotRewritten(Condition condition, String... expected) {
+        String sql = rewriting.render(DSL.selectFrom(JSON_TEST).where(condition));
+        assertFalse(sql, sql.contains("@>"));
+        assertNames(condition, expected);
+    }
+
+    private void assertNames(Condition condition, String... expected) {
+        List<String> plain = names(dsl, condition);
+        assertEquals(plain, names(rewriting, condition));
+        assertEquals(sorted(expected), plain);
+    }
+
+    private static List<String> names(DSLContext dsl, Condition condition) {
+        List<String> names = dsl.select(JSON_TEST.NAME).from(JSON_TEST).where(condition).fetch(JSON_TEST.NAME);
+        names.sort(null);
+        return names;
+    }
+
+    private static List<String> sorted(String... names) {
+        List<String> list = new ArrayList<>(Arrays.asList(names));
+        list.sort(null);
+        return list;
+    }
+
+    private void insert(String name, String data) {
+        dsl.insertInto(JSON_TEST, JSON_TEST.NAME, JSON_TEST.DATAB).values(name, JSONB.valueOf(data)).execute();
+    }
+}
@@ -0,0 +1,159 @@
+package com.github.t9t.jooq.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.jooq.Condition;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.JSONB;
+import org.jooq.Query;
+import org.jooq.SQLDialect;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs {@code EXPLAIN (ANALYZE, BUFFERS)} for every {@link JsonbDSL} operator and function against the
+ * {@code jooq.json_perf_test} table seeded by the {@code performance-tests} profile, asserts the expected plan node and
+ * writes the timings to a JSON report.
+ */
+@RunWith(Parameterized.class)
+public class JsonbDSLPerf {
+    private static final DSLContext dsl = DSL.using(TestDb.createDataSource(), SQLDialect.POSTGRES);
+    private static final ObjectMapper om = new ObjectMapper();
+    private static final List<ObjectNode> results = new ArrayList<>();
+
+    private static final Table<?> table = DSL.table(DSL.name("jooq", "json_perf_test"));
+    private static final Field<JSONB> data = DSL.field(DSL.name("data"), SQLDataType.JSONB);
+    // Parenthesised, as "data"->'tags' - 0 would parse as "data"->('tags' - 0)
+    private static final Field<JSONB> tags = DSL.field("({0})", SQLDataType.JSONB, JsonbDSL.fieldByKey(data, "tags"));
+
+    private static final String SEQ_SCAN = "Seq Scan";
+    private static final String GIN_INDEX = "json_perf_test_data_gin";
+
+    @Parameterized.Parameter
+    public String testName;
+    @Parameterized.Parameter(1)
+    public Query query;
+    @Parameterized.Parameter(2)
+    public String expectedIndex;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> params() {
+        return Arrays.asList(
+                where("contains", JsonbDSL.contains(data, JsonbDSL.field("{\"category\": \"c42\"}")), GIN_INDEX),
+                where("containedIn", JsonbDSL.containedIn(JsonbDSL.field("{\"category\": \"c42\"}"), data), GIN_INDEX),
+                where("hasKey", JsonbDSL.hasKey(data, "rare"), GIN_INDEX),
+                where("hasAnyKey", JsonbDSL.hasAnyKey(data, "rare", "missing"), GIN_INDEX),
+                where("hasAllKeys", JsonbDSL.hasAllKeys(data, "rare", "id"), GIN_INDEX),
+                where("fieldByKeyText", JsonbDSL.fieldByKeyText(data, "category").eq("c42"), "json_perf_test_category"),
+                where("objectAtPathText", JsonbDSL.objectAtPathText(data, "attributes", "color").eq("rare"),
+                        "json_perf_test_color_path"),
+                where("extractPathText", JsonbDSL.extractPathText(data, "attributes", "color").eq("rare"),
+                        "json_perf_test_color_extract"),
+
+                select("arrayElement", JsonbDSL.arrayElement(tags, 1)),
+                select("arrayElementText", JsonbDSL.arrayElementText(tags, 1)),
+                select("fieldByKey", JsonbDSL.fieldByKey(data, "attributes")),
+                select("objectAtPath", JsonbDSL.objectAtPath(data, "attributes", "size")),
+                select("concat", JsonbDSL.concat(data, JsonbDSL.field("{\"extra\": 1}"))),
+                select("delete", JsonbDSL.delete(data, "text")),
+                select("deleteKeys", JsonbDSL.delete(data, "text", "tags")),
+                select("deleteElement", JsonbDSL.deleteElement(tags, 0)),
+                select("deletePath", JsonbDSL.deletePath(data, "attributes", "color")),
+                select("arrayLength", JsonbDSL.arrayLength(JsonbDSL.fieldByKey(data, "tags"))),
+                select("arraySlice", JsonbDSL.arraySlice(JsonbDSL.fieldByKey(data, "tags"), 1, 3)),
+                select("extractPath", JsonbDSL.extractPath(data, "attributes", "color")),
+                select("typeOf", JsonbDSL.typeOf(data)),
+                select("stripNulls", JsonbDSL.stripNulls(data)),
+                select("pretty", JsonbDSL.pretty(data))
+        );
+    }
+
+    private static Object[] where(String name, Condition condition, String expectedIndex) {
+        return new Object[]{name, dsl.select(DSL.field(DSL.name("id"))).from(table).where(condition), expectedIndex};
+    }
+
+    private static Object[] select(String name, Field<?> field) {
+        return new Object[]{name, dsl.select(field).from(table), null};
+    }
+
+    @Test
+    public void explain() throws IOException {
+        String json = dsl.resultQuery("explain (analyze, buffers, format json) {0}", query).fetchOne(0, String.class);
+        JsonNode explain = om.readTree(json).get(0);
+        JsonNode plan = explain.get("Plan");
+
+        List<String> nodes = new ArrayList<>();
+        List<String> indexes = new ArrayList<>();
+        collect(plan, nodes, indexes);
+
+        ObjectNode result = om.createObjectNode()
+                .put("name", testName)
+                .put("sql", dsl.renderInlined(query))
+                .put("planningTimeMs", explain.get("Planning Time").asDouble())
+                .put("executionTimeMs", explain.get("Execution Time").asDouble())
+                .put("rows", plan.get("Actual Rows").asLong())
+                .put("sharedHitBlocks", plan.get("Shared Hit Blocks").asLong())
+                .put("sharedReadBlocks", plan.get("Shared Read Blocks").asLong());
+        result.set("nodes", om.valueToTree(nodes));
+        result.set("indexes", om.valueToTree(indexes));
+        synchronized (results) {
+            results.add(result);
+        }
+
+        if (expectedIndex == null) {
+            assertTrue("Expected " + SEQ_SCAN + " in " + nodes, nodes.contains(SEQ_SCAN));
+        } else {
+            assertTrue("Expected index " + expectedIndex + " to be used, got " + indexes + " in " + nodes,
+                    indexes.contains(expectedIndex));
+            assertFalse("Expected no " + SEQ_SCAN + " in " + nodes, nodes.contains(SEQ_SCAN));
+        }
+    }
+
+    private static void collect(JsonNode plan, List<String> nodes, List<String> indexes) {
+        nodes.add(plan.get("Node Type").asText());
+        if (plan.has("Index Name")) {
+            indexes.add(plan.get("Index Name").asText());
+        }
+        if (plan.has("Plans")) {
+            for (JsonNode child : plan.get("Plans")) {
+                collect(child, nodes, indexes);
+            }
+        }
+    }
+
+    @AfterClass
+    public static void writeReport() throws IOException {
+        String path = System.getProperty("perf.report", "target/perf-report/jsonb-dsl-explain.json");
+        File file = new File(path);
+        file.getParentFile().mkdirs();
+
+        ObjectNode report = om.createObjectNode()
+                .put("version", System.getProperty("perf.version", "unknown"))
+                .put("timestamp", Instant.now().toString())
+                .put("serverVersion", dsl.fetchOne("show server_version").get(0, String.class))
+                .put("rows", dsl.fetchCount(table));
+        ArrayNode operators = report.putArray("operators");
+        synchronized (results) {
+            operators.addAll(results);
+        }
+        om.writerWithDefaultPrettyPrinter().writeValue(file, report);
+    }
+}
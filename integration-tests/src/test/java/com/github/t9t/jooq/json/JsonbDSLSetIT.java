@@ -0,0 +1,21 @@
+package com.github.t9t.jooq.json;
+
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.t9t.jooq.json.JsonbDSL.field;
+import static com.github.t9t.jooq.json.JsonbDSL.set;
+
+public class JsonbDSLSetIT extends AbstractJsonDSLTest {
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> params() {
+        return generateParams("set", Arrays.asList(
+                btest("replace").selecting(set(field("{\"a\": 10, \"b\": 20}"), field("11"), "a")).expectJsonb("{\"a\": 11, \"b\": 20}"),
+                btest("add").selecting(set(field("{\"a\": {\"b\": 1}}"), field("[2]"), "a", "c")).expectJsonb("{\"a\": {\"b\": 1, \"c\": [2]}}"),
+                btest("array").selecting(set(field("[\"a\", 1, \"b\"]"), field("{\"x\": null}"), "1")).expectJsonb("[\"a\", {\"x\": null}, \"b\"]"),
+                btest("missingParent").selecting(set(field("{\"a\": 10}"), field("1"), "x", "y")).expectJsonb("{\"a\": 10}")
+        ));
+    }
+}
@@ -0,0 +1,267 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.DSLContext;
+import org.jooq.ExecuteContext;
+import org.jooq.JSONB;
+import org.jooq.Record2;
+import org.jooq.SQLDialect;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultExecuteListener;
+import org.jooq.impl.DefaultExecuteListenerProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.github.t9t.jooq.generated.Tables.JSON_DOCUMENT_TEST;
+import static com.github.t9t.jooq.generated.Tables.JSON_EVENT_TEST;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JsonbDocumentStoreIT {
+    private final DSLContext dsl = DSL.using(TestDb.createDataSource(), SQLDialect.POSTGRES);
+    private final JsonbDocumentStore store = new JsonbDocumentStore(dsl, JSON_DOCUMENT_TEST, JSON_DOCUMENT_TEST.HASH,
+            JSON_DOCUMENT_TEST.DATA);
+
+    @Before
+    public void setUp() {
+        dsl.deleteFrom(JSON_EVENT_TEST).execute();
+        dsl.deleteFrom(JSON_DOCUMENT_TEST).execute();
+    }
+
+    @Test
+    public void storesEqualDocumentsOnce() {
+        byte[] a = store.add(JSONB.valueOf("{\"type\": \"click\", \"x\": 1.0}"));
+        byte[] b = store.add(JSONB.valueOf("{\"x\":1,\"type\":\"click\"}"));
+        byte[] c = store.add(JSONB.valueOf("{\"type\": \"scroll\"}"));
+
+        assertArrayEquals(a, b);
+        assertFalse(Arrays.equals(a, c));
+        assertEquals(32, a.length);
+        assertEquals(2, store.pending());
+
+        assertEquals(2, store.flush());
+        assertEquals(0, store.pending());
+        assertEquals(2, dsl.fetchCount(JSON_DOCUMENT_TEST));
+    }
+
+    @Test
+    public void skipsStoredDocuments() {
+        store.add(JSONB.valueOf("{\"type\": \"click\"}"));
+        assertEquals(1, store.flush());
+
+        store.add(JSONB.valueOf("{\"type\": \"click\"}"));
+        store.add(JSONB.valueOf("{\"type\": \"scroll\"}"));
+        assertEquals(1, store.flush());
+        assertEquals(0, store.flush());
+        assertEquals(2, dsl.fetchCount(JSON_DOCUMENT_TEST));
+    }
+
+    @Test
+    public void storesInBatches() {
+        store.maxBatchSize(7);
+        for (int i = 0; i < 50; i++) {
+            store.add(JSONB.valueOf("{\"i\": " + (i % 25) + "}"));
+        }
+
+        assertEquals(25, store.flush());
+        assertEquals(25, dsl.fetchCount(JSON_DOCUMENT_TEST));
+    }
+
+    @Test
+    public void joinsDocuments() {
+        insertEvent("one", "{\"type\": \"click\", \"x\": 1}");
+        insertEvent("two", "{\"x\": 1, \"type\": \"click\"}");
+        insertEvent("three", "{\"type\": \"scroll\"}");
+        insertEvent("four", null);
+
+        List<String> events = dsl.select(JSON_EVENT_TEST.NAME, store.document())
+                .from(store.join(JSON_EVENT_TEST, JSON_EVENT_TEST.PAYLOAD_HASH))
+                .orderBy(JSON_EVENT_TEST.ID)
+                .fetch()
+                .stream()
+                .map(JsonbDocumentStoreIT::format)
+                .collect(Collectors.toList());
+
+        assertEquals("[one={\"x\": 1, \"type\": \"click\"}, two={\"x\": 1, \"type\": \"click\"}, "
+                + "three={\"type\": \"scroll\"}, four=null]", events.toString());
+        assertEquals(2, dsl.fetchCount(JSON_DOCUMENT_TEST));
+    }
+
+    @Test
+    public void hashMatchesAdd() {
+        byte[] hash = JsonbDocumentStore.hash(JSONB.valueOf("{\"b\": [1, 2], \"a\": \"é\"}"));
+
+        assertArrayEquals(hash, store.add(JSONB.valueOf("{\"a\":\"é\",\"b\":[1,2]}")));
+        assertNull(JsonbDocumentStore.hash(null));
+        assertNull(store.add(null));
+        assertEquals(1, store.pending());
+    }
+
+    @Test
+    public void keepsDocumentsWhenFlushFails() {
+        JsonbDocumentStore broken = new JsonbDocumentStore(dsl, JSON_DOCUMENT_TEST,
+                DSL.field(DSL.name("no_such_column"), byte[].class), JSON_DOCUMENT_TEST.DATA);
+        broken.add(JSONB.valueOf("{\"type\": \"click\"}"));
+        try {
+            broken.flush();
+            fail("Expected flush to fail");
+        } catch (DataAccessException e) {
+            assertEquals(1, broken.pending());
+        }
+    }
+
+    @Test
+    public void storesDocumentsOfConcurrentFlush() throws Exception {
+        CountDownLatch executing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        DSLContext blocking = DSL.using(dsl.configuration().derive(new DefaultExecuteListenerProvider(
+                new DefaultExecuteListener() {
+                    @Override
+                    public void executeStart(ExecuteContext ctx) {
+                        executing.countDown();
+                        try {
+                            release.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                })));
+        byte[] hash = store.add(JSONB.valueOf("{\"type\": \"click\"}"));
+        CompletableFuture<Integer> other = CompletableFuture.supplyAsync(() -> store.flush(blocking));
+        assertTrue(executing.await(5, TimeUnit.SECONDS));
+
+        // The other flush took the document but did not store it yet
+        assertEquals(1, store.flush());
+        dsl.insertInto(JSON_EVENT_TEST, JSON_EVENT_TEST.NAME, JSON_EVENT_TEST.PAYLOAD_HASH).values("one", hash)
+                .execute();
+        release.countDown();
+        assertEquals(Integer.valueOf(0), other.get(5, TimeUnit.SECONDS));
+        assertEquals(1, dsl.fetchCount(JSON_DOCUMENT_TEST));
+    }
+
+    @Test
+    public void flushesInTransaction() {
+        try {
+            dsl.transaction(configuration -> {
+                DSLContext transaction = DSL.using(configuration);
+                byte[] hash = store.add(JSONB.valueOf("{\"type\": \"click\"}"));
+                assertEquals(1, store.flush(transaction));
+                transaction.insertInto(JSON_EVENT_TEST, JSON_EVENT_TEST.NAME, JSON_EVENT_TEST.PAYLOAD_HASH)
+                        .values("one", hash)
+                        .execute();
+                assertEquals(1, transaction.fetchCount(JSON_EVENT_TEST));
+                throw new IllegalStateException("rollback");
+            });
+            fail("Expected transaction to fail");
+        } catch (IllegalStateException e) {
+            assertEquals("rollback", e.getMessage());
+        }
+
+        assertEquals(0, dsl.fetchCount(JSON_DOCUMENT_TEST));
+        assertEquals(0, dsl.fetchCount(JSON_EVENT_TEST));
+    }
+
+    @Test
+    public void keepsDocumentsOfRolledBackTransactionPending() {
+        DSLContext installed = DSL.using(store.install(dsl.configuration()));
+        store.add(JSONB.valueOf("{\"type\": \"click\"}"));
+        try {
+            installed.transaction(configuration -> {
+                assertEquals(1, store.flush(DSL.using(configuration)));
+                throw new IllegalStateException("rollback");
+            });
+            fail("Expected transaction to fail");
+        } catch (IllegalStateException e) {
+            assertEquals("rollback", e.getMessage());
+        }
+
+        assertEquals(1, store.pending());
+        assertEquals(1, store.flush());
+        assertEquals(1, dsl.fetchCount(JSON_DOCUMENT_TEST));
+    }
+
+    @Test
+    public void keepsDocumentsOfRolledBackSavepointPending() {
+        DSLContext installed = DSL.using(store.install(dsl.configuration()));
+        installed.transaction(configuration -> {
+            store.add(JSONB.valueOf("{\"type\": \"click\"}"));
+            try {
+                DSL.using(configuration).transaction(nested -> {
+                    assertEquals(1, store.flush(DSL.using(nested)));
+                    throw new IllegalStateException("rollback");
+                });
+                fail("Expected transaction to fail");
+            } catch (IllegalStateException e) {
+                assertEquals("rollback", e.getMessage());
+            }
+            assertEquals(1, store.pending());
+
+            store.add(JSONB.valueOf("{\"type\": \"scroll\"}"));
+            DSL.using(configuration).transaction(nested -> assertEquals(2, store.flush(DSL.using(nested))));
+        });
+
+        assertEquals(0, store.pending());
+        assertEquals(2, dsl.fetchCount(JSON_DOCUMENT_TEST));
+    }
+
+    @Test
+    public void storesDocumentsOfUncommittedTransaction() throws Exception {
+        DSLContext installed = DSL.using(store.install(dsl.configuration()));
+        CountDownLatch flushed = new CountDownLatch(1);
+        CountDownLatch rollback = new CountDownLatch(1);
+        byte[] hash = store.add(JSONB.valueOf("{\"type\": \"click\"}"));
+        CompletableFuture<Void> other = CompletableFuture.runAsync(() -> installed.transaction(configuration -> {
+            store.flush(DSL.using(configuration));
+            flushed.countDown();
+            rollback.await(5, TimeUnit.SECONDS);
+            throw new IllegalStateException("rollback");
+        }));
+        assertTrue(flushed.await(5, TimeUnit.SECONDS));
+
+        // Waits for the other transaction, as it inserted the same document
+        CompletableFuture<Integer> flush = CompletableFuture.supplyAsync(store::flush);
+        Thread.sleep(200);
+        assertFalse(flush.isDone());
+        rollback.countDown();
+
+        assertEquals(Integer.valueOf(1), flush.get(5, TimeUnit.SECONDS));
+        dsl.insertInto(JSON_EVENT_TEST, JSON_EVENT_TEST.NAME, JSON_EVENT_TEST.PAYLOAD_HASH).values("one", hash)
+                .execute();
+        try {
+            other.get(5, TimeUnit.SECONDS);
+            fail("Expected transaction to fail");
+        } catch (ExecutionException e) {
+            assertEquals("rollback", e.getCause().getMessage());
+        }
+        // Pending again after the rollback, but already stored
+        assertEquals(0, store.flush());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidJson() {
+        store.add(JSONB.valueOf("{\"type\": "));
+    }
+
+    private void insertEvent(String name, String payload) {
+        byte[] hash = store.add(payload == null ? null : JSONB.valueOf(payload));
+        store.flush();
+        dsl.insertInto(JSON_EVENT_TEST, JSON_EVENT_TEST.NAME, JSON_EVENT_TEST.PAYLOAD_HASH).values(name, hash)
+                .execute();
+    }
+
+    private static String format(Record2<String, JSONB> record) {
+        return record.value1() + "=" + (record.value2() == null ? null : record.value2().data());
+    }
+}
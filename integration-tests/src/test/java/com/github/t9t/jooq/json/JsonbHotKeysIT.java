@@ -0,0 +1,144 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.JSONB;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static com.github.t9t.jooq.generated.Tables.JSON_HOT_TEST;
+import static com.github.t9t.jooq.generated.Tables.JSON_TEST;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class JsonbHotKeysIT {
+    private final DSLContext dsl = DSL.using(TestDb.createDataSource(), SQLDialect.POSTGRES);
+    private final JsonbHotKeys hotKeys = new JsonbHotKeys(JSON_HOT_TEST.DATA, JSON_HOT_TEST.DATA_HOT,
+            "views", "status");
+
+    @Before
+    public void setUp() {
+        dsl.deleteFrom(JSON_HOT_TEST).execute();
+    }
+
+    @Test
+    public void splitsDocuments() {
+        insert("doc", "{\"views\": 1, \"status\": \"new\", \"body\": {\"text\": \"large\"}}");
+        insert("cold", "{\"body\": \"only cold\"}");
+        insert("array", "[1, 2]");
+        insert("null", null);
+
+        assertEquals("{\"body\": {\"text\": \"large\"}}", select(JSON_HOT_TEST.DATA, "doc"));
+        assertEquals("{\"views\": 1, \"status\": \"new\"}", select(JSON_HOT_TEST.DATA_HOT, "doc"));
+        assertNull(select(JSON_HOT_TEST.DATA_HOT, "cold"));
+        assertEquals("[1, 2]", select(JSON_HOT_TEST.DATA, "array"));
+        assertNull(select(JSON_HOT_TEST.DATA_HOT, "array"));
+        assertNull(select(JSON_HOT_TEST.DATA, "null"));
+    }
+
+    @Test
+    public void mergesDocuments() {
+        insert("doc", "{\"views\": 1, \"status\": \"new\", \"body\": {\"text\": \"large\"}}");
+        insert("cold", "{\"body\": \"only cold\"}");
+        insert("null", null);
+
+        assertEquals("{\"body\": {\"text\": \"large\"}, \"views\": 1, \"status\": \"new\"}",
+                select(hotKeys.document(), "doc"));
+        assertEquals("{\"body\": \"only cold\"}", select(hotKeys.document(), "cold"));
+        assertNull(select(hotKeys.document(), "null"));
+    }
+
+    @Test
+    public void readsKeysFromTheirColumn() {
+        insert("doc", "{\"views\": 1, \"status\": \"new\", \"body\": {\"text\": \"large\"}}");
+
+        assertEquals("\"new\"", select(hotKeys.fieldByKey("status"), "doc"));
+        assertEquals("{\"text\": \"large\"}", select(hotKeys.fieldByKey("body"), "doc"));
+        assertEquals("new", dsl.select(hotKeys.fieldByKeyText("status")).from(JSON_HOT_TEST).fetchOne().value1());
+        assertEquals("doc", dsl.select(JSON_HOT_TEST.NAME).from(JSON_HOT_TEST)
+                .where(hotKeys.fieldByKeyText("views").eq("1")).fetchOne().value1());
+        assertEquals("[views, status]", hotKeys.keys().toString());
+    }
+
+    @Test
+    public void routesUpdates() {
+        insert("doc", "{\"views\": 1, \"status\": \"new\", \"body\": {\"text\": \"large\"}}");
+        insert("cold", "{\"body\": {}}");
+
+        dsl.update(JSON_HOT_TEST).set(hotKeys.set(JsonbDSL.field("2"), "views")).execute();
+        dsl.update(JSON_HOT_TEST).set(hotKeys.set(JsonbDSL.field("\"x\""), "body", "text"))
+                .where(JSON_HOT_TEST.NAME.eq("cold")).execute();
+
+        assertEquals("{\"body\": {\"text\": \"large\"}}", select(JSON_HOT_TEST.DATA, "doc"));
+        assertEquals("{\"views\": 2, \"status\": \"new\"}", select(JSON_HOT_TEST.DATA_HOT, "doc"));
+        assertEquals("{\"body\": {\"text\": \"x\"}}", select(JSON_HOT_TEST.DATA, "cold"));
+        assertEquals("{\"views\": 2}", select(JSON_HOT_TEST.DATA_HOT, "cold"));
+        assertEquals("{\"body\": {\"text\": \"x\"}, \"views\": 2}", select(hotKeys.document(), "cold"));
+    }
+
+    @Test
+    public void movesExistingKeys() {
+        dsl.insertInto(JSON_HOT_TEST, JSON_HOT_TEST.NAME, JSON_HOT_TEST.DATA, JSON_HOT_TEST.DATA_HOT)
+                .values("legacy", JSONB.valueOf("{\"views\": 5, \"body\": \"text\"}"), null)
+                .values("partial", JSONB.valueOf("{\"status\": \"old\"}"), JSONB.valueOf("{\"views\": 3}"))
+                .values("cold", JSONB.valueOf("{\"body\": \"text\"}"), null)
+                .values("array", JSONB.valueOf("[\"views\"]"), null)
+                .execute();
+
+        hotKeys.ddl().forEach(dsl::execute);
+        // Executing it again does nothing
+        hotKeys.ddl().forEach(dsl::execute);
+
+        assertEquals("{\"body\": \"text\"}", select(JSON_HOT_TEST.DATA, "legacy"));
+        assertEquals("{\"views\": 5}", select(JSON_HOT_TEST.DATA_HOT, "legacy"));
+        assertEquals("{}", select(JSON_HOT_TEST.DATA, "partial"));
+        assertEquals("{\"views\": 3, \"status\": \"old\"}", select(JSON_HOT_TEST.DATA_HOT, "partial"));
+        assertEquals("{\"body\": \"text\"}", select(JSON_HOT_TEST.DATA, "cold"));
+        assertNull(select(JSON_HOT_TEST.DATA_HOT, "cold"));
+        assertEquals("[\"views\"]", select(JSON_HOT_TEST.DATA, "array"));
+    }
+
+    @Test
+    public void bindsDocumentOncePerColumn() {
+        JSONB document = JSONB.valueOf("{\"views\": 1, \"body\": \"text\"}");
+        List<Object> values = dsl.insertInto(JSON_HOT_TEST)
+                .set(JSON_HOT_TEST.NAME, "doc")
+                .set(hotKeys.split(DSL.val(document)))
+                .getBindValues();
+
+        assertEquals(2, values.stream().filter(document::equals).count());
+    }
+
+    @Test
+    public void keepsHotValuesWhenMovingKeys() {
+        dsl.insertInto(JSON_HOT_TEST, JSON_HOT_TEST.NAME, JSON_HOT_TEST.DATA, JSON_HOT_TEST.DATA_HOT)
+                .values("stale", JSONB.valueOf("{\"views\": 1, \"body\": \"text\"}"), JSONB.valueOf("{\"views\": 7}"))
+                .execute();
+
+        hotKeys.ddl().forEach(dsl::execute);
+
+        assertEquals("{\"body\": \"text\"}", select(JSON_HOT_TEST.DATA, "stale"));
+        assertEquals("{\"views\": 7}", select(JSON_HOT_TEST.DATA_HOT, "stale"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsColumnOfOtherTable() {
+        new JsonbHotKeys(JSON_HOT_TEST.DATA, JSON_TEST.DATAB, "views");
+    }
+
+    private String select(Field<JSONB> field, String name) {
+        JSONB value = dsl.select(field).from(JSON_HOT_TEST).where(JSON_HOT_TEST.NAME.eq(name)).fetchOne().value1();
+        return value == null ? null : value.data();
+    }
+
+    private void insert(String name, String document) {
+        dsl.insertInto(JSON_HOT_TEST)
+                .set(JSON_HOT_TEST.NAME, name)
+                .set(hotKeys.split(document == null ? DSL.inline(null, JSONB.class) : JsonbDSL.field(document)))
+                .execute();
+    }
+}
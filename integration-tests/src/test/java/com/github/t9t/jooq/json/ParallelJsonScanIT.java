@@ -0,0 +1,148 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.DSLContext;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.Record2;
+import org.jooq.SQLDialect;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static com.github.t9t.jooq.generated.Tables.JSON_TEST;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelJsonScanIT {
+    private static final int ROWS = 500;
+
+    private final DSLContext dsl = DSL.using(TestDb.createDataSource(), SQLDialect.POSTGRES);
+
+    @Before
+    public void setUp() {
+        dsl.deleteFrom(JSON_TEST).execute();
+        dsl.insertInto(JSON_TEST, JSON_TEST.NAME, JSON_TEST.DATA, JSON_TEST.DATAB)
+                .select(DSL.select(
+                        DSL.field("'row-' || i", String.class),
+                        DSL.field("json_build_object('i', i)", JSON.class),
+                        DSL.field("jsonb_build_object('i', i)", JSONB.class))
+                        .from("generate_series(1, " + ROWS + ") i"))
+                .execute();
+    }
+
+    @Test
+    public void scansAllRowsById() {
+        try (Stream<Record2<Long, String>> rows = ParallelJsonScan.byId(JSON_TEST, JSON_TEST.ID)
+                .parallelism(3)
+                .partitions(7)
+                .stream(dsl, range -> DSL.select(JSON_TEST.ID, JsonbDSL.fieldByKeyText(JSON_TEST.DATAB, "i"))
+                        .from(JSON_TEST)
+                        .where(range))) {
+            Set<String> values = rows.map(Record2::value2).collect(Collectors.toSet());
+
+            assertEquals(LongStream.rangeClosed(1, ROWS).mapToObj(String::valueOf).collect(Collectors.toSet()), values);
+        }
+    }
+
+    @Test
+    public void orderedScanKeepsRangeOrder() {
+        try (Stream<Record2<Long, String>> rows = ParallelJsonScan.byId(JSON_TEST, JSON_TEST.ID)
+                .parallelism(4)
+                .partitions(16)
+                .ordered(true)
+                .stream(dsl, range -> DSL.select(JSON_TEST.ID, JsonDSL.fieldByKeyText(JSON_TEST.DATA, "i"))
+                        .from(JSON_TEST)
+                        .where(range)
+                        .orderBy(JSON_TEST.ID))) {
+            List<Long> ids = rows.map(Record2::value1).collect(Collectors.toList());
+
+            assertEquals(dsl.select(JSON_TEST.ID).from(JSON_TEST).orderBy(JSON_TEST.ID).fetch(JSON_TEST.ID), ids);
+        }
+    }
+
+    @Test
+    public void scansAllRowsByCtid() {
+        List<String> ranges = ParallelJsonScan.byCtid(JSON_TEST).partitions(3).ranges(dsl).stream()
+                .map(Object::toString)
+                .collect(Collectors.toList());
+        assertTrue(ranges.toString(), ranges.size() >= 1 && ranges.size() <= 3);
+
+        try (Stream<Record2<Long, String>> rows = ParallelJsonScan.byCtid(JSON_TEST)
+                .parallelism(2)
+                .partitions(3)
+                .stream(dsl, range -> DSL.select(JSON_TEST.ID, JSON_TEST.NAME).from(JSON_TEST).where(range))) {
+            assertEquals(ROWS, rows.map(Record2::value2).distinct().count());
+        }
+    }
+
+    @Test
+    public void emptyTableYieldsNoRanges() {
+        dsl.deleteFrom(JSON_TEST).execute();
+
+        assertTrue(ParallelJsonScan.byId(JSON_TEST, JSON_TEST.ID).ranges(dsl).isEmpty());
+        try (Stream<Record2<Long, String>> rows = ParallelJsonScan.byId(JSON_TEST, JSON_TEST.ID)
+                .stream(dsl, range -> DSL.select(JSON_TEST.ID, JSON_TEST.NAME).from(JSON_TEST).where(range))) {
+            assertEquals(0, rows.count());
+        }
+    }
+
+    @Test
+    public void boundsRangesInFlight() throws Exception {
+        AtomicInteger fetched = new AtomicInteger();
+        try (Stream<Record2<Long, String>> rows = ParallelJsonScan.byId(JSON_TEST, JSON_TEST.ID)
+                .parallelism(2)
+                .partitions(10)
+                .stream(dsl, range -> {
+                    fetched.incrementAndGet();
+                    return DSL.select(JSON_TEST.ID, JSON_TEST.NAME).from(JSON_TEST).where(range);
+                })) {
+            Iterator<Record2<Long, String>> iterator = rows.iterator();
+            iterator.next();
+            Thread.sleep(300);
+
+            // The range being consumed still counts as in flight
+            assertEquals(2, fetched.get());
+        }
+    }
+
+    @Test
+    public void shutsDownExecutorWhenConsumed() throws Exception {
+        Stream<Record2<Long, String>> rows = ParallelJsonScan.byId(JSON_TEST, JSON_TEST.ID)
+                .parallelism(3)
+                .stream(dsl, range -> DSL.select(JSON_TEST.ID, JSON_TEST.NAME).from(JSON_TEST).where(range));
+
+        assertEquals(ROWS, rows.count());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scanThreads() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, scanThreads());
+    }
+
+    @Test(expected = DataAccessException.class)
+    public void rangeErrorsAreThrownFromStream() {
+        try (Stream<Record2<Long, Integer>> rows = ParallelJsonScan.byId(JSON_TEST, JSON_TEST.ID)
+                .parallelism(2)
+                .stream(dsl, range -> DSL.select(JSON_TEST.ID, JsonbDSL.arrayLength(JSON_TEST.DATAB))
+                        .from(JSON_TEST)
+                        .where(range))) {
+            rows.count();
+        }
+    }
+
+    private static long scanThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("parallel-json-scan"))
+                .count();
+    }
+}
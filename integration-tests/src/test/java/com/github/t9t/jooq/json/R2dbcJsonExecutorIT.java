@@ -0,0 +1,140 @@
+package com.github.t9t.jooq.json;
+
+import com.github.t9t.jooq.json.r2dbc.R2dbcJsonExecutor;
+import org.jooq.DSLContext;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.Record1;
+import org.jooq.Record3;
+import org.jooq.SQLDialect;
+import org.jooq.Select;
+import org.jooq.impl.DSL;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.t9t.jooq.generated.Tables.JSON_TEST;
+import static org.junit.Assert.assertEquals;
+
+public class R2dbcJsonExecutorIT {
+    private final DSLContext dsl = DSL.using(TestDb.createDataSource(), SQLDialect.POSTGRES);
+    private final R2dbcJsonExecutor executor = new R2dbcJsonExecutor(TestDb.createConnectionFactory());
+
+    @Before
+    public void setUp() {
+        dsl.deleteFrom(JSON_TEST).execute();
+        dsl.insertInto(JSON_TEST)
+                .columns(JSON_TEST.NAME, JSON_TEST.DATA, JSON_TEST.DATAB)
+                .values("one", JSON.valueOf("{\"a\": {\"b\": 1}, \"arr\": [1, 2]}"), JSONB.valueOf("{\"a\": {\"b\": 1}}"))
+                .values("two", JSON.valueOf("{\"a\": {\"b\": 2}, \"arr\": []}"), JSONB.valueOf("{\"a\": {\"b\": 2}}"))
+                .values("three", null, JSONB.valueOf("{\"c\": 3}"))
+                .execute();
+    }
+
+    @Test
+    public void fetchesJsonbValues() {
+        List<JSONB> values = Flux.from(executor.fetchValues(DSL.select(JsonbDSL.fieldByKey(JSON_TEST.DATAB, "a"))
+                .from(JSON_TEST)
+                .where(JsonbDSL.hasKey(JSON_TEST.DATAB, "a"))
+                .orderBy(JSON_TEST.NAME)))
+                .collectList().block();
+
+        assertEquals(Arrays.asList(JSONB.valueOf("{\"b\": 1}"), JSONB.valueOf("{\"b\": 2}")), values);
+    }
+
+    @Test
+    public void fetchesRecords() {
+        List<Record3<String, JSON, Integer>> records = Flux.from(executor.fetch(DSL.select(JSON_TEST.NAME,
+                JsonDSL.objectAtPath(JSON_TEST.DATA, "a", "b"), JsonDSL.arrayLength(JsonDSL.fieldByKey(JSON_TEST.DATA, "arr")))
+                .from(JSON_TEST)
+                .orderBy(JSON_TEST.NAME)))
+                .collectList().block();
+
+        assertEquals(3, records.size());
+        assertEquals("one", records.get(0).value1());
+        assertEquals(JSON.valueOf("1"), records.get(0).value2());
+        assertEquals(Integer.valueOf(2), records.get(0).value3());
+        assertEquals("three", records.get(1).value1());
+        assertEquals(null, records.get(1).value2());
+        assertEquals(Integer.valueOf(0), records.get(2).value3());
+    }
+
+    @Test
+    public void skipsNullValues() {
+        List<String> values = Flux.from(executor.fetchValues(DSL.select(JsonbDSL.objectAtPathText(JSON_TEST.DATAB, "a", "b"))
+                .from(JSON_TEST)
+                .orderBy(JSON_TEST.NAME)))
+                .collectList().block();
+
+        assertEquals(Arrays.asList("1", "2"), values);
+    }
+
+    @Test
+    public void fetchesOnDemand() {
+        List<String> values = Flux.from(executor.fetchValues(DSL.select(JSON_TEST.NAME).from(JSON_TEST).orderBy(JSON_TEST.NAME)))
+                .limitRate(1)
+                .take(2)
+                .collectList().block();
+
+        assertEquals(Arrays.asList("one", "three"), values);
+    }
+
+    @Test
+    public void executesUpdates() {
+        Integer inserted = Mono.from(executor.execute(dsl.insertInto(JSON_TEST)
+                .columns(JSON_TEST.NAME, JSON_TEST.DATA, JSON_TEST.DATAB)
+                .values("four", JSON.valueOf("{\"d\": 4}"), null)))
+                .block();
+        Integer updated = Mono.from(executor.execute(dsl.update(JSON_TEST)
+                .set(JSON_TEST.DATAB, JsonbDSL.concat(JSON_TEST.DATAB, JsonbDSL.field("{\"e\": 5}")))
+                .where(JsonbDSL.hasAnyKey(JSON_TEST.DATAB, "a", "c"))))
+                .block();
+
+        assertEquals(Integer.valueOf(1), inserted);
+        assertEquals(Integer.valueOf(3), updated);
+        assertEquals(JSON.valueOf("{\"d\": 4}"), dsl.select(JSON_TEST.DATA).from(JSON_TEST).where(JSON_TEST.NAME.eq("four")).fetchOne().value1());
+        assertEquals(3, dsl.fetchCount(JSON_TEST, JsonbDSL.hasKey(JSON_TEST.DATAB, "e")));
+    }
+
+    @Test
+    public void bindsNamedParametersByPosition() {
+        List<String> values = Flux.from(executor.fetchValues(DSL.select(JSON_TEST.NAME)
+                .from(JSON_TEST)
+                .where(JSON_TEST.NAME.in(DSL.param("first", "one"), DSL.val("two")))
+                .and(JsonbDSL.fieldByKey(JSON_TEST.DATAB, "a").isNotNull())
+                .orderBy(JSON_TEST.NAME)))
+                .collectList().block();
+
+        assertEquals(Arrays.asList("one", "two"), values);
+        assertEquals("select \"jooq\".\"json_test\".\"name\" from \"jooq\".\"json_test\" "
+                        + "where \"jooq\".\"json_test\".\"name\" = $1",
+                executor.render(DSL.select(JSON_TEST.NAME).from(JSON_TEST).where(JSON_TEST.NAME.eq(DSL.param("name", "")))));
+    }
+
+    @Test
+    public void rendersPostgresPlaceholders() {
+        assertEquals("select ((\"jooq\".\"json_test\".\"datab\" ? $1)) from \"jooq\".\"json_test\"",
+                executor.render(DSL.select(DSL.field(JsonbDSL.hasKey(JSON_TEST.DATAB, "a"))).from(JSON_TEST)));
+    }
+
+    @Test
+    public void keepsQuestionMarksInComments() {
+        Select<Record1<String>> query = DSL.select(DSL.field("/* ? /* ? */ ? */ {0} -- ?\n", String.class,
+                DSL.val("a")));
+
+        assertEquals("select /* ? /* ? */ ? */ $1 -- ?\n", executor.render(query));
+        assertEquals(Arrays.asList("a"), Flux.from(executor.fetchValues(query)).collectList().block());
+    }
+
+    @Test
+    public void keepsQuestionMarksInDollarQuotes() {
+        Select<Record1<String>> query = DSL.select(DSL.field("$$?$$ || $q$?$q$", String.class));
+
+        assertEquals("select $$?$$ || $q$?$q$", executor.render(query));
+        assertEquals(Arrays.asList("??"), Flux.from(executor.fetchValues(query)).collectList().block());
+    }
+}
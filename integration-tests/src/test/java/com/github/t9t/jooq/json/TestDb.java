@@ -1,19 +1,42 @@
 package com.github.t9t.jooq.json;
 
+import io.r2dbc.postgresql.PostgresqlConnectionConfiguration;
+import io.r2dbc.postgresql.PostgresqlConnectionFactory;
+import io.r2dbc.spi.ConnectionFactory;
 import org.postgresql.ds.PGSimpleDataSource;
 
 import javax.sql.DataSource;
+import java.util.Properties;
 
 final class TestDb {
+    static final String URL = "jdbc:postgresql://localhost:23719/jooq";
+
     private TestDb() {
     }
 
     static DataSource createDataSource() {
         PGSimpleDataSource ds = new PGSimpleDataSource();
-        ds.setURL("jdbc:postgresql://localhost:23719/jooq");
+        ds.setURL(URL);
         ds.setUser("jooq");
         ds.setPassword("jooq");
         return ds;
     }
 
+    static Properties createProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("user", "jooq");
+        properties.setProperty("password", "jooq");
+        return properties;
+    }
+
+    static ConnectionFactory createConnectionFactory() {
+        return new PostgresqlConnectionFactory(PostgresqlConnectionConfiguration.builder()
+                .host("localhost")
+                .port(23719)
+                .database("jooq")
+                .username("jooq")
+                .password("jooq")
+                .build());
+    }
+
 }
@@ -0,0 +1,3 @@
+comment on column jooq.json_test.data is E'@jsonPath obj.i bigint\n@jsonPath num integer\n@jsonPath obj json';
+
+comment on column jooq.json_test.datab is E'@jsonPath obj.i bigint\n@jsonPath obj.b boolean\n@jsonPath arr.0.d bigint arr_first_d\n@jsonPath str text\n@jsonPath obj jsonb';
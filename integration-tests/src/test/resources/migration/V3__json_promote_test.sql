@@ -0,0 +1,6 @@
+create table jooq.json_promote_test
+(
+    id    bigserial primary key,
+    data  json  null,
+    datab jsonb null
+);
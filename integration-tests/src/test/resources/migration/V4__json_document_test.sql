@@ -0,0 +1,12 @@
+create table jooq.json_document_test
+(
+    hash bytea primary key,
+    data jsonb not null
+);
+
+create table jooq.json_event_test
+(
+    id           bigserial primary key,
+    name         text  null,
+    payload_hash bytea null references jooq.json_document_test (hash)
+);
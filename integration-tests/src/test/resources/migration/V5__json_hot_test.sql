@@ -0,0 +1,7 @@
+create table jooq.json_hot_test
+(
+    id       bigserial primary key,
+    name     text unique not null,
+    data     jsonb       null,
+    data_hot jsonb       null
+);
@@ -0,0 +1,10 @@
+create table jooq.json_record_test
+(
+    id      bigint         not null,
+    name    text           null,
+    price   numeric(10, 2) null,
+    active  boolean        null,
+    tags    text[]         null,
+    created date           null,
+    details jsonb          null
+);
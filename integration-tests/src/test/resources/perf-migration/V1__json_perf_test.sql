@@ -0,0 +1,16 @@
+create table jooq.json_perf_test
+(
+    id   bigserial primary key,
+    data jsonb not null
+);
+
+insert into jooq.json_perf_test (data)
+select jsonb_build_object(
+               'id', i,
+               'category', 'c' || (i % 1000),
+               'tags', jsonb_build_array('t' || (i % 97), 't' || (i % 89), i % 7),
+               'attributes', jsonb_build_object('size', i % 50, 'color', 'col' || (i % 13), 'note', null),
+               'text', md5(i::text)
+           )
+           || case when i % 10000 = 0 then '{"rare": true}'::jsonb else '{}'::jsonb end
+from generate_series(1, ${perf.rows}) i;
@@ -0,0 +1,9 @@
+-- Supports @>, <@, ?, ?| and ?&
+create index json_perf_test_data_gin on jooq.json_perf_test using gin (data);
+
+-- Expression indexes for the text extraction operators and functions, matching how JsonbDSL renders them
+create index json_perf_test_category on jooq.json_perf_test ((data ->> 'category'));
+create index json_perf_test_color_path on jooq.json_perf_test ((data #>> '{attributes,color}'));
+create index json_perf_test_color_extract on jooq.json_perf_test ((jsonb_extract_path_text(data, variadic '{attributes,color}'::text[])));
+
+analyze jooq.json_perf_test;
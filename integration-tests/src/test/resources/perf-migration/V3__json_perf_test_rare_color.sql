@@ -0,0 +1,6 @@
+-- A color selective enough for the planner to prefer the color expression indexes over a (parallel) sequential scan
+update jooq.json_perf_test
+set data = jsonb_set(data, '{attributes,color}', '"rare"')
+where id % 10000 = 5000;
+
+analyze jooq.json_perf_test;
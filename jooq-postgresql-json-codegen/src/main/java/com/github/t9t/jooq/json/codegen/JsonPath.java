@@ -0,0 +1,76 @@
+package com.github.t9t.jooq.json.codegen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A path into a {@code json} or {@code jsonb} column, declared in the column comment as
+ * {@code @jsonPath <path> <type> [<name>]}, eg. {@code @jsonPath obj.i bigint} or
+ * {@code @jsonPath arr.0.d bigint first_d}.
+ */
+final class JsonPath {
+    static final String TAG = "@jsonPath";
+
+    private final List<String> segments;
+    private final JsonPathType type;
+    private final String name;
+
+    private JsonPath(List<String> segments, JsonPathType type, String name) {
+        this.segments = segments;
+        this.type = type;
+        this.name = name;
+    }
+
+    /**
+     * @param comment Column comment, can be {@code null}
+     * @return All paths declared in the comment
+     */
+    static List<JsonPath> parse(String comment) {
+        if (comment == null || !comment.contains(TAG)) {
+            return Collections.emptyList();
+        }
+
+        List<JsonPath> paths = new ArrayList<>();
+        for (String line : comment.split("\\R")) {
+            String trimmed = line.trim();
+            if (!trimmed.startsWith(TAG + " ")) {
+                continue;
+            }
+
+            String[] parts = trimmed.substring(TAG.length()).trim().split("\\s+");
+            if (parts.length < 2 || parts.length > 3) {
+                throw new IllegalArgumentException("Expected '" + TAG + " <path> <type> [<name>]', got: " + trimmed);
+            }
+            List<String> segments = Arrays.asList(parts[0].split("\\.", -1));
+            if (segments.contains("")) {
+                throw new IllegalArgumentException("Empty path segment in: " + trimmed);
+            }
+            String name = parts.length == 3 ? parts[2] : String.join("_", segments);
+            paths.add(new JsonPath(segments, JsonPathType.of(parts[1]), name));
+        }
+        return paths;
+    }
+
+    List<String> segments() {
+        return segments;
+    }
+
+    JsonPathType type() {
+        return type;
+    }
+
+    /**
+     * @return The name of the path as Java identifier suffix, eg. {@code OBJ_I}
+     */
+    String identifier() {
+        return name.replaceAll("[^A-Za-z0-9_]", "_").toUpperCase(Locale.ROOT);
+    }
+
+    @Override
+    public String toString() {
+        return String.join(".", segments);
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.t9t.jooq.json.codegen;
+
+import org.jooq.codegen.JavaGenerator;
+import org.jooq.codegen.JavaWriter;
+import org.jooq.meta.ColumnDefinition;
+import org.jooq.meta.TableDefinition;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * <p>jOOQ {@link JavaGenerator} which additionally generates a typed {@code Field} in the table class for every path
+ * declared in the comment of a {@code json} or {@code jsonb} column. Declare paths on separate lines as
+ * {@code @jsonPath <path> <type> [<name>]}, where the path segments are separated by dots (array indexes are numbers)
+ * and the type is one of {@code text}, {@code bigint}, {@code integer}, {@code numeric}, {@code double},
+ * {@code boolean} or the type of the column ({@code json}/{@code jsonb}):</p>
+ *
+ * <pre>
+ * comment on column my_table.data is E'Order data\n@jsonPath customer.id bigint\n@jsonPath items.0 jsonb first_item';
+ * </pre>
+ *
+ * <p>This generates {@code MY_TABLE.DATA_CUSTOMER_ID} ({@code Field<Long>}) and {@code MY_TABLE.DATA_FIRST_ITEM}
+ * ({@code Field<JSONB>}), built with {@code JsonbDSL.objectAtPathText} (cast to the type) and
+ * {@code JsonbDSL.objectAtPath}, once per table instance. Mistyped paths in queries then become compile errors.</p>
+ *
+ * <p>Configure it as the generator name: {@code <name>com.github.t9t.jooq.json.codegen.JsonPathGenerator</name>}.</p>
+ */
+public class JsonPathGenerator extends JavaGenerator {
+    @Override
+    protected void generateTableClassFooter(TableDefinition table, JavaWriter out) {
+        super.generateTableClassFooter(table, out);
+
+        Set<String> identifiers = new HashSet<>();
+        for (ColumnDefinition column : table.getColumns()) {
+            List<JsonPath> paths;
+            try {
+                paths = JsonPath.parse(column.getComment());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid JSON path on " + column.getQualifiedName() + ": "
+                        + e.getMessage(), e);
+            }
+            if (!paths.isEmpty()) {
+                generatePathFields(column, paths, identifiers, out);
+            }
+        }
+    }
+
+    private void generatePathFields(ColumnDefinition column, List<JsonPath> paths, Set<String> identifiers,
+                                    JavaWriter out) {
+        String columnType = column.getType().getType().toLowerCase(Locale.ROOT);
+        if (!columnType.equals("json") && !columnType.equals("jsonb")) {
+            throw new IllegalArgumentException("JSON paths can only be declared on json or jsonb columns, but "
+                    + column.getQualifiedName() + " is " + columnType);
+        }
+        boolean jsonb = columnType.equals("jsonb");
+        String dsl = out.ref(jsonb ? "com.github.t9t.jooq.json.JsonbDSL" : "com.github.t9t.jooq.json.JsonDSL");
+        String columnIdentifier = getStrategy().getJavaIdentifier(column);
+
+        for (JsonPath path : paths) {
+            JsonPathType type = path.type();
+            if (type.isJson() && type != (jsonb ? JsonPathType.JSONB : JsonPathType.JSON)) {
+                throw new IllegalArgumentException("JSON path " + path + " on " + column.getQualifiedName()
+                        + " must be of type " + columnType + ", not " + type.name().toLowerCase(Locale.ROOT));
+            }
+
+            String identifier = columnIdentifier + "_" + path.identifier();
+            if (!identifiers.add(identifier)) {
+                throw new IllegalArgumentException("Duplicate JSON path field " + identifier + " on "
+                        + column.getQualifiedName());
+            }
+
+            String arguments = path.segments().stream()
+                    .map(segment -> "\"" + segment.replace("\\", "\\\\").replace("\"", "\\\"") + "\"")
+                    .collect(Collectors.joining(", "));
+            String expression = type.isJson()
+                    ? dsl + ".objectAtPath(" + columnIdentifier + ", " + arguments + ")"
+                    : dsl + ".objectAtPathText(" + columnIdentifier + ", " + arguments + ")";
+            if (type.sqlDataType() != null) {
+                expression += ".cast(" + out.ref("org.jooq.impl.SQLDataType") + "." + type.sqlDataType() + ")";
+            }
+
+            out.println();
+            out.tab(1).javadoc("The <code>%s</code> path of <code>%s</code>.", path, column.getOutputName());
+            out.tab(1).println("public final %s<%s> %s = %s;", out.ref("org.jooq.Field"), out.ref(type.javaType()),
+                    identifier, expression);
+        }
+    }
+}
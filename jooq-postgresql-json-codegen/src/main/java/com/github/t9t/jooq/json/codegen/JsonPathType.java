@@ -0,0 +1,71 @@
+package com.github.t9t.jooq.json.codegen;
+
+import java.util.Locale;
+
+/**
+ * SQL type of a declared {@link JsonPath}, with the Java type and {@code SQLDataType} of the generated field. Values
+ * are extracted as text and cast to the type, except {@code json} and {@code jsonb}, which are extracted as is.
+ */
+enum JsonPathType {
+    TEXT("java.lang.String", null),
+    BIGINT("java.lang.Long", "BIGINT"),
+    INTEGER("java.lang.Integer", "INTEGER"),
+    NUMERIC("java.math.BigDecimal", "NUMERIC"),
+    DOUBLE("java.lang.Double", "DOUBLE"),
+    BOOLEAN("java.lang.Boolean", "BOOLEAN"),
+    JSON("org.jooq.JSON", null),
+    JSONB("org.jooq.JSONB", null);
+
+    private final String javaType;
+    private final String sqlDataType;
+
+    JsonPathType(String javaType, String sqlDataType) {
+        this.javaType = javaType;
+        this.sqlDataType = sqlDataType;
+    }
+
+    static JsonPathType of(String type) {
+        switch (type.toLowerCase(Locale.ROOT)) {
+            case "text":
+            case "varchar":
+                return TEXT;
+            case "bigint":
+            case "int8":
+                return BIGINT;
+            case "integer":
+            case "int":
+            case "int4":
+                return INTEGER;
+            case "numeric":
+            case "decimal":
+                return NUMERIC;
+            case "double":
+            case "float8":
+                return DOUBLE;
+            case "boolean":
+            case "bool":
+                return BOOLEAN;
+            case "json":
+                return JSON;
+            case "jsonb":
+                return JSONB;
+            default:
+                throw new IllegalArgumentException("Unsupported JSON path type: " + type);
+        }
+    }
+
+    String javaType() {
+        return javaType;
+    }
+
+    /**
+     * @return Name of the {@code SQLDataType} constant to cast the extracted text to, or {@code null} for no cast
+     */
+    String sqlDataType() {
+        return sqlDataType;
+    }
+
+    boolean isJson() {
+        return this == JSON || this == JSONB;
+    }
+}
@@ -0,0 +1,256 @@
+package com.github.t9t.jooq.json.r2dbc;
+
+import com.github.t9t.jooq.json.RecordedQuery;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.Statement;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.Query;
+import org.jooq.Record;
+import org.jooq.Record1;
+import org.jooq.Select;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * <p>Executes jOOQ queries, including those built with {@code JsonDSL} and {@code JsonbDSL}, over an R2DBC
+ * {@link ConnectionFactory} (typically r2dbc-postgresql) instead of JDBC, so they can be used from reactive
+ * applications without blocking a thread.</p>
+ *
+ * <p>Queries are rendered by jOOQ with JDBC {@code ?} placeholders, which are then numbered as PostgreSQL {@code $n}
+ * placeholders, so named parameters ({@link DSL#param(String, Object)}) are bound by position as well; {@link JSON}
+ * and {@link JSONB} bind values are sent as text. Rows are decoded one at a time as they are requested by the
+ * subscriber, {@code json} and {@code jsonb} columns into {@link JSON} and {@link JSONB}, and other columns into the
+ * type of the selected {@link Field}. Every query uses a new connection from the factory, which is closed when the
+ * publisher completes, fails or is cancelled; use a pooled factory (r2dbc-pool) for repeated queries.</p>
+ *
+ * <p>Example:</p>
+ * <pre>{@code
+ * R2dbcJsonExecutor executor = new R2dbcJsonExecutor(connectionFactory);
+ * Publisher<String> names = executor.fetchValues(DSL.select(JsonbDSL.fieldByKeyText(MY_TABLE.DATA, "name"))
+ *         .from(MY_TABLE));
+ * }</pre>
+ */
+public final class R2dbcJsonExecutor {
+    private static final DSLContext POSTGRES = DSL.using(SQLDialect.POSTGRES);
+
+    private final ConnectionFactory connectionFactory;
+
+    /**
+     * @param connectionFactory Factory to obtain a connection from for every query
+     */
+    public R2dbcJsonExecutor(ConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    /**
+     * Execute a select query, decoding every row into a record with the selected fields.
+     *
+     * @param query Query to execute
+     * @param <R>   Record type of the query
+     * @return Publisher of the records
+     */
+    @SuppressWarnings("unchecked")
+    public <R extends Record> Publisher<R> fetch(Select<R> query) {
+        Field<?>[] fields = query.fields();
+        return execute(query, result -> result.map((row, metadata) -> (R) toRecord(row, fields)));
+    }
+
+    /**
+     * Execute a select query selecting a single column, decoding every row into its value.
+     *
+     * @param query Query to execute
+     * @param <T>   Type of the column, eg. {@link JSONB} or {@code String}
+     * @return Publisher of the values; SQL {@code NULL}s are skipped, as Reactive Streams does not permit {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Publisher<T> fetchValues(Select<? extends Record1<T>> query) {
+        Field<?> field = query.fields()[0];
+        Flux<Optional<Object>> values = execute(query,
+                result -> result.map((row, metadata) -> Optional.ofNullable(decode(field, row, 0))));
+        return values.filter(Optional::isPresent).map(value -> (T) value.get());
+    }
+
+    /**
+     * Execute a query not returning rows, such as an {@code INSERT}, {@code UPDATE} or {@code DELETE}.
+     *
+     * @param query Query to execute
+     * @return Publisher of the number of affected rows
+     */
+    public Publisher<Integer> execute(Query query) {
+        return execute(query, io.r2dbc.spi.Result::getRowsUpdated).reduce(0, Integer::sum);
+    }
+
+    /**
+     * Render a query the way it is sent to the database.
+     *
+     * @param query Query to render
+     * @return SQL with {@code $n} placeholders
+     */
+    public String render(Query query) {
+        return numberPlaceholders(RecordedQuery.record(POSTGRES, query).sql());
+    }
+
+    private <T> Flux<T> execute(Query query, Function<io.r2dbc.spi.Result, Publisher<T>> mapper) {
+        RecordedQuery recorded = RecordedQuery.record(POSTGRES, query);
+        String sql = numberPlaceholders(recorded.sql());
+        List<RecordedQuery.Call> calls = recorded.calls();
+        return Flux.usingWhen(connectionFactory.create(),
+                connection -> Flux.from(bind(connection.createStatement(sql), calls).execute()).concatMap(mapper),
+                Connection::close);
+    }
+
+    private static Statement bind(Statement statement, List<RecordedQuery.Call> calls) {
+        for (int i = 0; i < calls.size(); i++) {
+            RecordedQuery.Call call = calls.get(i);
+            if (call.isSetNull()) {
+                statement.bindNull(i, nullType((Integer) call.value()));
+            } else {
+                statement.bind(i, call.value());
+            }
+        }
+        return statement;
+    }
+
+    private static Class<?> nullType(int sqlType) {
+        switch (sqlType) {
+            case Types.BIGINT:
+                return Long.class;
+            case Types.INTEGER:
+                return Integer.class;
+            case Types.SMALLINT:
+                return Short.class;
+            case Types.BOOLEAN:
+            case Types.BIT:
+                return Boolean.class;
+            case Types.DOUBLE:
+            case Types.FLOAT:
+                return Double.class;
+            case Types.REAL:
+                return Float.class;
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return BigDecimal.class;
+            default:
+                return String.class;
+        }
+    }
+
+    private static Record toRecord(Row row, Field<?>[] fields) {
+        Record record = POSTGRES.newRecord(fields);
+        for (int i = 0; i < fields.length; i++) {
+            set(record, fields[i], decode(fields[i], row, i));
+        }
+        record.changed(false);
+        return record;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void set(Record record, Field<T> field, Object value) {
+        record.set(field, (T) value);
+    }
+
+    private static Object decode(Field<?> field, Row row, int index) {
+        Class<?> type = field.getType();
+        if (type == JSON.class) {
+            String data = row.get(index, String.class);
+            return data == null ? null : JSON.valueOf(data);
+        }
+        if (type == JSONB.class) {
+            String data = row.get(index, String.class);
+            return data == null ? null : JSONB.valueOf(data);
+        }
+        return field.getDataType().convert(row.get(index));
+    }
+
+    /**
+     * Replace the JDBC {@code ?} placeholders by {@code $1}, {@code $2}, etc. jOOQ renders the PostgreSQL {@code ?},
+     * {@code ?|} and {@code ?&} operators escaped as {@code ??}, which only the JDBC driver un-escapes, so they are
+     * un-escaped here. Quoted strings
+     * and identifiers, dollar-quoted strings and comments are copied as they are.
+     */
+    static String numberPlaceholders(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length());
+        int placeholder = 0;
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            int end;
+            if (c == '\'' || c == '"') {
+                end = sql.indexOf(c, i + 1);
+            } else if (c == '-' && sql.startsWith("--", i)) {
+                end = sql.indexOf('\n', i);
+            } else if (c == '/' && sql.startsWith("/*", i)) {
+                end = blockCommentEnd(sql, i);
+            } else if (c == '$') {
+                end = dollarQuoteEnd(sql, i);
+            } else if (c == '?' && sql.startsWith("??", i)) {
+                sb.append('?');
+                i += 2;
+                continue;
+            } else if (c == '?') {
+                sb.append('$').append(++placeholder);
+                i++;
+                continue;
+            } else {
+                end = i;
+            }
+            end = end < 0 ? sql.length() - 1 : end;
+            sb.append(sql, i, end + 1);
+            i = end + 1;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return Index of the closing {@code /} of the (possibly nested) block comment starting at {@code start}, or
+     * {@code -1} if it is not closed
+     */
+    private static int blockCommentEnd(String sql, int start) {
+        int depth = 0;
+        for (int i = start; i < sql.length() - 1; i++) {
+            if (sql.startsWith("/*", i)) {
+                depth++;
+                i++;
+            } else if (sql.startsWith("*/", i)) {
+                if (--depth == 0) {
+                    return i + 1;
+                }
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Index of the last {@code $} of the dollar-quoted string (eg. {@code $$...$$} or
+     * {@code $body$...$body$}) starting at {@code start}, {@code -1} if it is not closed, or {@code start} if there is
+     * no dollar quote tag there, eg. for a {@code $1} parameter
+     */
+    private static int dollarQuoteEnd(String sql, int start) {
+        for (int i = start + 1; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '$') {
+                String tag = sql.substring(start, i + 1);
+                int close = sql.indexOf(tag, i + 1);
+                return close < 0 ? -1 : close + tag.length() - 1;
+            }
+            if (!Character.isLetter(c) && c != '_' && (i == start + 1 || !Character.isDigit(c))) {
+                return start;
+            }
+        }
+        return start;
+    }
+}
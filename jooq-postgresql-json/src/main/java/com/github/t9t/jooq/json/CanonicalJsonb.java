@@ -0,0 +1,219 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.Converter;
+import org.jooq.JSONB;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>A {@code jsonb} value in canonical form, with a precomputed 64-bit hash, to compare and hash {@code jsonb}
+ * values on the client the way PostgreSQL compares them. {@link JSONB#equals(Object)} compares the raw text, so
+ * {@code {"a": 1, "b": 2}} and {@code {"b":2,"a":1.0}} are different {@code JSONB}s, but equal
+ * {@code CanonicalJsonb}s.</p>
+ *
+ * <p>The canonical form has no whitespace, object keys in the order PostgreSQL stores them in (shorter keys first,
+ * then by character) with only the last value of duplicate keys, numbers without trailing zeros (in exponent
+ * notation beyond 20 digits), and strings with only the escapes JSON requires. Creating a {@code CanonicalJsonb}
+ * parses the document once; {@link #equals(Object)} and {@link #hashCode()} then only compare the hash and the
+ * canonical text, which makes it a cheap key for caches and maps.</p>
+ *
+ * <p>Example:</p>
+ * <pre>{@code
+ * Field<CanonicalJsonb> data = MY_TABLE.DATA.coerce(MY_TABLE.DATA.getDataType()
+ *         .asConvertedDataType(CanonicalJsonb.converter()));
+ * Map<CanonicalJsonb, Long> idsByDocument = dsl.select(data, MY_TABLE.ID).from(MY_TABLE).fetchMap(data, MY_TABLE.ID);
+ * Long id = idsByDocument.get(CanonicalJsonb.of("{\"b\": 2, \"a\": 1}"));
+ * }</pre>
+ */
+public final class CanonicalJsonb {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final String data;
+    private final long hash;
+
+    private CanonicalJsonb(String data) {
+        this.data = data;
+        this.hash = hash(data);
+    }
+
+    /**
+     * @param value A {@code jsonb} value, or {@code null}
+     * @return The canonical form of {@code value}, or {@code null} if {@code value} is {@code null}
+     * @throws IllegalArgumentException If {@code value} is not valid JSON
+     */
+    public static CanonicalJsonb of(JSONB value) {
+        return value == null ? null : of(value.data());
+    }
+
+    /**
+     * @param json A JSON document, or {@code null}
+     * @return The canonical form of {@code json}, or {@code null} if {@code json} is {@code null}
+     * @throws IllegalArgumentException If {@code json} is not valid JSON
+     */
+    public static CanonicalJsonb of(String json) {
+        return json == null ? null : new CanonicalJsonb(canonicalize(json));
+    }
+
+    /**
+     * @param json A JSON document
+     * @return The canonical text of {@code json}
+     * @throws IllegalArgumentException If {@code json} is not valid JSON
+     */
+    public static String canonicalize(String json) {
+        StringBuilder sb = new StringBuilder(json.length());
+        write(sb, JsonParser.parse(json));
+        return sb.toString();
+    }
+
+    /**
+     * @return A converter from {@code JSONB} to {@code CanonicalJsonb} (and back), to fetch {@code jsonb} columns as
+     * {@code CanonicalJsonb} using {@link org.jooq.DataType#asConvertedDataType(Converter)}
+     */
+    public static Converter<JSONB, CanonicalJsonb> converter() {
+        return Converter.ofNullable(JSONB.class, CanonicalJsonb.class, CanonicalJsonb::of, CanonicalJsonb::jsonb);
+    }
+
+    /**
+     * @return The canonical text
+     */
+    public String data() {
+        return data;
+    }
+
+    /**
+     * @return The canonical text as {@code JSONB}
+     */
+    public JSONB jsonb() {
+        return JSONB.valueOf(data);
+    }
+
+    /**
+     * @return The 64-bit hash of the canonical text, which is equal for all {@code jsonb}-equal documents
+     */
+    public long hash64() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CanonicalJsonb)) {
+            return false;
+        }
+        CanonicalJsonb that = (CanonicalJsonb) o;
+        return hash == that.hash && data.equals(that.data);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return data;
+    }
+
+    private static void write(StringBuilder sb, Object value) {
+        if (value instanceof Map) {
+            sb.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                writeString(sb, (String) entry.getKey());
+                sb.append(':');
+                write(sb, entry.getValue());
+            }
+            sb.append('}');
+        } else if (value instanceof List) {
+            sb.append('[');
+            boolean first = true;
+            for (Object element : (List<?>) value) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                write(sb, element);
+            }
+            sb.append(']');
+        } else if (value instanceof String) {
+            writeString(sb, (String) value);
+        } else if (value instanceof BigDecimal) {
+            writeNumber(sb, (BigDecimal) value);
+        } else {
+            sb.append(value);
+        }
+    }
+
+    private static void writeNumber(StringBuilder sb, BigDecimal number) {
+        if (number.signum() == 0) {
+            sb.append('0');
+            return;
+        }
+        BigDecimal stripped = number.stripTrailingZeros();
+        sb.append(Math.abs(stripped.scale()) <= 20 ? stripped.toPlainString() : stripped.toString());
+    }
+
+    static void writeString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\b':
+                    sb.append("\\b");
+                    break;
+                case '\f':
+                    sb.append("\\f");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * FNV-1a over the characters, followed by the MurmurHash3 finalizer so the lower bits used by hash tables are
+     * well distributed.
+     */
+    private static long hash(String data) {
+        long h = FNV_OFFSET_BASIS;
+        for (int i = 0; i < data.length(); i++) {
+            h ^= data.charAt(i);
+            h *= FNV_PRIME;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb53a85ec98a3L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.t9t.jooq.json;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Lock-free, in-memory {@link JsonQueryMetrics} keeping a latency and a row count {@link Log2Histogram} and a
+ * failure count per operator.</p>
+ *
+ * <p>Example:</p>
+ * <pre>{@code
+ * InMemoryJsonQueryMetrics metrics = new InMemoryJsonQueryMetrics();
+ * DSLContext dsl = DSL.using(JsonQueryMetricsListener.install(configuration, metrics));
+ * // ... execute queries using JsonDSL/JsonbDSL ...
+ * metrics.snapshot().forEach((operator, stats) -> System.out.println(operator + ": " + stats));
+ * }</pre>
+ */
+public final class InMemoryJsonQueryMetrics implements JsonQueryMetrics {
+    private final ConcurrentMap<String, OperatorStats> stats = new ConcurrentHashMap<>();
+
+    @Override
+    public void record(String operator, long elapsedNanos, long rows) {
+        OperatorStats s = stats(operator);
+        s.latencyNanos.record(elapsedNanos);
+        s.rows.record(rows);
+    }
+
+    @Override
+    public void failed(String operator, long elapsedNanos) {
+        stats(operator).failures.increment();
+    }
+
+    private OperatorStats stats(String operator) {
+        OperatorStats s = stats.get(operator);
+        if (s == null) {
+            s = stats.computeIfAbsent(operator, k -> new OperatorStats());
+        }
+        return s;
+    }
+
+    /**
+     * @param operator JSON operator or function name, eg. {@code @>}
+     * @return Statistics for the operator, or {@code null} if no query using it was recorded
+     */
+    public OperatorStats get(String operator) {
+        return stats.get(operator);
+    }
+
+    /**
+     * @return The (live) statistics of all recorded operators, sorted by operator
+     */
+    public SortedMap<String, OperatorStats> snapshot() {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(stats));
+    }
+
+    /**
+     * Forget all recorded statistics.
+     */
+    public void reset() {
+        stats.clear();
+    }
+
+    /**
+     * Statistics of the queries using a single operator.
+     */
+    public static final class OperatorStats {
+        private final Log2Histogram latencyNanos = new Log2Histogram();
+        private final Log2Histogram rows = new Log2Histogram();
+        private final LongAdder failures = new LongAdder();
+
+        /**
+         * @return Number of successful queries using the operator
+         */
+        public long queries() {
+            return latencyNanos.count();
+        }
+
+        /**
+         * @return Histogram of the query latencies, in nanoseconds
+         */
+        public Log2Histogram latencyNanos() {
+            return latencyNanos;
+        }
+
+        /**
+         * @return Histogram of the number of rows per query
+         */
+        public Log2Histogram rows() {
+            return rows;
+        }
+
+        /**
+         * @return Number of failed queries using the operator, which are not part of the other statistics
+         */
+        public long failures() {
+            return failures.sum();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("queries=%d, failures=%d, rows=%d, latency [%s]", queries(), failures(), rows.sum(),
+                    latencyNanos);
+        }
+    }
+}
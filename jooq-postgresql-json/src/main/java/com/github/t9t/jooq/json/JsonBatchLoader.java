@@ -0,0 +1,320 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.JSONB;
+import org.jooq.Record;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * <p>Coalesces concurrent single-key lookups into one query, like a GraphQL {@code DataLoader}: instead of a query
+ * per key, every {@link #load(Object)} within a short {@link #window(long) window} (or until
+ * {@link #maxBatchSize(int)} keys are pending) is fetched with a single query, and the matching records are handed
+ * back to the callers' {@link CompletableFuture}s.</p>
+ *
+ * <ul>
+ * <li>{@link #byKey(DSLContext, Table, Field)} looks up records by a text value, eg.
+ * {@code JsonbDSL.fieldByKeyText(MY_TABLE.DATA, "id")}, using {@code key = any(?)} with an array of the keys. An
+ * expression index on the key is used for every element.</li>
+ * <li>{@link #byContainment(DSLContext, Table, Field)} looks up records whose {@code jsonb} document contains the
+ * key document, eg. {@code {"id": 5}}. The keys are joined with {@code unnest(?) with ordinality}, so a GIN index is
+ * used for every key and the database reports which key each record matched.</li>
+ * </ul>
+ *
+ * <p>Queries are executed on a single background thread, so the {@code DSLContext} should not be bound to a
+ * connection of another thread. Keys which are loaded multiple times in a window are only queried once, and all of
+ * their futures complete with the same list. If the query fails, all futures of the batch complete
+ * exceptionally. The futures are completed on the background thread, unless a
+ * {@link #completionExecutor(Executor) completion executor} is set, so dependent stages of the futures do not delay
+ * the next query.</p>
+ *
+ * <p>Example:</p>
+ * <pre>{@code
+ * JsonBatchLoader<String, MyTableRecord> loader =
+ *         JsonBatchLoader.byKey(dsl, MY_TABLE, JsonbDSL.fieldByKeyText(MY_TABLE.DATA, "id")).window(2);
+ * CompletableFuture<List<MyTableRecord>> records = loader.load("42");
+ * }</pre>
+ *
+ * @param <K> Key type
+ * @param <R> Record type of the table
+ */
+public final class JsonBatchLoader<K, R extends Record> implements AutoCloseable {
+    private static final String KEY = "jooq_json_batch_key";
+
+    private final DSLContext dsl;
+    private final Table<R> table;
+    private final Field<?> field;
+    private final boolean containment;
+    private final ScheduledExecutorService executor;
+    private volatile int maxBatchSize = 100;
+    private volatile long windowMillis = 1;
+    private volatile Executor completionExecutor;
+
+    private Batch pending = new Batch();
+    // Batches which were taken from pending, but whose futures have not been completed yet
+    private final Set<Batch> dispatched = new HashSet<>();
+    private boolean closed;
+
+    private JsonBatchLoader(DSLContext dsl, Table<R> table, Field<?> field, boolean containment) {
+        this.dsl = requireNonNull(dsl, "dsl");
+        this.table = requireNonNull(table, "table");
+        this.field = requireNonNull(field, "field");
+        this.containment = containment;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "jooq-json-batch-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Look up records by the text value of {@code key}, with {@code key = any(?)}.
+     *
+     * @param dsl   Context to execute the queries with
+     * @param table Table to fetch the records from
+     * @param key   Text key of the records, eg. {@code JsonbDSL.fieldByKeyText(MY_TABLE.DATA, "id")}
+     * @param <R>   Record type of the table
+     * @return A loader of records by key
+     */
+    public static <R extends Record> JsonBatchLoader<String, R> byKey(DSLContext dsl, Table<R> table,
+                                                                      Field<String> key) {
+        return new JsonBatchLoader<>(dsl, table, key, false);
+    }
+
+    /**
+     * Look up records of which the {@code document} contains the key document ({@code document @> key}).
+     *
+     * @param dsl      Context to execute the queries with
+     * @param table    Table to fetch the records from
+     * @param document {@code jsonb} document of the records
+     * @param <R>      Record type of the table
+     * @return A loader of records by contained key document
+     */
+    public static <R extends Record> JsonBatchLoader<JSONB, R> byContainment(DSLContext dsl, Table<R> table,
+                                                                             Field<JSONB> document) {
+        return new JsonBatchLoader<>(dsl, table, document, true);
+    }
+
+    /**
+     * @param maxBatchSize Maximum number of keys per query; a query is executed right away once this many keys are
+     *                     pending. Defaults to 100.
+     * @return This instance
+     */
+    public JsonBatchLoader<K, R> maxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Max batch size must be positive, got: " + maxBatchSize);
+        }
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    /**
+     * @param windowMillis Time to collect keys after the first pending key, in milliseconds. Defaults to 1.
+     * @return This instance
+     */
+    public JsonBatchLoader<K, R> window(long windowMillis) {
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("Window must not be negative, got: " + windowMillis);
+        }
+        this.windowMillis = windowMillis;
+        return this;
+    }
+
+    /**
+     * @param completionExecutor Executor to complete the futures on, or {@code null} to complete them on the
+     *                           background thread which executes the queries. Defaults to {@code null}.
+     * @return This instance
+     */
+    public JsonBatchLoader<K, R> completionExecutor(Executor completionExecutor) {
+        this.completionExecutor = completionExecutor;
+        return this;
+    }
+
+    /**
+     * Load the records of a key with the next batch.
+     *
+     * @param key Key to look up
+     * @return The records matching the key, or an empty list if there are none
+     * @throws IllegalStateException If the loader was closed
+     */
+    public CompletableFuture<List<R>> load(K key) {
+        requireNonNull(key, "key");
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Loader was closed");
+            }
+            CompletableFuture<List<R>> future = pending.futures.get(key);
+            if (future != null) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            pending.futures.put(key, future);
+            if (pending.futures.size() >= maxBatchSize) {
+                Batch full = take();
+                executor.execute(() -> dispatch(full));
+            } else if (pending.futures.size() == 1) {
+                Batch batch = pending;
+                executor.schedule(() -> dispatch(batch), windowMillis, TimeUnit.MILLISECONDS);
+            }
+            return future;
+        }
+    }
+
+    /**
+     * Execute the query for the pending keys now, instead of waiting for the window to pass.
+     */
+    public void dispatch() {
+        synchronized (this) {
+            if (closed || pending.futures.isEmpty()) {
+                return;
+            }
+            Batch batch = take();
+            executor.execute(() -> dispatch(batch));
+        }
+    }
+
+    /**
+     * Stop the background thread. The futures of all keys which were not completed yet, including those of a query
+     * which is being executed, are completed exceptionally.
+     */
+    @Override
+    public void close() {
+        List<Batch> unfinished;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            executor.shutdownNow();
+            unfinished = new ArrayList<>(dispatched);
+            unfinished.add(take());
+            dispatched.clear();
+        }
+        IllegalStateException exception = new IllegalStateException("Loader was closed");
+        for (Batch batch : unfinished) {
+            batch.futures.values().forEach(future -> future.completeExceptionally(exception));
+        }
+    }
+
+    /**
+     * Take the pending batch, to be dispatched. Must be called while holding the lock.
+     */
+    private Batch take() {
+        Batch batch = pending;
+        batch.taken = true;
+        pending = new Batch();
+        if (!batch.futures.isEmpty()) {
+            dispatched.add(batch);
+        }
+        return batch;
+    }
+
+    private void dispatch(Batch batch) {
+        synchronized (this) {
+            // A batch is dispatched by its window unless it was already taken when it was full, or manually
+            if (!batch.taken) {
+                take();
+            } else if (!dispatched.contains(batch)) {
+                // Already dispatched, or failed by close()
+                return;
+            }
+        }
+        if (batch.futures.isEmpty()) {
+            return;
+        }
+        try {
+            execute(batch);
+        } finally {
+            synchronized (this) {
+                dispatched.remove(batch);
+            }
+        }
+    }
+
+    private void execute(Batch batch) {
+        List<K> keys = new ArrayList<>(batch.futures.keySet());
+        List<List<R>> results = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            results.add(new ArrayList<>());
+        }
+        try {
+            if (containment) {
+                fetchContaining(keys, results);
+            } else {
+                fetchByKey(keys, results);
+            }
+        } catch (Throwable e) {
+            // Also on errors, which would otherwise leave the futures uncompleted forever
+            complete(() -> batch.futures.values().forEach(future -> future.completeExceptionally(e)));
+            return;
+        }
+        complete(() -> {
+            for (int i = 0; i < keys.size(); i++) {
+                batch.futures.get(keys.get(i)).complete(Collections.unmodifiableList(results.get(i)));
+            }
+        });
+    }
+
+    private void complete(Runnable completion) {
+        Executor completionExecutor = this.completionExecutor;
+        if (completionExecutor == null) {
+            completion.run();
+            return;
+        }
+        try {
+            completionExecutor.execute(completion);
+        } catch (RejectedExecutionException e) {
+            completion.run();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void fetchByKey(List<K> keys, List<List<R>> results) {
+        Map<String, Integer> indexes = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            indexes.put((String) keys.get(i), i);
+        }
+        Field<String> key = ((Field<String>) field).as(KEY);
+        dsl.select(key).select(table.fields())
+                .from(table)
+                .where(((Field<String>) field).eq(DSL.any(indexes.keySet().toArray(new String[0]))))
+                .fetch()
+                .forEach(record -> results.get(indexes.get(record.get(key))).add(record.into(table)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void fetchContaining(List<K> keys, List<List<R>> results) {
+        String[] documents = keys.stream().map(key -> ((JSONB) key).data()).toArray(String[]::new);
+        Field<JSONB> document = DSL.field(DSL.name(KEY, "document"), SQLDataType.JSONB);
+        Field<Long> index = DSL.field(DSL.name(KEY, "index"), SQLDataType.BIGINT);
+        dsl.select(index).select(table.fields())
+                .from(DSL.table("unnest(cast({0} as jsonb[])) with ordinality as {1}({2}, {3})",
+                        DSL.val(documents), DSL.name(KEY), DSL.name("document"), DSL.name("index")))
+                .join(table).on(JsonbDSL.contains((Field<JSONB>) field, document))
+                .fetch()
+                .forEach(record -> results.get(record.get(index).intValue() - 1).add(record.into(table)));
+    }
+
+    private final class Batch {
+        private final Map<K, CompletableFuture<List<R>>> futures = new LinkedHashMap<>();
+        private boolean taken;
+    }
+}
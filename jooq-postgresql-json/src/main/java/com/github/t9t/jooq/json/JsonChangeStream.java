@@ -0,0 +1,560 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.Query;
+import org.jooq.Table;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.jooq.tools.JooqLogger;
+import org.postgresql.PGConnection;
+import org.postgresql.PGProperty;
+import org.postgresql.replication.LogSequenceNumber;
+import org.postgresql.replication.PGReplicationStream;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * <p>Streams the inserted, updated, deleted and truncated rows of a set of tables from the write-ahead log of the
+ * database, using logical decoding with the built-in {@code pgoutput} plugin, to keep an in-memory replica of the
+ * tables warm without polling them. The values of {@code json} and {@code jsonb} columns are decoded into
+ * {@link JSON} and {@link JSONB} values, and all other values are passed in their text representation.</p>
+ *
+ * <p>{@link #ddl(String, Table...)} creates a publication of the tables and a replication slot with the same name.
+ * The slot keeps the changes of the tables until they have been applied: {@link #start(String, Properties, String,
+ * Sink)} streams them on a daemon thread and passes the changes of every committed transaction to the
+ * {@link Sink}, and acknowledges the transaction once the sink returns. When the connection is lost or the sink throws,
+ * the failure is logged and passed to {@link Sink#failed(Exception, int)}, and the stream reconnects after a delay
+ * which doubles with every consecutive failure (from 1 second up to 1 minute). The changes of the unacknowledged
+ * transactions are then streamed again, so a sink must be able to apply the same changes more than once. A slot which
+ * is no longer streamed keeps the write-ahead log from being removed, so slots of replicas which are gone must be
+ * dropped with {@link #dropDdl(String)}.</p>
+ *
+ * <p>Logical decoding requires {@code wal_level = logical} and a user with the {@code REPLICATION} attribute. Updates
+ * and deletes contain the replica identity of the row, by default its primary key; large (TOASTed) values which were
+ * not changed by an update are left out of the row. Streaming requires the PostgreSQL JDBC driver.</p>
+ *
+ * <p>Example:</p>
+ * <pre>{@code
+ * JsonChangeStream.ddl("my_replica", MY_TABLE).forEach(dsl::execute);
+ *
+ * Map<String, JSONB> documents = new ConcurrentHashMap<>();
+ * JsonChangeStream changes = JsonChangeStream.start("jdbc:postgresql://localhost/db", properties, "my_replica",
+ *         transaction -> transaction.forEach(change -> {
+ *             if (change.type() == JsonChangeStream.Type.DELETE) {
+ *                 documents.remove((String) change.key().get("id"));
+ *             } else if (change.type() == JsonChangeStream.Type.TRUNCATE) {
+ *                 documents.clear();
+ *             } else if (change.row().containsKey("data")) {
+ *                 documents.put((String) change.row().get("id"), (JSONB) change.row().get("data"));
+ *             }
+ *         }));
+ * }</pre>
+ */
+public final class JsonChangeStream implements AutoCloseable {
+    private static final Pattern NAME = Pattern.compile("[a-z0-9_]+");
+    private static final int JSON_OID = 114;
+    private static final int JSONB_OID = 3802;
+    private static final long MIN_RETRY_DELAY = TimeUnit.SECONDS.toMillis(1);
+    private static final long MAX_RETRY_DELAY = TimeUnit.MINUTES.toMillis(1);
+    private static final JooqLogger log = JooqLogger.getLogger(JsonChangeStream.class);
+
+    private final String url;
+    private final Properties properties;
+    private final String name;
+    private final Sink sink;
+    private final Thread thread;
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final Map<Integer, Relation> relations = new HashMap<>();
+    private final List<Change> transaction = new ArrayList<>();
+    private volatile boolean closed;
+    private volatile Exception failure;
+    // Consecutive failures since the last applied transaction, only used by the streaming thread
+    private int failures;
+
+    private JsonChangeStream(String url, Properties properties, String name, Sink sink) {
+        this.url = url;
+        this.properties = new Properties();
+        this.properties.putAll(properties);
+        PGProperty.REPLICATION.set(this.properties, "database");
+        PGProperty.ASSUME_MIN_SERVER_VERSION.set(this.properties, "10");
+        PGProperty.PREFER_QUERY_MODE.set(this.properties, "simple");
+        this.name = name;
+        this.sink = sink;
+        this.thread = new Thread(this::run, "jooq-json-change-stream");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Create the statements to create a publication of the tables and a logical replication slot, both named
+     * {@code name}, which can be executed repeatedly. Changes are kept for the slot from the moment it is created.
+     *
+     * @param name   Name of the publication and the slot
+     * @param tables Tables to stream the changes of
+     * @return The statements
+     */
+    public static List<Query> ddl(String name, Table<?>... tables) {
+        checkName(name);
+        if (tables.length == 0) {
+            throw new IllegalArgumentException("Tables must not be empty");
+        }
+        return Arrays.asList(
+                DSL.query("do $$ begin if not exists (select from pg_publication where pubname = {0}) then "
+                        + "create publication {1} for table {2}; end if; end $$", DSL.inline(name), DSL.name(name),
+                        DSL.list(tables)),
+                DSL.query("select pg_create_logical_replication_slot({0}, 'pgoutput') where not exists "
+                        + "(select from pg_replication_slots where slot_name = {0})", DSL.inline(name)));
+    }
+
+    /**
+     * Create the statements to drop the publication and the replication slot created by {@link #ddl(String, Table...)},
+     * which can be executed repeatedly. The slot cannot be dropped while it is streamed.
+     *
+     * @param name Name of the publication and the slot
+     * @return The statements
+     */
+    public static List<Query> dropDdl(String name) {
+        checkName(name);
+        return Arrays.asList(
+                DSL.query("select pg_drop_replication_slot(slot_name) from pg_replication_slots where slot_name = {0}",
+                        DSL.inline(name)),
+                DSL.query("drop publication if exists {0}", DSL.name(name)));
+    }
+
+    /**
+     * Start a daemon thread which streams the changes of the slot on a dedicated replication connection and passes
+     * them to the sink, until the returned stream is closed. Returns once streaming.
+     *
+     * @param url        JDBC URL of the database
+     * @param properties Connection properties, eg. {@code user} and {@code password}; the properties required for a
+     *                   replication connection are added
+     * @param name       Name of the publication and the slot created by {@link #ddl(String, Table...)}
+     * @param sink       Applies the changes of every transaction
+     * @return The stream, to close to stop streaming
+     * @throws DataAccessException If streaming fails
+     */
+    public static JsonChangeStream start(String url, Properties properties, String name, Sink sink) {
+        requireNonNull(url, "url");
+        requireNonNull(properties, "properties");
+        checkName(name);
+        requireNonNull(sink, "sink");
+
+        JsonChangeStream stream = new JsonChangeStream(url, properties, name, sink);
+        stream.thread.start();
+        try {
+            if (!stream.started.await(30, TimeUnit.SECONDS)) {
+                stream.close();
+                throw new DataAccessException("Timed out streaming changes of slot " + name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stream.close();
+            throw new DataAccessException("Interrupted while streaming changes of slot " + name, e);
+        }
+        if (stream.failure != null) {
+            stream.close();
+            throw new DataAccessException("Error streaming changes of slot " + name, stream.failure);
+        }
+        return stream;
+    }
+
+    /**
+     * Stop streaming, and wait until the last applied transaction has been acknowledged.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            try (Connection connection = DriverManager.getConnection(url, properties);
+                 PGReplicationStream stream = connection.unwrap(PGConnection.class).getReplicationAPI()
+                         .replicationStream()
+                         .logical()
+                         .withSlotName(name)
+                         .withSlotOption("proto_version", 1)
+                         .withSlotOption("publication_names", name)
+                         .start()) {
+                // The relations are sent again on every connection
+                relations.clear();
+                transaction.clear();
+                started.countDown();
+
+                while (!closed) {
+                    ByteBuffer message = stream.readPending();
+                    if (message == null) {
+                        pause(10);
+                        continue;
+                    }
+                    LogSequenceNumber commit = receive(message);
+                    if (commit != null) {
+                        stream.setAppliedLSN(commit);
+                        stream.setFlushedLSN(commit);
+                    }
+                }
+                stream.forceUpdateStatus();
+            } catch (SQLException | RuntimeException e) {
+                if (started.getCount() > 0) {
+                    failure = e;
+                    started.countDown();
+                    return;
+                }
+                retry(e);
+            }
+        }
+    }
+
+    private void retry(Exception e) {
+        failures++;
+        long delay = Math.min(MAX_RETRY_DELAY, MIN_RETRY_DELAY << Math.min(failures - 1, 6));
+        log.warn("Error streaming changes of slot " + name + " (failure " + failures + "), reconnecting in "
+                + delay + " ms", e);
+        try {
+            sink.failed(e, failures);
+        } catch (RuntimeException callbackFailure) {
+            log.warn("Error handling failure streaming changes of slot " + name, callbackFailure);
+        }
+        pause(delay);
+    }
+
+    private void pause(long millis) {
+        long end = System.currentTimeMillis() + millis;
+        try {
+            // In steps, to stop soon after closing
+            for (long left = millis; left > 0 && !closed; left = end - System.currentTimeMillis()) {
+                Thread.sleep(Math.min(left, 100));
+            }
+        } catch (InterruptedException e) {
+            closed = true;
+        }
+    }
+
+    private LogSequenceNumber receive(ByteBuffer message) {
+        switch (message.get()) {
+            case 'B':
+                transaction.clear();
+                return null;
+            case 'R':
+                Relation relation = readRelation(message);
+                relations.put(relation.id, relation);
+                return null;
+            case 'I':
+                return insert(message);
+            case 'U':
+                return update(message);
+            case 'D':
+                return delete(message);
+            case 'T':
+                return truncate(message);
+            case 'C':
+                return commit(message);
+            default:
+                // Origin and type messages
+                return null;
+        }
+    }
+
+    private LogSequenceNumber insert(ByteBuffer message) {
+        Relation relation = relation(message);
+        message.get(); // N(ew)
+        Map<String, Object> row = readTuple(message, relation);
+        transaction.add(new Change(Type.INSERT, relation, relation.key(row), row));
+        return null;
+    }
+
+    private LogSequenceNumber update(ByteBuffer message) {
+        Relation relation = relation(message);
+        Map<String, Object> old = null;
+        // The old K(ey) or O(ld) row is only sent when the replica identity changed
+        if (message.get() != 'N') {
+            old = readTuple(message, relation);
+            message.get(); // N(ew)
+        }
+        Map<String, Object> row = readTuple(message, relation);
+        transaction.add(new Change(Type.UPDATE, relation, relation.key(old == null ? row : old), row));
+        return null;
+    }
+
+    private LogSequenceNumber delete(ByteBuffer message) {
+        Relation relation = relation(message);
+        message.get(); // K(ey) or O(ld)
+        transaction.add(new Change(Type.DELETE, relation, relation.key(readTuple(message, relation)), null));
+        return null;
+    }
+
+    private LogSequenceNumber truncate(ByteBuffer message) {
+        int count = message.getInt();
+        message.get(); // Options
+        for (int i = 0; i < count; i++) {
+            transaction.add(new Change(Type.TRUNCATE, relation(message), null, null));
+        }
+        return null;
+    }
+
+    private LogSequenceNumber commit(ByteBuffer message) {
+        message.get(); // Flags
+        message.getLong(); // Commit LSN
+        LogSequenceNumber end = LogSequenceNumber.valueOf(message.getLong());
+        // Every transaction is sent, also the ones which did not change any of the published tables
+        if (!transaction.isEmpty()) {
+            List<Change> changes = Collections.unmodifiableList(new ArrayList<>(transaction));
+            transaction.clear();
+            sink.apply(changes);
+            failures = 0;
+        }
+        return end;
+    }
+
+    private Relation relation(ByteBuffer message) {
+        int id = message.getInt();
+        Relation relation = relations.get(id);
+        if (relation == null) {
+            throw new IllegalStateException("Received change of unknown relation " + id);
+        }
+        return relation;
+    }
+
+    private static Relation readRelation(ByteBuffer message) {
+        int id = message.getInt();
+        String schema = readString(message);
+        String table = readString(message);
+        message.get(); // Replica identity
+        int count = message.getShort();
+        List<Column> columns = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean key = (message.get() & 1) != 0;
+            String name = readString(message);
+            int type = message.getInt();
+            message.getInt(); // Type modifier
+            columns.add(new Column(name, type, key));
+        }
+        return new Relation(id, schema, table, columns);
+    }
+
+    private static Map<String, Object> readTuple(ByteBuffer message, Relation relation) {
+        int count = message.getShort();
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            Column column = relation.columns.get(i);
+            switch (message.get()) {
+                case 'n':
+                    row.put(column.name, null);
+                    break;
+                case 't':
+                    byte[] value = new byte[message.getInt()];
+                    message.get(value);
+                    row.put(column.name, column.value(new String(value, StandardCharsets.UTF_8)));
+                    break;
+                default:
+                    // 'u': an unchanged TOASTed value, which is not sent
+                    break;
+            }
+        }
+        return Collections.unmodifiableMap(row);
+    }
+
+    private static String readString(ByteBuffer message) {
+        int start = message.position();
+        while (message.get() != 0) {
+            // Find the terminating zero byte
+        }
+        byte[] value = new byte[message.position() - start - 1];
+        message.position(start);
+        message.get(value);
+        message.get();
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static void checkName(String name) {
+        if (name == null || !NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("name must only contain lower case letters, digits and underscores, "
+                    + "got: " + name);
+        }
+    }
+
+    /**
+     * Applies the changes streamed from the database.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        /**
+         * Apply the changes of a committed transaction, in the order they were made. Called from the streaming thread,
+         * one transaction at a time. When this method throws, the transaction is streamed again after reconnecting.
+         *
+         * @param changes Changes of the transaction
+         */
+        void apply(List<Change> changes);
+
+        /**
+         * Called from the streaming thread when streaming fails after it has started, eg. when the connection is lost
+         * or {@link #apply(List)} throws, before reconnecting. The failure has been logged already. To stop retrying
+         * (eg. after a number of failures), close the stream from this method.
+         *
+         * @param exception The failure
+         * @param failures  Number of consecutive failures since a transaction was last applied, starting at 1
+         */
+        default void failed(Exception exception, int failures) {
+        }
+    }
+
+    /**
+     * Type of a change.
+     */
+    public enum Type {
+        /**
+         * An inserted row.
+         */
+        INSERT,
+        /**
+         * An updated row.
+         */
+        UPDATE,
+        /**
+         * A deleted row.
+         */
+        DELETE,
+        /**
+         * A truncated table.
+         */
+        TRUNCATE
+    }
+
+    /**
+     * A changed row, or a truncated table.
+     */
+    public static final class Change {
+        private final Type type;
+        private final String schema;
+        private final String table;
+        private final Map<String, Object> key;
+        private final Map<String, Object> row;
+
+        Change(Type type, Relation relation, Map<String, Object> key, Map<String, Object> row) {
+            this.type = type;
+            this.schema = relation.schema;
+            this.table = relation.table;
+            this.key = key;
+            this.row = row;
+        }
+
+        /**
+         * @return Type of the change
+         */
+        public Type type() {
+            return type;
+        }
+
+        /**
+         * @return Schema of the changed table
+         */
+        public String schema() {
+            return schema;
+        }
+
+        /**
+         * @return Name of the changed table
+         */
+        public String table() {
+            return table;
+        }
+
+        /**
+         * @param table Table to compare with
+         * @return Whether this is a change of {@code table}
+         */
+        public boolean isFor(Table<?> table) {
+            return this.table.equals(table.getName())
+                    && (table.getSchema() == null || schema.equals(table.getSchema().getName()));
+        }
+
+        /**
+         * @return Replica identity (by default the primary key) of the row before the change by column name, or
+         * {@code null} for a truncate
+         */
+        public Map<String, Object> key() {
+            return key;
+        }
+
+        /**
+         * @return Values of the inserted or updated row by column name, without the unchanged TOASTed values of an
+         * update, or {@code null} for a delete or truncate
+         */
+        public Map<String, Object> row() {
+            return row;
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + schema + "." + table + (key == null ? "" : " " + key) + (row == null ? "" : " " + row);
+        }
+    }
+
+    private static final class Relation {
+        private final int id;
+        private final String schema;
+        private final String table;
+        private final List<Column> columns;
+
+        Relation(int id, String schema, String table, List<Column> columns) {
+            this.id = id;
+            this.schema = schema;
+            this.table = table;
+            this.columns = columns;
+        }
+
+        Map<String, Object> key(Map<String, Object> row) {
+            return Collections.unmodifiableMap(columns.stream()
+                    .filter(column -> column.key && row.containsKey(column.name))
+                    .collect(LinkedHashMap::new, (key, column) -> key.put(column.name, row.get(column.name)),
+                            Map::putAll));
+        }
+    }
+
+    private static final class Column {
+        private final String name;
+        private final int type;
+        private final boolean key;
+
+        Column(String name, int type, boolean key) {
+            this.name = name;
+            this.type = type;
+            this.key = key;
+        }
+
+        Object value(String text) {
+            switch (type) {
+                case JSON_OID:
+                    return JSON.valueOf(text);
+                case JSONB_OID:
+                    return JSONB.valueOf(text);
+                default:
+                    return text;
+            }
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package com.github.t9t.jooq.json;
 
+import org.jooq.Condition;
 import org.jooq.Field;
 import org.jooq.JSON;
+import org.jooq.Record;
+import org.jooq.Table;
 import org.jooq.impl.DSL;
 
 import java.util.Collection;
@@ -46,7 +49,7 @@ public final class JsonDSL {
      * @return A {@code Field} representing the extracted array element
      */
     public static Field<JSON> arrayElement(Field<JSON> jsonField, int index) {
-        return DSL.field("{0}->{1}", JSON.class, jsonField, index);
+        return new JsonOperatorField<>("->", DSL.field("{0}->{1}", JSON.class, jsonField, index));
     }
 
     /**
@@ -61,7 +64,7 @@ public final class JsonDSL {
      * @return A {@code Field} representing the extracted array element, as text
      */
     public static Field<String> arrayElementText(Field<JSON> jsonField, int index) {
-        return DSL.field("{0}->>{1}", String.class, jsonField, index);
+        return new JsonOperatorField<>("->>", DSL.field("{0}->>{1}", String.class, jsonField, index));
     }
 
     /**
@@ -75,7 +78,7 @@ public final class JsonDSL {
      * @return A {@code Field} representing the extracted value
      */
     public static Field<JSON> fieldByKey(Field<JSON> jsonField, String key) {
-        return DSL.field("{0}->{1}", JSON.class, jsonField, key);
+        return new JsonOperatorField<>("->", DSL.field("{0}->{1}", JSON.class, jsonField, key));
     }
 
     /**
@@ -90,7 +93,7 @@ public final class JsonDSL {
      * @return A {@code Field} representing the extracted array element, as text
      */
     public static Field<String> fieldByKeyText(Field<JSON> jsonField, String key) {
-        return DSL.field("{0}->>{1}", String.class, jsonField, key);
+        return new JsonOperatorField<>("->>", DSL.field("{0}->>{1}", String.class, jsonField, key), jsonField, key);
     }
 
     /**
@@ -105,7 +108,7 @@ public final class JsonDSL {
      * @see #objectAtPath(Field, Collection)
      */
     public static Field<JSON> objectAtPath(Field<JSON> jsonField, String... path) {
-        return DSL.field("{0}#>{1}", JSON.class, jsonField, DSL.array(path));
+        return new JsonOperatorField<>("#>", DSL.field("{0}#>{1}", JSON.class, jsonField, DSL.array(path)));
     }
 
     /**
@@ -136,7 +139,8 @@ public final class JsonDSL {
      * @see #objectAtPathText(Field, Collection)
      */
     public static Field<String> objectAtPathText(Field<JSON> jsonField, String... path) {
-        return DSL.field("{0}#>>{1}", String.class, jsonField, DSL.array(path));
+        return new JsonOperatorField<>("#>>", DSL.field("{0}#>>{1}", String.class, jsonField, DSL.array(path)),
+                jsonField, path);
     }
 
     /**
@@ -165,7 +169,67 @@ public final class JsonDSL {
      * @return Length of the array
      */
     public static Field<Integer> arrayLength(Field<JSON> jsonField) {
-        return DSL.field("json_array_length({0})", Integer.class, jsonField);
+        return new JsonOperatorField<>("json_array_length",
+                DSL.field("json_array_length({0})", Integer.class, jsonField));
+    }
+
+    /**
+     * <p>Returns the elements of a JSON array from index {@code from} (inclusive) to {@code to} (exclusive), indexed
+     * from zero, as a JSON array. The array is unnested {@code WITH ORDINALITY} on the server, so only the requested
+     * window is sent to the client. Indexes beyond the end of the array are ignored. The array expression is evaluated
+     * (and a bound array sent) once, and {@code from} and {@code to} are bind values, so every page is executed with
+     * the same SQL. A {@code json} array is parsed as a whole for every page; use {@code jsonb} to page through large
+     * arrays.</p>
+     *
+     * <p>Example: <code>arraySlice('[1,2,3,{"f1":1,"f2":[5,6]},4]', 1, 3)</code></p>
+     * <p>Example result: <code>[2, 3]</code></p>
+     *
+     * @param jsonField The JSON {@code Field} containing an array to get the elements from
+     * @param from      Index of the first element
+     * @param to        Index after the last element
+     * @return A {@code Field} representing the elements, or an empty array if there are none
+     */
+    public static Field<JSON> arraySlice(Field<JSON> jsonField, int from, int to) {
+        if (from < 0 || to < from) {
+            throw new IllegalArgumentException("Invalid array slice from " + from + " to " + to);
+        }
+        return new JsonOperatorField<>("json_array_elements", DSL.field("(select case when s.doc is null then null "
+                + "else (select coalesce(json_agg(e.value order by e.i), '[]') "
+                + "from json_array_elements(s.doc) with ordinality e(value, i) where e.i > {1} and e.i <= {2}) end "
+                + "from (select {0} as doc) s)",
+                JSON.class, jsonField, DSL.val(from), DSL.val(to)));
+    }
+
+    /**
+     * <p>Returns the elements of a JSON array of integers as a {@code long[]}. The JSON text of the array is decoded
+     * straight into the {@code long[]}, without boxing the elements or creating a {@code String} for them. Elements
+     * which are not integers (including {@code null}s) fail with a {@code DataAccessException}.</p>
+     *
+     * <p>Example: <code>arrayAsLongs('[1, 2, 3]')</code></p>
+     * <p>Example result: <code>new long[]{1, 2, 3}</code></p>
+     *
+     * @param jsonField The JSON {@code Field} containing an array of integers, eg. from
+     *                  {@link #objectAtPath(Field, String...)}
+     * @return A {@code Field} representing the elements
+     */
+    public static Field<long[]> arrayAsLongs(Field<JSON> jsonField) {
+        return PrimitiveArrays.longs(jsonField);
+    }
+
+    /**
+     * <p>Returns the elements of a JSON array of numbers as a {@code double[]}. The JSON text of the array is decoded
+     * straight into the {@code double[]}, without boxing the elements or creating a {@code String} for them. Elements
+     * which are not numbers (including {@code null}s) fail with a {@code DataAccessException}.</p>
+     *
+     * <p>Example: <code>arrayAsDoubles('[1.5, 2, 3e2]')</code></p>
+     * <p>Example result: <code>new double[]{1.5, 2.0, 300.0}</code></p>
+     *
+     * @param jsonField The JSON {@code Field} containing an array of numbers, eg. from
+     *                  {@link #objectAtPath(Field, String...)}
+     * @return A {@code Field} representing the elements
+     */
+    public static Field<double[]> arrayAsDoubles(Field<JSON> jsonField) {
+        return PrimitiveArrays.doubles(jsonField);
     }
 
     /**
@@ -183,7 +247,8 @@ public final class JsonDSL {
      * @see #extractPath(Field, Collection)
      */
     public static Field<JSON> extractPath(Field<JSON> jsonField, String... path) {
-        return DSL.field("json_extract_path({0}, VARIADIC {1})", JSON.class, jsonField, DSL.array(path));
+        return new JsonOperatorField<>("json_extract_path",
+                DSL.field("json_extract_path({0}, VARIADIC {1})", JSON.class, jsonField, DSL.array(path)));
     }
 
     /**
@@ -219,7 +284,9 @@ public final class JsonDSL {
      * @see #extractPathText(Field, Collection)
      */
     public static Field<String> extractPathText(Field<JSON> jsonField, String... path) {
-        return DSL.field("json_extract_path_text({0}, VARIADIC {1})", String.class, jsonField, DSL.array(path));
+        return new JsonOperatorField<>("json_extract_path_text",
+                DSL.field("json_extract_path_text({0}, VARIADIC {1})", String.class, jsonField, DSL.array(path)),
+                jsonField, path);
     }
 
     /**
@@ -251,7 +318,7 @@ public final class JsonDSL {
      * @return The JSON type
      */
     public static Field<String> typeOf(Field<JSON> jsonField) {
-        return DSL.field("json_typeof({0})", String.class, jsonField);
+        return new JsonOperatorField<>("json_typeof", DSL.field("json_typeof({0})", String.class, jsonField));
     }
 
     /**
@@ -265,6 +332,102 @@ public final class JsonDSL {
      * @return A JSON {@code Field} with {@code null} object fields removed
      */
     public static Field<JSON> stripNulls(Field<JSON> jsonField) {
-        return DSL.field("json_strip_nulls({0})", JSON.class, jsonField);
+        return new JsonOperatorField<>("json_strip_nulls", DSL.field("json_strip_nulls({0})", JSON.class, jsonField));
+    }
+
+    /**
+     * <p>Returns the text search vector of the values of a JSON document which are selected by {@code filters} (all
+     * strings if there are none), using the {@code config} text search configuration. The configuration and filter
+     * are rendered as literals, so the expression is the same as the one indexed by
+     * {@link JsonTextSearch#createIndex(String, org.jooq.TableField, String, JsonTextSearch.Filter...)}.</p>
+     *
+     * <p>Example: <code>json_to_tsvector('english', '{"a": "The Fat Rats", "b": 123}',
+     * '["string", "numeric"]')</code></p>
+     * <p>Example result: <code>'123':5 'fat':2 'rat':3</code></p>
+     *
+     * @param jsonField The JSON {@code Field} to search
+     * @param config    Text search configuration, eg. {@code english} or {@code simple}
+     * @param filters   Keys and values to include
+     * @return A {@code Field} representing the {@code tsvector}, as text
+     */
+    public static Field<String> toTsVector(Field<JSON> jsonField, String config, JsonTextSearch.Filter... filters) {
+        return new JsonOperatorField<>("json_to_tsvector",
+                JsonTextSearch.toTsVector("json_to_tsvector", jsonField, config, filters));
+    }
+
+    /**
+     * <p>Does the text search vector of a JSON document (see {@link #toTsVector(Field, String,
+     * JsonTextSearch.Filter...)}) match the {@code query}? Uses the {@code @@} operator with
+     * {@code websearch_to_tsquery}, which accepts eg. {@code "quick fox" or dog -cat}. When the document has an
+     * index created by
+     * {@link JsonTextSearch#createIndex(String, org.jooq.TableField, String, JsonTextSearch.Filter...)} with the same
+     * configuration and filters, this is an index lookup.</p>
+     *
+     * <p>Example: <code>json_to_tsvector('english', '{"a": "The Fat Rats"}', '["string"]') @@
+     * websearch_to_tsquery('english', 'rat')</code></p>
+     *
+     * @param jsonField The JSON {@code Field} to search
+     * @param config    Text search configuration, eg. {@code english} or {@code simple}
+     * @param query     Query in {@code websearch_to_tsquery} syntax
+     * @param filters   Keys and values to search
+     * @return A {@code Condition} representing whether the document matches the query
+     */
+    public static Condition matches(Field<JSON> jsonField, String config, String query,
+                                    JsonTextSearch.Filter... filters) {
+        return new JsonOperatorCondition("@@", DSL.condition("{0} @@ {1}",
+                toTsVector(jsonField, config, filters), JsonTextSearch.toTsQuery(config, query)));
+    }
+
+    /**
+     * <p>Returns the JSON document with the words matching the {@code query} (in {@code websearch_to_tsquery}
+     * syntax) highlighted in its string values, using {@code ts_headline}.</p>
+     *
+     * <p>Example: <code>ts_headline('english', '{"a": "The Fat Rats"}',
+     * websearch_to_tsquery('english', 'rat'))</code></p>
+     * <p>Example result: <code>{"a": "The Fat &lt;b&gt;Rats&lt;/b&gt;"}</code></p>
+     *
+     * @param jsonField The JSON {@code Field} to highlight the matches in
+     * @param config    Text search configuration, eg. {@code english} or {@code simple}
+     * @param query     Query in {@code websearch_to_tsquery} syntax
+     * @return A JSON {@code Field} with the matches highlighted
+     */
+    public static Field<JSON> headline(Field<JSON> jsonField, String config, String query) {
+        return new JsonOperatorField<>("ts_headline", DSL.field("ts_headline({0}, {1}, {2})", JSON.class,
+                JsonTextSearch.regconfig(config), jsonField, JsonTextSearch.toTsQuery(config, query)));
+    }
+
+    /**
+     * <p>Returns a lateral table with the values of a JSON object as typed columns, using {@code json_to_record} with
+     * the fields of {@code type} as column definitions. The document is parsed once per row instead of once for every
+     * key extracted with eg. {@link #fieldByKeyText(Field, String)}, and the rows can be fetched as records of
+     * {@code type} with {@code fetchInto(type)}. Missing keys are {@code null}. The table is aliased as {@code type},
+     * so it cannot be joined with {@code type} itself.</p>
+     *
+     * <p>Example: <code>select ... from orders, lateral (select "id", "price" from json_to_record(orders.data) as
+     * item("id" bigint, "price" numeric)) as item</code></p>
+     *
+     * @param jsonField The JSON {@code Field} containing an object
+     * @param type      Table with the fields of the record, eg. a generated table
+     * @return A lateral table with the fields of {@code type}
+     */
+    public static Table<Record> toRecord(Field<JSON> jsonField, Table<?> type) {
+        return JsonRecords.toRecord("json_to_record", jsonField, type);
+    }
+
+    /**
+     * <p>Returns a lateral table with the values of a JSON object as typed columns, using
+     * {@code json_populate_record} with the row type of {@code type}, which must be a table (or composite type) in
+     * the database. Like {@link #toRecord(Field, Table)}, but the columns are typed by the database instead of by the
+     * fields of {@code type}.</p>
+     *
+     * <p>Example: <code>select ... from orders, lateral (select "id", "price" from
+     * json_populate_record(null::item, orders.data) as item) as item</code></p>
+     *
+     * @param jsonField The JSON {@code Field} containing an object
+     * @param type      Table with the fields of the record, whose row type exists in the database
+     * @return A lateral table with the fields of {@code type}
+     */
+    public static Table<Record> populateRecord(Field<JSON> jsonField, Table<?> type) {
+        return JsonRecords.populateRecord("json_populate_record", jsonField, type);
     }
 }
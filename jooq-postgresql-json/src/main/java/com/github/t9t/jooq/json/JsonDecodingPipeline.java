@@ -0,0 +1,348 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.Converter;
+import org.jooq.Cursor;
+import org.jooq.DSLContext;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.Record1;
+import org.jooq.ResultQuery;
+import org.jooq.Select;
+import org.jooq.exception.DataAccessException;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * <p>Decodes the {@code json} or {@code jsonb} values of a query on a pool of workers, while a separate thread keeps
+ * reading the next rows from the {@code ResultSet}. The reader only copies the raw JSON text of every row into a
+ * bounded buffer, so reading from the network and decoding the JSON happen concurrently instead of one after the
+ * other, and the decoding is spread over {@link #workers(int)} threads.</p>
+ *
+ * <p>Rows are handed to the workers in chunks. At most {@link #bufferSize(int)} rows are buffered (read, decoded or
+ * not yet consumed, including the rest of the chunk being consumed) at any time; when the buffer is full the reader
+ * waits for the stream to be consumed. The results are streamed in the order of the query by default, or as soon as
+ * they have been decoded with {@link #ordered(boolean) ordered(false)}.</p>
+ *
+ * <p>The query is executed with a {@link #fetchSize(int) fetch size}, but PostgreSQL only streams the rows of a
+ * query inside a transaction; otherwise the driver reads all rows before returning the first one. The query is
+ * executed by the thread calling {@link #stream(DSLContext, Select)}, so it runs on the connection (and in the
+ * transaction) of that thread, also with thread-bound transactions. Only reading the rows from the result set is
+ * handed over to the reader thread, so the connection must not be used otherwise until the stream is closed or fully
+ * consumed.</p>
+ *
+ * <p>Example:</p>
+ * <pre>{@code
+ * try (Stream<MyDocument> documents = JsonDecodingPipeline.mapping(json -> gson.fromJson(json, MyDocument.class))
+ *         .workers(4)
+ *         .stream(dsl, DSL.select(MY_TABLE.DATA).from(MY_TABLE))) {
+ *     documents.forEach(exporter::write);
+ * }
+ * }</pre>
+ *
+ * @param <T> Type of the decoded values
+ */
+public final class JsonDecodingPipeline<T> {
+    private static final int CHUNK_SIZE = 64;
+
+    private final Function<String, ? extends T> decoder;
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private int bufferSize = 4096;
+    private int fetchSize = 1000;
+    private boolean ordered = true;
+
+    private JsonDecodingPipeline(Function<String, ? extends T> decoder) {
+        this.decoder = requireNonNull(decoder, "decoder");
+    }
+
+    /**
+     * @param mapper Decodes the JSON text of a value; gets {@code null} for SQL {@code NULL}s
+     * @param <T>    Type of the decoded values
+     * @return A pipeline decoding values with {@code mapper}
+     */
+    public static <T> JsonDecodingPipeline<T> mapping(Function<String, ? extends T> mapper) {
+        return new JsonDecodingPipeline<>(mapper);
+    }
+
+    /**
+     * @param converter Converts the values, eg. {@link CanonicalJsonb#converter()}
+     * @param <T>       Type of the decoded values
+     * @return A pipeline decoding values with {@code converter}
+     */
+    public static <T> JsonDecodingPipeline<T> converting(Converter<JSONB, T> converter) {
+        requireNonNull(converter, "converter");
+        return new JsonDecodingPipeline<>(json -> converter.from(json == null ? null : JSONB.valueOf(json)));
+    }
+
+    /**
+     * @param workers Number of threads decoding values; defaults to the number of processors
+     * @return This pipeline
+     */
+    public JsonDecodingPipeline<T> workers(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be at least 1, got: " + workers);
+        }
+        this.workers = workers;
+        return this;
+    }
+
+    /**
+     * @param bufferSize Maximum number of rows read ahead of the consumer of the stream; defaults to 4096
+     * @return This pipeline
+     */
+    public JsonDecodingPipeline<T> bufferSize(int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be at least 1, got: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    /**
+     * @param fetchSize Number of rows the driver fetches from the database at a time; defaults to 1000
+     * @return This pipeline
+     */
+    public JsonDecodingPipeline<T> fetchSize(int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("fetchSize must be at least 1, got: " + fetchSize);
+        }
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    /**
+     * @param ordered {@code true} (default) to stream the values in the order of the query, or {@code false} to
+     *                stream them as soon as they have been decoded
+     * @return This pipeline
+     */
+    public JsonDecodingPipeline<T> ordered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    /**
+     * <p>Execute the query and stream the decoded values.</p>
+     *
+     * <p>The query is executed before this method returns, and its errors are thrown from it. The stream should be
+     * closed when not fully consumed, to stop the reader and the workers and to close the cursor. Errors reading or
+     * decoding values are thrown from the stream operation consuming them.</p>
+     *
+     * @param dsl    Context to execute the query with
+     * @param select Query selecting a single {@code json} or {@code jsonb} field
+     * @return The decoded values
+     */
+    public Stream<T> stream(DSLContext dsl, Select<? extends Record1<?>> select) {
+        Class<?> type = select.getSelect().get(0).getType();
+        if (type != JSON.class && type != JSONB.class) {
+            throw new IllegalArgumentException("Only json and jsonb values can be decoded, got: " + type);
+        }
+
+        int chunkSize = Math.min(CHUNK_SIZE, bufferSize);
+        Pipeline<T> pipeline = new Pipeline<>(decoder, workers, chunkSize, Math.max(1, bufferSize / chunkSize),
+                ordered);
+        pipeline.start(dsl, select.fetchSize(fetchSize));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pipeline,
+                ordered ? Spliterator.ORDERED : 0), false)
+                .onClose(pipeline::close);
+    }
+
+    private static final class Pipeline<T> implements Iterator<T> {
+        // Marks the end of the rows in the output
+        private static final CompletableFuture<List<?>> END = CompletableFuture.completedFuture(null);
+
+        private final Function<String, ? extends T> decoder;
+        private final ExecutorService workers;
+        private final int chunkSize;
+        private final boolean ordered;
+        // Chunks which have been read but not consumed yet
+        private final Semaphore chunks;
+        private final BlockingQueue<CompletableFuture<? extends List<?>>> output = new LinkedBlockingQueue<>();
+        // Unordered chunks are added to the output when decoded, so the end is only added once all of them are
+        private final AtomicInteger decoding = new AtomicInteger();
+        private final AtomicBoolean ended = new AtomicBoolean();
+        private volatile boolean allRead;
+        private Thread reader;
+        private Cursor<? extends Record1<?>> cursor;
+        private volatile boolean closed;
+        private Iterator<?> current = Collections.emptyIterator();
+        // Whether the chunk being consumed still holds its permit
+        private boolean consuming;
+        private boolean done;
+
+        Pipeline(Function<String, ? extends T> decoder, int workers, int chunkSize, int chunks, boolean ordered) {
+            this.decoder = decoder;
+            this.workers = Executors.newFixedThreadPool(workers, r -> {
+                Thread thread = new Thread(r, "json-decoding-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.chunkSize = chunkSize;
+            this.chunks = new Semaphore(chunks);
+            this.ordered = ordered;
+        }
+
+        void start(DSLContext dsl, ResultQuery<? extends Record1<?>> query) {
+            try {
+                // On this thread, to use its connection and transaction
+                cursor = dsl.fetchLazy(query);
+            } catch (RuntimeException e) {
+                workers.shutdownNow();
+                throw e;
+            }
+            ResultSet resultSet = cursor.resultSet();
+            reader = new Thread(() -> read(resultSet), "json-decoding-reader");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (consuming) {
+                    // Only read the next chunk once this one has been consumed, to stay within the buffer size
+                    consuming = false;
+                    chunks.release();
+                }
+                if (done) {
+                    return false;
+                }
+                CompletableFuture<? extends List<?>> chunk = take();
+                if (chunk == END) {
+                    done = true;
+                    close();
+                    return false;
+                }
+                try {
+                    current = chunk.join().iterator();
+                } catch (CompletionException e) {
+                    close();
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new DataAccessException("Error decoding JSON values", e.getCause());
+                }
+                consuming = true;
+            }
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return (T) current.next();
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            done = true;
+            reader.interrupt();
+            workers.shutdownNow();
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // Closed on this thread, as releasing the connection may depend on the thread (eg. in a transaction)
+            cursor.close();
+        }
+
+        private CompletableFuture<? extends List<?>> take() {
+            try {
+                return output.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new DataAccessException("Interrupted while waiting for JSON values", e);
+            }
+        }
+
+        private void read(ResultSet resultSet) {
+            try {
+                boolean more = true;
+                while (more && !closed) {
+                    chunks.acquire();
+                    List<byte[]> rows = new ArrayList<>(chunkSize);
+                    while (rows.size() < chunkSize && (more = resultSet.next())) {
+                        // The driver returns the value as received: the UTF-8 encoded JSON text
+                        rows.add(resultSet.getBytes(1));
+                    }
+                    if (rows.isEmpty()) {
+                        chunks.release();
+                    } else {
+                        submit(rows);
+                    }
+                }
+                allRead = true;
+                end();
+            } catch (InterruptedException e) {
+                // Closed
+            } catch (SQLException e) {
+                output.add(failed(new DataAccessException("Error reading JSON values", e)));
+            } catch (RuntimeException e) {
+                output.add(failed(e));
+            }
+        }
+
+        private void submit(List<byte[]> rows) {
+            CompletableFuture<List<T>> chunk = CompletableFuture.supplyAsync(() -> decode(rows), workers);
+            if (ordered) {
+                output.add(chunk);
+            } else {
+                decoding.incrementAndGet();
+                chunk.whenComplete((values, e) -> {
+                    output.add(chunk);
+                    decoding.decrementAndGet();
+                    end();
+                });
+            }
+        }
+
+        private void end() {
+            if (allRead && decoding.get() == 0 && ended.compareAndSet(false, true)) {
+                output.add(END);
+            }
+        }
+
+        private List<T> decode(List<byte[]> rows) {
+            List<T> values = new ArrayList<>(rows.size());
+            for (byte[] row : rows) {
+                values.add(decoder.apply(row == null ? null : new String(row, StandardCharsets.UTF_8)));
+            }
+            return values;
+        }
+
+        private static CompletableFuture<List<?>> failed(RuntimeException e) {
+            CompletableFuture<List<?>> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.Configuration;
+import org.jooq.ExecuteContext;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.impl.DefaultExecuteListener;
+import org.jooq.tools.JooqLogger;
+
+import javax.sql.DataSource;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.temporal.Temporal;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * <p>{@link org.jooq.ExecuteListener} which captures the execution plans of a sample of the queries that use
+ * {@link JsonDSL} or {@link JsonbDSL} operators or functions, to notice when PostgreSQL stops using an index for
+ * them (eg. when a GIN bitmap scan turns into a sequential scan as the statistics drift).</p>
+ *
+ * <p>After a sampled query has been executed, it is explained ({@code EXPLAIN (FORMAT JSON)}, with the same bind
+ * values) on a connection of a separate {@link DataSource} by a background thread. The executing thread only decides
+ * whether to sample the query, takes its bind values and hands both over; if the background thread cannot keep up,
+ * samples are dropped. The shape of every plan (its node types, relations and indexes) is counted per query
+ * fingerprint (the SQL with inline literals replaced by {@code ?} and lists of them collapsed), and the
+ * {@link Callback} is called when a plan with a sequential scan or a different plan than the previous one for the
+ * same fingerprint appears. Only the plans of the {@link #maxFingerprints(int)} most recently explained fingerprints
+ * are kept. Queries which cannot be explained are counted as {@link #failed()}, and logged as a warning the first
+ * time for their fingerprint.</p>
+ *
+ * <p>The bind values are set on the statement with plain JDBC setters, so the query is not bound a second time by
+ * jOOQ (which would, for instance, count the payload sizes of {@link JsonPayloadStats} twice). Only queries binding
+ * {@code null}, strings, numbers, booleans, {@code json}/{@code jsonb} documents, byte arrays, UUIDs and date/time
+ * values are explained; others, such as queries binding {@link JsonStreams} values, are skipped.</p>
+ *
+ * <p>Example:</p>
+ * <pre>{@code
+ * JsonExplainListener explain = new JsonExplainListener(dataSource, 0.01, new JsonExplainListener.Callback() {
+ *     public void planChanged(String fingerprint, String previousPlan, String plan) {
+ *         log.warn("Plan of {} changed from {} to {}", fingerprint, previousPlan, plan);
+ *     }
+ * });
+ * DSLContext dsl = DSL.using(JsonExplainListener.install(configuration, explain));
+ * }</pre>
+ */
+public class JsonExplainListener extends DefaultExecuteListener implements AutoCloseable {
+    private static final Pattern BIND_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+    private static final int QUEUE_SIZE = 100;
+    private static final String BIND_VALUES = JsonExplainListener.class.getName() + ".bindValues";
+    private static final JooqLogger log = JooqLogger.getLogger(JsonExplainListener.class);
+
+    /**
+     * Data source to get the connections to explain queries on.
+     */
+    private final DataSource dataSource;
+    /**
+     * Fraction of the JSON queries to explain.
+     */
+    private final double sampleRate;
+    /**
+     * Callback to notify about sequential scans and plan changes.
+     */
+    private final Callback callback;
+    /**
+     * Single background thread explaining the sampled queries.
+     */
+    private final ThreadPoolExecutor executor;
+    /**
+     * Plans per fingerprint, in access order so the least recently explained fingerprint is evicted first.
+     */
+    private final Map<String, Plans> plans = new LinkedHashMap<String, Plans>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Plans> eldest) {
+            return size() > maxFingerprints;
+        }
+    };
+    /**
+     * Fingerprints of which a failure to explain was logged, in access order like {@link #plans}.
+     */
+    private final Map<String, Boolean> loggedFailures = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > maxFingerprints;
+        }
+    };
+    /**
+     * Maximum number of fingerprints to keep the plans of.
+     */
+    private volatile int maxFingerprints = 1000;
+    /**
+     * Number of queries explained.
+     */
+    private final AtomicLong explained = new AtomicLong();
+    /**
+     * Number of sampled queries which could not be explained.
+     */
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * Receives notifications about captured plans, on the background thread.
+     */
+    public interface Callback {
+        /**
+         * Called when a plan with a sequential scan appears for a query, which was not seen for it before.
+         *
+         * @param fingerprint Fingerprint of the query
+         * @param plan        Shape of the plan
+         */
+        default void seqScan(String fingerprint, String plan) {
+        }
+
+        /**
+         * Called when the plan of a query is different from the one captured before.
+         *
+         * @param fingerprint  Fingerprint of the query
+         * @param previousPlan Shape of the previously captured plan
+         * @param plan         Shape of the new plan
+         */
+        default void planChanged(String fingerprint, String previousPlan, String plan) {
+        }
+    }
+
+    /**
+     * @param dataSource Data source to get the connections to explain queries on
+     * @param sampleRate Fraction of the JSON queries to explain, from 0 to 1
+     * @param callback   Callback to notify about sequential scans and plan changes
+     */
+    public JsonExplainListener(DataSource dataSource, double sampleRate, Callback callback) {
+        if (!(sampleRate >= 0 && sampleRate <= 1)) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1, got: " + sampleRate);
+        }
+        this.dataSource = requireNonNull(dataSource, "dataSource");
+        this.sampleRate = sampleRate;
+        this.callback = requireNonNull(callback, "callback");
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_SIZE),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "jooq-json-explain");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * Derive a {@link Configuration} which captures the plans of sampled JSON queries, by adding the
+     * {@code listener} to the existing execute listeners of {@code configuration}.
+     *
+     * @param configuration Configuration to derive from
+     * @param listener      Listener to add
+     * @return A new {@code Configuration} capturing JSON query plans
+     */
+    public static Configuration install(Configuration configuration, JsonExplainListener listener) {
+        return JsonOperators.install(configuration, listener);
+    }
+
+    /**
+     * @param maxFingerprints Maximum number of query fingerprints to keep the plans of; the least recently explained
+     *                        fingerprint is dropped first. Defaults to 1000.
+     * @return This instance
+     */
+    public JsonExplainListener maxFingerprints(int maxFingerprints) {
+        if (maxFingerprints < 1) {
+            throw new IllegalArgumentException("maxFingerprints must be at least 1, got: " + maxFingerprints);
+        }
+        this.maxFingerprints = maxFingerprints;
+        return this;
+    }
+
+    @Override
+    public void renderStart(ExecuteContext ctx) {
+        JsonOperators.renderStart(ctx);
+    }
+
+    @Override
+    public void renderEnd(ExecuteContext ctx) {
+        JsonOperators.renderEnd(ctx);
+    }
+
+    @Override
+    public void exception(ExecuteContext ctx) {
+        JsonOperators.reset();
+        // A failed query is not explained
+        ctx.data(BIND_VALUES, null);
+    }
+
+    @Override
+    public void bindEnd(ExecuteContext ctx) {
+        if (sampleRate == 0 || ctx.query() == null || ctx.sql() == null || ctx.batchQueries().length > 1
+                || ctx.statement() instanceof CallableStatement
+                || JsonOperators.operators(ctx).isEmpty()
+                || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return;
+        }
+        List<Object> bindValues = ctx.query().getBindValues();
+        if (bindValues.stream().allMatch(JsonExplainListener::isBindable)) {
+            ctx.data(BIND_VALUES, bindValues);
+        }
+    }
+
+    @Override
+    public void end(ExecuteContext ctx) {
+        @SuppressWarnings("unchecked")
+        List<Object> bindValues = (List<Object>) ctx.data(BIND_VALUES);
+        if (bindValues == null) {
+            return;
+        }
+        String sql = ctx.sql();
+        executor.execute(() -> explain(sql, bindValues));
+    }
+
+    private static boolean isBindable(Object value) {
+        return value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+                || value instanceof JSON || value instanceof JSONB || value instanceof byte[]
+                || value instanceof UUID || value instanceof java.util.Date || value instanceof Temporal;
+    }
+
+    /**
+     * @return Per query fingerprint, the number of times each plan shape was captured
+     */
+    public Map<String, Map<String, Long>> plans() {
+        Map<String, Map<String, Long>> copy = new LinkedHashMap<>();
+        synchronized (plans) {
+            plans.forEach((fingerprint, p) -> copy.put(fingerprint, Collections.unmodifiableMap(
+                    new LinkedHashMap<>(p.counts))));
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * @return Number of queries explained
+     */
+    public long explained() {
+        return explained.get();
+    }
+
+    /**
+     * @return Number of sampled queries which could not be explained
+     */
+    public long failed() {
+        return failed.get();
+    }
+
+    /**
+     * Stop explaining queries, discarding any samples which were not explained yet.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void explain(String sql, List<Object> bindValues) {
+        String plan;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("explain (format json) " + sql)) {
+            for (int i = 0; i < bindValues.size(); i++) {
+                Object value = bindValues.get(i);
+                if (value instanceof JSON) {
+                    statement.setString(i + 1, ((JSON) value).data());
+                } else if (value instanceof JSONB) {
+                    statement.setString(i + 1, ((JSONB) value).data());
+                } else {
+                    statement.setObject(i + 1, value);
+                }
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                plan = shape(resultSet.getString(1));
+            }
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            logFailure(fingerprint(sql), e);
+            return;
+        }
+        record(fingerprint(sql), plan);
+        explained.incrementAndGet();
+    }
+
+    private void logFailure(String fingerprint, Exception e) {
+        boolean logged;
+        synchronized (loggedFailures) {
+            logged = loggedFailures.put(fingerprint, Boolean.TRUE) != null;
+        }
+        if (logged) {
+            log.debug("Error explaining query " + fingerprint, e);
+        } else {
+            log.warn("Error explaining query " + fingerprint + ", further errors explaining it are logged at debug "
+                    + "level", e);
+        }
+    }
+
+    /**
+     * @return {@code sql} with its string and number literals replaced by {@code ?}, and lists of {@code ?} collapsed
+     */
+    static String fingerprint(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length());
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '"') {
+                // Quoted identifier, which may contain digits and quotes
+                int end = sql.indexOf('"', i + 1);
+                while (end >= 0 && end + 1 < sql.length() && sql.charAt(end + 1) == '"') {
+                    end = sql.indexOf('"', end + 2);
+                }
+                end = end < 0 ? sql.length() : end + 1;
+                sb.append(sql, i, end);
+                i = end;
+            } else if (c == '\'') {
+                int end = sql.indexOf('\'', i + 1);
+                while (end >= 0 && end + 1 < sql.length() && sql.charAt(end + 1) == '\'') {
+                    end = sql.indexOf('\'', end + 2);
+                }
+                sb.append('?');
+                i = end < 0 ? sql.length() : end + 1;
+            } else if (Character.isDigit(c) && (i == 0 || !isIdentifierPart(sql.charAt(i - 1)))) {
+                while (i < sql.length() && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                sb.append('?');
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        return BIND_LIST.matcher(sb).replaceAll("?, ...");
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private void record(String fingerprint, String plan) {
+        String previous;
+        boolean seen;
+        synchronized (plans) {
+            Plans p = plans.computeIfAbsent(fingerprint, f -> new Plans());
+            previous = p.last;
+            seen = p.counts.containsKey(plan);
+            p.counts.merge(plan, 1L, Long::sum);
+            p.last = plan;
+        }
+        if (!seen && plan.contains("Seq Scan")) {
+            callback.seqScan(fingerprint, plan);
+        }
+        if (previous != null && !previous.equals(plan)) {
+            callback.planChanged(fingerprint, previous, plan);
+        }
+    }
+
+    /**
+     * @return The shape of the plan in the {@code EXPLAIN (FORMAT JSON)} output, eg.
+     * {@code Bitmap Heap Scan on my_table (Bitmap Index Scan using my_table_data_idx)}
+     */
+    static String shape(String explainJson) {
+        Map<?, ?> root = (Map<?, ?>) ((List<?>) JsonParser.parse(explainJson)).get(0);
+        StringBuilder sb = new StringBuilder();
+        shape(sb, (Map<?, ?>) root.get("Plan"));
+        return sb.toString();
+    }
+
+    private static void shape(StringBuilder sb, Map<?, ?> node) {
+        sb.append(node.get("Node Type"));
+        if (node.get("Relation Name") != null) {
+            sb.append(" on ").append(node.get("Relation Name"));
+        }
+        if (node.get("Index Name") != null) {
+            sb.append(" using ").append(node.get("Index Name"));
+        }
+        List<?> children = (List<?>) node.get("Plans");
+        if (children != null) {
+            sb.append(" (");
+            for (int i = 0; i < children.size(); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                shape(sb, (Map<?, ?>) children.get(i));
+            }
+            sb.append(')');
+        }
+    }
+
+    private static final class Plans {
+        private final Map<String, Long> counts = new LinkedHashMap<>();
+        private String last;
+    }
+}
@@ -0,0 +1,186 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.Record;
+import org.jooq.TableField;
+import org.jooq.impl.DSL;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * <p>Selects the {@code json} or {@code jsonb} documents of a list query only when they are small, and loads the
+ * large ones later by key, for pages of which only a few documents are used in full. The latency of the list query
+ * then no longer depends on the largest document in the page.</p>
+ *
+ * <p>{@link #fields()} selects the key, the stored size of the document ({@code pg_column_size}, which does not
+ * decompress or fetch a TOASTed value) and the document itself if it is at most {@link #threshold(int)} bytes.
+ * {@link #value(Record)} turns a fetched record into a {@link Value}, which holds a small document, or is a handle to
+ * a large one. {@link #load(Collection)} fetches the documents of all handles which are not loaded yet with a single
+ * query by key, and {@link Value#get()} loads a single document when it was not loaded before.</p>
+ *
+ * <p>Example:</p>
+ * <pre>{@code
+ * JsonLazyLoader<Long, JSONB> loader = new JsonLazyLoader<>(dsl, MY_TABLE.ID, MY_TABLE.DATA).threshold(16_384);
+ * List<JsonLazyLoader.Value<JSONB>> documents = dsl.select(loader.fields())
+ *         .from(MY_TABLE)
+ *         .orderBy(MY_TABLE.ID)
+ *         .limit(50)
+ *         .fetch(loader::value);
+ * // Fetches the large documents of the first three rows with one query
+ * loader.load(documents.subList(0, 3));
+ * }</pre>
+ *
+ * @param <K> Key type
+ * @param <T> {@link JSON} or {@link JSONB}
+ */
+public final class JsonLazyLoader<K, T> {
+    private final DSLContext dsl;
+    private final TableField<?, K> key;
+    private final TableField<?, T> document;
+    private final Field<Integer> storedSize;
+    private final Field<Integer> size;
+    private volatile int threshold = 8192;
+
+    /**
+     * @param dsl      Context to execute the follow-up queries with
+     * @param key      Key of the table, usually the primary key
+     * @param document {@code json} or {@code jsonb} column of the same table
+     */
+    public JsonLazyLoader(DSLContext dsl, TableField<?, K> key, TableField<?, T> document) {
+        this.dsl = requireNonNull(dsl, "dsl");
+        this.key = requireNonNull(key, "key");
+        this.document = requireNonNull(document, "document");
+        if (document.getType() != JSON.class && document.getType() != JSONB.class) {
+            throw new IllegalArgumentException("Only json and jsonb fields can be loaded lazily, got: " + document);
+        }
+        if (!key.getTable().equals(document.getTable())) {
+            throw new IllegalArgumentException("Key " + key + " must be in the same table as " + document);
+        }
+        this.storedSize = DSL.field("pg_column_size({0})", Integer.class, document);
+        this.size = storedSize.as(document.getName() + "_size");
+    }
+
+    /**
+     * @param threshold Maximum stored size, in bytes, of the documents which are selected by the list query; stored
+     *                  documents larger than about 2 kB are compressed. Defaults to 8192.
+     * @return This instance
+     */
+    public JsonLazyLoader<K, T> threshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("threshold must not be negative, got: " + threshold);
+        }
+        this.threshold = threshold;
+        return this;
+    }
+
+    /**
+     * @return The fields to select in the list query: the key, the stored size of the document, and the document if
+     * it is not larger than the threshold (or {@code null} otherwise)
+     */
+    public Field<?>[] fields() {
+        return new Field<?>[]{key, size, DSL.when(storedSize.le(threshold), document).as(document.getName())};
+    }
+
+    /**
+     * @param record Record selected with {@link #fields()}
+     * @return The document of the record: loaded if it was selected, or a handle to load it otherwise
+     */
+    public Value<T> value(Record record) {
+        Integer bytes = record.get(size);
+        T small = record.get(document.getName(), document.getType());
+        Value<T> value = new Value<>(this, record.get(key), bytes);
+        if (bytes == null || small != null) {
+            value.set(small);
+        }
+        return value;
+    }
+
+    /**
+     * Fetch the documents of the values which are not loaded yet, with one query.
+     *
+     * @param values Values created by {@link #value(Record)} of this loader
+     */
+    @SuppressWarnings("unchecked")
+    public void load(Collection<Value<T>> values) {
+        Map<K, List<Value<T>>> byKey = new LinkedHashMap<>();
+        for (Value<T> value : values) {
+            if (value.loader != this) {
+                throw new IllegalArgumentException("Value was not created by this loader");
+            }
+            if (!value.isLoaded()) {
+                byKey.computeIfAbsent((K) value.key, k -> new ArrayList<>()).add(value);
+            }
+        }
+        if (byKey.isEmpty()) {
+            return;
+        }
+
+        Map<K, T> documents = new HashMap<>();
+        dsl.select(key, document)
+                .from(key.getTable())
+                .where(key.in(byKey.keySet()))
+                .fetch()
+                .forEach(record -> documents.put(record.value1(), record.value2()));
+        // Rows which were deleted since the list query have a null document
+        byKey.forEach((k, keyValues) -> keyValues.forEach(value -> value.set(documents.get(k))));
+    }
+
+    /**
+     * A document selected by the list query, or a handle to load it.
+     *
+     * @param <T> {@link JSON} or {@link JSONB}
+     */
+    public static final class Value<T> {
+        private final JsonLazyLoader<?, T> loader;
+        private final Object key;
+        private final Integer size;
+        private volatile boolean loaded;
+        private volatile T document;
+
+        Value(JsonLazyLoader<?, T> loader, Object key, Integer size) {
+            this.loader = loader;
+            this.key = key;
+            this.size = size;
+        }
+
+        /**
+         * @return Whether the document has been loaded
+         */
+        public boolean isLoaded() {
+            return loaded;
+        }
+
+        /**
+         * @return Stored (possibly compressed) size of the document in bytes, or {@code null} if it is {@code null}
+         */
+        public Integer size() {
+            return size;
+        }
+
+        /**
+         * @return The document, which is loaded by key first if it was not loaded yet
+         */
+        public T get() {
+            if (!loaded) {
+                loader.load(Collections.singletonList(this));
+            }
+            return document;
+        }
+
+        private void set(T document) {
+            this.document = document;
+            this.loaded = true;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.Condition;
+import org.jooq.Context;
+import org.jooq.impl.CustomCondition;
+
+/**
+ * A {@link Condition} created by {@link JsonbDSL}, which renders exactly like the plain SQL condition it wraps but can
+ * be recognised (see {@link JsonOperators}) as a JSON operator.
+ */
+final class JsonOperatorCondition extends CustomCondition {
+    private final String operator;
+    private final Condition delegate;
+
+    JsonOperatorCondition(String operator, Condition delegate) {
+        this.operator = operator;
+        this.delegate = delegate;
+    }
+
+    String operator() {
+        return operator;
+    }
+
+    @Override
+    public void accept(Context<?> ctx) {
+        JsonOperators.rendered(operator);
+        ctx.visit(delegate);
+    }
+}
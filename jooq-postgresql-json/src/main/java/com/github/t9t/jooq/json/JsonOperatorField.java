@@ -0,0 +1,64 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.Context;
+import org.jooq.Field;
+import org.jooq.impl.CustomField;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link Field} created by {@link JsonDSL} or {@link JsonbDSL}, which renders exactly like the plain SQL field it
+ * wraps but can be recognised (see {@link JsonOperators}) as a JSON operator or function.
+ *
+ * @param <T> Field type
+ */
+final class JsonOperatorField<T> extends CustomField<T> {
+    private final String operator;
+    private final Field<T> delegate;
+    private final Field<?> source;
+    private final List<String> path;
+
+    JsonOperatorField(String operator, Field<T> delegate) {
+        this(operator, delegate, null);
+    }
+
+    /**
+     * @param source JSON field the value is extracted from as text
+     * @param path   Path of the value in {@code source}
+     */
+    JsonOperatorField(String operator, Field<T> delegate, Field<?> source, String... path) {
+        super(delegate.getName(), delegate.getDataType());
+        this.operator = operator;
+        this.delegate = delegate;
+        this.source = source;
+        this.path = source == null
+                ? Collections.emptyList()
+                : Collections.unmodifiableList(Arrays.asList(path.clone()));
+    }
+
+    String operator() {
+        return operator;
+    }
+
+    /**
+     * @return The JSON field a text value is extracted from, or {@code null} if this is not a text extraction
+     */
+    Field<?> source() {
+        return source;
+    }
+
+    /**
+     * @return The path of the extracted text value in {@link #source()}
+     */
+    List<String> path() {
+        return path;
+    }
+
+    @Override
+    public void accept(Context<?> ctx) {
+        JsonOperators.rendered(operator);
+        ctx.visit(delegate);
+    }
+}
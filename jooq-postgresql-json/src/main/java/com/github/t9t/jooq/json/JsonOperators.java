@@ -0,0 +1,97 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.Configuration;
+import org.jooq.ExecuteContext;
+import org.jooq.ExecuteListener;
+import org.jooq.ExecuteListenerProvider;
+import org.jooq.impl.DefaultExecuteListenerProvider;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * <p>Detects the {@link JsonDSL} and {@link JsonbDSL} operators and functions (eg. {@code @>}, {@code #>>},
+ * {@code jsonb_extract_path}) used in a query while it is rendered for execution, so that execute listeners like
+ * {@link JsonQueryMetricsListener} can tag the query with them.</p>
+ *
+ * <p>{@link JsonOperatorField} and {@link JsonOperatorCondition} report themselves while being rendered between
+ * {@link ExecuteListener#renderStart(ExecuteContext)} and {@link ExecuteListener#renderEnd(ExecuteContext)}. This
+ * is much cheaper than a {@link org.jooq.VisitListener}, whose mere presence makes jOOQ render every query part
+ * through a slower path.</p>
+ */
+final class JsonOperators {
+    private static final Object OPERATORS = new Object();
+    private static final ThreadLocal<Collector> collector = ThreadLocal.withInitial(Collector::new);
+
+    private JsonOperators() {
+    }
+
+    /**
+     * Called by JSON query parts when they are rendered.
+     */
+    static void rendered(String operator) {
+        Collector c = collector.get();
+        if (c.active) {
+            if (c.operators == null) {
+                c.operators = new TreeSet<>();
+            }
+            c.operators.add(operator);
+        }
+    }
+
+    /**
+     * Start collecting operators for the query of {@code ctx}, unless another listener already did so.
+     */
+    static void renderStart(ExecuteContext ctx) {
+        if (ctx.data(OPERATORS) == null) {
+            Collector c = collector.get();
+            c.active = true;
+            c.operators = null;
+        }
+    }
+
+    /**
+     * Stop collecting operators and store them in {@code ctx}, where they can be retrieved by
+     * {@link #operators(ExecuteContext)}.
+     */
+    static void renderEnd(ExecuteContext ctx) {
+        Collector c = collector.get();
+        if (c.active) {
+            c.active = false;
+            ctx.data(OPERATORS, c.operators == null ? Collections.emptySet() : c.operators);
+            c.operators = null;
+        }
+    }
+
+    /**
+     * Discard anything collected on this thread, eg. when rendering failed.
+     */
+    static void reset() {
+        Collector c = collector.get();
+        c.active = false;
+        c.operators = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Set<String> operators(ExecuteContext ctx) {
+        Set<String> operators = (Set<String>) ctx.data(OPERATORS);
+        return operators == null ? Collections.emptySet() : operators;
+    }
+
+    /**
+     * Derive a {@link Configuration} from {@code configuration} which additionally has the {@code listener}.
+     */
+    static Configuration install(Configuration configuration, ExecuteListener listener) {
+        ExecuteListenerProvider[] providers = configuration.executeListenerProviders();
+        providers = Arrays.copyOf(providers, providers.length + 1);
+        providers[providers.length - 1] = new DefaultExecuteListenerProvider(listener);
+        return configuration.derive(providers);
+    }
+
+    private static final class Collector {
+        private boolean active;
+        private Set<String> operators;
+    }
+}
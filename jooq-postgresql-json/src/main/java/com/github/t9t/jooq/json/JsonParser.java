@@ -0,0 +1,271 @@
+package com.github.t9t.jooq.json;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>A small JSON parser producing the same value tree for every document that is equal as {@code jsonb}:</p>
+ * <ul>
+ * <li>objects as {@link Map}s with their keys in PostgreSQL's {@code jsonb} order (see {@link #KEY_ORDER}), keeping
+ * the last value of duplicate keys</li>
+ * <li>arrays as {@link List}s</li>
+ * <li>numbers as {@link BigDecimal}s, strings as {@link String}s (with escapes resolved), booleans as
+ * {@link Boolean}s and {@code null} as {@code null}</li>
+ * </ul>
+ *
+ * <p>Documents nested deeper than {@link #MAX_DEPTH} levels are rejected as invalid.</p>
+ */
+final class JsonParser {
+    /**
+     * Shorter keys first, then by character. This is the order PostgreSQL stores {@code jsonb} object keys in, as long
+     * as they are ASCII (it compares UTF-8 lengths and bytes).
+     */
+    static final Comparator<String> KEY_ORDER = (a, b) -> a.length() != b.length()
+            ? Integer.compare(a.length(), b.length())
+            : a.compareTo(b);
+
+    private static final int ERROR_CONTEXT = 50;
+    /**
+     * Maximum nesting depth of objects and arrays, so that parsing and writing a document cannot overflow the stack.
+     */
+    static final int MAX_DEPTH = 1000;
+
+    private final String json;
+    private int position;
+    private int depth;
+
+    private JsonParser(String json) {
+        this.json = json;
+    }
+
+    /**
+     * @param json JSON document
+     * @return The value tree of the document
+     * @throws IllegalArgumentException If {@code json} is not a valid JSON document
+     */
+    static Object parse(String json) {
+        JsonParser parser = new JsonParser(json);
+        Object value = parser.value();
+        parser.whitespace();
+        if (parser.position != json.length()) {
+            throw parser.error("Unexpected data after JSON value");
+        }
+        return value;
+    }
+
+    private Object value() {
+        whitespace();
+        if (position >= json.length()) {
+            throw error("Unexpected end of JSON");
+        }
+        char c = json.charAt(position);
+        switch (c) {
+            case '{':
+            case '[':
+                if (++depth > MAX_DEPTH) {
+                    throw error("JSON is nested deeper than " + MAX_DEPTH + " levels");
+                }
+                Object container = c == '{' ? object() : array();
+                depth--;
+                return container;
+            case '"':
+                return string();
+            case 't':
+                return literal("true", Boolean.TRUE);
+            case 'f':
+                return literal("false", Boolean.FALSE);
+            case 'n':
+                return literal("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return number();
+                }
+                throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> object = new TreeMap<>(KEY_ORDER);
+        position++;
+        whitespace();
+        if (consume('}')) {
+            return object;
+        }
+        do {
+            whitespace();
+            if (position >= json.length() || json.charAt(position) != '"') {
+                throw error("Expected object key");
+            }
+            String key = string();
+            whitespace();
+            expect(':');
+            object.put(key, value());
+            whitespace();
+        } while (consume(','));
+        expect('}');
+        return object;
+    }
+
+    private List<Object> array() {
+        List<Object> array = new ArrayList<>();
+        position++;
+        whitespace();
+        if (consume(']')) {
+            return array;
+        }
+        do {
+            array.add(value());
+            whitespace();
+        } while (consume(','));
+        expect(']');
+        return array;
+    }
+
+    private String string() {
+        position++;
+        int start = position;
+        while (position < json.length()) {
+            char c = json.charAt(position);
+            if (c == '"') {
+                return json.substring(start, position++);
+            }
+            if (c == '\\') {
+                return escapedString(start);
+            }
+            if (c < 0x20) {
+                throw error("Unescaped control character in string");
+            }
+            position++;
+        }
+        throw error("Unterminated string");
+    }
+
+    private String escapedString(int start) {
+        StringBuilder sb = new StringBuilder(json.substring(start, position));
+        while (position < json.length()) {
+            char c = json.charAt(position++);
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c < 0x20) {
+                throw error("Unescaped control character in string");
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (position >= json.length()) {
+                break;
+            }
+            char escape = json.charAt(position++);
+            switch (escape) {
+                case '"':
+                case '\\':
+                case '/':
+                    sb.append(escape);
+                    break;
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'u':
+                    if (position + 4 > json.length()) {
+                        throw error("Invalid unicode escape");
+                    }
+                    try {
+                        sb.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid unicode escape");
+                    }
+                    position += 4;
+                    break;
+                default:
+                    throw error("Invalid escape '\\" + escape + "'");
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private BigDecimal number() {
+        int start = position;
+        consume('-');
+        if (!consume('0')) {
+            digits();
+        }
+        if (consume('.')) {
+            digits();
+        }
+        if (consume('e') || consume('E')) {
+            if (!consume('+')) {
+                consume('-');
+            }
+            digits();
+        }
+        return new BigDecimal(json.substring(start, position));
+    }
+
+    private void digits() {
+        int start = position;
+        while (position < json.length() && json.charAt(position) >= '0' && json.charAt(position) <= '9') {
+            position++;
+        }
+        if (position == start) {
+            throw error("Expected digit");
+        }
+    }
+
+    private Object literal(String literal, Object value) {
+        if (!json.startsWith(literal, position)) {
+            throw error("Unexpected literal");
+        }
+        position += literal.length();
+        return value;
+    }
+
+    private void whitespace() {
+        while (position < json.length()) {
+            char c = json.charAt(position);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return;
+            }
+            position++;
+        }
+    }
+
+    private boolean consume(char c) {
+        if (position < json.length() && json.charAt(position) == c) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!consume(c)) {
+            throw error("Expected '" + c + "'");
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        // Only the text around the position, as documents can be large
+        int start = Math.max(0, position - ERROR_CONTEXT);
+        int end = Math.min(json.length(), position + ERROR_CONTEXT);
+        String text = (start > 0 ? "..." : "") + json.substring(start, end) + (end < json.length() ? "..." : "");
+        return new IllegalArgumentException(message + " at position " + position + " of JSON: " + text);
+    }
+}
@@ -0,0 +1,207 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.Cursor;
+import org.jooq.DSLContext;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.Record1;
+import org.jooq.Select;
+import org.jooq.exception.DataAccessException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * <p>Writes the {@code json}/{@code jsonb} values of a query straight to an {@link OutputStream} or {@link Writer},
+ * without creating {@code JSON}, {@code JSONB} or {@code String} objects: the fast path from a query to an HTTP
+ * response body. PostgreSQL sends {@code json}/{@code jsonb} values as valid JSON text, so the bytes the driver
+ * received are copied to the output as they are (and decoded from UTF-8 without intermediate strings for a
+ * {@code Writer}).</p>
+ *
+ * <p>The values are written either as newline delimited JSON (one value per line) or as a JSON array. SQL
+ * {@code NULL}s are written as JSON {@code null}. Rows are read one by one using {@link DSLContext#fetchLazy}, so
+ * set a {@link Select#fetchSize(int)} (in a transaction) to avoid the driver reading all rows into memory first.</p>
+ *
+ * <p>Example:</p>
+ * <pre>{@code
+ * JsonPassThrough.writeArray(dsl, DSL.select(MY_TABLE.DATA).from(MY_TABLE).where(...), response.getOutputStream());
+ * }</pre>
+ */
+public final class JsonPassThrough {
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+
+    private JsonPassThrough() {
+    }
+
+    /**
+     * Write the values as newline delimited JSON.
+     *
+     * @param dsl    Context to execute the query with
+     * @param select Query selecting a single {@code json} or {@code jsonb} field
+     * @param out    Stream to write the UTF-8 encoded values to; it is not closed
+     * @return Number of values written
+     * @throws IOException If writing fails
+     */
+    public static long write(DSLContext dsl, Select<? extends Record1<?>> select, OutputStream out)
+            throws IOException {
+        return write(dsl, select, new StreamSink(out), false);
+    }
+
+    /**
+     * Write the values as a JSON array.
+     *
+     * @param dsl    Context to execute the query with
+     * @param select Query selecting a single {@code json} or {@code jsonb} field
+     * @param out    Stream to write the UTF-8 encoded array to; it is not closed
+     * @return Number of values written
+     * @throws IOException If writing fails
+     */
+    public static long writeArray(DSLContext dsl, Select<? extends Record1<?>> select, OutputStream out)
+            throws IOException {
+        return write(dsl, select, new StreamSink(out), true);
+    }
+
+    /**
+     * Write the values as newline delimited JSON.
+     *
+     * @param dsl    Context to execute the query with
+     * @param select Query selecting a single {@code json} or {@code jsonb} field
+     * @param writer Writer to write the values to; it is not closed
+     * @return Number of values written
+     * @throws IOException If writing fails
+     */
+    public static long write(DSLContext dsl, Select<? extends Record1<?>> select, Writer writer) throws IOException {
+        return write(dsl, select, new WriterSink(writer), false);
+    }
+
+    /**
+     * Write the values as a JSON array.
+     *
+     * @param dsl    Context to execute the query with
+     * @param select Query selecting a single {@code json} or {@code jsonb} field
+     * @param writer Writer to write the array to; it is not closed
+     * @return Number of values written
+     * @throws IOException If writing fails
+     */
+    public static long writeArray(DSLContext dsl, Select<? extends Record1<?>> select, Writer writer)
+            throws IOException {
+        return write(dsl, select, new WriterSink(writer), true);
+    }
+
+    private static long write(DSLContext dsl, Select<? extends Record1<?>> select, Sink sink, boolean array)
+            throws IOException {
+        Class<?> type = select.getSelect().get(0).getType();
+        if (type != JSON.class && type != JSONB.class) {
+            throw new IllegalArgumentException("Only json and jsonb values can be passed through, got: " + type);
+        }
+
+        long rows = 0;
+        if (array) {
+            sink.write('[');
+        }
+        try (Cursor<? extends Record1<?>> cursor = dsl.fetchLazy(select)) {
+            ResultSet resultSet = cursor.resultSet();
+            while (resultSet.next()) {
+                if (array && rows > 0) {
+                    sink.write(',');
+                }
+                // The driver returns the value as received: the UTF-8 encoded JSON text
+                byte[] value = resultSet.getBytes(1);
+                sink.write(value == null ? NULL : value);
+                if (!array) {
+                    sink.write('\n');
+                }
+                rows++;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Error reading JSON values", e);
+        }
+        if (array) {
+            sink.write(']');
+        }
+        sink.flush();
+        return rows;
+    }
+
+    private interface Sink {
+        void write(char c) throws IOException;
+
+        void write(byte[] utf8) throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    private static final class StreamSink implements Sink {
+        private final OutputStream out;
+
+        StreamSink(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(char c) throws IOException {
+            out.write(c);
+        }
+
+        @Override
+        public void write(byte[] utf8) throws IOException {
+            out.write(utf8);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    private static final class WriterSink implements Sink {
+        private final Writer writer;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharBuffer chars = CharBuffer.allocate(8192);
+
+        WriterSink(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(char c) throws IOException {
+            writer.write(c);
+        }
+
+        @Override
+        public void write(byte[] utf8) throws IOException {
+            ByteBuffer bytes = ByteBuffer.wrap(utf8);
+            decoder.reset();
+            CoderResult result;
+            do {
+                result = decoder.decode(bytes, chars, true);
+                writeChars();
+            } while (result.isOverflow());
+            while (decoder.flush(chars).isOverflow()) {
+                writeChars();
+            }
+            writeChars();
+        }
+
+        private void writeChars() throws IOException {
+            writer.write(chars.array(), 0, chars.position());
+            chars.clear();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+    }
+}
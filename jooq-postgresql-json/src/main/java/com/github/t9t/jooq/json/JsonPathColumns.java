@@ -0,0 +1,262 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.Configuration;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.Name;
+import org.jooq.Query;
+import org.jooq.QueryPart;
+import org.jooq.SQLDialect;
+import org.jooq.Table;
+import org.jooq.TableField;
+import org.jooq.VisitContext;
+import org.jooq.VisitListener;
+import org.jooq.VisitListenerProvider;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultVisitListener;
+import org.jooq.impl.DefaultVisitListenerProvider;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * <p>Promotes frequently used JSON paths to generated {@code text} columns, and rewrites queries to read those columns
+ * instead of extracting the path from the JSON document.</p>
+ *
+ * <p>{@link #ddl()} creates the statements to add a {@code GENERATED ALWAYS AS (...) STORED} column (PostgreSQL 12+)
+ * and an index for every promoted path. Before PostgreSQL 12, {@link #triggerDdl()} adds plain columns instead, which
+ * a trigger computes on every insert and update. Once they have been executed, {@link #install(Configuration)} adds a
+ * {@link VisitListener} which renders every {@code fieldByKeyText}, {@code objectAtPathText} and
+ * {@code extractPathText} (of {@link JsonDSL} and {@link JsonbDSL}) of a promoted path as its column. These
+ * are equivalent, as PostgreSQL computes the column with the same expression: the column is always computed with
+ * {@code #>>}, which reads an array element for a path segment such as {@code "0"}, where {@code ->>} with the key
+ * {@code '0'} yields {@code NULL} on arrays. {@code fieldByKeyText} is therefore only rewritten for keys which cannot
+ * be an array index.</p>
+ *
+ * <p>Only expressions on the promoted (unaliased) table field itself are rewritten.</p>
+ *
+ * <p>Example:</p>
+ * <pre>{@code
+ * JsonPathColumns columns = new JsonPathColumns()
+ *         .promote(MY_TABLE.DATA, "data_category", "category");
+ * columns.ddl().forEach(dsl::execute);
+ *
+ * DSLContext rewriting = DSL.using(columns.install(configuration));
+ * // Rendered as: select ... where "my_table"."data_category" = ?
+ * rewriting.selectFrom(MY_TABLE).where(JsonbDSL.fieldByKeyText(MY_TABLE.DATA, "category").eq("books")).fetch();
+ * }</pre>
+ */
+public final class JsonPathColumns {
+    private final Map<Key, Promotion> promotions = new ConcurrentHashMap<>();
+
+    /**
+     * Promote a path of a JSON field to a generated column.
+     *
+     * @param source Table field of type {@code json} or {@code jsonb}
+     * @param column Name of the generated column
+     * @param path   Path of the value in {@code source}, as for {@code JsonbDSL.objectAtPathText}
+     * @return This instance
+     */
+    public JsonPathColumns promote(TableField<?, ?> source, String column, String... path) {
+        if (source.getType() != JSON.class && source.getType() != JSONB.class) {
+            throw new IllegalArgumentException("Only json and jsonb fields can be promoted, got: " + source);
+        }
+        if (path.length == 0) {
+            throw new IllegalArgumentException("Path must not be empty");
+        }
+
+        Promotion promotion = new Promotion(source, column, Arrays.asList(path.clone()));
+        if (promotions.putIfAbsent(promotion.key, promotion) != null) {
+            throw new IllegalArgumentException("Path " + promotion.path + " of " + source + " is already promoted");
+        }
+        return this;
+    }
+
+    /**
+     * @return The statements adding a generated column and an index for every promoted path, which can be executed
+     * repeatedly
+     */
+    public List<Query> ddl() {
+        List<Query> queries = new ArrayList<>();
+        for (Promotion promotion : sortedPromotions()) {
+            Table<?> table = promotion.source.getTable();
+            queries.add(DSL.query("alter table {0} add column if not exists {1} text generated always as ({2}) stored",
+                    table, DSL.name(promotion.column), promotion.expression(DSL.name(promotion.source.getName()))));
+            queries.add(index(promotion));
+        }
+        return queries;
+    }
+
+    /**
+     * Create the statements to promote the paths on PostgreSQL versions without generated columns (before 12): they
+     * add a plain column and an index for every promoted path, and a trigger per table which computes the columns of
+     * every inserted or updated row, and fill the columns of the existing rows.
+     *
+     * @return The statements, which can be executed repeatedly
+     */
+    public List<Query> triggerDdl() {
+        DSLContext dsl = DSL.using(SQLDialect.POSTGRES);
+        Map<Table<?>, List<Promotion>> byTable = new LinkedHashMap<>();
+        for (Promotion promotion : sortedPromotions()) {
+            byTable.computeIfAbsent(promotion.source.getTable(), t -> new ArrayList<>()).add(promotion);
+        }
+
+        List<Query> queries = new ArrayList<>();
+        byTable.forEach((table, tablePromotions) -> {
+            Name trigger = DSL.name(table.getName() + "_json_path_columns");
+            Name function = table.getSchema() == null ? trigger : DSL.name(table.getSchema().getName(), trigger.last());
+            StringBuilder body = new StringBuilder();
+            List<String> assignments = new ArrayList<>();
+            List<String> outdated = new ArrayList<>();
+            for (Promotion promotion : tablePromotions) {
+                queries.add(DSL.query("alter table {0} add column if not exists {1} text", table,
+                        DSL.name(promotion.column)));
+                String column = dsl.render(DSL.name(promotion.column));
+                String expression = dsl.render(promotion.expression(DSL.name(promotion.source.getName())));
+                body.append("    new.").append(column).append(" := ")
+                        .append(dsl.render(promotion.expression(DSL.name("new", promotion.source.getName()))))
+                        .append(";\n");
+                assignments.add(column + " = " + expression);
+                outdated.add(column + " is distinct from " + expression);
+            }
+            queries.add(DSL.query("create or replace function " + dsl.render(function) + "() returns trigger "
+                    + "language plpgsql as $$\n"
+                    + "begin\n"
+                    + body
+                    + "    return new;\n"
+                    + "end\n"
+                    + "$$"));
+            queries.add(DSL.query("drop trigger if exists {0} on {1}", trigger, table));
+            queries.add(DSL.query("create trigger " + dsl.render(trigger) + " before insert or update on "
+                    + dsl.render(table) + " for each row execute procedure " + dsl.render(function) + "()"));
+            queries.add(DSL.query("update " + dsl.render(table) + " set " + String.join(", ", assignments)
+                    + " where " + String.join(" or ", outdated)));
+            for (Promotion promotion : tablePromotions) {
+                queries.add(index(promotion));
+            }
+        });
+        return queries;
+    }
+
+    /**
+     * @return A visit listener rewriting promoted paths to their generated columns
+     */
+    public VisitListener rewriter() {
+        return new Rewriter(promotions);
+    }
+
+    /**
+     * Derive a configuration which rewrites promoted paths to their generated columns.
+     *
+     * @param configuration Configuration to derive from
+     * @return The derived configuration, with the {@link #rewriter()} appended to its visit listeners
+     */
+    public Configuration install(Configuration configuration) {
+        VisitListenerProvider[] existing = configuration.visitListenerProviders();
+        VisitListenerProvider[] providers = Arrays.copyOf(existing, existing.length + 1);
+        providers[existing.length] = new DefaultVisitListenerProvider(rewriter());
+        return configuration.derive(providers);
+    }
+
+    private static Query index(Promotion promotion) {
+        Table<?> table = promotion.source.getTable();
+        return DSL.query("create index if not exists {0} on {1} ({2})",
+                DSL.name(table.getName() + "_" + promotion.column + "_idx"), table, DSL.name(promotion.column));
+    }
+
+    private List<Promotion> sortedPromotions() {
+        List<Promotion> sorted = new ArrayList<>(promotions.values());
+        sorted.sort((a, b) -> a.column.compareTo(b.column));
+        return sorted;
+    }
+
+    private static final class Rewriter extends DefaultVisitListener {
+        // Text which PostgreSQL parses as an array index in a #>> path
+        private static final Pattern ARRAY_INDEX = Pattern.compile("\\s*[+-]?\\d+");
+
+        private final Map<Key, Promotion> promotions;
+
+        Rewriter(Map<Key, Promotion> promotions) {
+            this.promotions = promotions;
+        }
+
+        @Override
+        public void visitStart(VisitContext ctx) {
+            QueryPart part = ctx.queryPart();
+            if (part instanceof JsonOperatorField) {
+                JsonOperatorField<?> field = (JsonOperatorField<?>) part;
+                if (field.source() != null && !("->>".equals(field.operator())
+                        && ARRAY_INDEX.matcher(field.path().get(0)).matches())) {
+                    Promotion promotion = promotions.get(new Key(field.source().getQualifiedName(), field.path()));
+                    if (promotion != null) {
+                        ctx.queryPart(promotion.generatedColumn);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Promotion {
+        final TableField<?, ?> source;
+        final String column;
+        final List<String> path;
+        final Key key;
+        final Field<String> generatedColumn;
+
+        Promotion(TableField<?, ?> source, String column, List<String> path) {
+            this.source = source;
+            this.column = column;
+            this.path = path;
+            this.key = new Key(source.getQualifiedName(), path);
+            this.generatedColumn = DSL.field("{0}.{1}", String.class, source.getTable(), DSL.name(column));
+        }
+
+        /**
+         * @param name Name the source field is referred to by, eg. {@code new."data"} in a trigger
+         */
+        Field<String> expression(Name name) {
+            Field<Object> field = DSL.field(name);
+            String array = path.stream()
+                    .map(segment -> "\"" + segment.replace("\\", "\\\\").replace("\"", "\\\"") + "\"")
+                    .collect(Collectors.joining(",", "{", "}"));
+            return DSL.field("({0} #>> {1}::text[])", String.class, field, DSL.inline(array));
+        }
+    }
+
+    private static final class Key {
+        private final Name source;
+        private final List<String> path;
+
+        Key(Name source, List<String> path) {
+            this.source = source;
+            this.path = Collections.unmodifiableList(path);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return source.equals(other.source) && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(source, path);
+        }
+    }
+}
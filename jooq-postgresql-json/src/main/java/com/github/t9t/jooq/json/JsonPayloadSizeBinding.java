@@ -0,0 +1,194 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.Binding;
+import org.jooq.BindingGetResultSetContext;
+import org.jooq.BindingGetSQLInputContext;
+import org.jooq.BindingGetStatementContext;
+import org.jooq.BindingRegisterContext;
+import org.jooq.BindingSQLContext;
+import org.jooq.BindingSetSQLOutputContext;
+import org.jooq.BindingSetStatementContext;
+import org.jooq.Configuration;
+import org.jooq.Converter;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.conf.Settings;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * {@link Binding} wrapping the binding of a {@code json} or {@code jsonb} column, which records the size of every
+ * document read from or written to the column into {@link JsonPayloadStats}. The documents themselves are passed on
+ * untouched.
+ *
+ * @param <T> {@link org.jooq.JSON} or {@link org.jooq.JSONB}
+ */
+final class JsonPayloadSizeBinding<T> implements Binding<T, T> {
+    private final Binding<?, T> delegate;
+    private final Converter<T, T> converter;
+    private final JsonPayloadStats stats;
+    private final JsonPayloadStats.ColumnStats column;
+    private final String identityColumn;
+    private final Converter<T, T> writeCounter;
+
+    JsonPayloadSizeBinding(Binding<?, T> delegate, Class<T> type, JsonPayloadStats stats,
+                           JsonPayloadStats.ColumnStats column, String identityColumn) {
+        this.delegate = delegate;
+        this.converter = Converter.of(type, type, v -> v, v -> v);
+        this.stats = stats;
+        this.column = column;
+        this.identityColumn = identityColumn;
+        this.writeCounter = Converter.of(type, type, v -> v, v -> {
+            if (v != null) {
+                stats.written(column, v);
+            }
+            return v;
+        });
+    }
+
+    @Override
+    public Converter<T, T> converter() {
+        return converter;
+    }
+
+    @Override
+    public void sql(BindingSQLContext<T> ctx) throws SQLException {
+        delegate.sql(ctx);
+    }
+
+    @Override
+    public void register(BindingRegisterContext<T> ctx) throws SQLException {
+        delegate.register(ctx);
+    }
+
+    @Override
+    public void set(BindingSetStatementContext<T> ctx) throws SQLException {
+        delegate.set(ctx.convert(writeCounter));
+    }
+
+    @Override
+    public void set(BindingSetSQLOutputContext<T> ctx) throws SQLException {
+        delegate.set(ctx);
+    }
+
+    @Override
+    public void get(BindingGetResultSetContext<T> ctx) throws SQLException {
+        delegate.get(new ReadContext(ctx));
+    }
+
+    @Override
+    public void get(BindingGetStatementContext<T> ctx) throws SQLException {
+        delegate.get(ctx);
+    }
+
+    @Override
+    public void get(BindingGetSQLInputContext<T> ctx) throws SQLException {
+        delegate.get(ctx);
+    }
+
+    /**
+     * Context passing the value read by the delegate on to jOOQ's context, recording its size on the way: jOOQ 3.13
+     * offers no public way to take a value back from a context once it is set.
+     */
+    private final class ReadContext extends ForwardingContext<T> implements Supplier<String> {
+        private final BindingGetResultSetContext<T> ctx;
+
+        ReadContext(BindingGetResultSetContext<T> ctx) {
+            super(ctx);
+            this.ctx = ctx;
+        }
+
+        @Override
+        public void value(T value) {
+            ctx.value(value);
+            if (value != null) {
+                stats.read(column, value, this);
+            }
+        }
+
+        @Override
+        public String get() {
+            if (identityColumn == null) {
+                return null;
+            }
+            try {
+                return ctx.resultSet().getString(identityColumn);
+            } catch (SQLException e) {
+                // The identity column is not part of this result
+                return null;
+            }
+        }
+    }
+
+    private abstract static class ForwardingContext<U> implements BindingGetResultSetContext<U> {
+        private final BindingGetResultSetContext<?> scope;
+
+        ForwardingContext(BindingGetResultSetContext<?> scope) {
+            this.scope = scope;
+        }
+
+        @Override
+        public ResultSet resultSet() {
+            return scope.resultSet();
+        }
+
+        @Override
+        public int index() {
+            return scope.index();
+        }
+
+        @Override
+        public <X> BindingGetResultSetContext<X> convert(Converter<? super X, ? extends U> converter) {
+            ForwardingContext<U> outer = this;
+            return new ForwardingContext<X>(scope) {
+                @Override
+                public void value(X value) {
+                    outer.value(converter.from(value));
+                }
+            };
+        }
+
+        @Override
+        public Configuration configuration() {
+            return scope.configuration();
+        }
+
+        @Override
+        public DSLContext dsl() {
+            return scope.dsl();
+        }
+
+        @Override
+        public Settings settings() {
+            return scope.settings();
+        }
+
+        @Override
+        public SQLDialect dialect() {
+            return scope.dialect();
+        }
+
+        @Override
+        public SQLDialect family() {
+            return scope.family();
+        }
+
+        @Override
+        public Map<Object, Object> data() {
+            return scope.data();
+        }
+
+        @Override
+        public Object data(Object key) {
+            return scope.data(key);
+        }
+
+        @Override
+        public Object data(Object key, Object value) {
+            return scope.data(key, value);
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.Binding;
+import org.jooq.DataType;
+import org.jooq.Field;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.TableField;
+import org.jooq.impl.DSL;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static java.util.Comparator.comparingLong;
+
+/**
+ * <p>Records the size of {@code json} and {@code jsonb} documents read from and written to instrumented columns, as
+ * {@link Log2Histogram}s per {@code table.column}, and keeps track of the largest documents seen.</p>
+ *
+ * <p>Columns are instrumented by selecting, inserting and updating through the field returned by
+ * {@link #instrument(Field)} instead of the original field. Sizes are in characters of the JSON text as received from
+ * or passed to the JDBC driver, which equals the number of bytes for documents consisting of ASCII characters; the
+ * documents are never re-encoded to determine their size.</p>
+ *
+ * <p>Example:</p>
+ * <pre>{@code
+ * JsonPayloadStats stats = new JsonPayloadStats();
+ * stats.registerMBean("com.example:type=JsonPayloadStats");
+ *
+ * Field<JSONB> datab = stats.instrument(MY_TABLE.DATAB, MY_TABLE.ID);
+ * dsl.select(MY_TABLE.ID, datab).from(MY_TABLE).fetch();
+ * dsl.insertInto(MY_TABLE).set(datab, JSONB.valueOf("{}")).execute();
+ * }</pre>
+ */
+public final class JsonPayloadStats implements JsonPayloadStatsMXBean {
+    /**
+     * Default number of largest documents to keep track of.
+     */
+    public static final int DEFAULT_LARGEST_DOCUMENTS = 10;
+    private static final int PREVIEW_LENGTH = 64;
+
+    private final ConcurrentMap<String, ColumnStats> columns = new ConcurrentHashMap<>();
+    private final int maxLargestDocuments;
+    private final PriorityQueue<LargeDocument> largestDocuments = new PriorityQueue<>(comparingLong(LargeDocument::size));
+    private volatile long largestDocumentThreshold = -1;
+
+    /**
+     * Keep track of the {@value #DEFAULT_LARGEST_DOCUMENTS} largest documents.
+     */
+    public JsonPayloadStats() {
+        this(DEFAULT_LARGEST_DOCUMENTS);
+    }
+
+    /**
+     * @param maxLargestDocuments Number of largest documents to keep track of
+     */
+    public JsonPayloadStats(int maxLargestDocuments) {
+        if (maxLargestDocuments < 1) {
+            throw new IllegalArgumentException("maxLargestDocuments must be at least 1, got: " + maxLargestDocuments);
+        }
+        this.maxLargestDocuments = maxLargestDocuments;
+    }
+
+    /**
+     * Create a field with the same name as {@code field} which records the size of the documents read and written
+     * through it. Use it in place of {@code field} in queries.
+     *
+     * @param field {@code json} or {@code jsonb} field to instrument
+     * @param <T>   {@link JSON} or {@link JSONB}
+     * @return Instrumented field
+     * @see #instrument(Field, Field)
+     */
+    public <T> Field<T> instrument(Field<T> field) {
+        return instrument(field, null);
+    }
+
+    /**
+     * Create a field with the same name as {@code field} which records the size of the documents read and written
+     * through it. Use it in place of {@code field} in queries. When one of the largest documents is read, the value of
+     * the {@code identity} column in the same row (if selected) is recorded with it.
+     *
+     * @param field    {@code json} or {@code jsonb} field to instrument
+     * @param identity Field identifying the row, typically the primary key; can be {@code null}
+     * @param <T>      {@link JSON} or {@link JSONB}
+     * @return Instrumented field
+     */
+    public <T> Field<T> instrument(Field<T> field, Field<?> identity) {
+        Class<T> type = field.getType();
+        if (type != JSON.class && type != JSONB.class) {
+            throw new IllegalArgumentException("Only json and jsonb fields can be instrumented, got: " + type.getName());
+        }
+
+        DataType<T> dataType = field.getDataType();
+        Binding<T, T> binding = new JsonPayloadSizeBinding<>(dataType.getBinding(), type, this,
+                column(columnName(field)), identity == null ? null : identity.getName());
+        return DSL.field(field.getQualifiedName(), dataType.asConvertedDataType(binding));
+    }
+
+    /**
+     * @param column Column name, as {@code table.column}
+     * @return Statistics of the column, or {@code null} if it was not instrumented
+     */
+    public ColumnStats get(String column) {
+        return columns.get(column);
+    }
+
+    /**
+     * @return The (live) statistics of all instrumented columns, sorted by {@code table.column}
+     */
+    public SortedMap<String, ColumnStats> columns() {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(columns));
+    }
+
+    /**
+     * @return The largest documents seen, largest first
+     */
+    public List<LargeDocument> largestDocuments() {
+        List<LargeDocument> documents;
+        synchronized (largestDocuments) {
+            documents = new ArrayList<>(largestDocuments);
+        }
+        documents.sort(comparingLong(LargeDocument::size).reversed());
+        return documents;
+    }
+
+    /**
+     * Register these statistics with the platform MBean server.
+     *
+     * @param objectName Name to register under, eg. {@code com.example:type=JsonPayloadStats}
+     * @return The registered {@code ObjectName}
+     * @throws JMException When the name is invalid or already registered
+     */
+    public ObjectName registerMBean(String objectName) throws JMException {
+        ObjectName name = new ObjectName(objectName);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        return name;
+    }
+
+    @Override
+    public Map<String, Long> getDocumentsRead() {
+        return perColumn(c -> c.read.count());
+    }
+
+    @Override
+    public Map<String, Long> getCharsRead() {
+        return perColumn(c -> c.read.sum());
+    }
+
+    @Override
+    public Map<String, Long> getDocumentsWritten() {
+        return perColumn(c -> c.written.count());
+    }
+
+    @Override
+    public Map<String, Long> getCharsWritten() {
+        return perColumn(c -> c.written.sum());
+    }
+
+    @Override
+    public Map<String, Long> getMaxDocumentSize() {
+        return perColumn(c -> Math.max(c.read.max(), c.written.max()));
+    }
+
+    @Override
+    public List<String> getLargestDocuments() {
+        List<String> documents = new ArrayList<>();
+        for (LargeDocument document : largestDocuments()) {
+            documents.add(document.toString());
+        }
+        return documents;
+    }
+
+    @Override
+    public void reset() {
+        for (ColumnStats column : columns.values()) {
+            column.read.reset();
+            column.written.reset();
+        }
+        synchronized (largestDocuments) {
+            largestDocuments.clear();
+            largestDocumentThreshold = -1;
+        }
+    }
+
+    void read(ColumnStats column, Object value, Supplier<String> identity) {
+        long size = size(value);
+        column.read.record(size);
+        if (size > largestDocumentThreshold) {
+            offer(new LargeDocument(column.name, false, size, identity.get(), preview(value)));
+        }
+    }
+
+    void written(ColumnStats column, Object value) {
+        long size = size(value);
+        column.written.record(size);
+        if (size > largestDocumentThreshold) {
+            offer(new LargeDocument(column.name, true, size, null, preview(value)));
+        }
+    }
+
+    private void offer(LargeDocument document) {
+        synchronized (largestDocuments) {
+            if (document.size <= largestDocumentThreshold || largestDocuments.contains(document)) {
+                return;
+            }
+            largestDocuments.add(document);
+            if (largestDocuments.size() > maxLargestDocuments) {
+                largestDocuments.poll();
+            }
+            if (largestDocuments.size() == maxLargestDocuments) {
+                largestDocumentThreshold = largestDocuments.peek().size;
+            }
+        }
+    }
+
+    private ColumnStats column(String name) {
+        return columns.computeIfAbsent(name, ColumnStats::new);
+    }
+
+    private Map<String, Long> perColumn(Function<ColumnStats, Long> value) {
+        Map<String, Long> values = new TreeMap<>();
+        columns.forEach((name, column) -> values.put(name, value.apply(column)));
+        return values;
+    }
+
+    private static String columnName(Field<?> field) {
+        if (field instanceof TableField && ((TableField<?, ?>) field).getTable() != null) {
+            return ((TableField<?, ?>) field).getTable().getName() + "." + field.getName();
+        }
+        return field.getName();
+    }
+
+    private static long size(Object value) {
+        if (value instanceof JSONB) {
+            return ((JSONB) value).data().length();
+        }
+        if (value instanceof JSON) {
+            return ((JSON) value).data().length();
+        }
+        return value.toString().length();
+    }
+
+    private static String preview(Object value) {
+        String data = value instanceof JSONB ? ((JSONB) value).data()
+                : value instanceof JSON ? ((JSON) value).data()
+                : value.toString();
+        return data.length() <= PREVIEW_LENGTH ? data : data.substring(0, PREVIEW_LENGTH) + "...";
+    }
+
+    /**
+     * Size statistics of a single column.
+     */
+    public static final class ColumnStats {
+        private final String name;
+        private final Log2Histogram read = new Log2Histogram();
+        private final Log2Histogram written = new Log2Histogram();
+
+        private ColumnStats(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return Column name, as {@code table.column}
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * @return Histogram of the size of the documents read
+         */
+        public Log2Histogram read() {
+            return read;
+        }
+
+        /**
+         * @return Histogram of the size of the documents written
+         */
+        public Log2Histogram written() {
+            return written;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: read [%s], written [%s]", name, read, written);
+        }
+    }
+
+    /**
+     * One of the largest documents seen.
+     */
+    public static final class LargeDocument {
+        private final String column;
+        private final boolean written;
+        private final long size;
+        private final String identity;
+        private final String preview;
+
+        private LargeDocument(String column, boolean written, long size, String identity, String preview) {
+            this.column = column;
+            this.written = written;
+            this.size = size;
+            this.identity = identity;
+            this.preview = preview;
+        }
+
+        /**
+         * @return Column name, as {@code table.column}
+         */
+        public String column() {
+            return column;
+        }
+
+        /**
+         * @return {@code true} if the document was written, {@code false} if it was read
+         */
+        public boolean written() {
+            return written;
+        }
+
+        /**
+         * @return Size of the document
+         */
+        public long size() {
+            return size;
+        }
+
+        /**
+         * @return Value of the identity column of the row the document was read from, or {@code null} if not
+         * available
+         */
+        public String identity() {
+            return identity;
+        }
+
+        /**
+         * @return The start of the document
+         */
+        public String preview() {
+            return preview;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof LargeDocument)) {
+                return false;
+            }
+            LargeDocument other = (LargeDocument) o;
+            return size == other.size && written == other.written && column.equals(other.column)
+                    && Objects.equals(identity, other.identity) && preview.equals(other.preview);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(column, written, size, identity, preview);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s %d chars%s: %s", column, written ? "written" : "read", size,
+                    identity == null ? "" : " (" + identity + ")", preview);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.t9t.jooq.json;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JMX view of {@link JsonPayloadStats}. Sizes are in characters of the JSON text, which equals the number of bytes for
+ * documents consisting of ASCII characters.
+ */
+public interface JsonPayloadStatsMXBean {
+    /**
+     * @return Number of documents read, per {@code table.column}
+     */
+    Map<String, Long> getDocumentsRead();
+
+    /**
+     * @return Total size of the documents read, per {@code table.column}
+     */
+    Map<String, Long> getCharsRead();
+
+    /**
+     * @return Number of documents written, per {@code table.column}
+     */
+    Map<String, Long> getDocumentsWritten();
+
+    /**
+     * @return Total size of the documents written, per {@code table.column}
+     */
+    Map<String, Long> getCharsWritten();
+
+    /**
+     * @return Size of the largest document read or written, per {@code table.column}
+     */
+    Map<String, Long> getMaxDocumentSize();
+
+    /**
+     * @return Description of the largest documents seen, largest first
+     */
+    List<String> getLargestDocuments();
+
+    /**
+     * Forget all recorded statistics.
+     */
+    void reset();
+}
@@ -0,0 +1,561 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.Record;
+import org.jooq.Result;
+import org.jooq.ResultQuery;
+import org.jooq.SQLDialect;
+import org.jooq.Table;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.jooq.tools.JooqLogger;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * <p>A read-through cache of query results, for rarely changing documents which are read very often. Results are
+ * cached by their SQL and bind values, tagged with the tables they were read from (and optionally the key of the row),
+ * and evicted least recently used first when the cached values exceed the maximum size.</p>
+ *
+ * <p>Cache hits do not take a lock: entries are kept in a {@link ConcurrentHashMap} and record the time they were last
+ * used, which eviction sorts on. Only adding and removing entries is synchronized.</p>
+ *
+ * <p>Entries are invalidated by notifications on the {@value #CHANNEL} channel, sent by the triggers created by
+ * {@link #triggerDdl(Table)} and {@link #triggerDdl(Table, Field)}, and received by {@link #listen(DataSource)}: a
+ * {@code table} payload invalidates every entry of that table, a {@code table:key} payload only the entries of that
+ * key (and the entries of the table without a key). Notifications are delivered when the transaction commits, which
+ * keeps stale reads to milliseconds. When the listener loses its connection, the whole cache is invalidated, as
+ * notifications may have been missed, and results are not cached until it has reconnected. The failure is logged, and
+ * the listener reconnects with a delay growing from 1 second to 1 minute.</p>
+ *
+ * <p>Cached results are shared between callers and must not be modified. Listening requires the PostgreSQL JDBC
+ * driver.</p>
+ *
+ * <p>Example:</p>
+ * <pre>{@code
+ * JsonQueryCache.triggerDdl(CONFIG, CONFIG.ID).forEach(dsl::execute);
+ *
+ * JsonQueryCache cache = new JsonQueryCache(10_000_000);
+ * AutoCloseable listener = cache.listen(dataSource);
+ *
+ * Result<Record1<String>> timeout = cache.fetchByKey(dsl, DSL.select(JsonbDSL.fieldByKeyText(CONFIG.DATA, "timeout"))
+ *         .from(CONFIG)
+ *         .where(CONFIG.ID.eq(42L)), CONFIG, 42L);
+ * }</pre>
+ */
+public final class JsonQueryCache {
+    /**
+     * The channel the triggers notify and the listener listens on.
+     */
+    public static final String CHANNEL = "jooq_json_cache";
+
+    private static final String FUNCTION = "jooq_json_cache_notify";
+    private static final String FUNCTION_DDL = "create or replace function " + FUNCTION + "() returns trigger "
+            + "language plpgsql as $$\n"
+            + "begin\n"
+            + "    if TG_LEVEL = 'STATEMENT' then\n"
+            + "        perform pg_notify('" + CHANNEL + "', TG_TABLE_NAME);\n"
+            + "        return null;\n"
+            + "    end if;\n"
+            + "    if TG_OP in ('UPDATE', 'DELETE') then\n"
+            + "        perform pg_notify('" + CHANNEL + "', TG_TABLE_NAME || ':' || "
+            + "coalesce(to_jsonb(OLD) ->> TG_ARGV[0], ''));\n"
+            + "    end if;\n"
+            + "    if TG_OP in ('INSERT', 'UPDATE') then\n"
+            + "        perform pg_notify('" + CHANNEL + "', TG_TABLE_NAME || ':' || "
+            + "coalesce(to_jsonb(NEW) ->> TG_ARGV[0], ''));\n"
+            + "    end if;\n"
+            + "    return null;\n"
+            + "end\n"
+            + "$$";
+    private static final int OVERHEAD = 64;
+    private static final long MIN_RETRY_DELAY = TimeUnit.SECONDS.toMillis(1);
+    private static final long MAX_RETRY_DELAY = TimeUnit.MINUTES.toMillis(1);
+    private static final JooqLogger log = JooqLogger.getLogger(JsonQueryCache.class);
+
+    private final long maxSize;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Set<Key>> keysByTag = new HashMap<>();
+    // Invalidations per table name, and of all tables
+    private final Map<String, AtomicLong> invalidations = new ConcurrentHashMap<>();
+    private final AtomicLong allInvalidations = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    // Listeners which lost their connection, while which invalidations can be missed
+    private final AtomicInteger disconnected = new AtomicInteger();
+    private long size;
+
+    /**
+     * @param maxSize Maximum total size of the cached entries, in characters of their SQL and text/JSON values (other
+     *                values count as a fixed number of characters)
+     */
+    public JsonQueryCache(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Maximum size must be positive, got: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Fetch the result of a query from the cache, or execute it and cache the result.
+     *
+     * @param dsl    Context to execute the query with
+     * @param query  Query to fetch
+     * @param tables Tables the query reads from, whose notifications invalidate the result
+     * @param <R>    Record type
+     * @return The (shared) result
+     */
+    public <R extends Record> Result<R> fetch(DSLContext dsl, ResultQuery<R> query, Table<?>... tables) {
+        if (tables.length == 0) {
+            throw new IllegalArgumentException("At least one table is required");
+        }
+        Set<String> tags = new HashSet<>();
+        for (Table<?> table : tables) {
+            tags.add(table.getName());
+        }
+        return fetch(dsl, query, tags);
+    }
+
+    /**
+     * Fetch the result of a query which only reads the row with a given key, from the cache or by executing it. Only
+     * notifications of that key (or of the whole table) invalidate the result.
+     *
+     * @param dsl   Context to execute the query with
+     * @param query Query to fetch
+     * @param table Table the query reads from
+     * @param key   Value of the key column (see {@link #triggerDdl(Table, Field)}) of the row the query reads
+     * @param <R>   Record type
+     * @return The (shared) result
+     */
+    public <R extends Record> Result<R> fetchByKey(DSLContext dsl, ResultQuery<R> query, Table<?> table, Object key) {
+        return fetch(dsl, query, Collections.singleton(table.getName() + ":" + key));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R extends Record> Result<R> fetch(DSLContext dsl, ResultQuery<R> query, Set<String> tags) {
+        if (!isCaching()) {
+            misses.incrementAndGet();
+            return dsl.fetch(query);
+        }
+        Key key = new Key(dsl.render(query), query.getBindValues().toArray());
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.lastUsed = System.nanoTime();
+            hits.incrementAndGet();
+            return (Result<R>) entry.result;
+        }
+        misses.incrementAndGet();
+
+        Set<String> tables = tags.stream().map(JsonQueryCache::table).collect(Collectors.toSet());
+        long generation = generation(tables);
+        Result<R> result = dsl.fetch(query);
+        long entrySize = size(key, result);
+        synchronized (this) {
+            // Do not cache a result which may have been read before a change that has been invalidated already
+            if (entrySize <= maxSize && generation == generation(tables) && !entries.containsKey(key)
+                    && isCaching()) {
+                entries.put(key, new Entry(result, tags, entrySize));
+                tags.forEach(tag -> keysByTag.computeIfAbsent(tag, t -> new HashSet<>()).add(key));
+                size += entrySize;
+                evict();
+            }
+        }
+        return result;
+    }
+
+    // The sum of the invalidation counts of the tables, which only stays the same when none was invalidated
+    private long generation(Set<String> tables) {
+        long generation = allInvalidations.get();
+        for (String table : tables) {
+            AtomicLong count = invalidations.get(table);
+            generation += count == null ? 0 : count.get();
+        }
+        return generation;
+    }
+
+    private void invalidated(String table) {
+        invalidations.computeIfAbsent(table, t -> new AtomicLong()).incrementAndGet();
+    }
+
+    private static String table(String tag) {
+        int separator = tag.indexOf(':');
+        return separator < 0 ? tag : tag.substring(0, separator);
+    }
+
+    /**
+     * Invalidate all entries of a table.
+     *
+     * @param table Name of the table
+     */
+    public synchronized void invalidate(String table) {
+        invalidated(table);
+        remove(table);
+        String prefix = table + ":";
+        keysByTag.keySet().stream()
+                .filter(tag -> tag.startsWith(prefix))
+                .collect(Collectors.toList())
+                .forEach(this::remove);
+    }
+
+    /**
+     * Invalidate the entries of a key of a table, and the entries of the table which are not cached by key.
+     *
+     * @param table Name of the table
+     * @param key   Value of the key column of the changed row
+     */
+    public synchronized void invalidate(String table, String key) {
+        invalidated(table);
+        remove(table);
+        remove(table + ":" + key);
+    }
+
+    /**
+     * Invalidate all entries.
+     */
+    public synchronized void invalidateAll() {
+        allInvalidations.incrementAndGet();
+        entries.clear();
+        keysByTag.clear();
+        size = 0;
+    }
+
+    /**
+     * @return Number of cached results
+     */
+    public int entries() {
+        return entries.size();
+    }
+
+    /**
+     * @return Total size of the cached results, in characters
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * @return Whether results are cached, which they are not while a listener has lost its connection
+     */
+    public boolean isCaching() {
+        return disconnected.get() == 0;
+    }
+
+    /**
+     * @return Number of results served from the cache
+     */
+    public long hits() {
+        return hits.get();
+    }
+
+    /**
+     * @return Number of queries executed because their result was not cached
+     */
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * Start a daemon thread which listens for notifications on a dedicated connection and invalidates the affected
+     * entries, until the returned handle is closed. Returns once listening.
+     *
+     * @param dataSource Data source of a PostgreSQL database, using the PostgreSQL JDBC driver
+     * @return Handle to stop listening
+     * @throws DataAccessException If listening fails
+     */
+    public AutoCloseable listen(DataSource dataSource) {
+        Listener listener = new Listener(dataSource);
+        Thread thread = new Thread(listener, "jooq-json-cache-listener");
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            if (!listener.listening.await(30, TimeUnit.SECONDS)) {
+                listener.close();
+                throw new DataAccessException("Timed out listening on channel " + CHANNEL);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            listener.close();
+            throw new DataAccessException("Interrupted while listening on channel " + CHANNEL, e);
+        }
+        if (listener.failure != null) {
+            listener.close();
+            throw new DataAccessException("Error listening on channel " + CHANNEL, listener.failure);
+        }
+        return listener;
+    }
+
+    /**
+     * Create the statements to install a trigger notifying the cache of every statement changing a table, which
+     * invalidates all entries of the table. Executing them again replaces the trigger.
+     *
+     * @param table Table holding json/jsonb columns
+     * @return The statements
+     */
+    public static List<String> triggerDdl(Table<?> table) {
+        DSLContext dsl = DSL.using(SQLDialect.POSTGRES);
+        return Arrays.asList(FUNCTION_DDL,
+                dropTrigger(dsl, table, "_json_cache"),
+                dropTrigger(dsl, table, "_json_cache_truncate"),
+                createTrigger(dsl, table, "_json_cache", "insert or update or delete or truncate", "statement", ""));
+    }
+
+    /**
+     * Create the statements to install a trigger notifying the cache of every changed row of a table, with its key,
+     * which only invalidates the entries of that key (see
+     * {@link #fetchByKey(DSLContext, ResultQuery, Table, Object)}), and of every truncate of the table. Executing them
+     * again replaces the triggers.
+     *
+     * @param table Table holding json/jsonb columns
+     * @param key   Key column of the table, usually the primary key
+     * @return The statements
+     */
+    public static List<String> triggerDdl(Table<?> table, Field<?> key) {
+        DSLContext dsl = DSL.using(SQLDialect.POSTGRES);
+        return Arrays.asList(FUNCTION_DDL,
+                dropTrigger(dsl, table, "_json_cache"),
+                dropTrigger(dsl, table, "_json_cache_truncate"),
+                createTrigger(dsl, table, "_json_cache", "insert or update or delete", "row",
+                        dsl.render(DSL.inline(key.getName()))),
+                createTrigger(dsl, table, "_json_cache_truncate", "truncate", "statement", ""));
+    }
+
+    private static String dropTrigger(DSLContext dsl, Table<?> table, String suffix) {
+        return "drop trigger if exists " + dsl.render(DSL.name(table.getName() + suffix)) + " on " + dsl.render(table);
+    }
+
+    private static String createTrigger(DSLContext dsl, Table<?> table, String suffix, String events, String level,
+                                        String argument) {
+        return "create trigger " + dsl.render(DSL.name(table.getName() + suffix)) + " after " + events + " on "
+                + dsl.render(table) + " for each " + level + " execute procedure " + FUNCTION + "(" + argument + ")";
+    }
+
+    private void remove(String tag) {
+        Set<Key> keys = keysByTag.remove(tag);
+        if (keys != null) {
+            keys.forEach(this::remove);
+        }
+    }
+
+    private void remove(Key key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            size -= entry.size;
+            for (String tag : entry.tags) {
+                Set<Key> keys = keysByTag.get(tag);
+                if (keys != null) {
+                    keys.remove(key);
+                    if (keys.isEmpty()) {
+                        keysByTag.remove(tag);
+                    }
+                }
+            }
+        }
+    }
+
+    private void evict() {
+        if (size <= maxSize) {
+            return;
+        }
+        // Evict to below the maximum, so the entries are not sorted again for every new entry
+        long target = maxSize - maxSize / 8;
+        // Copy the times, which hits keep changing while sorting
+        List<Used> used = new ArrayList<>(entries.size());
+        entries.forEach((key, entry) -> used.add(new Used(key, entry.lastUsed)));
+        used.sort(Comparator.comparingLong(u -> u.time));
+        for (Used u : used) {
+            if (size <= target) {
+                return;
+            }
+            remove(u.key);
+        }
+    }
+
+    private void notified(String payload) {
+        int separator = payload.indexOf(':');
+        if (separator < 0) {
+            invalidate(payload);
+        } else {
+            invalidate(payload.substring(0, separator), payload.substring(separator + 1));
+        }
+    }
+
+    private static long size(Key key, Result<?> result) {
+        long size = OVERHEAD + key.sql.length();
+        for (Record record : result) {
+            for (int i = 0; i < record.size(); i++) {
+                Object value = record.get(i);
+                if (value instanceof String) {
+                    size += ((String) value).length();
+                } else if (value instanceof JSONB) {
+                    size += ((JSONB) value).data().length();
+                } else if (value instanceof JSON) {
+                    size += ((JSON) value).data().length();
+                } else {
+                    size += 16;
+                }
+            }
+        }
+        return size;
+    }
+
+    private final class Listener implements Runnable, AutoCloseable {
+        private final DataSource dataSource;
+        private final CountDownLatch listening = new CountDownLatch(1);
+        private volatile boolean closed;
+        private volatile Exception failure;
+        // Consecutive failures since last listening, only used by the listener thread
+        private int failures;
+
+        Listener(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        @Override
+        public void run() {
+            try {
+                listen();
+            } finally {
+                if (failures > 0) {
+                    disconnected.decrementAndGet();
+                }
+            }
+        }
+
+        private void listen() {
+            while (!closed) {
+                try (Connection connection = dataSource.getConnection()) {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("listen " + CHANNEL);
+                    }
+                    // Changes may have been missed while not listening
+                    invalidateAll();
+                    if (failures > 0) {
+                        log.info("Listening on channel " + CHANNEL + " again after " + failures + " failures");
+                        failures = 0;
+                        disconnected.decrementAndGet();
+                    }
+                    listening.countDown();
+
+                    PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                    while (!closed) {
+                        PGNotification[] notifications = pgConnection.getNotifications(250);
+                        if (notifications != null) {
+                            for (PGNotification notification : notifications) {
+                                notified(notification.getParameter());
+                            }
+                        }
+                    }
+                } catch (SQLException | RuntimeException e) {
+                    if (listening.getCount() > 0) {
+                        invalidateAll();
+                        failure = e;
+                        listening.countDown();
+                        return;
+                    }
+                    if (failures++ == 0) {
+                        disconnected.incrementAndGet();
+                    }
+                    // After stopping to cache, so no entry stored before the failure is served
+                    invalidateAll();
+                    long delay = Math.min(MAX_RETRY_DELAY, MIN_RETRY_DELAY << Math.min(failures - 1, 6));
+                    log.warn("Error listening on channel " + CHANNEL + " (failure " + failures
+                            + "), not caching until listening again, reconnecting in " + delay + " ms", e);
+                    pause(delay);
+                }
+            }
+        }
+
+        private void pause(long millis) {
+            long end = System.currentTimeMillis() + millis;
+            try {
+                // In steps, to stop soon after closing
+                for (long left = millis; left > 0 && !closed; left = end - System.currentTimeMillis()) {
+                    Thread.sleep(Math.min(left, 100));
+                }
+            } catch (InterruptedException e) {
+                closed = true;
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static final class Key {
+        private final String sql;
+        private final Object[] bindValues;
+        private final int hash;
+
+        Key(String sql, Object[] bindValues) {
+            this.sql = sql;
+            this.bindValues = bindValues;
+            // Deep, as bind values can be arrays
+            this.hash = 31 * sql.hashCode() + Arrays.deepHashCode(bindValues);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hash == key.hash && sql.equals(key.sql) && Arrays.deepEquals(bindValues, key.bindValues);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Used {
+        private final Key key;
+        private final long time;
+
+        Used(Key key, long time) {
+            this.key = key;
+            this.time = time;
+        }
+    }
+
+    private static final class Entry {
+        private final Result<?> result;
+        private final Set<String> tags;
+        private final long size;
+        private volatile long lastUsed = System.nanoTime();
+
+        Entry(Result<?> result, Set<String> tags, long size) {
+            this.result = result;
+            this.tags = tags;
+            this.size = size;
+        }
+    }
+}
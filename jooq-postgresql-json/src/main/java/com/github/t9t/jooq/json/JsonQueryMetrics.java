@@ -0,0 +1,33 @@
+package com.github.t9t.jooq.json;
+
+/**
+ * <p>Receives measurements of executed queries, per {@link JsonDSL}/{@link JsonbDSL} operator or function used in the
+ * query (eg. {@code @>}, {@code #>>}, {@code jsonb_extract_path}). A query using multiple operators is recorded once
+ * for each of them.</p>
+ *
+ * <p>Implementations are called on the thread executing the query, so they should be fast and must be thread-safe.
+ * {@link InMemoryJsonQueryMetrics} is a lock-free implementation that does not need any external backend.</p>
+ *
+ * @see JsonQueryMetricsListener
+ */
+@FunctionalInterface
+public interface JsonQueryMetrics {
+    /**
+     * Record the execution of a query which used the {@code operator}.
+     *
+     * @param operator     The JSON operator or function name
+     * @param elapsedNanos Time from executing the statement until the last row was fetched, in nanoseconds
+     * @param rows         Number of rows fetched, or affected for DML statements
+     */
+    void record(String operator, long elapsedNanos, long rows);
+
+    /**
+     * Record a query which used the {@code operator} but failed, instead of {@link #record(String, long, long)}. Does
+     * nothing by default.
+     *
+     * @param operator     The JSON operator or function name
+     * @param elapsedNanos Time from executing the statement until it failed, in nanoseconds
+     */
+    default void failed(String operator, long elapsedNanos) {
+    }
+}
@@ -0,0 +1,114 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.Configuration;
+import org.jooq.ExecuteContext;
+import org.jooq.impl.DefaultExecuteListener;
+
+import java.util.Set;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * <p>{@link org.jooq.ExecuteListener} which records the latency and row count of every executed query that uses
+ * {@link JsonDSL} or {@link JsonbDSL} operators or functions, tagged with those operators, into a
+ * {@link JsonQueryMetrics}. Queries without JSON operators are not recorded, and failed queries are reported
+ * separately through {@link JsonQueryMetrics#failed(String, long)}.</p>
+ *
+ * <p>The operators are detected while the query is rendered, so no {@link org.jooq.VisitListener} is needed. The
+ * listener can be added to a configuration manually or using {@link #install(Configuration, JsonQueryMetrics)}.</p>
+ */
+public class JsonQueryMetricsListener extends DefaultExecuteListener {
+    private static final Object EXECUTION = new Object();
+    private final JsonQueryMetrics metrics;
+
+    /**
+     * @param metrics Metrics to record the executed queries into
+     */
+    public JsonQueryMetricsListener(JsonQueryMetrics metrics) {
+        this.metrics = requireNonNull(metrics, "metrics");
+    }
+
+    /**
+     * Derive a {@link Configuration} which records JSON query metrics, by adding a {@code JsonQueryMetricsListener}
+     * to the existing execute listeners of {@code configuration}.
+     *
+     * @param configuration Configuration to derive from
+     * @param metrics       Metrics to record into
+     * @return A new {@code Configuration} recording JSON query metrics
+     */
+    public static Configuration install(Configuration configuration, JsonQueryMetrics metrics) {
+        return JsonOperators.install(configuration, new JsonQueryMetricsListener(metrics));
+    }
+
+    @Override
+    public void renderStart(ExecuteContext ctx) {
+        JsonOperators.renderStart(ctx);
+    }
+
+    @Override
+    public void renderEnd(ExecuteContext ctx) {
+        JsonOperators.renderEnd(ctx);
+    }
+
+    @Override
+    public void executeStart(ExecuteContext ctx) {
+        Set<String> operators = JsonOperators.operators(ctx);
+        if (!operators.isEmpty()) {
+            ctx.data(EXECUTION, new Execution(operators, System.nanoTime()));
+        }
+    }
+
+    @Override
+    public void executeEnd(ExecuteContext ctx) {
+        Execution execution = (Execution) ctx.data(EXECUTION);
+        if (execution != null && ctx.rows() > 0) {
+            execution.rows = ctx.rows();
+        }
+    }
+
+    @Override
+    public void recordEnd(ExecuteContext ctx) {
+        Execution execution = (Execution) ctx.data(EXECUTION);
+        if (execution != null) {
+            execution.rows++;
+        }
+    }
+
+    @Override
+    public void exception(ExecuteContext ctx) {
+        JsonOperators.reset();
+        Execution execution = (Execution) ctx.data(EXECUTION);
+        if (execution != null) {
+            execution.failed = true;
+        }
+    }
+
+    @Override
+    public void end(ExecuteContext ctx) {
+        Execution execution = (Execution) ctx.data(EXECUTION);
+        if (execution == null) {
+            return;
+        }
+
+        long elapsed = System.nanoTime() - execution.startNanos;
+        for (String operator : execution.operators) {
+            if (execution.failed) {
+                metrics.failed(operator, elapsed);
+            } else {
+                metrics.record(operator, elapsed, execution.rows);
+            }
+        }
+    }
+
+    private static final class Execution {
+        private final Set<String> operators;
+        private final long startNanos;
+        private long rows;
+        private boolean failed;
+
+        private Execution(Set<String> operators, long startNanos) {
+            this.operators = operators;
+            this.startNanos = startNanos;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.Param;
+import org.jooq.Query;
+import org.jooq.QueryPart;
+import org.jooq.Record;
+import org.jooq.Result;
+import org.jooq.Select;
+import org.jooq.TableRecord;
+import org.jooq.VisitContext;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultVisitListener;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * <p>A query which is rendered once and then executed any number of times with new values for its named parameters,
+ * without building, rendering or binding the query through jOOQ again.</p>
+ *
+ * <p>Creating a template renders the SQL and determines which JDBC bind slots belong to which named parameter (see
+ * {@link org.jooq.impl.DSL#param(String, Class)}). Executing it prepares the cached SQL and binds the values straight
+ * to the {@link PreparedStatement}: {@link JSON} and {@link JSONB} values with {@link PreparedStatement#setString},
+ * other values with the setter jOOQ used for the sample value. Every other bind value of the query is bound as it was
+ * when the template was created. The query itself is not modified.</p>
+ *
+ * <p>The named parameters must have a non-null sample value when the template is created, and must be of a type which
+ * jOOQ binds without converting it ({@code JSON}, {@code JSONB}, {@code String}, numbers and {@code Boolean}). The
+ * values passed when executing the template must be of the same type as the sample value. Since
+ * queries are executed with plain JDBC, {@link org.jooq.ExecuteListener}s (such as {@link JsonQueryMetricsListener})
+ * are not invoked. Templates are immutable and thread safe.</p>
+ *
+ * <p>Example:</p>
+ * <pre>{@code
+ * Param<JSONB> filter = DSL.param("filter", JSONB.valueOf("{}"));
+ * Param<String> type = DSL.param("type", "");
+ * JsonQueryTemplate<Record1<Long>> template = JsonQueryTemplate.of(dsl, dsl.select(MY_TABLE.ID)
+ *         .from(MY_TABLE)
+ *         .where(JsonbDSL.contains(MY_TABLE.DATA, filter))
+ *         .and(JsonbDSL.fieldByKeyText(MY_TABLE.DATA, "type").eq(type)));
+ *
+ * Result<Record1<Long>> books = template.fetch(JSONB.valueOf("{\"author\": \"Tolkien\"}"), "book");
+ * }</pre>
+ *
+ * @param <R> Record type of the query, or {@link Record} for queries which do not return results
+ */
+public final class JsonQueryTemplate<R extends Record> {
+    private final DSLContext dsl;
+    private final String sql;
+    private final List<Field<?>> fields;
+    private final List<String> parameterNames;
+    private final List<Class<?>> parameterTypes;
+    private final Slot[] slots;
+
+    private JsonQueryTemplate(DSLContext dsl, Query query, List<Field<?>> fields) {
+        RecordedQuery recorded = RecordedQuery.record(dsl, query);
+        this.dsl = dsl;
+        this.sql = recorded.sql();
+        this.fields = fields;
+
+        Map<String, Param<?>> parameters = new LinkedHashMap<>();
+        query.getParams().forEach((name, param) -> {
+            if (param.getParamName() != null) {
+                parameters.putIfAbsent(name, param);
+            }
+        });
+        this.parameterNames = Collections.unmodifiableList(new ArrayList<>(parameters.keySet()));
+        this.parameterTypes = new ArrayList<>();
+        this.slots = layout(dsl, query, recorded.calls(), parameters, parameterTypes);
+    }
+
+    /**
+     * Create a template of a select query.
+     *
+     * @param dsl    Context to render the query with and to obtain connections from
+     * @param select Query with named parameters
+     * @param <R>    Record type
+     * @return The template
+     * @throws IllegalArgumentException If a named parameter has no sample value or an unsupported type, or when
+     *                                  selecting table records ({@code selectFrom}), which the template does not create
+     */
+    public static <R extends Record> JsonQueryTemplate<R> of(DSLContext dsl, Select<R> select) {
+        if (TableRecord.class.isAssignableFrom(select.getRecordType())) {
+            throw new IllegalArgumentException("Templates cannot create table records, select the fields instead: "
+                    + select.getRecordType().getName());
+        }
+        return new JsonQueryTemplate<>(dsl, select, select.getSelect());
+    }
+
+    /**
+     * Create a template of a query which does not return results, such as an {@code UPDATE}.
+     *
+     * @param dsl   Context to render the query with and to obtain connections from
+     * @param query Query with named parameters
+     * @return The template
+     * @throws IllegalArgumentException If a named parameter has no sample value or has an unsupported type
+     */
+    public static JsonQueryTemplate<Record> of(DSLContext dsl, Query query) {
+        return new JsonQueryTemplate<>(dsl, query, null);
+    }
+
+    /**
+     * @return The SQL executed by this template
+     */
+    public String sql() {
+        return sql;
+    }
+
+    /**
+     * @return Names of the parameters, in the order their values are passed to {@link #fetch(Object...)} and
+     * {@link #execute(Object...)}
+     */
+    public List<String> parameterNames() {
+        return parameterNames;
+    }
+
+    /**
+     * Execute the select query with new parameter values.
+     *
+     * @param values Values of the parameters, in the order of {@link #parameterNames()}
+     * @return The result
+     * @throws IllegalStateException If the template was not created from a select query
+     */
+    @SuppressWarnings("unchecked")
+    public Result<R> fetch(Object... values) {
+        if (fields == null) {
+            throw new IllegalStateException("Template does not return results: " + sql);
+        }
+        checkValues(values);
+        Field<?>[] selected = fields.toArray(new Field<?>[0]);
+        return (Result<R>) dsl.connectionResult(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                bind(statement, values);
+                // Closes the result set
+                return dsl.fetch(statement.executeQuery(), selected);
+            }
+        });
+    }
+
+    /**
+     * Execute the query with new parameter values.
+     *
+     * @param values Values of the parameters, in the order of {@link #parameterNames()}
+     * @return The number of affected rows
+     */
+    public int execute(Object... values) {
+        checkValues(values);
+        return dsl.connectionResult(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                bind(statement, values);
+                return statement.executeUpdate();
+            }
+        });
+    }
+
+    private void checkValues(Object[] values) {
+        if (values.length != parameterNames.size()) {
+            throw new IllegalArgumentException("Expected " + parameterNames.size() + " values for parameters "
+                    + parameterNames + ", got: " + values.length);
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null && values[i].getClass() != parameterTypes.get(i)) {
+                throw new IllegalArgumentException("Parameter " + parameterNames.get(i) + " must be a "
+                        + parameterTypes.get(i).getName() + ", got: " + values[i].getClass().getName());
+            }
+        }
+    }
+
+    private void bind(PreparedStatement statement, Object[] values) throws SQLException {
+        for (Slot slot : slots) {
+            if (slot.parameter < 0) {
+                slot.call.apply(statement, slot.index, slot.call.value());
+            } else if (values[slot.parameter] == null) {
+                statement.setNull(slot.index, slot.nullType);
+            } else {
+                slot.call.apply(statement, slot.index, jdbcValue(values[slot.parameter]));
+            }
+        }
+    }
+
+    private static Object jdbcValue(Object value) {
+        if (value instanceof JSONB) {
+            return ((JSONB) value).data();
+        }
+        if (value instanceof JSON) {
+            return ((JSON) value).data();
+        }
+        return value;
+    }
+
+    private static Slot[] layout(DSLContext dsl, Query query, List<RecordedQuery.Call> baseline,
+                                 Map<String, Param<?>> parameters, List<Class<?>> types) {
+        Slot[] slots = new Slot[baseline.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot(i + 1, -1, baseline.get(i), 0);
+        }
+
+        int parameter = 0;
+        for (Map.Entry<String, Param<?>> entry : parameters.entrySet()) {
+            String name = entry.getKey();
+            Object sample = entry.getValue().getValue();
+            if (sample == null) {
+                throw new IllegalArgumentException("Parameter " + name + " needs a non-null sample value");
+            }
+            types.add(sample.getClass());
+
+            List<RecordedQuery.Call> unbound = RecordedQuery.record(dsl, query, new NullParameter(name)).calls();
+
+            boolean found = false;
+            for (int i = 0; i < slots.length; i++) {
+                RecordedQuery.Call call = baseline.get(i);
+                if (!call.equals(unbound.get(i))) {
+                    if (!Objects.equals(call.value(), jdbcValue(sample)) || !unbound.get(i).isSetNull()) {
+                        throw new IllegalArgumentException("Parameter " + name + " of type "
+                                + sample.getClass().getName() + " is not supported by templates");
+                    }
+                    slots[i] = new Slot(i + 1, parameter, call, (Integer) unbound.get(i).value());
+                    found = true;
+                }
+            }
+            if (!found) {
+                throw new IllegalArgumentException("Parameter " + name + " is not bound by the query");
+            }
+            parameter++;
+        }
+        return slots;
+    }
+
+    /**
+     * A JDBC bind slot: either a constant {@link RecordedQuery.Call} or the value of a named parameter.
+     */
+    private static final class Slot {
+        private final int index;
+        private final int parameter;
+        private final RecordedQuery.Call call;
+        private final int nullType;
+
+        Slot(int index, int parameter, RecordedQuery.Call call, int nullType) {
+            this.index = index;
+            this.parameter = parameter;
+            this.call = call;
+            this.nullType = nullType;
+        }
+    }
+
+    /**
+     * Binds {@code NULL} instead of the value of a named parameter, to find the bind slots of the parameter.
+     */
+    private static final class NullParameter extends DefaultVisitListener {
+        private final String name;
+
+        NullParameter(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void visitStart(VisitContext ctx) {
+            QueryPart part = ctx.queryPart();
+            if (part instanceof Param && name.equals(((Param<?>) part).getParamName())) {
+                ctx.queryPart(DSL.val(null, ((Param<?>) part).getDataType()));
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.Configuration;
+import org.jooq.Field;
+import org.jooq.QueryPart;
+import org.jooq.Record;
+import org.jooq.SQLDialect;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * <p>Lateral tables turning JSON objects into typed rows with {@code json(b)_to_record} and
+ * {@code json(b)_populate_record}, for {@link JsonDSL#toRecord(Field, Table)} and friends.</p>
+ *
+ * <p>The function is wrapped in a lateral subquery selecting the fields of the type (unqualified, with their data
+ * types), so the returned table has these fields and its records can be fetched into the type's records. PostgreSQL
+ * flattens the subquery, so the document is still parsed once per row.</p>
+ *
+ * <p>jOOQ has no custom tables to report the function to {@link JsonOperators} when the table is rendered, so the
+ * document argument is wrapped in a {@link JsonOperatorField} reporting the function instead.</p>
+ */
+final class JsonRecords {
+    private static final Configuration POSTGRES = DSL.using(SQLDialect.POSTGRES).configuration();
+
+    private JsonRecords() {
+    }
+
+    static Table<Record> toRecord(String function, Field<?> document, Table<?> type) {
+        List<QueryPart> columns = fields(type).stream()
+                .map(field -> DSL.sql("{0} " + field.getDataType().getCastTypeName(POSTGRES),
+                        DSL.name(field.getName())))
+                .collect(Collectors.toList());
+        return lateral(type, DSL.table(function + "({0}) as {1}({2})", reported(function, document),
+                DSL.name(type.getName()), DSL.list(columns)));
+    }
+
+    static Table<Record> populateRecord(String function, Field<?> document, Table<?> type) {
+        return lateral(type, DSL.table(function + "(null::{0}, {1}) as {2}", type.getQualifiedName(),
+                reported(function, document), DSL.name(type.getName())));
+    }
+
+    private static <T> Field<T> reported(String function, Field<T> document) {
+        return new JsonOperatorField<>(function, requireNonNull(document, "document"));
+    }
+
+    private static Table<Record> lateral(Table<?> type, Table<?> function) {
+        Field<?>[] fields = fields(type).stream()
+                .map(field -> DSL.field(DSL.name(field.getName()), field.getDataType()))
+                .toArray(Field[]::new);
+        return DSL.lateral(DSL.select(fields).from(function).asTable(type.getName()));
+    }
+
+    private static List<Field<?>> fields(Table<?> type) {
+        List<Field<?>> fields = Arrays.asList(requireNonNull(type, "type").fields());
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("Type must have fields, got: " + type);
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,507 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.Binding;
+import org.jooq.BindingGetResultSetContext;
+import org.jooq.BindingGetSQLInputContext;
+import org.jooq.BindingGetStatementContext;
+import org.jooq.BindingRegisterContext;
+import org.jooq.BindingSQLContext;
+import org.jooq.BindingSetSQLOutputContext;
+import org.jooq.BindingSetStatementContext;
+import org.jooq.Converter;
+import org.jooq.DataType;
+import org.jooq.Field;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.conf.ParamType;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>Bind values which stream a JSON document to the database, instead of building it as a {@code String} first.</p>
+ *
+ * <p>The document is sent as UTF-8 bytes with {@link PreparedStatement#setBinaryStream} and converted to
+ * {@code json}/{@code jsonb} by the server ({@code cast(convert_from(?, 'UTF8') as jsonb)}). An {@link InputStream}
+ * of known length is streamed to the connection as it is read. Other sources are spooled first, in memory up to
+ * 1 MiB and to a temporary file beyond that: the PostgreSQL JDBC driver has to send the length before the data, and
+ * reads {@code Reader}s into a {@code String} anyway.</p>
+ *
+ * <p>The sources are read while the query is executed (not when the value is created). Values created from a
+ * {@link StreamSupplier} or a {@link WriterCallback} read their source again every time they are bound, so the query
+ * can be executed again (eg. when retrying). Values created from an {@link InputStream} or a {@link Reader} can only
+ * be bound once. All of them are rendered inline (eg. when logging queries) as the invalid document
+ * {@code '<streamed>'}, as reading them would consume them or build the whole document in memory.</p>
+ *
+ * <p>Example:</p>
+ * <pre>{@code
+ * dsl.insertInto(MY_TABLE, MY_TABLE.NAME, MY_TABLE.DATA)
+ *         .values(DSL.val("report"), JsonStreams.jsonb(writer -> objectMapper.writeValue(writer, report)))
+ *         .execute();
+ * }</pre>
+ */
+public final class JsonStreams {
+    private static final int MEMORY_SPOOL_BYTES = 1024 * 1024;
+    private static final String NOT_READABLE = "<streamed>";
+
+    private JsonStreams() {
+    }
+
+    /**
+     * A producer of a JSON document, which writes it to a {@link Writer}. Called every time the value is bound.
+     */
+    @FunctionalInterface
+    public interface WriterCallback {
+        /**
+         * @param writer Writer to write the JSON document to; does not need to be closed
+         * @throws IOException If writing fails
+         */
+        void write(Writer writer) throws IOException;
+    }
+
+    /**
+     * Opens a new stream of a JSON document, every time the value is bound.
+     */
+    @FunctionalInterface
+    public interface StreamSupplier {
+        /**
+         * @return Stream of UTF-8 encoded JSON, which is closed once it has been read
+         * @throws IOException If opening the stream fails
+         */
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * @param in     Stream of UTF-8 encoded JSON, which is read but not closed
+     * @param length Number of bytes in {@code in}
+     * @return A {@code jsonb} bind value streaming the document, which can be bound once
+     */
+    public static Field<JSONB> jsonb(InputStream in, long length) {
+        return field(SQLDataType.JSONB, new Once(new KnownLength(() -> in, length, false)));
+    }
+
+    /**
+     * @param in Stream of UTF-8 encoded JSON, which is read but not closed
+     * @return A {@code jsonb} bind value streaming the document, which can be bound once
+     */
+    public static Field<JSONB> jsonb(InputStream in) {
+        return field(SQLDataType.JSONB, new Once((statement, index) -> statement.setBinaryStream(index, in)));
+    }
+
+    /**
+     * @param open   Opens the stream of UTF-8 encoded JSON, for every bind
+     * @param length Number of bytes in the stream
+     * @return A {@code jsonb} bind value streaming the document
+     */
+    public static Field<JSONB> jsonb(StreamSupplier open, long length) {
+        return field(SQLDataType.JSONB, new KnownLength(open, length, true));
+    }
+
+    /**
+     * @param open Opens the stream of UTF-8 encoded JSON, for every bind
+     * @return A {@code jsonb} bind value streaming the document
+     */
+    public static Field<JSONB> jsonb(StreamSupplier open) {
+        return field(SQLDataType.JSONB, new Spooled(copying(open)));
+    }
+
+    /**
+     * @param reader Reader of JSON, which is read but not closed
+     * @return A {@code jsonb} bind value streaming the document, which can be bound once
+     */
+    public static Field<JSONB> jsonb(Reader reader) {
+        return field(SQLDataType.JSONB, new Once(new Spooled(writer -> transfer(reader, writer))));
+    }
+
+    /**
+     * @param callback Callback writing the JSON document, for every bind
+     * @return A {@code jsonb} bind value streaming the document
+     */
+    public static Field<JSONB> jsonb(WriterCallback callback) {
+        return field(SQLDataType.JSONB, new Spooled(callback));
+    }
+
+    /**
+     * @param in     Stream of UTF-8 encoded JSON, which is read but not closed
+     * @param length Number of bytes in {@code in}
+     * @return A {@code json} bind value streaming the document, which can be bound once
+     */
+    public static Field<JSON> json(InputStream in, long length) {
+        return field(SQLDataType.JSON, new Once(new KnownLength(() -> in, length, false)));
+    }
+
+    /**
+     * @param in Stream of UTF-8 encoded JSON, which is read but not closed
+     * @return A {@code json} bind value streaming the document, which can be bound once
+     */
+    public static Field<JSON> json(InputStream in) {
+        return field(SQLDataType.JSON, new Once((statement, index) -> statement.setBinaryStream(index, in)));
+    }
+
+    /**
+     * @param open   Opens the stream of UTF-8 encoded JSON, for every bind
+     * @param length Number of bytes in the stream
+     * @return A {@code json} bind value streaming the document
+     */
+    public static Field<JSON> json(StreamSupplier open, long length) {
+        return field(SQLDataType.JSON, new KnownLength(open, length, true));
+    }
+
+    /**
+     * @param open Opens the stream of UTF-8 encoded JSON, for every bind
+     * @return A {@code json} bind value streaming the document
+     */
+    public static Field<JSON> json(StreamSupplier open) {
+        return field(SQLDataType.JSON, new Spooled(copying(open)));
+    }
+
+    /**
+     * @param reader Reader of JSON, which is read but not closed
+     * @return A {@code json} bind value streaming the document, which can be bound once
+     */
+    public static Field<JSON> json(Reader reader) {
+        return field(SQLDataType.JSON, new Once(new Spooled(writer -> transfer(reader, writer))));
+    }
+
+    /**
+     * @param callback Callback writing the JSON document, for every bind
+     * @return A {@code json} bind value streaming the document
+     */
+    public static Field<JSON> json(WriterCallback callback) {
+        return field(SQLDataType.JSON, new Spooled(callback));
+    }
+
+    private static void transfer(Reader reader, Writer writer) throws IOException {
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) >= 0) {
+            writer.write(buffer, 0, read);
+        }
+    }
+
+    private static WriterCallback copying(StreamSupplier open) {
+        return writer -> {
+            try (Reader reader = new InputStreamReader(open.open(), StandardCharsets.UTF_8)) {
+                transfer(reader, writer);
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface Source {
+        void bind(PreparedStatement statement, int index) throws SQLException, IOException;
+
+        /**
+         * @return The document, or {@link #NOT_READABLE} if it cannot be read without consuming the source
+         */
+        default String text() throws IOException {
+            return NOT_READABLE;
+        }
+    }
+
+    private static <T> Field<T> field(DataType<T> type, Source source) {
+        return DSL.val(source, SQLDataType.OTHER.asConvertedDataType(new StreamBinding(type.getTypeName())))
+                .coerce(type);
+    }
+
+    /**
+     * Renders the bind value as {@code cast(convert_from(?, 'UTF8') as <type>)} and binds it by letting the
+     * {@link Source} set it on the statement. Values which are read back are sources of their text.
+     */
+    private static final class StreamBinding implements Binding<Object, Source> {
+        private final String type;
+        private final Converter<Object, Source> converter = Converter.ofNullable(Object.class, Source.class,
+                Source.class::cast, source -> source);
+
+        StreamBinding(String type) {
+            this.type = type;
+        }
+
+        @Override
+        public Converter<Object, Source> converter() {
+            return converter;
+        }
+
+        @Override
+        public void sql(BindingSQLContext<Source> ctx) {
+            if (ctx.render().paramType() == ParamType.INLINED) {
+                // Only values read back are rendered: reading a source here would build the whole document
+                String text = ctx.value() instanceof Text || ctx.value() == null ? text(ctx.value()) : NOT_READABLE;
+                ctx.render().sql("cast(").visit(DSL.inline(text)).sql(" as ").sql(type).sql(')');
+            } else {
+                ctx.render().sql("cast(convert_from(?, 'UTF8') as ").sql(type).sql(')');
+            }
+        }
+
+        @Override
+        public void register(BindingRegisterContext<Source> ctx) throws SQLException {
+            ctx.statement().registerOutParameter(ctx.index(), Types.OTHER);
+        }
+
+        @Override
+        public void set(BindingSetStatementContext<Source> ctx) throws SQLException {
+            if (ctx.value() == null) {
+                ctx.statement().setNull(ctx.index(), Types.BINARY);
+                return;
+            }
+            try {
+                ctx.value().bind(ctx.statement(), ctx.index());
+            } catch (IOException e) {
+                throw new DataAccessException("Error streaming JSON value", e);
+            }
+        }
+
+        @Override
+        public void set(BindingSetSQLOutputContext<Source> ctx) throws SQLException {
+            ctx.output().writeString(ctx.value() == null ? null : text(ctx.value()));
+        }
+
+        @Override
+        public void get(BindingGetResultSetContext<Source> ctx) throws SQLException {
+            ctx.value(Text.of(ctx.resultSet().getString(ctx.index())));
+        }
+
+        @Override
+        public void get(BindingGetStatementContext<Source> ctx) throws SQLException {
+            ctx.value(Text.of(ctx.statement().getString(ctx.index())));
+        }
+
+        @Override
+        public void get(BindingGetSQLInputContext<Source> ctx) throws SQLException {
+            ctx.value(Text.of(ctx.input().readString()));
+        }
+
+        private static String text(Source source) {
+            try {
+                return source == null ? null : source.text();
+            } catch (IOException e) {
+                throw new DataAccessException("Error reading streamed JSON value", e);
+            }
+        }
+    }
+
+    /**
+     * A source which can only be bound once, as binding consumes it.
+     */
+    private static final class Once implements Source {
+        private final Source source;
+        private final AtomicBoolean bound = new AtomicBoolean();
+
+        Once(Source source) {
+            this.source = source;
+        }
+
+        @Override
+        public void bind(PreparedStatement statement, int index) throws SQLException, IOException {
+            if (!bound.compareAndSet(false, true)) {
+                throw new IllegalStateException("A JSON value streamed from an InputStream or Reader can only be "
+                        + "bound once, use a StreamSupplier or WriterCallback to bind it again");
+            }
+            source.bind(statement, index);
+        }
+    }
+
+    private static final class Text implements Source {
+        private final String text;
+
+        private Text(String text) {
+            this.text = text;
+        }
+
+        static Text of(String text) {
+            return text == null ? null : new Text(text);
+        }
+
+        @Override
+        public void bind(PreparedStatement statement, int index) throws SQLException {
+            statement.setBytes(index, text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String text() {
+            return text;
+        }
+    }
+
+    private static final class KnownLength implements Source {
+        private final StreamSupplier open;
+        private final long length;
+        private final boolean close;
+
+        KnownLength(StreamSupplier open, long length, boolean close) {
+            if (length < 0) {
+                throw new IllegalArgumentException("Length must not be negative, got: " + length);
+            }
+            this.open = open;
+            this.length = length;
+            this.close = close;
+        }
+
+        @Override
+        public void bind(PreparedStatement statement, int index) throws SQLException, IOException {
+            InputStream in = open.open();
+            statement.setBinaryStream(index, close ? new ClosingInputStream(in, length) : in, length);
+        }
+
+        @Override
+        public String text() throws IOException {
+            if (!close) {
+                return NOT_READABLE;
+            }
+            try (InputStream in = open.open()) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    out.write(buffer, 0, read);
+                }
+                return new String(out.toByteArray(), StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    /**
+     * Writes the document to memory, or a temporary file once it exceeds {@link #MEMORY_SPOOL_BYTES}, to bind it with
+     * its length.
+     */
+    private static final class Spooled implements Source {
+        private final WriterCallback callback;
+
+        Spooled(WriterCallback callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void bind(PreparedStatement statement, int index) throws SQLException, IOException {
+            SpoolOutputStream spool = new SpoolOutputStream();
+            try (Writer writer = new OutputStreamWriter(spool, StandardCharsets.UTF_8)) {
+                callback.write(writer);
+            } catch (IOException | RuntimeException e) {
+                spool.delete();
+                throw e;
+            }
+            statement.setBinaryStream(index, spool.openInputStream(), spool.length);
+        }
+
+        @Override
+        public String text() throws IOException {
+            StringWriter writer = new StringWriter();
+            callback.write(writer);
+            return writer.toString();
+        }
+    }
+
+    private static final class SpoolOutputStream extends OutputStream {
+        private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        private File file;
+        private OutputStream out = memory;
+        private long length;
+
+        @Override
+        public void write(int b) throws IOException {
+            reserve(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            reserve(len);
+            out.write(b, off, len);
+        }
+
+        private void reserve(int bytes) throws IOException {
+            if (file == null && length + bytes > MEMORY_SPOOL_BYTES) {
+                file = File.createTempFile("jooq-json-stream", ".json");
+                out = new FileOutputStream(file);
+                memory.writeTo(out);
+                memory = null;
+            }
+            length += bytes;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        void delete() {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+                // Deleting the file anyway
+            }
+            if (file != null && !file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+
+        InputStream openInputStream() throws IOException {
+            if (file == null) {
+                return new ByteArrayInputStream(memory.toByteArray());
+            }
+            InputStream in = new FileInputStream(file);
+            // Open files can be deleted (and are removed once closed), except on Windows
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+            return new ClosingInputStream(in, length);
+        }
+    }
+
+    /**
+     * Closes the stream once all bytes have been read, as the driver does not close streams.
+     */
+    private static final class ClosingInputStream extends FilterInputStream {
+        private long remaining;
+
+        ClosingInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            consumed(b < 0 ? -1 : 1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            consumed(read);
+            return read;
+        }
+
+        private void consumed(int read) throws IOException {
+            if (read < 0 || (remaining -= read) <= 0) {
+                close();
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.Field;
+import org.jooq.JSON;
+import org.jooq.JSONB;
+import org.jooq.Query;
+import org.jooq.TableField;
+import org.jooq.impl.DSL;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * <p>Full-text search over the values of {@code json} and {@code jsonb} documents (PostgreSQL 11+), as an index lookup
+ * instead of a sequential scan with eg. {@code data::text ilike '%foo%'}.</p>
+ *
+ * <p>{@link #createIndex(String, TableField, String, Filter...)} creates a GIN index on
+ * {@code jsonb_to_tsvector(config, document, filter)} (or {@code json_to_tsvector}), and
+ * {@link JsonbDSL#matches(Field, String, String, Filter...)} (or {@link JsonDSL#matches}) renders exactly the same
+ * expression, with the configuration and filter as literals, so PostgreSQL can use the index. The query itself is a
+ * bind value in {@code websearch_to_tsquery} syntax, eg. {@code "quick fox" -dog}.</p>
+ *
+ * <p>Example:</p>
+ * <pre>{@code
+ * dsl.execute(JsonTextSearch.createIndex("my_table_data_fts", MY_TABLE.DATA, "english", Filter.STRING));
+ *
+ * dsl.select(JsonbDSL.headline(MY_TABLE.DATA, "english", "fox"))
+ *         .from(MY_TABLE)
+ *         .where(JsonbDSL.matches(MY_TABLE.DATA, "english", "fox", Filter.STRING))
+ *         .fetch();
+ * }</pre>
+ */
+public final class JsonTextSearch {
+    /**
+     * Which keys and values of a document are searched, see {@code jsonb_to_tsvector}.
+     */
+    public enum Filter {
+        /**
+         * String values
+         */
+        STRING,
+        /**
+         * Numeric values
+         */
+        NUMERIC,
+        /**
+         * Boolean values ({@code true} and {@code false})
+         */
+        BOOLEAN,
+        /**
+         * Object keys
+         */
+        KEY,
+        /**
+         * All of the above
+         */
+        ALL
+    }
+
+    private JsonTextSearch() {
+    }
+
+    /**
+     * Create a GIN index on the text search vector of a document, which is used by
+     * {@link JsonbDSL#matches(Field, String, String, Filter...)} and {@link JsonDSL#matches(Field, String, String,
+     * Filter...)} with the same configuration and filters.
+     *
+     * @param name     Name of the index
+     * @param document Table field of type {@code json} or {@code jsonb}
+     * @param config   Text search configuration, eg. {@code english} or {@code simple}
+     * @param filters  Keys and values to index; {@link Filter#STRING} if none
+     * @return The statement creating the index, which can be executed repeatedly
+     */
+    public static Query createIndex(String name, TableField<?, ?> document, String config, Filter... filters) {
+        requireNonNull(name, "name");
+        Field<?> unqualified = DSL.field(DSL.name(document.getName()));
+        Field<String> vector;
+        if (document.getType() == JSON.class) {
+            vector = toTsVector("json_to_tsvector", unqualified, config, filters);
+        } else if (document.getType() == JSONB.class) {
+            vector = toTsVector("jsonb_to_tsvector", unqualified, config, filters);
+        } else {
+            throw new IllegalArgumentException("Only json and jsonb fields can be searched, got: " + document);
+        }
+        return DSL.query("create index if not exists {0} on {1} using gin (({2}))",
+                DSL.name(name), document.getTable(), vector);
+    }
+
+    static Field<String> toTsVector(String function, Field<?> document, String config, Filter... filters) {
+        return DSL.field(function + "({0}, {1}, {2}::jsonb)", String.class, regconfig(config), document,
+                DSL.inline(filter(filters)));
+    }
+
+    static Field<?> toTsQuery(String config, String query) {
+        return DSL.field("websearch_to_tsquery({0}, {1})", regconfig(config), DSL.val(requireNonNull(query, "query")));
+    }
+
+    /**
+     * The configuration is rendered as a literal, as {@code ?::regconfig} is not immutable and would not match the
+     * indexed expression.
+     */
+    static Field<?> regconfig(String config) {
+        return DSL.field("{0}::regconfig", DSL.inline(requireNonNull(config, "config")));
+    }
+
+    private static String filter(Filter... filters) {
+        Set<Filter> set = filters.length == 0 ? EnumSet.of(Filter.STRING) : EnumSet.copyOf(Arrays.asList(filters));
+        return set.stream()
+                .map(filter -> "\"" + filter.name().toLowerCase(Locale.ROOT) + "\"")
+                .collect(Collectors.joining(", ", "[", "]"));
+    }
+}
@@ -0,0 +1,254 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.Comparator;
+import org.jooq.Condition;
+import org.jooq.Configuration;
+import org.jooq.Constants;
+import org.jooq.Field;
+import org.jooq.JSONB;
+import org.jooq.Param;
+import org.jooq.QueryPart;
+import org.jooq.VisitContext;
+import org.jooq.VisitListener;
+import org.jooq.VisitListenerProvider;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultVisitListener;
+import org.jooq.impl.DefaultVisitListenerProvider;
+import org.jooq.tools.JooqLogger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Rewrites equality and {@code IN} predicates on extracted {@code jsonb} text into containment conditions, which
+ * can use a GIN index on the {@code jsonb} column.</p>
+ *
+ * <p>{@link #install(Configuration)} adds a {@link VisitListener} which renders
+ * {@code JsonbDSL.fieldByKeyText(data, "status").eq("active")} as {@code data @> '{"status": "active"}'}, and an
+ * {@code in("a", "b")} as one containment condition per value combined with {@code OR}. The same applies to
+ * {@code objectAtPathText} and {@code extractPathText}, which are rewritten to a nested object.</p>
+ *
+ * <p>A predicate is only rewritten where both forms are provably equivalent:</p>
+ * <ul>
+ * <li>The compared values are (unnamed) {@code String} bind values or inline values, which cannot be the text of a
+ * number, boolean, object or array (eg. {@code "10"} also matches the number {@code 10} when compared as text).</li>
+ * <li>Path elements (other than the key of {@code fieldByKeyText}) are not integers, which could be array
+ * indexes.</li>
+ * <li>The predicate is in a {@code WHERE}, {@code HAVING} or {@code JOIN ... ON} clause, possibly combined with
+ * {@code AND}/{@code OR}, but not negated: a missing key makes the comparison {@code NULL} but the containment
+ * {@code false}, which only makes no difference as long as both filter out the row.</li>
+ * </ul>
+ *
+ * <p>Any other predicate is rendered as it is. Note that the mere presence of a visit listener makes jOOQ render
+ * queries through a slower path, so this is opt-in.</p>
+ *
+ * <p>The predicates are taken apart by reading private fields of jOOQ 3.13's {@code CompareCondition} and
+ * {@code InCondition}. If these are missing or have other types (in another jOOQ version), a warning is logged and
+ * nothing is rewritten.</p>
+ *
+ * <p>Example:</p>
+ * <pre>{@code
+ * DSLContext rewriting = DSL.using(JsonbContainmentRewrite.install(configuration));
+ * // Rendered as: select ... where "my_table"."data" @> cast(? as jsonb)
+ * rewriting.selectFrom(MY_TABLE).where(JsonbDSL.fieldByKeyText(MY_TABLE.DATA, "status").eq("active")).fetch();
+ * }</pre>
+ */
+public final class JsonbContainmentRewrite {
+    private static final Pattern NUMBER = Pattern.compile("-?[0-9]+(\\.[0-9]+)?([eE][-+]?[0-9]+)?");
+    private static final Pattern INTEGER = Pattern.compile("\\s*[-+]?[0-9]+\\s*");
+    private static final JooqLogger log = JooqLogger.getLogger(JsonbContainmentRewrite.class);
+
+    private static final java.lang.reflect.Field COMPARE_FIELD1;
+    private static final java.lang.reflect.Field COMPARE_FIELD2;
+    private static final java.lang.reflect.Field COMPARE_COMPARATOR;
+    private static final java.lang.reflect.Field IN_FIELD;
+    private static final java.lang.reflect.Field IN_VALUES;
+    private static final java.lang.reflect.Field IN_COMPARATOR;
+    private static volatile boolean supported;
+
+    static {
+        java.lang.reflect.Field[] fields = new java.lang.reflect.Field[6];
+        try {
+            fields[0] = accessible("org.jooq.impl.CompareCondition", "field1");
+            fields[1] = accessible("org.jooq.impl.CompareCondition", "field2");
+            fields[2] = accessible("org.jooq.impl.CompareCondition", "comparator");
+            fields[3] = accessible("org.jooq.impl.InCondition", "field");
+            fields[4] = accessible("org.jooq.impl.InCondition", "values");
+            fields[5] = accessible("org.jooq.impl.InCondition", "comparator");
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Containment rewriting is disabled: unsupported jOOQ version " + Constants.FULL_VERSION, e);
+            Arrays.fill(fields, null);
+        }
+        COMPARE_FIELD1 = fields[0];
+        COMPARE_FIELD2 = fields[1];
+        COMPARE_COMPARATOR = fields[2];
+        IN_FIELD = fields[3];
+        IN_VALUES = fields[4];
+        IN_COMPARATOR = fields[5];
+        supported = IN_COMPARATOR != null;
+    }
+
+    private JsonbContainmentRewrite() {
+    }
+
+    /**
+     * @return Whether the jOOQ internals the rewrite relies on are present, so predicates can be rewritten
+     */
+    static boolean isSupported() {
+        return supported;
+    }
+
+    /**
+     * @return A visit listener rewriting equality and {@code IN} predicates into containment conditions
+     */
+    public static VisitListener rewriter() {
+        return new Rewriter();
+    }
+
+    /**
+     * Derive a configuration which rewrites equality and {@code IN} predicates into containment conditions.
+     *
+     * @param configuration Configuration to derive from
+     * @return The derived configuration, with the {@link #rewriter()} appended to its visit listeners
+     */
+    public static Configuration install(Configuration configuration) {
+        VisitListenerProvider[] existing = configuration.visitListenerProviders();
+        VisitListenerProvider[] providers = Arrays.copyOf(existing, existing.length + 1);
+        providers[existing.length] = new DefaultVisitListenerProvider(rewriter());
+        return configuration.derive(providers);
+    }
+
+    /**
+     * @return The containment condition equivalent to {@code condition}, or {@code null} if there is none
+     */
+    static Condition rewrite(Condition condition) {
+        if (!supported) {
+            return null;
+        }
+        try {
+            String type = condition.getClass().getName();
+            if (type.equals("org.jooq.impl.CompareCondition")
+                    && COMPARE_COMPARATOR.get(condition) == Comparator.EQUALS) {
+                Field<?> field1 = (Field<?>) COMPARE_FIELD1.get(condition);
+                Field<?> field2 = (Field<?>) COMPARE_FIELD2.get(condition);
+                Condition rewritten = contains(field1, field2);
+                return rewritten != null ? rewritten : contains(field2, field1);
+            }
+            if (type.equals("org.jooq.impl.InCondition") && IN_COMPARATOR.get(condition) == Comparator.IN) {
+                Field<?> field = (Field<?>) IN_FIELD.get(condition);
+                Field<?>[] values = (Field<?>[]) IN_VALUES.get(condition);
+                if (values.length == 0) {
+                    return null;
+                }
+                List<Condition> conditions = new ArrayList<>(values.length);
+                for (Field<?> value : values) {
+                    Condition rewritten = contains(field, value);
+                    if (rewritten == null) {
+                        return null;
+                    }
+                    conditions.add(rewritten);
+                }
+                return conditions.size() == 1 ? conditions.get(0) : DSL.or(conditions);
+            }
+        } catch (IllegalAccessException | RuntimeException e) {
+            // The fields hold something else than in jOOQ 3.13: fail closed from now on
+            supported = false;
+            log.warn("Containment rewriting is disabled: unsupported jOOQ version " + Constants.FULL_VERSION, e);
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Condition contains(Field<?> extraction, Field<?> value) {
+        if (!(extraction instanceof JsonOperatorField) || !(value instanceof Param)) {
+            return null;
+        }
+        JsonOperatorField<?> field = (JsonOperatorField<?>) extraction;
+        Param<?> param = (Param<?>) value;
+        if (field.source() == null || field.source().getType() != JSONB.class || field.path().isEmpty()
+                || param.getParamName() != null || !(param.getValue() instanceof String)) {
+            return null;
+        }
+        String text = (String) param.getValue();
+        if (!isOnlyString(text) || (!field.operator().equals("->>") && hasIndex(field.path()))) {
+            return null;
+        }
+
+        StringBuilder json = new StringBuilder();
+        for (String key : field.path()) {
+            json.append('{');
+            CanonicalJsonb.writeString(json, key);
+            json.append(':');
+        }
+        CanonicalJsonb.writeString(json, text);
+        for (int i = 0; i < field.path().size(); i++) {
+            json.append('}');
+        }
+        JSONB object = JSONB.valueOf(json.toString());
+        return JsonbDSL.contains((Field<JSONB>) field.source(), param.isInline() ? DSL.inline(object) : DSL.val(object));
+    }
+
+    /**
+     * @return {@code false} if {@code text} could also be the text of a {@code jsonb} number, boolean, object or
+     * array
+     */
+    private static boolean isOnlyString(String text) {
+        return !text.equals("true") && !text.equals("false") && !text.startsWith("{") && !text.startsWith("[")
+                && !NUMBER.matcher(text).matches();
+    }
+
+    private static boolean hasIndex(List<String> path) {
+        return path.stream().anyMatch(element -> INTEGER.matcher(element).matches());
+    }
+
+    /**
+     * @return {@code true} if a condition with these enclosing clauses is only used to filter rows, so a {@code NULL}
+     * result is the same as {@code false}
+     */
+    // Clause is deprecated, but jOOQ 3.13 offers no other way to tell where a visited condition is rendered
+    @SuppressWarnings("deprecation")
+    static boolean isFilter(org.jooq.Clause[] clauses) {
+        for (int i = clauses.length - 1; i >= 0; i--) {
+            switch (clauses[i]) {
+                case CONDITION:
+                case CONDITION_COMPARISON:
+                case CONDITION_IN:
+                case CONDITION_AND:
+                case CONDITION_OR:
+                    break;
+                case SELECT_WHERE:
+                case SELECT_HAVING:
+                case UPDATE_WHERE:
+                case DELETE_WHERE:
+                case TABLE_JOIN_ON:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+        return false;
+    }
+
+    private static java.lang.reflect.Field accessible(String className, String name)
+            throws ReflectiveOperationException {
+        java.lang.reflect.Field field = Class.forName(className).getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+    }
+
+    private static final class Rewriter extends DefaultVisitListener {
+        @SuppressWarnings("deprecation")
+        @Override
+        public void visitStart(VisitContext ctx) {
+            QueryPart part = ctx.queryPart();
+            if (part instanceof Condition && !(part instanceof JsonOperatorCondition) && isFilter(ctx.clauses())) {
+                Condition rewritten = rewrite((Condition) part);
+                if (rewritten != null) {
+                    ctx.queryPart(rewritten);
+                }
+            }
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.github.t9t.jooq.json;
 import org.jooq.Condition;
 import org.jooq.Field;
 import org.jooq.JSONB;
+import org.jooq.Record;
+import org.jooq.Table;
 import org.jooq.impl.DSL;
 
 import java.util.Collection;
@@ -47,7 +49,7 @@ public final class JsonbDSL {
      * @return A {@code Field} representing the extracted array element
      */
     public static Field<JSONB> arrayElement(Field<JSONB> jsonField, int index) {
-        return DSL.field("{0}->{1}", JSONB.class, jsonField, index);
+        return new JsonOperatorField<>("->", DSL.field("{0}->{1}", JSONB.class, jsonField, index));
     }
 
     /**
@@ -62,7 +64,7 @@ public final class JsonbDSL {
      * @return A {@code Field} representing the extracted array element, as text
      */
     public static Field<String> arrayElementText(Field<JSONB> jsonField, int index) {
-        return DSL.field("{0}->>{1}", String.class, jsonField, index);
+        return new JsonOperatorField<>("->>", DSL.field("{0}->>{1}", String.class, jsonField, index));
     }
 
     /**
@@ -76,7 +78,7 @@ public final class JsonbDSL {
      * @return A {@code Field} representing the extracted value
      */
     public static Field<JSONB> fieldByKey(Field<JSONB> jsonField, String key) {
-        return DSL.field("{0}->{1}", JSONB.class, jsonField, key);
+        return new JsonOperatorField<>("->", DSL.field("{0}->{1}", JSONB.class, jsonField, key));
     }
 
     /**
@@ -91,7 +93,7 @@ public final class JsonbDSL {
      * @return A {@code Field} representing the extracted array element, as text
      */
     public static Field<String> fieldByKeyText(Field<JSONB> jsonField, String key) {
-        return DSL.field("{0}->>{1}", String.class, jsonField, key);
+        return new JsonOperatorField<>("->>", DSL.field("{0}->>{1}", String.class, jsonField, key), jsonField, key);
     }
 
     /**
@@ -106,7 +108,7 @@ public final class JsonbDSL {
      * @see #objectAtPath(Field, Collection)
      */
     public static Field<JSONB> objectAtPath(Field<JSONB> jsonField, String... path) {
-        return DSL.field("{0}#>{1}", JSONB.class, jsonField, DSL.array(path));
+        return new JsonOperatorField<>("#>", DSL.field("{0}#>{1}", JSONB.class, jsonField, DSL.array(path)));
     }
 
     /**
@@ -137,7 +139,8 @@ public final class JsonbDSL {
      * @see #objectAtPathText(Field, Collection)
      */
     public static Field<String> objectAtPathText(Field<JSONB> jsonField, String... path) {
-        return DSL.field("{0}#>>{1}", String.class, jsonField, DSL.array(path));
+        return new JsonOperatorField<>("#>>", DSL.field("{0}#>>{1}", String.class, jsonField, DSL.array(path)),
+                jsonField, path);
     }
 
     /**
@@ -167,7 +170,7 @@ public final class JsonbDSL {
      * @return A {@code Condition} representing whether {@code left} is contained in {@code right}
      */
     public static Condition contains(Field<JSONB> left, Field<JSONB> right) {
-        return DSL.condition("{0} @> {1}", left, right);
+        return new JsonOperatorCondition("@>", DSL.condition("{0} @> {1}", left, right));
     }
 
     /**
@@ -181,7 +184,7 @@ public final class JsonbDSL {
      * @return A {@code Condition} representing whether {@code right} is contained in {@code left}
      */
     public static Condition containedIn(Field<JSONB> left, Field<JSONB> right) {
-        return DSL.condition("{0} <@ {1}", left, right);
+        return new JsonOperatorCondition("<@", DSL.condition("{0} <@ {1}", left, right));
     }
 
     /**
@@ -194,7 +197,7 @@ public final class JsonbDSL {
      * @return A {@code Condition} representing whether the key is contained in the JSON value
      */
     public static Condition hasKey(Field<JSONB> f, String key) {
-        return DSL.condition("{0} ?? {1}", f, key);
+        return new JsonOperatorCondition("?", DSL.condition("{0} ?? {1}", f, key));
     }
 
     /**
@@ -208,7 +211,7 @@ public final class JsonbDSL {
      * @see #hasAnyKey(Field, Collection)
      */
     public static Condition hasAnyKey(Field<JSONB> f, String... keys) {
-        return DSL.condition("{0} ??| {1}", f, DSL.array(keys));
+        return new JsonOperatorCondition("?|", DSL.condition("{0} ??| {1}", f, DSL.array(keys)));
     }
 
     /**
@@ -236,7 +239,7 @@ public final class JsonbDSL {
      * @see #hasAllKeys(Field, Collection)
      */
     public static Condition hasAllKeys(Field<JSONB> f, String... keys) {
-        return DSL.condition("{0} ??& {1}", f, keys);
+        return new JsonOperatorCondition("?&", DSL.condition("{0} ??& {1}", f, keys));
     }
 
     /**
@@ -264,7 +267,7 @@ public final class JsonbDSL {
      * @return A {@code Field} representing a concatenation of the two JSON fields
      */
     public static Field<JSONB> concat(Field<JSONB> field1, Field<JSONB> field2) {
-        return DSL.field("{0} || {1}", JSONB.class, field1, field2);
+        return new JsonOperatorField<>("||", DSL.field("{0} || {1}", JSONB.class, field1, field2));
     }
 
     /**
@@ -279,7 +282,7 @@ public final class JsonbDSL {
      * @return A {@code Field} representing the original field with the key or element deleted
      */
     public static Field<JSONB> delete(Field<JSONB> f, String keyOrElement) {
-        return DSL.field("{0} - {1}", JSONB.class, f, keyOrElement);
+        return new JsonOperatorField<>("-", DSL.field("{0} - {1}", JSONB.class, f, keyOrElement));
     }
 
     /**
@@ -294,7 +297,7 @@ public final class JsonbDSL {
      * @return A {@code Field} representing the original field with the keys or elements deleted
      */
     public static Field<JSONB> delete(Field<JSONB> f, String... keysOrElements) {
-        return DSL.field("{0} - {1}", JSONB.class, f, DSL.array(keysOrElements));
+        return new JsonOperatorField<>("-", DSL.field("{0} - {1}", JSONB.class, f, DSL.array(keysOrElements)));
     }
 
     /**
@@ -309,7 +312,7 @@ public final class JsonbDSL {
      * @return A {@code Field} representing the field with the array element removed
      */
     public static Field<JSONB> deleteElement(Field<JSONB> f, int index) {
-        return DSL.field("{0} - {1}", JSONB.class, f, index);
+        return new JsonOperatorField<>("-", DSL.field("{0} - {1}", JSONB.class, f, index));
     }
 
     /**
@@ -324,7 +327,24 @@ public final class JsonbDSL {
      * @return A {@code Field} representing the field with the chosen path removed
      */
     public static Field<JSONB> deletePath(Field<JSONB> f, String... path) {
-        return DSL.field("{0} #- {1}", JSONB.class, f, DSL.array(path));
+        return new JsonOperatorField<>("#-", DSL.field("{0} #- {1}", JSONB.class, f, DSL.array(path)));
+    }
+
+    /**
+     * <p>Replace the value at the specified path, or add it if the last path element does not exist yet, using
+     * {@code jsonb_set}. Missing parents of the last path element are not created.</p>
+     *
+     * <p>Example: <code>jsonb_set('{"a":{"b":1}}', '{a,c}', '2')</code></p>
+     * <p>Example result: <code>{"a": {"b": 1, "c": 2}}</code></p>
+     *
+     * @param f     JSON {@code Field} to set the value in
+     * @param value JSON value to set
+     * @param path  Path to the JSON element to set
+     * @return A {@code Field} representing the field with the value set
+     */
+    public static Field<JSONB> set(Field<JSONB> f, Field<JSONB> value, String... path) {
+        return new JsonOperatorField<>("jsonb_set",
+                DSL.field("jsonb_set({0}, {1}, {2})", JSONB.class, f, DSL.array(path), value));
     }
 
 
@@ -338,7 +358,66 @@ public final class JsonbDSL {
      * @return Length of the array
      */
     public static Field<Integer> arrayLength(Field<JSONB> jsonField) {
-        return DSL.field("jsonb_array_length({0})", Integer.class, jsonField);
+        return new JsonOperatorField<>("jsonb_array_length",
+                DSL.field("jsonb_array_length({0})", Integer.class, jsonField));
+    }
+
+    /**
+     * <p>Returns the elements of a JSON array from index {@code from} (inclusive) to {@code to} (exclusive), indexed
+     * from zero, as a JSON array. Only the requested elements are read, using the <code>-&gt;</code> operator, which
+     * takes constant time on {@code jsonb} arrays, and only the window is sent to the client. Indexes beyond the end
+     * of the array are ignored. The array expression is evaluated (and a bound array sent) once, and {@code from} and
+     * {@code to} are bind values, so every page is executed with the same SQL.</p>
+     *
+     * <p>Example: <code>arraySlice('[1,2,3,{"f1":1,"f2":[5,6]},4]', 1, 3)</code></p>
+     * <p>Example result: <code>[2, 3]</code></p>
+     *
+     * @param jsonField The JSON {@code Field} containing an array to get the elements from
+     * @param from      Index of the first element
+     * @param to        Index after the last element
+     * @return A {@code Field} representing the elements, or an empty array if there are none
+     */
+    public static Field<JSONB> arraySlice(Field<JSONB> jsonField, int from, int to) {
+        if (from < 0 || to < from) {
+            throw new IllegalArgumentException("Invalid array slice from " + from + " to " + to);
+        }
+        return new JsonOperatorField<>("->", DSL.field("(select case when s.doc is null then null else "
+                + "(select coalesce(jsonb_agg(s.doc -> i order by i), '[]') "
+                + "from generate_series({1}, least({2}, jsonb_array_length(s.doc)) - 1) i) end "
+                + "from (select {0} as doc) s)",
+                JSONB.class, jsonField, DSL.val(from), DSL.val(to)));
+    }
+
+    /**
+     * <p>Returns the elements of a JSON array of integers as a {@code long[]}. The JSON text of the array is decoded
+     * straight into the {@code long[]}, without boxing the elements or creating a {@code String} for them. Elements
+     * which are not integers (including {@code null}s) fail with a {@code DataAccessException}.</p>
+     *
+     * <p>Example: <code>arrayAsLongs('[1, 2, 3]')</code></p>
+     * <p>Example result: <code>new long[]{1, 2, 3}</code></p>
+     *
+     * @param jsonField The JSON {@code Field} containing an array of integers, eg. from
+     *                  {@link #objectAtPath(Field, String...)}
+     * @return A {@code Field} representing the elements
+     */
+    public static Field<long[]> arrayAsLongs(Field<JSONB> jsonField) {
+        return PrimitiveArrays.longs(jsonField);
+    }
+
+    /**
+     * <p>Returns the elements of a JSON array of numbers as a {@code double[]}. The JSON text of the array is decoded
+     * straight into the {@code double[]}, without boxing the elements or creating a {@code String} for them. Elements
+     * which are not numbers (including {@code null}s) fail with a {@code DataAccessException}.</p>
+     *
+     * <p>Example: <code>arrayAsDoubles('[1.5, 2, 3e2]')</code></p>
+     * <p>Example result: <code>new double[]{1.5, 2.0, 300.0}</code></p>
+     *
+     * @param jsonField The JSON {@code Field} containing an array of numbers, eg. from
+     *                  {@link #objectAtPath(Field, String...)}
+     * @return A {@code Field} representing the elements
+     */
+    public static Field<double[]> arrayAsDoubles(Field<JSONB> jsonField) {
+        return PrimitiveArrays.doubles(jsonField);
     }
 
     /**
@@ -356,7 +435,8 @@ public final class JsonbDSL {
      * @see #extractPath(Field, Collection)
      */
     public static Field<JSONB> extractPath(Field<JSONB> jsonField, String... path) {
-        return DSL.field("jsonb_extract_path({0}, VARIADIC {1})", JSONB.class, jsonField, DSL.array(path));
+        return new JsonOperatorField<>("jsonb_extract_path",
+                DSL.field("jsonb_extract_path({0}, VARIADIC {1})", JSONB.class, jsonField, DSL.array(path)));
     }
 
     /**
@@ -392,7 +472,9 @@ public final class JsonbDSL {
      * @see #extractPathText(Field, Collection)
      */
     public static Field<String> extractPathText(Field<JSONB> jsonField, String... path) {
-        return DSL.field("jsonb_extract_path_text({0}, VARIADIC {1})", String.class, jsonField, DSL.array(path));
+        return new JsonOperatorField<>("jsonb_extract_path_text",
+                DSL.field("jsonb_extract_path_text({0}, VARIADIC {1})", String.class, jsonField, DSL.array(path)),
+                jsonField, path);
     }
 
     /**
@@ -424,7 +506,7 @@ public final class JsonbDSL {
      * @return The JSON type
      */
     public static Field<String> typeOf(Field<JSONB> jsonField) {
-        return DSL.field("jsonb_typeof({0})", String.class, jsonField);
+        return new JsonOperatorField<>("jsonb_typeof", DSL.field("jsonb_typeof({0})", String.class, jsonField));
     }
 
     /**
@@ -438,7 +520,8 @@ public final class JsonbDSL {
      * @return A JSON {@code Field} with {@code null} object fields removed
      */
     public static Field<JSONB> stripNulls(Field<JSONB> jsonField) {
-        return DSL.field("jsonb_strip_nulls({0})", JSONB.class, jsonField);
+        return new JsonOperatorField<>("jsonb_strip_nulls",
+                DSL.field("jsonb_strip_nulls({0})", JSONB.class, jsonField));
     }
 
     /**
@@ -461,6 +544,102 @@ public final class JsonbDSL {
      * @return Pretty formatted, intended String representation of the JSON {@code Field}
      */
     public static Field<String> pretty(Field<JSONB> jsonField) {
-        return DSL.field("jsonb_pretty({0})", String.class, jsonField);
+        return new JsonOperatorField<>("jsonb_pretty", DSL.field("jsonb_pretty({0})", String.class, jsonField));
+    }
+
+    /**
+     * <p>Returns the text search vector of the values of a JSON document which are selected by {@code filters} (all
+     * strings if there are none), using the {@code config} text search configuration. The configuration and filter
+     * are rendered as literals, so the expression is the same as the one indexed by
+     * {@link JsonTextSearch#createIndex(String, org.jooq.TableField, String, JsonTextSearch.Filter...)}.</p>
+     *
+     * <p>Example: <code>jsonb_to_tsvector('english', '{"a": "The Fat Rats", "b": 123}',
+     * '["string", "numeric"]')</code></p>
+     * <p>Example result: <code>'123':5 'fat':2 'rat':3</code></p>
+     *
+     * @param jsonField The JSON {@code Field} to search
+     * @param config    Text search configuration, eg. {@code english} or {@code simple}
+     * @param filters   Keys and values to include
+     * @return A {@code Field} representing the {@code tsvector}, as text
+     */
+    public static Field<String> toTsVector(Field<JSONB> jsonField, String config, JsonTextSearch.Filter... filters) {
+        return new JsonOperatorField<>("jsonb_to_tsvector",
+                JsonTextSearch.toTsVector("jsonb_to_tsvector", jsonField, config, filters));
+    }
+
+    /**
+     * <p>Does the text search vector of a JSON document (see {@link #toTsVector(Field, String,
+     * JsonTextSearch.Filter...)}) match the {@code query}? Uses the {@code @@} operator with
+     * {@code websearch_to_tsquery}, which accepts eg. {@code "quick fox" or dog -cat}. When the document has an
+     * index created by
+     * {@link JsonTextSearch#createIndex(String, org.jooq.TableField, String, JsonTextSearch.Filter...)} with the same
+     * configuration and filters, this is an index lookup.</p>
+     *
+     * <p>Example: <code>jsonb_to_tsvector('english', '{"a": "The Fat Rats"}', '["string"]') @@
+     * websearch_to_tsquery('english', 'rat')</code></p>
+     *
+     * @param jsonField The JSON {@code Field} to search
+     * @param config    Text search configuration, eg. {@code english} or {@code simple}
+     * @param query     Query in {@code websearch_to_tsquery} syntax
+     * @param filters   Keys and values to search
+     * @return A {@code Condition} representing whether the document matches the query
+     */
+    public static Condition matches(Field<JSONB> jsonField, String config, String query,
+                                    JsonTextSearch.Filter... filters) {
+        return new JsonOperatorCondition("@@", DSL.condition("{0} @@ {1}",
+                toTsVector(jsonField, config, filters), JsonTextSearch.toTsQuery(config, query)));
+    }
+
+    /**
+     * <p>Returns the JSON document with the words matching the {@code query} (in {@code websearch_to_tsquery}
+     * syntax) highlighted in its string values, using {@code ts_headline}.</p>
+     *
+     * <p>Example: <code>ts_headline('english', '{"a": "The Fat Rats"}',
+     * websearch_to_tsquery('english', 'rat'))</code></p>
+     * <p>Example result: <code>{"a": "The Fat &lt;b&gt;Rats&lt;/b&gt;"}</code></p>
+     *
+     * @param jsonField The JSON {@code Field} to highlight the matches in
+     * @param config    Text search configuration, eg. {@code english} or {@code simple}
+     * @param query     Query in {@code websearch_to_tsquery} syntax
+     * @return A JSON {@code Field} with the matches highlighted
+     */
+    public static Field<JSONB> headline(Field<JSONB> jsonField, String config, String query) {
+        return new JsonOperatorField<>("ts_headline", DSL.field("ts_headline({0}, {1}, {2})", JSONB.class,
+                JsonTextSearch.regconfig(config), jsonField, JsonTextSearch.toTsQuery(config, query)));
+    }
+
+    /**
+     * <p>Returns a lateral table with the values of a JSON object as typed columns, using {@code jsonb_to_record} with
+     * the fields of {@code type} as column definitions. The document is parsed once per row instead of once for every
+     * key extracted with eg. {@link #fieldByKeyText(Field, String)}, and the rows can be fetched as records of
+     * {@code type} with {@code fetchInto(type)}. Missing keys are {@code null}. The table is aliased as {@code type},
+     * so it cannot be joined with {@code type} itself.</p>
+     *
+     * <p>Example: <code>select ... from orders, lateral (select "id", "price" from jsonb_to_record(orders.data) as
+     * item("id" bigint, "price" numeric)) as item</code></p>
+     *
+     * @param jsonField The JSON {@code Field} containing an object
+     * @param type      Table with the fields of the record, eg. a generated table
+     * @return A lateral table with the fields of {@code type}
+     */
+    public static Table<Record> toRecord(Field<JSONB> jsonField, Table<?> type) {
+        return JsonRecords.toRecord("jsonb_to_record", jsonField, type);
+    }
+
+    /**
+     * <p>Returns a lateral table with the values of a JSON object as typed columns, using
+     * {@code jsonb_populate_record} with the row type of {@code type}, which must be a table (or composite type) in
+     * the database. Like {@link #toRecord(Field, Table)}, but the columns are typed by the database instead of by the
+     * fields of {@code type}.</p>
+     *
+     * <p>Example: <code>select ... from orders, lateral (select "id", "price" from
+     * jsonb_populate_record(null::item, orders.data) as item) as item</code></p>
+     *
+     * @param jsonField The JSON {@code Field} containing an object
+     * @param type      Table with the fields of the record, whose row type exists in the database
+     * @return A lateral table with the fields of {@code type}
+     */
+    public static Table<Record> populateRecord(Field<JSONB> jsonField, Table<?> type) {
+        return JsonRecords.populateRecord("jsonb_populate_record", jsonField, type);
     }
 }
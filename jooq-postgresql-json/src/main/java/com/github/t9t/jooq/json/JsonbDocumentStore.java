@@ -0,0 +1,327 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.Configuration;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.InsertValuesStep2;
+import org.jooq.JSONB;
+import org.jooq.Record;
+import org.jooq.Table;
+import org.jooq.TransactionContext;
+import org.jooq.TransactionListenerProvider;
+import org.jooq.impl.DefaultTransactionListener;
+import org.jooq.impl.DefaultTransactionListenerProvider;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * <p>Content-addressed storage of {@code jsonb} documents: every distinct document is stored once in a side table,
+ * keyed by the SHA-256 hash of its canonical form (see {@link CanonicalJsonb}), and rows refer to it by that hash
+ * instead of storing their own copy. Tables with many identical payloads (eg. events) then store and write each
+ * payload once.</p>
+ *
+ * <p>The side table needs a {@code bytea} primary key and a {@code jsonb} column:</p>
+ * <pre>{@code
+ * create table my_document (hash bytea primary key, data jsonb not null);
+ * create table my_event (id bigserial primary key, payload_hash bytea references my_document (hash));
+ * }</pre>
+ *
+ * <p>{@link #add(JSONB)} canonicalises and hashes a document on the client, and returns the hash to store in the row.
+ * The document itself is kept until {@link #flush()}, which stores all pending documents with one
+ * {@code insert ... on conflict do nothing} (per {@link #maxBatchSize(int)} documents), so documents which are already
+ * stored are skipped by the database. Flush <i>before</i> inserting the rows which refer to the documents. To store
+ * the documents in the same transaction as the rows, pass the transaction's context to {@link #flush(DSLContext)}.
+ * {@link #join(Table, Field)} joins the side table to read the documents back.</p>
+ *
+ * <p>Documents which are being stored by a concurrent flush when a flush starts are stored again by that flush as
+ * well (and skipped by the database once the other flush has committed them), so every document added before a flush
+ * is stored when it returns, no matter which flush took it. To share a store between transactions, derive their
+ * configuration with {@link #install(Configuration)}: documents flushed in a jOOQ transaction of that configuration
+ * then count as being stored until the transaction commits, and are pending again when it rolls back. Without it, a
+ * document flushed in a transaction which is rolled back is lost for the other users of the store.</p>
+ *
+ * <p>Example:</p>
+ * <pre>{@code
+ * JsonbDocumentStore store = new JsonbDocumentStore(dsl, MY_DOCUMENT, MY_DOCUMENT.HASH, MY_DOCUMENT.DATA);
+ * byte[] hash = store.add(payload);
+ * store.flush();
+ * dsl.insertInto(MY_EVENT, MY_EVENT.PAYLOAD_HASH).values(hash).execute();
+ *
+ * dsl.select(MY_EVENT.ID, store.document())
+ *         .from(store.join(MY_EVENT, MY_EVENT.PAYLOAD_HASH))
+ *         .fetch();
+ * }</pre>
+ */
+public final class JsonbDocumentStore {
+    private final DSLContext dsl;
+    private final Table<?> table;
+    private final Field<byte[]> hash;
+    private final Field<JSONB> data;
+    private volatile int maxBatchSize = 1000;
+
+    // Sorted by hash, so concurrent flushes of the same documents lock them in the same order
+    private Map<ByteBuffer, String> pending = new TreeMap<>();
+    // Documents taken from pending by flushes which have not finished storing them yet, or whose transaction has not
+    // finished yet
+    private final List<Map<ByteBuffer, String>> inFlight = new ArrayList<>();
+    // The open transactions of the current thread, innermost first
+    private final ThreadLocal<Deque<Transaction>> transactions = ThreadLocal.withInitial(ArrayDeque::new);
+
+    /**
+     * @param dsl   Context to store the documents with
+     * @param table Side table of the documents
+     * @param hash  {@code bytea} primary key of {@code table}
+     * @param data  {@code jsonb} column of {@code table}
+     */
+    public JsonbDocumentStore(DSLContext dsl, Table<?> table, Field<byte[]> hash, Field<JSONB> data) {
+        this.dsl = requireNonNull(dsl, "dsl");
+        this.table = requireNonNull(table, "table");
+        this.hash = requireNonNull(hash, "hash");
+        this.data = requireNonNull(data, "data");
+    }
+
+    /**
+     * @param maxBatchSize Maximum number of documents per {@code insert} statement. Defaults to 1000.
+     * @return This instance
+     */
+    public JsonbDocumentStore maxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Max batch size must be positive, got: " + maxBatchSize);
+        }
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    /**
+     * @param document A {@code jsonb} document, or {@code null}
+     * @return The SHA-256 hash of the canonical form of {@code document}, or {@code null} if {@code document} is
+     * {@code null}
+     * @throws IllegalArgumentException If {@code document} is not valid JSON
+     */
+    public static byte[] hash(JSONB document) {
+        CanonicalJsonb canonical = CanonicalJsonb.of(document);
+        return canonical == null ? null : hash(canonical.data());
+    }
+
+    /**
+     * Canonicalise and hash a document, and keep it to be stored with the next {@link #flush()}.
+     *
+     * @param document A {@code jsonb} document, or {@code null}
+     * @return The hash to refer to the document by, or {@code null} if {@code document} is {@code null}
+     * @throws IllegalArgumentException If {@code document} is not valid JSON
+     */
+    public byte[] add(JSONB document) {
+        CanonicalJsonb canonical = CanonicalJsonb.of(document);
+        if (canonical == null) {
+            return null;
+        }
+        byte[] documentHash = hash(canonical.data());
+        synchronized (this) {
+            pending.putIfAbsent(ByteBuffer.wrap(documentHash), canonical.data());
+        }
+        return documentHash.clone();
+    }
+
+    /**
+     * @return The number of distinct documents waiting for {@link #flush()}
+     */
+    public synchronized int pending() {
+        return pending.size();
+    }
+
+    /**
+     * Store the pending documents which are not stored yet, with the context of the store. If storing fails, the
+     * documents are kept to be stored with the next flush.
+     *
+     * @return The number of documents which were not stored yet
+     */
+    public int flush() {
+        return flush(dsl);
+    }
+
+    /**
+     * Store the pending documents which are not stored yet, and those which are being stored by concurrent flushes.
+     * If storing fails, the pending documents are kept to be stored with the next flush. When {@code dsl} is the
+     * context of a transaction of a configuration derived with {@link #install(Configuration)}, the documents are
+     * pending again if the transaction rolls back.
+     *
+     * @param dsl Context to store the documents with, eg. of the transaction inserting the rows referring to them
+     * @return The number of documents which were not stored yet
+     */
+    public int flush(DSLContext dsl) {
+        requireNonNull(dsl, "dsl");
+        Map<ByteBuffer, String> batch;
+        Map<ByteBuffer, String> documents;
+        synchronized (this) {
+            batch = pending;
+            pending = new TreeMap<>();
+            documents = new TreeMap<>(batch);
+            inFlight.forEach(documents::putAll);
+            inFlight.add(batch);
+        }
+        Transaction transaction = null;
+        try {
+            int stored = store(dsl, new ArrayList<>(documents.entrySet()));
+            transaction = transaction(dsl.configuration());
+            if (transaction != null) {
+                transaction.batches.add(batch);
+            }
+            return stored;
+        } catch (RuntimeException e) {
+            restore(batch);
+            throw e;
+        } finally {
+            if (transaction == null) {
+                release(batch);
+            }
+        }
+    }
+
+    /**
+     * Derive a configuration whose transactions keep the documents they flush from being taken as stored by other
+     * flushes until they commit, and return them to the pending documents when they roll back.
+     *
+     * @param configuration Configuration to derive from
+     * @return The derived configuration, with a listener of this store appended to its transaction listeners
+     */
+    public Configuration install(Configuration configuration) {
+        TransactionListenerProvider[] existing = configuration.transactionListenerProviders();
+        TransactionListenerProvider[] providers = Arrays.copyOf(existing, existing.length + 1);
+        providers[existing.length] = new DefaultTransactionListenerProvider(new Listener());
+        return configuration.derive(providers);
+    }
+
+    /**
+     * @param table     Table referring to the documents
+     * @param reference {@code bytea} column of {@code table} with the hash of the document
+     * @return {@code table} left joined with the side table of the documents, to select {@link #document()} from
+     */
+    public Table<Record> join(Table<?> table, Field<byte[]> reference) {
+        return table.leftJoin(this.table).on(hash.eq(reference));
+    }
+
+    /**
+     * @return The document column of the side table, to select from {@link #join(Table, Field)}
+     */
+    public Field<JSONB> document() {
+        return data;
+    }
+
+    /**
+     * @return The innermost open transaction of the current thread, if {@code configuration} is one of them
+     */
+    private Transaction transaction(Configuration configuration) {
+        Deque<Transaction> open = transactions.get();
+        for (Transaction transaction : open) {
+            if (transaction.configuration == configuration) {
+                return open.peek();
+            }
+        }
+        return null;
+    }
+
+    private synchronized void restore(Map<ByteBuffer, String> batch) {
+        Map<ByteBuffer, String> documents = new TreeMap<>(batch);
+        documents.putAll(pending);
+        pending = documents;
+    }
+
+    private synchronized void release(Map<ByteBuffer, String> batch) {
+        // By identity, as another batch may have equal documents
+        inFlight.removeIf(b -> b == batch);
+    }
+
+    private int store(DSLContext dsl, List<Map.Entry<ByteBuffer, String>> documents) {
+        int stored = 0;
+        for (int from = 0; from < documents.size(); from += maxBatchSize) {
+            List<Map.Entry<ByteBuffer, String>> chunk =
+                    documents.subList(from, Math.min(documents.size(), from + maxBatchSize));
+            stored += insert(dsl, table, chunk);
+        }
+        return stored;
+    }
+
+    private <R extends Record> int insert(DSLContext dsl, Table<R> into,
+                                          List<Map.Entry<ByteBuffer, String>> documents) {
+        InsertValuesStep2<R, byte[], JSONB> insert = dsl.insertInto(into, hash, data);
+        for (Map.Entry<ByteBuffer, String> document : documents) {
+            insert = insert.values(document.getKey().array(), JSONB.valueOf(document.getValue()));
+        }
+        return insert.onConflictDoNothing().execute();
+    }
+
+    private final class Listener extends DefaultTransactionListener {
+        @Override
+        public void beginEnd(TransactionContext ctx) {
+            transactions.get().push(new Transaction(ctx.configuration()));
+        }
+
+        @Override
+        public void commitEnd(TransactionContext ctx) {
+            Transaction transaction = end(ctx);
+            if (transaction == null) {
+                return;
+            }
+            Transaction outer = transactions.get().peek();
+            if (outer != null) {
+                // A savepoint was released: the documents are committed along with the outer transaction
+                outer.batches.addAll(transaction.batches);
+            } else {
+                transaction.batches.forEach(JsonbDocumentStore.this::release);
+            }
+        }
+
+        @Override
+        public void rollbackEnd(TransactionContext ctx) {
+            Transaction transaction = end(ctx);
+            if (transaction != null) {
+                for (Map<ByteBuffer, String> batch : transaction.batches) {
+                    restore(batch);
+                    release(batch);
+                }
+            }
+        }
+
+        private Transaction end(TransactionContext ctx) {
+            Deque<Transaction> open = transactions.get();
+            // Not begun when beginning it failed
+            if (open.isEmpty() || open.peek().configuration != ctx.configuration()) {
+                return null;
+            }
+            Transaction transaction = open.pop();
+            if (open.isEmpty()) {
+                transactions.remove();
+            }
+            return transaction;
+        }
+    }
+
+    private static final class Transaction {
+        final Configuration configuration;
+        final List<Map<ByteBuffer, String>> batches = new ArrayList<>();
+
+        Transaction(Configuration configuration) {
+            this.configuration = configuration;
+        }
+    }
+
+    private static byte[] hash(String canonical) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
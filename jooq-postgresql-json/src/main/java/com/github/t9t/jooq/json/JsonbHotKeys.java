@@ -0,0 +1,162 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.Field;
+import org.jooq.JSONB;
+import org.jooq.Query;
+import org.jooq.Table;
+import org.jooq.TableField;
+import org.jooq.impl.DSL;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * <p>Keeps a few frequently updated top-level keys of a wide {@code jsonb} document (eg. counters or a status) in a
+ * separate, narrow {@code jsonb} column of the same table. Updating a hot key then only writes the narrow column,
+ * instead of rewriting the whole (TOASTed) document.</p>
+ *
+ * <p>{@link #ddl()} adds the hot column and moves the hot keys of existing documents into it.
+ * {@link #document()} merges both columns back into the full document with {@link JsonbDSL#concat(Field, Field)}
+ * ({@code cold || hot}), and {@link #fieldByKey(String)} and {@link #fieldByKeyText(String)} read a key from the
+ * column which holds it. {@link #split(Field)} splits a full document over both columns to insert or replace it, and
+ * {@link #set(Field, String...)} routes a {@code jsonb_set} to the column holding the first key of the path.</p>
+ *
+ * <p>Only top-level keys can be hot: {@code cold || hot} replaces top-level keys as a whole.</p>
+ *
+ * <p>Example:</p>
+ * <pre>{@code
+ * JsonbHotKeys hotKeys = new JsonbHotKeys(MY_TABLE.DATA, MY_TABLE.DATA_HOT, "views", "status");
+ * hotKeys.ddl().forEach(dsl::execute);
+ *
+ * dsl.insertInto(MY_TABLE).set(hotKeys.split(JsonbDSL.field(document))).execute();
+ * // update my_table set data_hot = jsonb_set(coalesce(data_hot, '{}'), '{status}', '"done"') where ...
+ * dsl.update(MY_TABLE).set(hotKeys.set(JsonbDSL.field("\"done\""), "status")).where(MY_TABLE.ID.eq(id)).execute();
+ * dsl.select(hotKeys.document()).from(MY_TABLE).fetch();
+ * }</pre>
+ */
+public final class JsonbHotKeys {
+    private static final Field<JSONB> EMPTY = DSL.inline(JSONB.valueOf("{}"));
+
+    private final TableField<?, JSONB> cold;
+    private final TableField<?, JSONB> hot;
+    private final Set<String> keys;
+
+    /**
+     * @param cold Column of the document, holding all keys which are not hot
+     * @param hot  Column of the same table holding the hot keys
+     * @param keys Hot top-level keys
+     */
+    public JsonbHotKeys(TableField<?, JSONB> cold, TableField<?, JSONB> hot, String... keys) {
+        this.cold = requireNonNull(cold, "cold");
+        this.hot = requireNonNull(hot, "hot");
+        if (!cold.getTable().equals(hot.getTable())) {
+            throw new IllegalArgumentException("Hot column " + hot + " must be in the same table as " + cold);
+        }
+        if (keys.length == 0) {
+            throw new IllegalArgumentException("Hot keys must not be empty");
+        }
+        this.keys = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(keys)));
+    }
+
+    /**
+     * @return The statements adding the hot column if it does not exist yet, and moving the hot keys of existing
+     * documents to it (where a hot key which is in both columns keeps the value of the hot column), which can be
+     * executed repeatedly
+     */
+    public List<Query> ddl() {
+        Table<?> table = cold.getTable();
+        Field<JSONB> unqualifiedCold = DSL.field(DSL.name(cold.getName()), JSONB.class);
+        Field<JSONB> unqualifiedHot = DSL.field(DSL.name(hot.getName()), JSONB.class);
+        return Arrays.asList(
+                DSL.query("alter table {0} add column if not exists {1} jsonb", table, DSL.name(hot.getName())),
+                DSL.query("update {0} set {1} = {2}, {3} = {4} where jsonb_typeof({3}) = 'object' and {5}", table,
+                        // A hot key which is also still in the cold column keeps its (newer) hot value
+                        unqualifiedHot, JsonbDSL.concat(DSL.coalesce(hotPart(unqualifiedCold), EMPTY),
+                                DSL.coalesce(unqualifiedHot, EMPTY)),
+                        unqualifiedCold, JsonbDSL.delete(unqualifiedCold, keyArray()),
+                        JsonbDSL.hasAnyKey(unqualifiedCold, keyArray())));
+    }
+
+    /**
+     * @return The hot keys
+     */
+    public Set<String> keys() {
+        return keys;
+    }
+
+    /**
+     * @return The full document: {@code cold || hot}, or either one of them if the other is {@code null}
+     */
+    public Field<JSONB> document() {
+        return DSL.coalesce(JsonbDSL.concat(cold, hot), cold, hot);
+    }
+
+    /**
+     * @param key Top-level key
+     * @return {@link JsonbDSL#fieldByKey(Field, String)} of the column holding {@code key}
+     */
+    public Field<JSONB> fieldByKey(String key) {
+        return JsonbDSL.fieldByKey(column(key), key);
+    }
+
+    /**
+     * @param key Top-level key
+     * @return {@link JsonbDSL#fieldByKeyText(Field, String)} of the column holding {@code key}
+     */
+    public Field<String> fieldByKeyText(String key) {
+        return JsonbDSL.fieldByKeyText(column(key), key);
+    }
+
+    /**
+     * Split a full document into its cold and hot keys, to insert or replace it with {@code set(Map)}. A document
+     * which is not an object is stored as it is in the cold column. The document is rendered (and bound) once for
+     * each of the two columns.
+     *
+     * @param document Full document
+     * @return The values of the cold and hot columns
+     */
+    public Map<Field<?>, Field<?>> split(Field<JSONB> document) {
+        Map<Field<?>, Field<?>> values = new LinkedHashMap<>();
+        Field<JSONB> doc = DSL.field(DSL.name("s", "doc"), JSONB.class);
+        values.put(cold, DSL.field("(select case when jsonb_typeof({1}) = 'object' then {2} else {1} end "
+                + "from (select {0} as doc) s)", JSONB.class, document, doc, JsonbDSL.delete(doc, keyArray())));
+        values.put(hot, DSL.field("(select {1} from (select {0} as doc) s)", JSONB.class, document, hotPart(doc)));
+        return values;
+    }
+
+    /**
+     * Set the value at {@code path} with {@link JsonbDSL#set(Field, Field, String...)} in the column holding the first
+     * key of the path, to update it with {@code set(Map)}.
+     *
+     * @param value JSON value to set
+     * @param path  Path to the JSON element to set
+     * @return The new value of the column holding the first key of {@code path}
+     */
+    public Map<Field<?>, Field<?>> set(Field<JSONB> value, String... path) {
+        if (path.length == 0) {
+            throw new IllegalArgumentException("Path must not be empty");
+        }
+        TableField<?, JSONB> column = column(path[0]);
+        return Collections.singletonMap(column, JsonbDSL.set(DSL.coalesce(column, EMPTY), value, path));
+    }
+
+    private TableField<?, JSONB> column(String key) {
+        return keys.contains(key) ? hot : cold;
+    }
+
+    private Field<JSONB> hotPart(Field<JSONB> document) {
+        return DSL.field("(select jsonb_object_agg(key, value) from jsonb_each(case when jsonb_typeof({0}) = 'object' "
+                + "then {0} end) where key = any({1}))", JSONB.class, document, DSL.array(keyArray()));
+    }
+
+    private String[] keyArray() {
+        return keys.toArray(new String[0]);
+    }
+}
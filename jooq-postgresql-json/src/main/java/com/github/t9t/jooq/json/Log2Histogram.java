@@ -0,0 +1,136 @@
+package com.github.t9t.jooq.json;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Lock-free histogram of non-negative {@code long} values using power-of-two buckets: bucket {@code 0} holds
+ * {@code 0}, and bucket {@code i} holds values from {@code 2^(i-1)} up to and including {@code 2^i - 1}.</p>
+ *
+ * <p>Recording a value is a handful of atomic increments, which makes it cheap enough to call for every query or
+ * every row, at the cost of percentiles only being accurate to within a factor of two.</p>
+ */
+public final class Log2Histogram {
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a value; negative values are recorded as {@code 0}.
+     *
+     * @param value Value to record
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        buckets.incrementAndGet(bucket(v));
+        count.increment();
+        sum.add(v);
+
+        long current = max.get();
+        while (v > current && !max.compareAndSet(current, v)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * @return Number of recorded values
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * @return Sum of all recorded values
+     */
+    public long sum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return Largest recorded value, or {@code 0} if nothing was recorded
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * @return Mean of all recorded values, or {@code 0} if nothing was recorded
+     */
+    public double mean() {
+        long n = count();
+        return n == 0 ? 0 : (double) sum() / n;
+    }
+
+    /**
+     * Approximate the value below which {@code percentile} percent of the recorded values fall, as the upper bound of
+     * the bucket containing it (capped at {@link #max()}).
+     *
+     * @param percentile Percentile between {@code 0} and {@code 100}
+     * @return Approximate percentile value, or {@code 0} if nothing was recorded
+     */
+    public long percentile(double percentile) {
+        long[] counts = bucketCounts();
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100.0);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0) {
+                return Math.min(upperBound(i), max());
+            }
+        }
+        return max();
+    }
+
+    /**
+     * Forget all recorded values. Values recorded concurrently with the reset may be partially retained.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    /**
+     * @return A copy of the number of values per bucket
+     */
+    public long[] bucketCounts() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * @param bucket Bucket index
+     * @return Largest value that falls into the bucket
+     */
+    public static long upperBound(int bucket) {
+        return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    private static int bucket(long value) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, mean=%.1f, p50=%d, p99=%d, max=%d",
+                count(), mean(), percentile(50), percentile(99), max());
+    }
+}
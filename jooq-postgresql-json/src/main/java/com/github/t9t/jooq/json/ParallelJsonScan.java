@@ -0,0 +1,327 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.Condition;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Record2;
+import org.jooq.Result;
+import org.jooq.ResultQuery;
+import org.jooq.Table;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * <p>Splits a table into primary key ranges or {@code ctid} block ranges and runs the same query on each range
+ * concurrently, merging the results into a single {@link Stream}. At most {@link #parallelism(int)} ranges are in
+ * flight (being fetched, fetched but not yet consumed, or being consumed) at any time, which bounds both the number of
+ * connections used and the number of records held in memory: the next range is only fetched once the records of a
+ * range have all been consumed.</p>
+ *
+ * <p>Every range is fetched with a separate {@link DSLContext#fetch(ResultQuery)} call, so the {@code DSLContext}
+ * should be backed by a connection pool ({@code DataSource}) with at least {@code parallelism} connections. The ranges
+ * are not read in a single transaction, so concurrent modifications may or may not be visible.</p>
+ *
+ * <p>Example:</p>
+ * <pre>{@code
+ * try (Stream<Record2<Long, String>> rows = ParallelJsonScan.byId(MY_TABLE, MY_TABLE.ID)
+ *         .parallelism(8)
+ *         .stream(dsl, range -> DSL.select(MY_TABLE.ID, JsonbDSL.fieldByKeyText(MY_TABLE.DATA, "name"))
+ *                 .from(MY_TABLE)
+ *                 .where(range))) {
+ *     rows.forEach(exporter::write);
+ * }
+ * }</pre>
+ */
+public final class ParallelJsonScan {
+    private static final int RANGES_PER_THREAD = 4;
+
+    private final Table<?> table;
+    private final Field<Long> id;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int partitions = -1;
+    private boolean ordered = false;
+    private ExecutorService executor;
+
+    private ParallelJsonScan(Table<?> table, Field<Long> id) {
+        this.table = table;
+        this.id = id;
+    }
+
+    /**
+     * Split the table into ranges of its (numeric) primary key, from {@code min(id)} to {@code max(id)}. Works best
+     * for densely populated keys, such as a {@code bigserial}.
+     *
+     * @param table Table to scan
+     * @param id    Numeric key column of the table
+     * @return A scan over key ranges of the table
+     */
+    public static ParallelJsonScan byId(Table<?> table, Field<? extends Number> id) {
+        return new ParallelJsonScan(table, id.coerce(Long.class));
+    }
+
+    /**
+     * <p>Split the table into ranges of physical blocks by comparing its {@code ctid}, which does not require a key
+     * and is not affected by gaps in the keys.</p>
+     *
+     * <p><b>Note:</b> PostgreSQL only executes {@code ctid} ranges efficiently (as a TID Range Scan) since version 14.
+     * On earlier versions, every range reads the whole table; use {@link #byId(Table, Field)} instead.</p>
+     *
+     * @param table Table to scan; must not be aliased
+     * @return A scan over block ranges of the table
+     */
+    public static ParallelJsonScan byCtid(Table<?> table) {
+        return new ParallelJsonScan(table, null);
+    }
+
+    /**
+     * @param parallelism Maximum number of ranges fetched concurrently; defaults to the number of processors
+     * @return This scan
+     */
+    public ParallelJsonScan parallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1, got: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @param partitions Number of ranges to split the table into; defaults to 4 times the parallelism
+     * @return This scan
+     */
+    public ParallelJsonScan partitions(int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("partitions must be at least 1, got: " + partitions);
+        }
+        this.partitions = partitions;
+        return this;
+    }
+
+    /**
+     * @param ordered {@code true} to stream the ranges in order (from the lowest key or block to the highest), or
+     *                {@code false} (default) to stream every range as soon as it has been fetched
+     * @return This scan
+     */
+    public ParallelJsonScan ordered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    /**
+     * @param executor Executor to fetch the ranges on, which is not shut down by the scan. By default a new executor is
+     *                 created for every stream, using virtual threads when running on a JVM that supports them
+     * @return This scan
+     */
+    public ParallelJsonScan executor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Determine the ranges to scan. Executes a query to find the key or block bounds of the table.
+     *
+     * @param dsl Context to query the bounds with
+     * @return One condition per range; empty when the table is empty
+     */
+    public List<Condition> ranges(DSLContext dsl) {
+        int count = partitions > 0 ? partitions : parallelism * RANGES_PER_THREAD;
+        return id != null ? idRanges(dsl, count) : ctidRanges(dsl, count);
+    }
+
+    /**
+     * <p>Run the query created by {@code query} for every range concurrently and stream the results.</p>
+     *
+     * <p>The stream should be closed when not fully consumed, to cancel the outstanding ranges. The executor created by
+     * the scan is also shut down once the stream has been fully consumed or a range fails. Errors fetching a range are
+     * thrown from the stream operation consuming it.</p>
+     *
+     * @param dsl   Context to fetch the ranges with
+     * @param query Creates the query for a range; the condition restricts the rows to the range and must be part of
+     *              the {@code where} clause
+     * @param <R>   Record type
+     * @return The records of all ranges
+     */
+    public <R extends Record> Stream<R> stream(DSLContext dsl, Function<Condition, ? extends ResultQuery<R>> query) {
+        List<Condition> ranges = ranges(dsl);
+        boolean ownExecutor = executor == null;
+        ExecutorService rangeExecutor = ownExecutor ? newExecutor(parallelism) : executor;
+
+        Runnable onFinish = ownExecutor ? rangeExecutor::shutdownNow : () -> {
+        };
+        RangeIterator<R> iterator = new RangeIterator<>(ranges.iterator(), range -> dsl.fetch(query.apply(range)),
+                rangeExecutor, parallelism, ordered, onFinish);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.NONNULL), false)
+                .onClose(iterator::finish);
+    }
+
+    private List<Condition> idRanges(DSLContext dsl, int count) {
+        Record2<Long, Long> bounds = dsl.select(DSL.min(id), DSL.max(id)).from(table).fetchOne();
+        if (bounds == null || bounds.value1() == null) {
+            return Collections.emptyList();
+        }
+
+        long min = bounds.value1();
+        long max = bounds.value2();
+        long size = Math.max(1, (max - min) / count + 1);
+        List<Condition> ranges = new ArrayList<>();
+        for (long lo = min; lo <= max && lo >= min; lo += size) {
+            ranges.add(id.between(lo, Math.min(max, lo + size - 1)));
+        }
+        return ranges;
+    }
+
+    private List<Condition> ctidRanges(DSLContext dsl, int count) {
+        Long blocks = dsl.select(DSL.field("pg_relation_size({0}::regclass) / current_setting('block_size')::bigint",
+                Long.class, DSL.inline(dsl.render(table)))).fetchOne().value1();
+        long size = Math.max(1, blocks / count + (blocks % count == 0 ? 0 : 1));
+        Field<Object> ctid = DSL.field(DSL.name(table.getName(), "ctid"));
+
+        List<Condition> ranges = new ArrayList<>();
+        long lo = 0;
+        do {
+            Condition range = DSL.condition("{0} >= {1}::tid", ctid, DSL.inline("(" + lo + ",0)"));
+            lo += size;
+            // The last range is open-ended, to include blocks added since determining the size of the table
+            ranges.add(lo >= blocks ? range
+                    : range.and(DSL.condition("{0} < {1}::tid", ctid, DSL.inline("(" + lo + ",0)"))));
+        } while (lo < blocks);
+        return ranges;
+    }
+
+    private static ExecutorService newExecutor(int parallelism) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(parallelism, r -> {
+                Thread thread = new Thread(r, "parallel-json-scan");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private static final class RangeIterator<R extends Record> implements Iterator<R> {
+        private final Iterator<Condition> ranges;
+        private final Function<Condition, Result<R>> fetch;
+        private final ExecutorService executor;
+        private final CompletionService<Result<R>> completion;
+        private final Deque<Future<Result<R>>> inFlight = new ArrayDeque<>();
+        private final boolean ordered;
+        private final Runnable onFinish;
+        private Iterator<R> current = Collections.emptyIterator();
+        // Whether current holds the records of a range, which counts as in flight until they have all been consumed
+        private boolean consuming;
+        private boolean finished;
+
+        RangeIterator(Iterator<Condition> ranges, Function<Condition, Result<R>> fetch, ExecutorService executor,
+                      int parallelism, boolean ordered, Runnable onFinish) {
+            this.ranges = ranges;
+            this.fetch = fetch;
+            this.executor = executor;
+            this.completion = new ExecutorCompletionService<>(executor);
+            this.ordered = ordered;
+            this.onFinish = onFinish;
+            for (int i = 0; i < parallelism && ranges.hasNext(); i++) {
+                submitNext();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (consuming) {
+                    consuming = false;
+                    current = Collections.emptyIterator();
+                    if (ranges.hasNext() && !finished) {
+                        submitNext();
+                    }
+                }
+                if (inFlight.isEmpty()) {
+                    finish();
+                    return false;
+                }
+                current = next(ordered ? inFlight.peekFirst() : take()).iterator();
+                consuming = true;
+            }
+            return true;
+        }
+
+        @Override
+        public R next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        /**
+         * Cancel the outstanding ranges and release the executor; called when exhausted, on errors and on close.
+         */
+        void finish() {
+            for (Future<Result<R>> future : inFlight) {
+                future.cancel(true);
+            }
+            inFlight.clear();
+            if (!finished) {
+                finished = true;
+                onFinish.run();
+            }
+        }
+
+        private Result<R> next(Future<Result<R>> future) {
+            try {
+                Result<R> result = future.get();
+                inFlight.remove(future);
+                return result;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                finish();
+                throw new DataAccessException("Interrupted while waiting for range", e);
+            } catch (ExecutionException e) {
+                finish();
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new DataAccessException("Error fetching range", e.getCause());
+            }
+        }
+
+        private Future<Result<R>> take() {
+            try {
+                return completion.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                finish();
+                throw new DataAccessException("Interrupted while waiting for range", e);
+            }
+        }
+
+        private void submitNext() {
+            Condition range = ranges.next();
+            // Ordered streams wait for the oldest range, so only unordered streams need to track completion
+            Callable<Result<R>> task = () -> fetch.apply(range);
+            inFlight.addLast(ordered ? executor.submit(task) : completion.submit(task));
+        }
+    }
+}
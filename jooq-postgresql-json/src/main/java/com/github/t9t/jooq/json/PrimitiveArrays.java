@@ -0,0 +1,299 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.Converter;
+import org.jooq.DataType;
+import org.jooq.Field;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * <p>Fields decoding JSON arrays of numbers into {@code long[]} and {@code double[]} without boxing, for
+ * {@link JsonDSL#arrayAsLongs(Field)} and friends.</p>
+ *
+ * <p>The array is selected as it is and read as the UTF-8 bytes of its JSON text ({@code ResultSet.getBytes}), which
+ * are decoded straight into the primitive array: no element is boxed or turned into a {@code String} or
+ * {@code BigDecimal}. Converting the elements on the server ({@code bigint[]}/{@code float8[]}) is several times
+ * slower than sending the text, as every element then has to be parsed and formatted by the server as well.</p>
+ *
+ * <p>Doubles with up to 15 significant digits and a decimal exponent of at most 22 are computed exactly from their
+ * digits; others are parsed with {@link Double#parseDouble(String)}.</p>
+ *
+ * <p>The other way around, the converters write a primitive array as the UTF-8 bytes of a JSON array, eg. to bind it
+ * with {@code convert_from(?, 'UTF8')::jsonb}.</p>
+ */
+final class PrimitiveArrays {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private static final int EXACT_DIGITS = 15;
+
+    private static final DataType<long[]> LONGS = SQLDataType.VARBINARY.asConvertedDataType(Converter.ofNullable(
+            byte[].class, long[].class, PrimitiveArrays::toLongs, PrimitiveArrays::fromLongs));
+    private static final DataType<double[]> DOUBLES = SQLDataType.VARBINARY.asConvertedDataType(Converter.ofNullable(
+            byte[].class, double[].class, PrimitiveArrays::toDoubles, PrimitiveArrays::fromDoubles));
+
+    private PrimitiveArrays() {
+    }
+
+    static Field<long[]> longs(Field<?> jsonField) {
+        return DSL.field("{0}", LONGS, jsonField);
+    }
+
+    static Field<double[]> doubles(Field<?> jsonField) {
+        return DSL.field("{0}", DOUBLES, jsonField);
+    }
+
+    static long[] toLongs(byte[] json) {
+        if (isNull(json)) {
+            return null;
+        }
+        Scanner scanner = new Scanner(json);
+        long[] values = new long[16];
+        int count = 0;
+        while (scanner.nextElement()) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = scanner.longValue();
+        }
+        return Arrays.copyOf(values, count);
+    }
+
+    static double[] toDoubles(byte[] json) {
+        if (isNull(json)) {
+            return null;
+        }
+        Scanner scanner = new Scanner(json);
+        double[] values = new double[16];
+        int count = 0;
+        while (scanner.nextElement()) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = scanner.doubleValue();
+        }
+        return Arrays.copyOf(values, count);
+    }
+
+    /**
+     * @return {@code true} if the value is the JSON {@code null}, eg. extracted from {@code {"samples": null}}
+     */
+    private static boolean isNull(byte[] json) {
+        return json.length == 4 && json[0] == 'n' && json[1] == 'u' && json[2] == 'l' && json[3] == 'l';
+    }
+
+    static byte[] fromLongs(long[] values) {
+        StringBuilder sb = new StringBuilder(values.length * 8 + 2).append('[');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(values[i]);
+        }
+        return sb.append(']').toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    static byte[] fromDoubles(double[] values) {
+        StringBuilder sb = new StringBuilder(values.length * 8 + 2).append('[');
+        for (int i = 0; i < values.length; i++) {
+            if (Double.isNaN(values[i]) || Double.isInfinite(values[i])) {
+                throw new IllegalArgumentException("JSON numbers must be finite, got: " + values[i]);
+            }
+            if (i > 0) {
+                sb.append(',');
+            }
+            // Double.toString writes digits which parse back to exactly the same value, eg. 1.0E300
+            sb.append(values[i]);
+        }
+        return sb.append(']').toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Reads the numbers of a JSON array one by one.
+     */
+    private static final class Scanner {
+        private final byte[] json;
+        private int pos;
+        private boolean first = true;
+        private int start;
+        private int end;
+
+        Scanner(byte[] json) {
+            this.json = json;
+            skipWhitespace();
+            expect('[');
+            skipWhitespace();
+        }
+
+        /**
+         * Move to the next number in the array, between {@link #start} and {@link #end}.
+         *
+         * @return {@code false} if the end of the array was reached
+         */
+        boolean nextElement() {
+            if (first) {
+                first = false;
+                if (pos < json.length && json[pos] == ']') {
+                    pos++;
+                    expectEnd();
+                    return false;
+                }
+            } else {
+                skipWhitespace();
+                if (pos < json.length && json[pos] == ']') {
+                    pos++;
+                    expectEnd();
+                    return false;
+                }
+                expect(',');
+                skipWhitespace();
+            }
+            start = pos;
+            while (pos < json.length && isNumberCharacter(json[pos])) {
+                pos++;
+            }
+            end = pos;
+            if (start == end) {
+                throw error("Expected a number");
+            }
+            return true;
+        }
+
+        long longValue() {
+            int i = start;
+            boolean negative = json[i] == '-';
+            if (negative) {
+                i++;
+            }
+            if (i == end) {
+                throw error("Invalid integer");
+            }
+            long value = 0;
+            for (; i < end; i++) {
+                int digit = json[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    throw error("Invalid integer");
+                }
+                // Accumulate negatively, as the range of negative longs is larger
+                if (value < (Long.MIN_VALUE + digit) / 10) {
+                    throw error("Integer out of range");
+                }
+                value = value * 10 - digit;
+            }
+            if (negative) {
+                return value;
+            }
+            if (value == Long.MIN_VALUE) {
+                throw error("Integer out of range");
+            }
+            return -value;
+        }
+
+        double doubleValue() {
+            int i = start;
+            boolean negative = json[i] == '-';
+            if (negative) {
+                i++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int exponent = 0;
+            int intDigits = 0;
+            for (; i < end && isDigit(json[i]); i++, intDigits++) {
+                if (mantissa > 0 || json[i] != '0') {
+                    mantissa = mantissa * 10 + (json[i] - '0');
+                    digits++;
+                }
+            }
+            int fractionDigits = 0;
+            if (i < end && json[i] == '.') {
+                for (i++; i < end && isDigit(json[i]); i++, fractionDigits++) {
+                    if (mantissa > 0 || json[i] != '0') {
+                        mantissa = mantissa * 10 + (json[i] - '0');
+                        digits++;
+                    }
+                    exponent--;
+                }
+                if (fractionDigits == 0) {
+                    throw error("Invalid number");
+                }
+            }
+            if (intDigits == 0 || digits > EXACT_DIGITS) {
+                return parseDouble();
+            }
+            if (i < end && (json[i] == 'e' || json[i] == 'E')) {
+                i++;
+                boolean negativeExponent = i < end && json[i] == '-';
+                if (i < end && (json[i] == '-' || json[i] == '+')) {
+                    i++;
+                }
+                if (i == end || end - i > 3) {
+                    return parseDouble();
+                }
+                int e = 0;
+                for (; i < end; i++) {
+                    if (!isDigit(json[i])) {
+                        throw error("Invalid number");
+                    }
+                    e = e * 10 + (json[i] - '0');
+                }
+                exponent += negativeExponent ? -e : e;
+            }
+            if (i != end) {
+                throw error("Invalid number");
+            }
+            if (exponent < -22 || exponent > 22) {
+                return parseDouble();
+            }
+            // Exact: the mantissa and the power of ten are both exactly representable (Clinger's fast path)
+            double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+            return negative ? -value : value;
+        }
+
+        private double parseDouble() {
+            try {
+                return Double.parseDouble(new String(json, start, end - start, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                throw error("Invalid number");
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < json.length && (json[pos] == ' ' || json[pos] == '\n' || json[pos] == '\r'
+                    || json[pos] == '\t')) {
+                pos++;
+            }
+        }
+
+        private void expect(char c) {
+            if (pos >= json.length || json[pos] != c) {
+                throw error("Expected '" + c + "'");
+            }
+            pos++;
+        }
+
+        private void expectEnd() {
+            skipWhitespace();
+            if (pos != json.length) {
+                throw error("Expected end of array");
+            }
+        }
+
+        private DataAccessException error(String message) {
+            String text = new String(json, 0, Math.min(json.length, 100), StandardCharsets.UTF_8);
+            return new DataAccessException(message + " at position " + pos + " of JSON array of numbers: " + text);
+        }
+
+        private static boolean isDigit(byte b) {
+            return b >= '0' && b <= '9';
+        }
+
+        private static boolean isNumberCharacter(byte b) {
+            return isDigit(b) || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E';
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.github.t9t.jooq.json;
+
+import org.jooq.Configuration;
+import org.jooq.DSLContext;
+import org.jooq.ExecuteListenerProvider;
+import org.jooq.Query;
+import org.jooq.VisitListener;
+import org.jooq.VisitListenerProvider;
+import org.jooq.conf.ParamType;
+import org.jooq.conf.Settings;
+import org.jooq.conf.StatementType;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultConnectionProvider;
+import org.jooq.impl.DefaultVisitListenerProvider;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * <p>The SQL and the JDBC bind calls of a query, recorded by letting jOOQ execute the query on a {@link Connection}
+ * proxy whose {@link PreparedStatement}s only record the {@code setXxx(index, value)} calls. This yields exactly the
+ * SQL and values (after applying converters and bindings) JDBC would receive, which {@link Query#getBindValues()}
+ * does not for plain SQL templates containing escaped question marks, such as {@code ??|}.</p>
+ *
+ * <p>The query is wrapped in a plain SQL query to execute it, so it is neither attached to the recording connection
+ * nor otherwise modified. The SQL is rendered with the dialect, settings and visit listeners of the context, with
+ * indexed ({@code ?}) placeholders; its execute listeners are not invoked.</p>
+ */
+public final class RecordedQuery {
+    private final String sql;
+    private final List<Call> calls;
+
+    private RecordedQuery(String sql, List<Call> calls) {
+        this.sql = sql;
+        this.calls = Collections.unmodifiableList(calls);
+    }
+
+    /**
+     * Record a query.
+     *
+     * @param dsl       Context to render and bind the query with
+     * @param query     Query to record
+     * @param listeners Visit listeners to apply in addition to those of {@code dsl}, eg. to replace bind values
+     * @return The recorded SQL and bind calls
+     */
+    public static RecordedQuery record(DSLContext dsl, Query query, VisitListener... listeners) {
+        String[] sql = new String[1];
+        List<Call> calls = new ArrayList<>();
+        PreparedStatement statement = (PreparedStatement) Proxy.newProxyInstance(
+                RecordedQuery.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                (proxy, method, args) -> {
+                    if (method.getName().startsWith("set") && args != null && args.length >= 2
+                            && method.getParameterTypes()[0] == int.class) {
+                        int index = (Integer) args[0] - 1;
+                        while (calls.size() <= index) {
+                            calls.add(null);
+                        }
+                        calls.set(index, new Call(method, args[1], Arrays.copyOfRange(args, 2, args.length)));
+                        return null;
+                    }
+                    return defaultValue(method);
+                });
+        Connection connection = (Connection) Proxy.newProxyInstance(RecordedQuery.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("prepareStatement")) {
+                        sql[0] = (String) args[0];
+                        return statement;
+                    }
+                    return defaultValue(method);
+                });
+
+        Configuration configuration = dsl.configuration();
+        VisitListenerProvider[] existing = configuration.visitListenerProviders();
+        VisitListenerProvider[] providers = Arrays.copyOf(existing, existing.length + listeners.length);
+        for (int i = 0; i < listeners.length; i++) {
+            providers[existing.length + i] = new DefaultVisitListenerProvider(listeners[i]);
+        }
+        Settings settings = ((Settings) configuration.settings().clone())
+                .withParamType(ParamType.INDEXED)
+                .withStatementType(StatementType.PREPARED_STATEMENT)
+                .withExecuteLogging(false);
+        DSL.using(configuration
+                .derive(new DefaultConnectionProvider(connection))
+                .derive(settings)
+                .derive(providers)
+                .derive(new ExecuteListenerProvider[0]))
+                .execute("{0}", query);
+        return new RecordedQuery(sql[0], calls);
+    }
+
+    /**
+     * @return The SQL, with JDBC {@code ?} placeholders
+     */
+    public String sql() {
+        return sql;
+    }
+
+    /**
+     * @return The bind call of every placeholder, in order
+     */
+    public List<Call> calls() {
+        return calls;
+    }
+
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    /**
+     * A recorded {@code PreparedStatement.setXxx(index, value)} call, which can be replayed without reflection for the
+     * setters jOOQ uses for JSON, strings, numbers and booleans.
+     */
+    public static final class Call {
+        private final Method method;
+        private final Object value;
+        // Further arguments of the setter, such as the SQL type of setObject(index, value, type)
+        private final Object[] extra;
+
+        Call(Method method, Object value, Object[] extra) {
+            this.method = method;
+            this.value = value;
+            this.extra = extra;
+        }
+
+        /**
+         * @return Name of the {@code PreparedStatement} setter, eg. {@code setString}
+         */
+        public String setter() {
+            return method.getName();
+        }
+
+        /**
+         * @return The bound value, or the SQL type ({@link java.sql.Types}) for {@code setNull}
+         */
+        public Object value() {
+            return value;
+        }
+
+        /**
+         * @return Whether this call binds {@code NULL}
+         */
+        public boolean isSetNull() {
+            return method.getName().equals("setNull");
+        }
+
+        /**
+         * Call the same setter again.
+         *
+         * @param statement Statement to bind the value to
+         * @param index     Index of the placeholder, starting at 1
+         * @param value     Value to bind, of the type the setter accepts
+         * @throws SQLException If binding fails
+         */
+        public void apply(PreparedStatement statement, int index, Object value) throws SQLException {
+            if (extra.length > 0) {
+                invoke(statement, index, value);
+                return;
+            }
+            switch (method.getName()) {
+                case "setString":
+                    statement.setString(index, (String) value);
+                    break;
+                case "setLong":
+                    statement.setLong(index, (Long) value);
+                    break;
+                case "setInt":
+                    statement.setInt(index, (Integer) value);
+                    break;
+                case "setShort":
+                    statement.setShort(index, (Short) value);
+                    break;
+                case "setDouble":
+                    statement.setDouble(index, (Double) value);
+                    break;
+                case "setFloat":
+                    statement.setFloat(index, (Float) value);
+                    break;
+                case "setBigDecimal":
+                    statement.setBigDecimal(index, (BigDecimal) value);
+                    break;
+                case "setBoolean":
+                    statement.setBoolean(index, (Boolean) value);
+                    break;
+                case "setNull":
+                    statement.setNull(index, (Integer) value);
+                    break;
+                default:
+                    invoke(statement, index, value);
+            }
+        }
+
+        private void invoke(PreparedStatement statement, int index, Object value) throws SQLException {
+            try {
+                Object[] args = new Object[extra.length + 2];
+                args[0] = index;
+                args[1] = value;
+                System.arraycopy(extra, 0, args, 2, extra.length);
+                method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof SQLException) {
+                    throw (SQLException) e.getCause();
+                }
+                throw new DataAccessException("Error binding value " + index + " using " + method.getName(),
+                        e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new DataAccessException("Error binding value " + index + " using " + method.getName(), e);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Call)) {
+                return false;
+            }
+            Call call = (Call) o;
+            return method.equals(call.method) && Objects.deepEquals(value, call.value)
+                    && Arrays.deepEquals(extra, call.extra);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(method, Arrays.deepHashCode(new Object[]{value}), Arrays.deepHashCode(extra));
+        }
+    }
+}